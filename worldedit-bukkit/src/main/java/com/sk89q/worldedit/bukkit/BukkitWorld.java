@@ -28,6 +28,7 @@
 import com.sk89q.worldedit.bukkit.adapter.BukkitImplAdapter;
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.internal.block.BlockStateIdAccess;
 import com.sk89q.worldedit.internal.wna.WorldNativeAccess;
 import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
@@ -42,14 +43,17 @@
 import com.sk89q.worldedit.world.biome.BiomeType;
 import com.sk89q.worldedit.world.block.BaseBlock;
 import com.sk89q.worldedit.world.block.BlockStateHolder;
+import com.sk89q.worldedit.world.block.BlockTypes;
 import com.sk89q.worldedit.world.weather.WeatherType;
 import com.sk89q.worldedit.world.weather.WeatherTypes;
+import org.bukkit.ChunkSnapshot;
 import org.bukkit.Effect;
 import org.bukkit.TreeType;
 import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockState;
 import org.bukkit.block.Chest;
+import org.bukkit.block.data.BlockData;
 import org.bukkit.entity.Entity;
 import org.bukkit.inventory.DoubleChestInventory;
 import org.bukkit.inventory.Inventory;
@@ -61,10 +65,12 @@
 import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -94,8 +100,21 @@ public class BukkitWorld extends AbstractWorld {
         HAS_3D_BIOMES = temp;
     }
 
+    private static final int MAX_CHUNK_SNAPSHOTS = 16;
+
+    // bumped by every change made through any BukkitWorld, so no cached snapshot outlives one
+    private static final AtomicLong changeCount = new AtomicLong();
+
     private final WeakReference<World> worldRef;
     private final WorldNativeAccess<?, ?, ?> worldNativeAccess;
+    private final Map<Long, ChunkSnapshot> chunkSnapshots = new LinkedHashMap<Long, ChunkSnapshot>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, ChunkSnapshot> eldest) {
+            return size() > MAX_CHUNK_SNAPSHOTS;
+        }
+    };
+    private long snapshotTime;
+    private long snapshotChangeCount;
 
     /**
      * Construct the object.
@@ -418,6 +437,7 @@ public BlockVector3 getSpawnPosition() {
 
     @Override
     public void simulateBlockMine(BlockVector3 pt) {
+        changeCount.incrementAndGet();
         getWorld().getBlockAt(pt.getBlockX(), pt.getBlockY(), pt.getBlockZ()).breakNaturally();
     }
 
@@ -442,6 +462,7 @@ public com.sk89q.worldedit.world.block.BlockState getBlock(BlockVector3 position
 
     @Override
     public <B extends BlockStateHolder<B>> boolean setBlock(BlockVector3 position, B block, SideEffectSet sideEffects) {
+        changeCount.incrementAndGet();
         if (worldNativeAccess != null) {
             try {
                 return worldNativeAccess.setBlock(position, block, sideEffects);
@@ -469,9 +490,65 @@ public BaseBlock getFullBlock(BlockVector3 position) {
         }
     }
 
+    @Override
+    public void getBlockStateIds(BlockVector3 min, BlockVector3 max, int[] buffer, int offset) {
+        World world = getWorld();
+        int lengthX = max.getBlockX() - min.getBlockX() + 1;
+        int lengthZ = max.getBlockZ() - min.getBlockZ() + 1;
+        int airId = BlockStateIdAccess.getBlockStateId(BlockTypes.AIR.getDefaultState());
+        // Read one chunk column at a time, from a snapshot of the chunk
+        for (int chunkX = min.getBlockX() >> 4; chunkX <= max.getBlockX() >> 4; chunkX++) {
+            int fromX = Math.max(min.getBlockX(), chunkX << 4);
+            int toX = Math.min(max.getBlockX(), (chunkX << 4) + 15);
+            for (int chunkZ = min.getBlockZ() >> 4; chunkZ <= max.getBlockZ() >> 4; chunkZ++) {
+                int fromZ = Math.max(min.getBlockZ(), chunkZ << 4);
+                int toZ = Math.min(max.getBlockZ(), (chunkZ << 4) + 15);
+                ChunkSnapshot snapshot = getChunkSnapshot(world, chunkX, chunkZ);
+                for (int y = min.getBlockY(); y <= max.getBlockY(); y++) {
+                    boolean inWorld = y >= 0 && y < world.getMaxHeight();
+                    for (int z = fromZ; z <= toZ; z++) {
+                        int index = offset + ((y - min.getBlockY()) * lengthZ + (z - min.getBlockZ())) * lengthX + (fromX - min.getBlockX());
+                        for (int x = fromX; x <= toX; x++) {
+                            int id = airId;
+                            if (inWorld) {
+                                BlockData blockData = snapshot.getBlockData(x & 15, y, z & 15);
+                                com.sk89q.worldedit.world.block.BlockState state = BukkitAdapter.adapt(blockData);
+                                id = state == null ? BlockStateIdAccess.invalidId() : BlockStateIdAccess.getBlockStateId(state);
+                            }
+                            buffer[index++] = id;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get a snapshot of a chunk, reusing the snapshots taken in the same
+     * tick if no change has been made through WorldEdit since, so that
+     * reading a chunk column in many small cuboids takes one snapshot.
+     */
+    private synchronized ChunkSnapshot getChunkSnapshot(World world, int chunkX, int chunkZ) {
+        long time = world.getFullTime();
+        long changes = changeCount.get();
+        if (time != snapshotTime || changes != snapshotChangeCount) {
+            chunkSnapshots.clear();
+            snapshotTime = time;
+            snapshotChangeCount = changes;
+        }
+        long key = ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+        ChunkSnapshot snapshot = chunkSnapshots.get(key);
+        if (snapshot == null) {
+            snapshot = world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false);
+            chunkSnapshots.put(key, snapshot);
+        }
+        return snapshot;
+    }
+
     @Override
     public Set<SideEffect> applySideEffects(BlockVector3 position, com.sk89q.worldedit.world.block.BlockState previousType,
             SideEffectSet sideEffectSet) {
+        changeCount.incrementAndGet();
         if (worldNativeAccess != null) {
             worldNativeAccess.applySideEffects(position, previousType, sideEffectSet);
             return Sets.intersection(
@@ -485,6 +562,7 @@ public Set<SideEffect> applySideEffects(BlockVector3 position, com.sk89q.worlded
 
     @Override
     public boolean useItem(BlockVector3 position, BaseItem item, Direction face) {
+        changeCount.incrementAndGet();
         BukkitImplAdapter adapter = WorldEditPlugin.getInstance().getBukkitImplAdapter();
         if (adapter != null) {
             return adapter.simulateItemUse(getWorld(), position, item, face);
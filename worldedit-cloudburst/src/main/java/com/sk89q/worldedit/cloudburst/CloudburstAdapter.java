@@ -19,8 +19,6 @@
 
 package com.sk89q.worldedit.cloudburst;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
 import com.nukkitx.math.vector.Vector3f;
 import com.nukkitx.nbt.NbtMap;
 import com.sk89q.jnbt.CompoundTag;
@@ -62,6 +60,7 @@
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 public class CloudburstAdapter {
@@ -102,10 +101,68 @@ public static Direction adapt(org.cloudburstmc.server.math.Direction direction)
         TO_BLOCK_CONTEXT.setRestricted(false);
     }
 
-    private static final BiMap<BlockState, org.cloudburstmc.server.block.BlockState> blockStateCache = HashBiMap.create();
+    // indexed by internal ID, which is the Cloudburst runtime ID
+    private static volatile org.cloudburstmc.server.block.BlockState[] toNativeStates = new org.cloudburstmc.server.block.BlockState[0];
+    private static volatile BlockState[] toWorldEditStates = new BlockState[0];
+
+    /**
+     * Build the tables translating block states by internal ID. This should
+     * be called once WorldEdit has registered the internal IDs of its block
+     * states; until then, states are translated one property at a time.
+     */
+    static void loadBlockStates() {
+        BlockRegistry registry = BlockRegistry.get();
+        int size = 0;
+        for (org.cloudburstmc.server.block.BlockState blockState : registry.getBlockStates()) {
+            size = Math.max(size, registry.getRuntimeId(blockState) + 1);
+        }
+        org.cloudburstmc.server.block.BlockState[] nativeStates = new org.cloudburstmc.server.block.BlockState[size];
+        BlockState[] worldEditStates = new BlockState[size];
+        for (org.cloudburstmc.server.block.BlockState blockState : registry.getBlockStates()) {
+            int id = registry.getRuntimeId(blockState);
+            nativeStates[id] = blockState;
+            worldEditStates[id] = BlockStateIdAccess.getBlockStateById(id);
+        }
+        toNativeStates = nativeStates;
+        toWorldEditStates = worldEditStates;
+    }
 
     public static BlockState adapt(org.cloudburstmc.server.block.BlockState blockState) {
-        return BlockStateIdAccess.getBlockStateById(BlockRegistry.get().getRuntimeId(blockState));
+        int id = BlockRegistry.get().getRuntimeId(blockState);
+        BlockState[] states = toWorldEditStates;
+        if (id >= 0 && id < states.length && states[id] != null) {
+            return states[id];
+        }
+        return BlockStateIdAccess.getBlockStateById(id);
+    }
+
+    /**
+     * Get the internal ID of the WorldEdit block state matching a Cloudburst
+     * block state, which is its runtime ID.
+     *
+     * @param blockState the Cloudburst block state
+     * @return the internal ID, or {@link BlockStateIdAccess#invalidId()} if there is no matching state
+     */
+    public static int adaptToInternalId(org.cloudburstmc.server.block.BlockState blockState) {
+        int id = BlockRegistry.get().getRuntimeId(blockState);
+        BlockState[] states = toWorldEditStates;
+        if (id >= 0 && id < states.length && states[id] != null) {
+            return id;
+        }
+        return BlockStateIdAccess.getBlockStateById(id) != null ? id : BlockStateIdAccess.invalidId();
+    }
+
+    /**
+     * Adapt Cloudburst block states to WorldEdit block states in bulk.
+     *
+     * @param blockStates the Cloudburst block states
+     * @param into the array to place the WorldEdit block states in, at the same indices
+     */
+    public static void adapt(org.cloudburstmc.server.block.BlockState[] blockStates, BlockState[] into) {
+        checkArgument(into.length >= blockStates.length, "into is too small");
+        for (int i = 0; i < blockStates.length; i++) {
+            into[i] = adapt(blockStates[i]);
+        }
     }
 
     public static BlockState asBlockState(Item item) throws WorldEditException {
@@ -136,8 +193,30 @@ public static org.cloudburstmc.server.block.BlockState adapt(BlockType blockType
         return BlockRegistry.get().getBlock(Identifier.fromString(blockType.getId()));
     }
 
-    @SuppressWarnings({"rawtypes", "unchecked"})
     public static org.cloudburstmc.server.block.BlockState adapt(BlockState blockState) {
+        int id = BlockStateIdAccess.getBlockStateId(blockState);
+        org.cloudburstmc.server.block.BlockState[] states = toNativeStates;
+        if (id >= 0 && id < states.length && states[id] != null) {
+            return states[id];
+        }
+        return adaptByProperties(blockState);
+    }
+
+    /**
+     * Adapt WorldEdit block states to Cloudburst block states in bulk.
+     *
+     * @param blockStates the WorldEdit block states
+     * @param into the array to place the Cloudburst block states in, at the same indices
+     */
+    public static void adapt(BlockState[] blockStates, org.cloudburstmc.server.block.BlockState[] into) {
+        checkArgument(into.length >= blockStates.length, "into is too small");
+        for (int i = 0; i < blockStates.length; i++) {
+            into[i] = adapt(blockStates[i]);
+        }
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static org.cloudburstmc.server.block.BlockState adaptByProperties(BlockState blockState) {
         org.cloudburstmc.server.block.BlockState state = adapt(blockState.getBlockType());
 
         for (Map.Entry<? extends Property<?>, Object> entry : blockState.getStates().entrySet()) {
@@ -154,8 +233,6 @@ public static org.cloudburstmc.server.block.BlockState adapt(BlockState blockSta
             }
         }
 
-        blockStateCache.put(blockState, state);
-
         return state;
     }
 
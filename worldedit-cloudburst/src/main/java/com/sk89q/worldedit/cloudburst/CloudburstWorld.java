@@ -49,7 +49,6 @@
 import org.cloudburstmc.server.level.Level;
 
 import java.lang.ref.WeakReference;
-import java.lang.reflect.Field;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
@@ -112,30 +111,11 @@ public <B extends BlockStateHolder<B>> boolean setBlock(BlockVector3 position, B
         return false;
     }
 
-    private static final Field STATE_FIELD;
-
-    static {
-        try {
-            STATE_FIELD = BaseBlock.class.getDeclaredField("blockState");
-            STATE_FIELD.setAccessible(true);
-        } catch (Exception e) {
-            throw new AssertionError(e);
-        }
-    }
-
-    private static com.sk89q.worldedit.world.block.BlockState getState(BaseBlock baseBlock) {
-        try {
-            return (com.sk89q.worldedit.world.block.BlockState) STATE_FIELD.get(baseBlock);
-        } catch (Exception e) {
-            throw new AssertionError(e);
-        }
-    }
-
     protected BlockState getBlockState(BlockStateHolder<?> block) {
         if (block instanceof com.sk89q.worldedit.world.block.BlockState) {
             return CloudburstAdapter.adapt((com.sk89q.worldedit.world.block.BlockState) block);
         } else if (block instanceof BaseBlock) {
-            return CloudburstAdapter.adapt(getState((BaseBlock) block));
+            return CloudburstAdapter.adapt(block.toImmutableState());
         } else {
             throw new UnsupportedOperationException("Missing Cloudburst adapter for WorldEdit!");
         }
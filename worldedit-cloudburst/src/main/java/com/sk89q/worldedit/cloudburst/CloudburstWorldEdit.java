@@ -120,6 +120,7 @@ public void onInitialization(ServerInitializationEvent event) {
         }
 
         WorldEdit.getInstance().getEventBus().post(new PlatformReadyEvent());
+        CloudburstAdapter.loadBlockStates();
 
         Server.getInstance().getEventManager().registerListeners(this, new CloudburstListener(this));
 
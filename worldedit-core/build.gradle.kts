@@ -9,6 +9,7 @@ plugins {
     id("net.ltgt.apt-idea")
     id("antlr")
     id("com.mendhak.gradlecrowdin")
+    id("me.champeau.gradle.jmh")
 }
 
 applyPlatformAndCoreConfiguration()
@@ -0,0 +1,90 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the expression backends on typical {@code //generate} shapes,
+ * evaluated over a grid of normalized coordinates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionBenchmark {
+
+    private static final int SIZE = 16;
+
+    @Param({
+        "x * x + y * y + z * z < 0.8",
+        "(0.75 - sqrt(x ^ 2 + y ^ 2)) ^ 2 + z ^ 2 < 0.25 ^ 2",
+        "r = sqrt(x * x + z * z); y < sin(r * 8) * 0.2 && r < 1",
+        "if (y > 0.5) { type = 1; data = 2 } else { type = 3 } abs(x) + abs(z) < 1 - y * y"
+    })
+    public String source;
+
+    @Param({"METHOD_HANDLES", "BYTECODE"})
+    public ExpressionBackend backend;
+
+    private ExpressionFrame frame;
+
+    @Setup
+    public void setup() {
+        frame = Expression.compile(source, backend, "x", "y", "z", "type", "data").newFrame(-1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE * SIZE * SIZE)
+    public double evaluate() {
+        double sum = 0;
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                for (int z = 0; z < SIZE; z++) {
+                    frame.set(0, normalize(x));
+                    frame.set(1, normalize(y));
+                    frame.set(2, normalize(z));
+                    sum += frame.evaluate();
+                }
+            }
+        }
+        return sum;
+    }
+
+    private static double normalize(int coordinate) {
+        return coordinate * 2.0 / (SIZE - 1) - 1;
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.jnbt;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Receives the entries of a compound tag while it is read by
+ * {@link NBTInputStream#readCompound(NBTCompoundVisitor)}, so that large
+ * entries can be processed as they arrive instead of being held in a
+ * {@link CompoundTag}.
+ */
+public interface NBTCompoundVisitor {
+
+    /**
+     * How an entry of the compound is read.
+     */
+    enum Action {
+        /**
+         * Read the entry as a {@link Tag}, and pass it to
+         * {@link #visitTag(String, Tag)}.
+         */
+        READ,
+        /**
+         * Stream a byte array to {@link #visitByteArray(String, int, InputStream)},
+         * or each element of a list to {@link #visitListEntry(String, int, Tag)}.
+         * Other entries are read as with {@link #READ}.
+         */
+        STREAM,
+        /**
+         * Skip the entry.
+         */
+        SKIP
+    }
+
+    /**
+     * Decide how an entry is read.
+     *
+     * @param name the name of the entry
+     * @param type the type code of the entry, see {@link NBTConstants}
+     * @return the action
+     */
+    default Action visitEntry(String name, int type) {
+        return Action.READ;
+    }
+
+    /**
+     * Called with an entry that was read as a whole.
+     *
+     * @param name the name of the entry
+     * @param tag the entry
+     * @throws IOException if the entry could not be handled
+     */
+    void visitTag(String name, Tag tag) throws IOException;
+
+    /**
+     * Called with a streamed byte array. Bytes that are not read from the
+     * stream by the time this returns are skipped. The stream must not be
+     * closed.
+     *
+     * @param name the name of the entry
+     * @param length the number of bytes in the array
+     * @param data a stream of the bytes of the array
+     * @throws IOException if the entry could not be handled
+     */
+    default void visitByteArray(String name, int length, InputStream data) throws IOException {
+    }
+
+    /**
+     * Called with each element of a streamed list.
+     *
+     * @param name the name of the list
+     * @param index the index of the element
+     * @param tag the element
+     * @throws IOException if the element could not be handled
+     */
+    default void visitListEntry(String name, int index, Tag tag) throws IOException {
+    }
+
+}
@@ -21,6 +21,7 @@
 
 import java.io.Closeable;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -63,6 +64,142 @@ public NamedTag readNamedTag() throws IOException {
         return readNamedTag(0);
     }
 
+    /**
+     * Reads a named compound tag from the stream, passing its entries to a
+     * visitor as they are read instead of building a {@link CompoundTag}.
+     *
+     * @param visitor the visitor of the entries
+     * @return the name of the compound
+     * @throws IOException if an I/O error occurs, or the tag is not a compound
+     */
+    public String readCompound(NBTCompoundVisitor visitor) throws IOException {
+        int type = is.readByte() & 0xFF;
+        if (type != NBTConstants.TYPE_COMPOUND) {
+            throw new IOException("Expected a TAG_Compound, got type " + type + ".");
+        }
+        String rootName = readName();
+
+        while (true) {
+            int entryType = is.readByte() & 0xFF;
+            if (entryType == NBTConstants.TYPE_END) {
+                return rootName;
+            }
+            String name = readName();
+
+            switch (visitor.visitEntry(name, entryType)) {
+                case SKIP:
+                    skipTagPayload(entryType);
+                    break;
+                case STREAM:
+                    if (entryType == NBTConstants.TYPE_BYTE_ARRAY) {
+                        int length = is.readInt();
+                        BoundedInputStream data = new BoundedInputStream(is, length);
+                        visitor.visitByteArray(name, length, data);
+                        data.skipRemaining();
+                        break;
+                    } else if (entryType == NBTConstants.TYPE_LIST) {
+                        int childType = is.readByte();
+                        int length = is.readInt();
+                        for (int i = 0; i < length; ++i) {
+                            Tag tag = readTagPayload(childType, 2);
+                            if (tag instanceof EndTag) {
+                                throw new IOException("TAG_End not permitted in a list.");
+                            }
+                            visitor.visitListEntry(name, i, tag);
+                        }
+                        break;
+                    }
+                    // fall through, other tags can't be streamed
+                case READ:
+                default:
+                    visitor.visitTag(name, readTagPayload(entryType, 1));
+                    break;
+            }
+        }
+    }
+
+    private String readName() throws IOException {
+        int nameLength = is.readShort() & 0xFFFF;
+        byte[] nameBytes = new byte[nameLength];
+        is.readFully(nameBytes);
+        return new String(nameBytes, NBTConstants.CHARSET);
+    }
+
+    /**
+     * Skips the payload of a tag given the type.
+     *
+     * @param type the type
+     * @throws IOException if an I/O error occurs.
+     */
+    private void skipTagPayload(int type) throws IOException {
+        switch (type) {
+            case NBTConstants.TYPE_END:
+                break;
+            case NBTConstants.TYPE_BYTE:
+                skipFully(1);
+                break;
+            case NBTConstants.TYPE_SHORT:
+                skipFully(2);
+                break;
+            case NBTConstants.TYPE_INT:
+            case NBTConstants.TYPE_FLOAT:
+                skipFully(4);
+                break;
+            case NBTConstants.TYPE_LONG:
+            case NBTConstants.TYPE_DOUBLE:
+                skipFully(8);
+                break;
+            case NBTConstants.TYPE_BYTE_ARRAY:
+                skipFully(is.readInt());
+                break;
+            case NBTConstants.TYPE_STRING:
+                skipFully(is.readShort() & 0xFFFF);
+                break;
+            case NBTConstants.TYPE_LIST:
+                int childType = is.readByte();
+                int length = is.readInt();
+                for (int i = 0; i < length; ++i) {
+                    skipTagPayload(childType);
+                }
+                break;
+            case NBTConstants.TYPE_COMPOUND:
+                while (true) {
+                    int entryType = is.readByte() & 0xFF;
+                    if (entryType == NBTConstants.TYPE_END) {
+                        break;
+                    }
+                    skipFully(is.readShort() & 0xFFFF);
+                    skipTagPayload(entryType);
+                }
+                break;
+            case NBTConstants.TYPE_INT_ARRAY:
+                skipFully(is.readInt() * 4L);
+                break;
+            case NBTConstants.TYPE_LONG_ARRAY:
+                skipFully(is.readInt() * 8L);
+                break;
+            default:
+                throw new IOException("Invalid tag type: " + type + ".");
+        }
+    }
+
+    private void skipFully(long bytes) throws IOException {
+        skipFully(is, bytes);
+    }
+
+    private static void skipFully(InputStream in, long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = in.skip(bytes);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new EOFException();
+                }
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+
     /**
      * Reads an NBT from the stream.
      *
@@ -176,4 +313,65 @@ public void close() throws IOException {
         is.close();
     }
 
+    /**
+     * A view of the next bytes of a stream, which leaves the stream open.
+     */
+    private static final class BoundedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        private BoundedInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read == -1) {
+                throw new EOFException();
+            }
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public void close() {
+            // the underlying stream is still being read
+        }
+
+        private void skipRemaining() throws IOException {
+            skipFully(in, remaining);
+            remaining = 0;
+        }
+    }
+
 }
@@ -84,6 +84,107 @@ public void writeNamedTag(String name, Tag tag) throws IOException {
         writeTagPayload(tag);
     }
 
+    /**
+     * Writes the header of a named {@code TAG_Compound}, to stream its
+     * entries with the {@code write} methods of this stream instead of
+     * building a {@link CompoundTag}. The compound must be ended with
+     * {@link #writeCompoundEnd()}.
+     *
+     * @param name
+     *            The name of the compound.
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void writeCompoundStart(String name) throws IOException {
+        writeNamedTagHeader(name, NBTConstants.TYPE_COMPOUND);
+    }
+
+    /**
+     * Ends a compound started with {@link #writeCompoundStart(String)}.
+     *
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void writeCompoundEnd() throws IOException {
+        os.writeByte(NBTConstants.TYPE_END);
+    }
+
+    /**
+     * Writes the header of a named {@code TAG_List}. Exactly {@code size}
+     * entries must follow, written with {@link #writeListEntry(Tag)}.
+     *
+     * @param name
+     *            The name of the list.
+     * @param type
+     *            The type of the entries.
+     * @param size
+     *            The number of entries.
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void writeListStart(String name, Class<? extends Tag> type, int size) throws IOException {
+        writeNamedTagHeader(name, NBTConstants.TYPE_LIST);
+        os.writeByte(NBTUtils.getTypeCode(type));
+        os.writeInt(size);
+    }
+
+    /**
+     * Writes an entry of a list started with
+     * {@link #writeListStart(String, Class, int)}.
+     *
+     * @param tag
+     *            The entry, of the type of the list.
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void writeListEntry(Tag tag) throws IOException {
+        checkNotNull(tag);
+        writeTagPayload(tag);
+    }
+
+    /**
+     * Writes the header of a named {@code TAG_Byte_Array}. Exactly
+     * {@code length} bytes must follow, written with
+     * {@link #writeByteArrayData(byte[], int, int)}.
+     *
+     * @param name
+     *            The name of the array.
+     * @param length
+     *            The number of bytes in the array.
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void writeByteArrayStart(String name, int length) throws IOException {
+        writeNamedTagHeader(name, NBTConstants.TYPE_BYTE_ARRAY);
+        os.writeInt(length);
+    }
+
+    /**
+     * Writes bytes of an array started with
+     * {@link #writeByteArrayStart(String, int)}.
+     *
+     * @param bytes
+     *            The buffer holding the bytes.
+     * @param offset
+     *            The offset of the first byte to write.
+     * @param length
+     *            The number of bytes to write.
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public void writeByteArrayData(byte[] bytes, int offset, int length) throws IOException {
+        os.write(bytes, offset, length);
+    }
+
+    private void writeNamedTagHeader(String name, int type) throws IOException {
+        checkNotNull(name);
+        byte[] nameBytes = name.getBytes(NBTConstants.CHARSET);
+
+        os.writeByte(type);
+        os.writeShort(nameBytes.length);
+        os.write(nameBytes);
+    }
+
     /**
      * Writes tag payload.
      *
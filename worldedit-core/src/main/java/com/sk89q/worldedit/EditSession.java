@@ -30,7 +30,7 @@
 import com.sk89q.worldedit.extent.MaskingExtent;
 import com.sk89q.worldedit.extent.NullExtent;
 import com.sk89q.worldedit.extent.buffer.ForgetfulExtentBuffer;
-import com.sk89q.worldedit.extent.cache.LastAccessExtentCache;
+import com.sk89q.worldedit.extent.cache.ChunkSectionExtentCache;
 import com.sk89q.worldedit.extent.inventory.BlockBag;
 import com.sk89q.worldedit.extent.inventory.BlockBagExtent;
 import com.sk89q.worldedit.extent.reorder.ChunkBatchingExtent;
@@ -69,21 +69,28 @@
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.OperationQueue;
 import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.function.operation.RunContext;
 import com.sk89q.worldedit.function.pattern.Pattern;
 import com.sk89q.worldedit.function.pattern.WaterloggedRemover;
 import com.sk89q.worldedit.function.util.RegionOffset;
 import com.sk89q.worldedit.function.visitor.DownwardVisitor;
 import com.sk89q.worldedit.function.visitor.LayerVisitor;
 import com.sk89q.worldedit.function.visitor.NonRisingVisitor;
+import com.sk89q.worldedit.function.visitor.ParallelRegionVisitor;
 import com.sk89q.worldedit.function.visitor.RecursiveVisitor;
 import com.sk89q.worldedit.function.visitor.RegionVisitor;
 import com.sk89q.worldedit.history.UndoContext;
-import com.sk89q.worldedit.history.changeset.BlockOptimizedHistory;
 import com.sk89q.worldedit.history.changeset.ChangeSet;
+import com.sk89q.worldedit.history.changeset.PackedBlockHistory;
+import com.sk89q.worldedit.internal.block.BlockStateIdAccess;
 import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionBackend;
 import com.sk89q.worldedit.internal.expression.ExpressionException;
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
 import com.sk89q.worldedit.internal.expression.ExpressionTimeoutException;
 import com.sk89q.worldedit.internal.expression.LocalSlot.Variable;
+import com.sk89q.worldedit.internal.util.RegionOptimizedVectorSorter;
+import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.math.MathUtils;
 import com.sk89q.worldedit.math.Vector2;
@@ -104,11 +111,11 @@
 import com.sk89q.worldedit.regions.shape.RegionShape;
 import com.sk89q.worldedit.regions.shape.WorldEditExpressionEnvironment;
 import com.sk89q.worldedit.util.Countable;
-import com.sk89q.worldedit.util.Direction;
 import com.sk89q.worldedit.util.SideEffectSet;
 import com.sk89q.worldedit.util.TreeGenerator;
-import com.sk89q.worldedit.util.collection.DoubleArrayList;
+import com.sk89q.worldedit.util.collection.PagedBitSet;
 import com.sk89q.worldedit.util.eventbus.EventBus;
+import com.sk89q.worldedit.util.formatting.text.Component;
 import com.sk89q.worldedit.world.NullWorld;
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.biome.BiomeType;
@@ -118,20 +125,29 @@
 import com.sk89q.worldedit.world.block.BlockType;
 import com.sk89q.worldedit.world.block.BlockTypes;
 import com.sk89q.worldedit.world.registry.LegacyMapper;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import javax.annotation.Nullable;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.sk89q.worldedit.math.BitMath.unpackX;
+import static com.sk89q.worldedit.math.BitMath.unpackY;
+import static com.sk89q.worldedit.math.BitMath.unpackZ;
 import static com.sk89q.worldedit.regions.Regions.asFlatRegion;
 import static com.sk89q.worldedit.regions.Regions.maximumBlockY;
 import static com.sk89q.worldedit.regions.Regions.minimumBlockY;
@@ -186,22 +202,25 @@ public String getDisplayName() {
 
     @SuppressWarnings("ProtectedField")
     protected final World world;
-    private final ChangeSet changeSet = new BlockOptimizedHistory();
+    private final ChangeSet changeSet;
 
     private @Nullable SideEffectExtent sideEffectExtent;
     private final SurvivalModeExtent survivalExtent;
     private @Nullable ChunkBatchingExtent chunkBatchingExtent;
+    private @Nullable ChunkSectionExtentCache sectionCache;
     private final BlockBagExtent blockBagExtent;
     private final MultiStageReorder reorderExtent;
     private final MaskingExtent maskingExtent;
     private final BlockChangeLimiter changeLimiter;
     private final List<WatchdogTickingExtent> watchdogExtents = new ArrayList<>(2);
+    private @Nullable Operation pendingCommit;
 
     private final Extent bypassReorderHistory;
     private final Extent bypassHistory;
     private final Extent bypassNone;
 
     private ReorderMode reorderMode = ReorderMode.MULTI_STAGE;
+    private boolean parallelEvaluation = WorldEdit.getInstance().getConfiguration().parallelEvaluation;
 
     private Mask oldMask;
 
@@ -220,6 +239,8 @@ public String getDisplayName() {
         checkNotNull(event);
 
         this.world = world;
+        int historyMemoryBudget = WorldEdit.getInstance().getConfiguration().historyMemoryBudget;
+        this.changeSet = new PackedBlockHistory(historyMemoryBudget < 0 ? -1 : historyMemoryBudget * 1024L * 1024L);
 
         if (world != null) {
             Watchdog watchdog = WorldEdit.getInstance().getPlatformManager()
@@ -238,7 +259,9 @@ public String getDisplayName() {
             extent = new BlockQuirkExtent(extent, world);
             extent = new BiomeQuirkExtent(extent);
             extent = new ChunkLoadingExtent(extent, world);
-            extent = new LastAccessExtentCache(extent);
+            final SideEffectExtent sideEffects = sideEffectExtent;
+            extent = sectionCache = new ChunkSectionExtentCache(extent, ChunkSectionExtentCache.DEFAULT_MAX_SECTIONS,
+                () -> sideEffects.isPostEditSimulationEnabled() ? SideEffectSet.none() : sideEffects.getSideEffectSet());
             extent = blockBagExtent = new BlockBagExtent(extent, blockBag);
             extent = wrapExtent(extent, eventBus, event, Stage.BEFORE_CHANGE);
             this.bypassReorderHistory = new DataValidatorExtent(extent, world);
@@ -503,6 +526,36 @@ public boolean hasFastMode() {
         return sideEffectExtent != null && this.sideEffectExtent.getSideEffectSet().doesApplyAny();
     }
 
+    /**
+     * Set whether region operations evaluate their patterns and masks in
+     * parallel, on {@link WorldEdit#getComputePool()}.
+     *
+     * <p>Blocks are still read and written on the calling thread, and only
+     * patterns that do not read from any extent are evaluated in parallel;
+     * other patterns are evaluated serially. Deforms evaluate their
+     * expression in parallel too, unless it
+     * {@linkplain Expression#isSharingState() shares state} between
+     * evaluations, such as by querying blocks, using {@code megabuf} or
+     * assigning its own variables; such expressions are evaluated serially,
+     * in the order of the region.</p>
+     *
+     * @param parallelEvaluation true to evaluate in parallel
+     * @see ParallelRegionVisitor
+     */
+    public void setParallelEvaluation(boolean parallelEvaluation) {
+        this.parallelEvaluation = parallelEvaluation;
+    }
+
+    /**
+     * Get whether region operations evaluate their patterns and masks in
+     * parallel.
+     *
+     * @return true if evaluating in parallel
+     */
+    public boolean isParallelEvaluation() {
+        return parallelEvaluation;
+    }
+
     public SideEffectSet getSideEffectApplier() {
         if (sideEffectExtent == null) {
             return SideEffectSet.defaults();
@@ -629,6 +682,9 @@ public boolean setBiome(BlockVector3 position, BiomeType biome) {
 
     @Override
     public BlockState getBlock(BlockVector3 position) {
+        if (sectionCache != null) {
+            return sectionCache.getBlock(position);
+        }
         return world.getBlock(position);
     }
 
@@ -637,6 +693,11 @@ public BaseBlock getFullBlock(BlockVector3 position) {
         return world.getFullBlock(position);
     }
 
+    @Override
+    public void getBlockStateIds(BlockVector3 min, BlockVector3 max, int[] buffer, int offset) {
+        world.getBlockStateIds(min, max, buffer, offset);
+    }
+
     /**
      * Returns the highest solid 'terrain' block.
      *
@@ -837,7 +898,41 @@ public void close() {
      * and that it should apply them to the world.
      */
     public void flushSession() {
-        Operations.completeBlindly(commit());
+        Operation operation = pendingCommit != null ? pendingCommit : commit();
+        pendingCommit = null;
+        Operations.completeBlindly(operation);
+    }
+
+    /**
+     * Apply some of the buffered changes of this EditSession to the world,
+     * until the given context asks to stop. Calling this once per tick with
+     * a {@link com.sk89q.worldedit.function.operation.BudgetedRunContext}
+     * spreads a large commit over several ticks.
+     *
+     * <p>Chunk batches are only interrupted between chunks. No other changes
+     * may be made to this EditSession until this method returns
+     * {@code true}; {@link #flushSession()} applies the rest at once.</p>
+     *
+     * @param run the context of this slice
+     * @return true if all changes have been applied
+     * @throws WorldEditException thrown on a set error
+     */
+    public boolean flushSession(RunContext run) throws WorldEditException {
+        if (pendingCommit == null) {
+            pendingCommit = commit();
+        }
+        pendingCommit = Operations.resumeWithin(pendingCommit, run);
+        return pendingCommit == null;
+    }
+
+    /**
+     * Get the status of the changes being applied by
+     * {@link #flushSession(RunContext)}, if any.
+     *
+     * @return the status messages
+     */
+    public Iterable<Component> getFlushStatusMessages() {
+        return pendingCommit != null ? pendingCommit.getStatusMessages() : ImmutableList.of();
     }
 
     @Override
@@ -1018,6 +1113,13 @@ public int setBlocks(Region region, Pattern pattern) throws MaxChangedBlocksExce
         checkNotNull(region);
         checkNotNull(pattern);
 
+        if (parallelEvaluation && ParallelRegionVisitor.isSupported(pattern)) {
+            ParallelRegionVisitor visitor = new ParallelRegionVisitor(region, null, pattern, this,
+                WorldEdit.getInstance().getComputePool());
+            Operations.completeLegacy(visitor);
+            return visitor.getAffected();
+        }
+
         BlockReplace replace = new BlockReplace(this, pattern);
         RegionVisitor visitor = new RegionVisitor(region, replace);
         Operations.completeLegacy(visitor);
@@ -1068,6 +1170,13 @@ public int replaceBlocks(Region region, Mask mask, Pattern pattern) throws MaxCh
         checkNotNull(mask);
         checkNotNull(pattern);
 
+        if (parallelEvaluation && ParallelRegionVisitor.isSupported(pattern)) {
+            ParallelRegionVisitor visitor = new ParallelRegionVisitor(region, mask, pattern, this,
+                WorldEdit.getInstance().getComputePool());
+            Operations.completeLegacy(visitor);
+            return visitor.getAffected();
+        }
+
         BlockReplace replace = new BlockReplace(this, pattern);
         RegionMaskingFilter filter = new RegionMaskingFilter(mask, replace);
         RegionVisitor visitor = new RegionVisitor(region, filter);
@@ -2003,8 +2112,11 @@ public int makeForest(Region region, double density, TreeGenerator.TreeType tree
      */
     public List<Countable<BlockState>> getBlockDistribution(Region region, boolean separateStates) {
         BlockDistributionCounter count = new BlockDistributionCounter(this, separateStates);
-        RegionVisitor visitor = new RegionVisitor(region, count);
-        Operations.completeBlindly(visitor);
+        if (region instanceof CuboidRegion) {
+            count.apply(region.getMinimumPoint(), region.getMaximumPoint());
+        } else {
+            region.forEachSpanInChunkOrder(count::applySpan);
+        }
         return count.getDistribution();
     }
 
@@ -2044,7 +2156,7 @@ public int makeShape(final Region region, final Vector3 zero, final Vector3 unit
     public int makeShape(final Region region, final Vector3 zero, final Vector3 unit,
                          final Pattern pattern, final String expressionString, final boolean hollow, final int timeout)
             throws ExpressionException, MaxChangedBlocksException {
-        final Expression expression = Expression.compile(expressionString, "x", "y", "z", "type", "data");
+        final Expression expression = Expression.compile(expressionString, ExpressionBackend.fromConfiguration(), "x", "y", "z", "type", "data");
         expression.optimize();
         return makeShape(region, zero, unit, pattern, expression, hollow, timeout);
     }
@@ -2160,7 +2272,7 @@ public int deformRegion(final Region region, final Vector3 zero, final Vector3 u
      */
     public int deformRegion(final Region region, final Vector3 zero, final Vector3 unit, final String expressionString,
                             final int timeout) throws ExpressionException, MaxChangedBlocksException {
-        final Expression expression = Expression.compile(expressionString, "x", "y", "z");
+        final Expression expression = Expression.compile(expressionString, ExpressionBackend.fromConfiguration(), "x", "y", "z");
         expression.optimize();
         return deformRegion(region, zero, unit, expression, timeout);
     }
@@ -2174,46 +2286,259 @@ public int deformRegion(final Region region, final Vector3 zero, final Vector3 u
      */
     public int deformRegion(final Region region, final Vector3 zero, final Vector3 unit, final Expression expression,
                             final int timeout) throws ExpressionException, MaxChangedBlocksException {
-        final Variable x = expression.getSlots().getVariable("x")
-            .orElseThrow(IllegalStateException::new);
-        final Variable y = expression.getSlots().getVariable("y")
-            .orElseThrow(IllegalStateException::new);
-        final Variable z = expression.getSlots().getVariable("z")
-            .orElseThrow(IllegalStateException::new);
-
         final WorldEditExpressionEnvironment environment = new WorldEditExpressionEnvironment(this, unit, zero);
         expression.setEnvironment(environment);
 
-        final DoubleArrayList<BlockVector3, BaseBlock> queue = new DoubleArrayList<>(false);
+        // map each target to its source, a chunk column at a time
+        final DeformMapper mapper = new DeformMapper(region, zero, unit, expression, timeout, environment);
+        final List<BlockVector2> chunks = getDeformChunks(region);
+        final List<DeformColumn> columns = new ArrayList<>(chunks.size());
+        if (parallelEvaluation && !expression.isSharingState()) {
+            final ForkJoinPool pool = WorldEdit.getInstance().getComputePool();
+            final List<ForkJoinTask<DeformColumn>> tasks = new ArrayList<>(chunks.size());
+            for (BlockVector2 chunk : chunks) {
+                tasks.add(pool.submit(() -> mapper.map(chunk)));
+            }
+            for (ForkJoinTask<DeformColumn> task : tasks) {
+                columns.add(task.join());
+            }
+        } else {
+            // one frame, in the order of the region, as the evaluations may depend on each other
+            final Map<BlockVector2, DeformColumn> chunkColumns = new HashMap<>();
+            for (BlockVector2 chunk : chunks) {
+                final DeformColumn column = new DeformColumn(chunk);
+                columns.add(column);
+                chunkColumns.put(chunk, column);
+            }
+            mapper.mapInOrder(chunkColumns);
+        }
+
+        int size = 0;
+        for (DeformColumn column : columns) {
+            size += column.size;
+        }
+        final long[] sources = new long[size];
+        Int2ObjectMap<BlockVector3> unpackedSources = null;
+        int offset = 0;
+        for (DeformColumn column : columns) {
+            System.arraycopy(column.sources, 0, sources, offset, column.size);
+            if (column.unpackedSources != null) {
+                if (unpackedSources == null) {
+                    unpackedSources = new Int2ObjectOpenHashMap<>();
+                }
+                for (Int2ObjectMap.Entry<BlockVector3> entry : column.unpackedSources.int2ObjectEntrySet()) {
+                    unpackedSources.put(offset + entry.getIntKey(), entry.getValue());
+                }
+            }
+            column.sources = null;
+            offset += column.size;
+        }
+
+        // read every source before writing, in chunk order
+        final int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        IntArrays.quickSort(order, (a, b) -> Long.compareUnsigned(
+            RegionOptimizedVectorSorter.key(unpackX(sources[a]), unpackY(sources[a]), unpackZ(sources[a])),
+            RegionOptimizedVectorSorter.key(unpackX(sources[b]), unpackY(sources[b]), unpackZ(sources[b]))));
+
+        final int[] stateIds = new int[size];
+        Int2ObjectMap<BaseBlock> nbtBlocks = null;
+        BaseBlock lastMaterial = null;
+        long lastSource = 0;
+        for (int i : order) {
+            final BlockVector3 unpackedSource = unpackedSources == null ? null : unpackedSources.get(i);
+            final BaseBlock material;
+            if (unpackedSource != null) {
+                material = world.getFullBlock(unpackedSource);
+            } else if (lastMaterial != null && sources[i] == lastSource) {
+                material = lastMaterial;
+            } else {
+                material = world.getFullBlock(BlockVector3.fromLongPackedForm(sources[i]));
+                lastMaterial = material;
+                lastSource = sources[i];
+            }
+
+            stateIds[i] = BlockStateIdAccess.getBlockStateId(material.toImmutableState());
+            if (material.hasNbtData() || !BlockStateIdAccess.isValidInternalId(stateIds[i])) {
+                if (nbtBlocks == null) {
+                    nbtBlocks = new Int2ObjectOpenHashMap<>();
+                }
+                nbtBlocks.put(i, material);
+            }
+        }
+
+        // write in chunk order
+        final int minY = region.getMinimumPoint().getBlockY();
+        int affected = 0;
+        int index = 0;
+        for (DeformColumn column : columns) {
+            final int baseX = column.chunk.getBlockX() << 4;
+            final int baseZ = column.chunk.getBlockZ() << 4;
+            for (int i = 0; i < column.size; i++, index++) {
+                final int local = column.positions[i];
+                final BlockVector3 position = BlockVector3.at(
+                    baseX + (local & 15), minY + (local >>> 8), baseZ + ((local >>> 4) & 15));
+                final BaseBlock nbtBlock = nbtBlocks == null ? null : nbtBlocks.get(index);
+
+                // set at new position
+                final boolean changed;
+                if (nbtBlock != null) {
+                    changed = setBlock(position, nbtBlock);
+                } else {
+                    final BlockState state = BlockStateIdAccess.getBlockStateById(stateIds[index]);
+                    if (state == null) {
+                        throw new IllegalStateException("No state for ID " + stateIds[index]);
+                    }
+                    changed = setBlock(position, state);
+                }
+                if (changed) {
+                    ++affected;
+                }
+            }
+        }
 
-        for (BlockVector3 position : region) {
+        return affected;
+    }
+
+    private static List<BlockVector2> getDeformChunks(Region region) {
+        final BlockVector3 min = region.getMinimumPoint();
+        final BlockVector3 max = region.getMaximumPoint();
+        final List<BlockVector2> chunks = new ArrayList<>();
+        for (int cx = min.getBlockX() >> 4; cx <= max.getBlockX() >> 4; cx++) {
+            for (int cz = min.getBlockZ() >> 4; cz <= max.getBlockZ() >> 4; cz++) {
+                chunks.add(BlockVector2.at(cx, cz));
+            }
+        }
+        RegionOptimizedVectorSorter.sortChunks(chunks);
+        return chunks;
+    }
+
+    /**
+     * Maps the targets of a deform to their sources. Each call to
+     * {@link #map(BlockVector2)} evaluates the expression on a frame of its
+     * own, so columns may be mapped on several threads at once, if the
+     * expression does not share state between evaluations.
+     */
+    private static final class DeformMapper {
+
+        private final Region region;
+        private final Vector3 zero;
+        private final Vector3 unit;
+        private final Expression expression;
+        private final int timeout;
+        private final WorldEditExpressionEnvironment environment;
+        private final boolean cuboid;
+        private final BlockVector3 min;
+        private final BlockVector3 max;
+
+        DeformMapper(Region region, Vector3 zero, Vector3 unit, Expression expression, int timeout,
+                     WorldEditExpressionEnvironment environment) {
+            this.region = region;
+            this.zero = zero;
+            this.unit = unit;
+            this.expression = expression;
+            this.timeout = timeout;
+            this.environment = environment;
+            this.cuboid = region instanceof CuboidRegion;
+            this.min = region.getMinimumPoint();
+            this.max = region.getMaximumPoint();
+        }
+
+        DeformColumn map(BlockVector2 chunk) {
+            final ExpressionFrame frame = expression.newFrame(timeout);
+            final int startX = Math.max(min.getBlockX(), chunk.getBlockX() << 4);
+            final int endX = Math.min(max.getBlockX(), (chunk.getBlockX() << 4) + 15);
+            final int startZ = Math.max(min.getBlockZ(), chunk.getBlockZ() << 4);
+            final int endZ = Math.min(max.getBlockZ(), (chunk.getBlockZ() << 4) + 15);
+
+            final DeformColumn column = new DeformColumn(chunk);
+            for (int blockY = min.getBlockY(); blockY <= max.getBlockY(); blockY++) {
+                for (int blockZ = startZ; blockZ <= endZ; blockZ++) {
+                    for (int blockX = startX; blockX <= endX; blockX++) {
+                        if (!cuboid && !region.contains(BlockVector3.at(blockX, blockY, blockZ))) {
+                            continue;
+                        }
+                        final BlockVector3 source = evaluate(frame, blockX, blockY, blockZ);
+                        column.add(blockY - min.getBlockY(), blockZ & 15, blockX & 15, source);
+                    }
+                }
+            }
+            return column;
+        }
+
+        /**
+         * Map every target of the region, in the order of its iterator, on
+         * a single frame.
+         *
+         * @param columns the columns to add the targets to, by chunk
+         */
+        void mapInOrder(Map<BlockVector2, DeformColumn> columns) {
+            final ExpressionFrame frame = expression.newFrame(timeout);
+            DeformColumn column = null;
+            for (BlockVector3 position : region) {
+                final int blockX = position.getBlockX();
+                final int blockY = position.getBlockY();
+                final int blockZ = position.getBlockZ();
+                final BlockVector3 source = evaluate(frame, blockX, blockY, blockZ);
+                if (column == null
+                        || column.chunk.getBlockX() != blockX >> 4 || column.chunk.getBlockZ() != blockZ >> 4) {
+                    column = columns.get(BlockVector2.at(blockX >> 4, blockZ >> 4));
+                }
+                column.add(blockY - min.getBlockY(), blockZ & 15, blockX & 15, source);
+            }
+        }
+
+        private BlockVector3 evaluate(ExpressionFrame frame, int blockX, int blockY, int blockZ) {
             // offset, scale
-            final Vector3 scaled = position.toVector3().subtract(zero).divide(unit);
+            frame.set(0, (blockX - zero.getX()) / unit.getX());
+            frame.set(1, (blockY - zero.getY()) / unit.getY());
+            frame.set(2, (blockZ - zero.getZ()) / unit.getZ());
 
             // transform
-            expression.evaluate(new double[]{scaled.getX(), scaled.getY(), scaled.getZ()}, timeout);
+            frame.evaluate();
+
+            return environment.toWorld(frame.getInput(0).getValue(), frame.getInput(1).getValue(),
+                frame.getInput(2).getValue());
+        }
 
-            final BlockVector3 sourcePosition = environment.toWorld(x.getValue(), y.getValue(), z.getValue());
+    }
 
-            // read block from world
-            final BaseBlock material = world.getFullBlock(sourcePosition);
+    /**
+     * The targets of a deform in one chunk column, as local positions, and
+     * their sources, as packed positions.
+     */
+    private static final class DeformColumn {
 
-            // queue operation
-            queue.put(position, material);
-        }
+        private final BlockVector2 chunk;
+        private int[] positions = new int[256];
+        private long[] sources = new long[256];
+        @Nullable
+        private Int2ObjectMap<BlockVector3> unpackedSources;
+        private int size;
 
-        int affected = 0;
-        for (Map.Entry<BlockVector3, BaseBlock> entry : queue) {
-            BlockVector3 position = entry.getKey();
-            BaseBlock material = entry.getValue();
+        DeformColumn(BlockVector2 chunk) {
+            this.chunk = chunk;
+        }
 
-            // set at new position
-            if (setBlock(position, material)) {
-                ++affected;
+        void add(int relativeY, int localZ, int localX, BlockVector3 source) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+                sources = Arrays.copyOf(sources, size * 2);
             }
+            positions[size] = (relativeY << 8) | (localZ << 4) | localX;
+            if (BlockVector3.isLongPackable(source)) {
+                sources[size] = source.toLongPackedForm();
+            } else {
+                if (unpackedSources == null) {
+                    unpackedSources = new Int2ObjectOpenHashMap<>();
+                }
+                unpackedSources.put(size, source);
+            }
+            size++;
         }
 
-        return affected;
     }
 
     /**
@@ -2225,68 +2550,61 @@ public int deformRegion(final Region region, final Vector3 zero, final Vector3 u
      *
      * @return number of blocks affected
      * @throws MaxChangedBlocksException thrown if too many blocks are changed
+     * @throws IllegalArgumentException if the bounding box of the region,
+     *     grown by one block on every side, has more than
+     *     {@link Integer#MAX_VALUE} blocks
      */
     public int hollowOutRegion(Region region, int thickness, Pattern pattern) throws MaxChangedBlocksException {
         int affected = 0;
 
-        final Set<BlockVector3> outside = new HashSet<>();
-
         final BlockVector3 min = region.getMinimumPoint();
         final BlockVector3 max = region.getMaximumPoint();
 
-        final int minX = min.getBlockX();
-        final int minY = min.getBlockY();
-        final int minZ = min.getBlockZ();
-        final int maxX = max.getBlockX();
-        final int maxY = max.getBlockY();
-        final int maxZ = max.getBlockZ();
+        // the grid covers the bounding box plus one block on each side,
+        // which is as far as the flood can reach from inside the region
+        final HollowGrid grid = new HollowGrid(min.subtract(1, 1, 1), max.add(1, 1, 1));
 
-        for (int x = minX; x <= maxX; ++x) {
-            for (int y = minY; y <= maxY; ++y) {
-                recurseHollow(region, BlockVector3.at(x, y, minZ), outside);
-                recurseHollow(region, BlockVector3.at(x, y, maxZ), outside);
+        final PagedBitSet inRegion = new PagedBitSet(grid.volume);
+        if (region instanceof CuboidRegion) {
+            for (int y = min.getBlockY(); y <= max.getBlockY(); ++y) {
+                for (int z = min.getBlockZ(); z <= max.getBlockZ(); ++z) {
+                    int rowStart = grid.index(min.getBlockX(), y, z);
+                    inRegion.set(rowStart, rowStart + max.getBlockX() - min.getBlockX() + 1);
+                }
             }
-        }
-
-        for (int y = minY; y <= maxY; ++y) {
-            for (int z = minZ; z <= maxZ; ++z) {
-                recurseHollow(region, BlockVector3.at(minX, y, z), outside);
-                recurseHollow(region, BlockVector3.at(maxX, y, z), outside);
+        } else {
+            for (BlockVector3 position : region) {
+                inRegion.set(grid.index(position.getBlockX(), position.getBlockY(), position.getBlockZ()));
             }
         }
 
-        for (int z = minZ; z <= maxZ; ++z) {
-            for (int x = minX; x <= maxX; ++x) {
-                recurseHollow(region, BlockVector3.at(x, minY, z), outside);
-                recurseHollow(region, BlockVector3.at(x, maxY, z), outside);
-            }
-        }
+        final PagedBitSet outside = floodHollow(grid, inRegion, min, max);
+
+        final int[] neighbors = grid.neighborOffsets();
 
+        final IntArrayList newOutside = new IntArrayList();
         for (int i = 1; i < thickness; ++i) {
-            final Set<BlockVector3> newOutside = new HashSet<>();
-            outer: for (BlockVector3 position : region) {
-                for (BlockVector3 recurseDirection : recurseDirections) {
-                    BlockVector3 neighbor = position.add(recurseDirection);
-
-                    if (outside.contains(neighbor)) {
-                        newOutside.add(position);
-                        continue outer;
-                    }
+            for (int index = inRegion.nextSetBit(0); index >= 0; index = inRegion.nextSetBit(index + 1)) {
+                if (!outside.get(index) && touches(outside, index, neighbors)) {
+                    newOutside.add(index);
                 }
             }
 
-            outside.addAll(newOutside);
+            if (newOutside.isEmpty()) {
+                break;
+            }
+            for (int j = 0; j < newOutside.size(); ++j) {
+                outside.set(newOutside.getInt(j));
+            }
+            newOutside.clear();
         }
 
-        outer: for (BlockVector3 position : region) {
-            for (BlockVector3 recurseDirection : recurseDirections) {
-                BlockVector3 neighbor = position.add(recurseDirection);
-
-                if (outside.contains(neighbor)) {
-                    continue outer;
-                }
+        for (int index = inRegion.nextSetBit(0); index >= 0; index = inRegion.nextSetBit(index + 1)) {
+            if (touches(outside, index, neighbors)) {
+                continue;
             }
 
+            BlockVector3 position = grid.position(index);
             if (setBlock(position, pattern.applyBlock(position))) {
                 ++affected;
             }
@@ -2482,29 +2800,147 @@ private static Set<BlockVector3> getHollowed(Set<BlockVector3> vset) {
         return returnset;
     }
 
-    private void recurseHollow(Region region, BlockVector3 origin, Set<BlockVector3> outside) {
-        final LinkedList<BlockVector3> queue = new LinkedList<>();
-        queue.addLast(origin);
+    /**
+     * Flood-fill the passable blocks reachable from the faces of the
+     * bounding box, without leaving the region.
+     *
+     * <p>Reached blocks outside the region are included, but the fill does
+     * not spread from them. Runs along the X axis are filled one span at a
+     * time, so only one seed is queued per span.</p>
+     *
+     * @return the reached blocks, by grid index
+     */
+    private PagedBitSet floodHollow(HollowGrid grid, PagedBitSet inRegion, BlockVector3 min, BlockVector3 max) {
+        final PagedBitSet outside = new PagedBitSet(grid.volume);
+        // blocks whose passability has been looked up
+        final PagedBitSet seen = new PagedBitSet(grid.volume);
+        // passable region blocks whose neighbours have been queued
+        final PagedBitSet spanned = new PagedBitSet(grid.volume);
+        final IntArrayList seeds = new IntArrayList();
 
-        while (!queue.isEmpty()) {
-            final BlockVector3 current = queue.removeFirst();
-            final BlockState block = getBlock(current);
-            if (block.getBlockType().getMaterial().isMovementBlocker()) {
-                continue;
+        final int minX = min.getBlockX();
+        final int minY = min.getBlockY();
+        final int minZ = min.getBlockZ();
+        final int maxX = max.getBlockX();
+        final int maxY = max.getBlockY();
+        final int maxZ = max.getBlockZ();
+
+        for (int y = minY; y <= maxY; ++y) {
+            for (int z = minZ; z <= maxZ; ++z) {
+                for (int x = minX; x <= maxX; ++x) {
+                    if (y == minY || y == maxY || z == minZ || z == maxZ || x == minX || x == maxX) {
+                        int index = grid.index(x, y, z);
+                        if (isHollowSpreadable(grid, index, inRegion, seen, outside)) {
+                            seeds.add(index);
+                        }
+                    } else if (x == minX + 1) {
+                        // skip the inside of the row
+                        x = maxX - 1;
+                    }
+                }
             }
+        }
+
+        final int[] rowOffsets = { grid.strideZ, -grid.strideZ, grid.strideY, -grid.strideY };
 
-            if (!outside.add(current)) {
+        while (!seeds.isEmpty()) {
+            final int seed = seeds.popInt();
+            if (spanned.get(seed)) {
                 continue;
             }
 
-            if (!region.contains(current)) {
-                continue;
+            int start = seed;
+            while (!spanned.get(start - 1)
+                    && isHollowSpreadable(grid, start - 1, inRegion, seen, outside)) {
+                --start;
+            }
+            int end = seed;
+            while (!spanned.get(end + 1)
+                    && isHollowSpreadable(grid, end + 1, inRegion, seen, outside)) {
+                ++end;
+            }
+            spanned.set(start, end + 1);
+
+            for (int offset : rowOffsets) {
+                boolean inRun = false;
+                for (int index = start + offset; index <= end + offset; ++index) {
+                    boolean spread = !spanned.get(index)
+                            && isHollowSpreadable(grid, index, inRegion, seen, outside);
+                    if (spread && !inRun) {
+                        seeds.add(index);
+                    }
+                    inRun = spread;
+                }
+            }
+        }
+
+        return outside;
+    }
+
+    /**
+     * Look up a block for the hollow flood fill, marking it as outside if
+     * it is passable.
+     *
+     * @return true if the block is passable and in the region
+     */
+    private boolean isHollowSpreadable(HollowGrid grid, int index, PagedBitSet inRegion, PagedBitSet seen, PagedBitSet outside) {
+        if (!seen.get(index)) {
+            seen.set(index);
+            final BlockState block = getBlock(grid.position(index));
+            if (!block.getBlockType().getMaterial().isMovementBlocker()) {
+                outside.set(index);
             }
+        }
+        return outside.get(index) && inRegion.get(index);
+    }
 
-            for (BlockVector3 recurseDirection : recurseDirections) {
-                queue.addLast(current.add(recurseDirection));
+    private static boolean touches(PagedBitSet set, int index, int[] offsets) {
+        for (int offset : offsets) {
+            if (set.get(index + offset)) {
+                return true;
             }
         }
+        return false;
+    }
+
+    /**
+     * Maps the blocks of a box to bit indices, with X varying fastest.
+     */
+    private static final class HollowGrid {
+
+        private final BlockVector3 origin;
+        private final int sizeX;
+        private final int sizeZ;
+        private final int strideZ;
+        private final int strideY;
+        private final int volume;
+
+        HollowGrid(BlockVector3 min, BlockVector3 max) {
+            this.origin = min;
+            this.sizeX = max.getBlockX() - min.getBlockX() + 1;
+            this.sizeZ = max.getBlockZ() - min.getBlockZ() + 1;
+            long sizeY = max.getBlockY() - min.getBlockY() + 1;
+            long volume = sizeX * (long) sizeZ * sizeY;
+            checkArgument(volume <= Integer.MAX_VALUE, "Region is too large to hollow out");
+            this.strideZ = sizeX;
+            this.strideY = sizeX * sizeZ;
+            this.volume = (int) volume;
+        }
+
+        int index(int x, int y, int z) {
+            return (x - origin.getBlockX())
+                    + (z - origin.getBlockZ()) * strideZ
+                    + (y - origin.getBlockY()) * strideY;
+        }
+
+        BlockVector3 position(int index) {
+            return origin.add(index % sizeX, index / strideY, index / strideZ % sizeZ);
+        }
+
+        int[] neighborOffsets() {
+            return new int[] { 1, -1, strideZ, -strideZ, strideY, -strideY };
+        }
+
     }
 
     public int makeBiomeShape(final Region region, final Vector3 zero, final Vector3 unit, final BiomeType biomeType,
@@ -2517,7 +2953,7 @@ public int makeBiomeShape(final Region region, final Vector3 zero, final Vector3
                               final String expressionString, final boolean hollow, final int timeout)
             throws ExpressionException, MaxChangedBlocksException {
 
-        final Expression expression = Expression.compile(expressionString, "x", "z");
+        final Expression expression = Expression.compile(expressionString, ExpressionBackend.fromConfiguration(), "x", "z");
         expression.optimize();
 
         final EditSession editSession = this;
@@ -2557,15 +2993,6 @@ protected BiomeType getBiome(int x, int y, int z, BiomeType defaultBiomeType) {
         return changed;
     }
 
-    private static final BlockVector3[] recurseDirections = {
-            Direction.NORTH.toBlockVector(),
-            Direction.EAST.toBlockVector(),
-            Direction.SOUTH.toBlockVector(),
-            Direction.WEST.toBlockVector(),
-            Direction.UP.toBlockVector(),
-            Direction.DOWN.toBlockVector(),
-    };
-
     private static double lengthSq(double x, double y, double z) {
         return (x * x) + (y * y) + (z * z);
     }
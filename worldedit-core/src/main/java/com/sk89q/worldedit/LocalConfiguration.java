@@ -81,6 +81,11 @@ public abstract class LocalConfiguration {
     public int scriptTimeout = 3000;
     public int calculationTimeout = 100;
     public int maxCalculationTimeout = 300;
+    public int historyMemoryBudget = 32;
+    public boolean parallelEvaluation = false;
+    public int parallelThreads = 0;
+    public boolean bytecodeExpressions = false;
+    public int flushTickBudget = 0;
     public Set<String> allowedDataCycleBlocks = new HashSet<>();
     public String saveDir = "schematics";
     public String scriptsDir = "craftscripts";
@@ -58,6 +58,8 @@
 import com.sk89q.worldedit.world.item.ItemTypes;
 import com.sk89q.worldedit.world.snapshot.experimental.Snapshot;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.time.ZoneId;
 import java.util.Calendar;
 import java.util.Collections;
@@ -204,10 +206,27 @@ public void setTimezone(ZoneId timezone) {
      * Clear history.
      */
     public void clearHistory() {
+        history.forEach(LocalSession::discard);
         history.clear();
         historyPointer = 0;
     }
 
+    /**
+     * Release any resources held by the history of an edit session that is
+     * no longer part of the undo history.
+     *
+     * @param editSession the edit session
+     */
+    private static void discard(EditSession editSession) {
+        if (editSession.getChangeSet() instanceof Closeable) {
+            try {
+                ((Closeable) editSession.getChangeSet()).close();
+            } catch (IOException ignored) {
+                // only a temporary file is left behind, which is deleted on exit
+            }
+        }
+    }
+
     /**
      * Remember an edit session for the undo history. If the history maximum
      * size is reached, old edit sessions will be discarded.
@@ -224,11 +243,11 @@ public void remember(EditSession editSession) {
 
         // Destroy any sessions after this undo point
         while (historyPointer < history.size()) {
-            history.remove(historyPointer);
+            discard(history.remove(historyPointer));
         }
         history.add(editSession);
         while (history.size() > MAX_HISTORY_SIZE) {
-            history.remove(0);
+            discard(history.remove(0));
         }
         historyPointer = history.size();
     }
@@ -85,6 +85,7 @@
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import javax.annotation.Nullable;
 import javax.script.ScriptException;
 
@@ -117,6 +118,8 @@ public final class WorldEdit {
     private final SessionManager sessions = new SessionManager(this);
     private final ListeningExecutorService executorService = MoreExecutors.listeningDecorator(
             EvenMoreExecutors.newBoundedCachedThreadPool(0, 1, 20, "WorldEdit Task Executor - %s"));
+    private final LazyReference<ForkJoinPool> computePool = LazyReference.from(() ->
+            EvenMoreExecutors.newDaemonForkJoinPool(getConfiguration().parallelThreads, "WorldEdit Compute - %s"));
     private final Supervisor supervisor = new SimpleSupervisor();
     private final LazyReference<TranslationManager> translationManager =
             LazyReference.from(() -> new TranslationManager(
@@ -188,6 +191,18 @@ public ListeningExecutorService getExecutorService() {
         return executorService;
     }
 
+    /**
+     * Get the pool used to split work across cores. Internal, not for API use.
+     *
+     * <p>The pool is created on first use, with the number of threads
+     * from {@link LocalConfiguration#parallelThreads}.</p>
+     *
+     * @return the compute pool
+     */
+    public ForkJoinPool getComputePool() {
+        return computePool.getValue();
+    }
+
     /**
      * Get the block factory from which new {@link BlockStateHolder}s can be
      * constructed.
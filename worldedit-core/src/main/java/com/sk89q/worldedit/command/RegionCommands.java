@@ -503,6 +503,10 @@ public int hollow(Actor actor, EditSession editSession,
                       @Arg(desc = "The pattern of blocks to replace the hollowed area with", def = "air")
                           Pattern pattern) throws WorldEditException {
         checkCommandArgument(thickness >= 0, "Thickness must be >= 0");
+        // hollowing out works on the bounding box, grown by a block on every side
+        BlockVector3 size = region.getMaximumPoint().subtract(region.getMinimumPoint()).add(3, 3, 3);
+        checkCommandArgument((long) size.getX() * size.getY() * size.getZ() <= Integer.MAX_VALUE,
+            "The selection is too large to hollow out");
 
         int affected = editSession.hollowOutRegion(region, thickness, pattern);
         actor.printInfo(TranslatableComponent.of("worldedit.hollow.changed", TextComponent.of(affected)));
@@ -25,6 +25,7 @@
 import com.sk89q.worldedit.function.mask.ExpressionMask;
 import com.sk89q.worldedit.function.mask.Mask;
 import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionBackend;
 import com.sk89q.worldedit.internal.expression.ExpressionException;
 import com.sk89q.worldedit.internal.registry.InputParser;
 import com.sk89q.worldedit.math.Vector3;
@@ -56,7 +57,7 @@ public Mask parseFromInput(String input, ParserContext context) throws InputPars
         }
 
         try {
-            Expression exp = Expression.compile(input.substring(1), "x", "y", "z");
+            Expression exp = Expression.compile(input.substring(1), ExpressionBackend.fromConfiguration(), "x", "y", "z");
             WorldEditExpressionEnvironment env = new WorldEditExpressionEnvironment(
                     context.requireExtent(), Vector3.ONE, Vector3.ZERO);
             exp.setEnvironment(env);
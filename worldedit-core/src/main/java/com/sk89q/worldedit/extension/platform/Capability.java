@@ -22,6 +22,7 @@
 import com.sk89q.worldedit.internal.block.BlockStateIdAccess;
 import com.sk89q.worldedit.world.block.BlockState;
 import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.chunk.AnvilChunk13;
 import com.sk89q.worldedit.world.registry.BlockRegistry;
 
 /**
@@ -94,6 +95,7 @@ void initialize(PlatformManager platformManager, Platform platform) {
         @Override
         void unload(PlatformManager platformManager, Platform platform) {
             BlockStateIdAccess.clear();
+            AnvilChunk13.clearPaletteCache();
         }
     };
 
@@ -91,6 +91,7 @@
 import com.sk89q.worldedit.event.platform.CommandEvent;
 import com.sk89q.worldedit.event.platform.CommandSuggestionEvent;
 import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.function.operation.BudgetedRunContext;
 import com.sk89q.worldedit.internal.annotation.OptionalArg;
 import com.sk89q.worldedit.internal.annotation.Selection;
 import com.sk89q.worldedit.internal.command.CommandArgParser;
@@ -134,6 +135,7 @@
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
@@ -163,6 +165,7 @@ public final class PlatformCommandManager {
     private final DynamicStreamHandler dynamicHandler = new DynamicStreamHandler();
     private final WorldEditExceptionConverter exceptionConverter;
     private final CommandRegistrationHandler registration;
+    private final SessionFlushQueue flushQueue;
 
     /**
      * Create a new instance.
@@ -182,6 +185,8 @@ public final class PlatformCommandManager {
             ImmutableList.of(
                 new CommandLoggingHandler(worldEdit, COMMAND_LOG)
             ));
+        this.flushQueue = new SessionFlushQueue(() -> BudgetedRunContext.ofTime(
+            worldEdit.getConfiguration().flushTickBudget, TimeUnit.MILLISECONDS));
         // setup separate from main constructor
         // ensures that everything is definitely assigned
         initialize();
@@ -451,6 +456,18 @@ void registerCommandsWith(Platform platform) {
 
     void removeCommands() {
         dynamicHandler.setHandler(null);
+        // The task that applies queued changes was scheduled with the platform
+        flushQueue.unload();
+    }
+
+    /**
+     * Apply the changes to a world that are still being applied over
+     * several ticks, before a tool edits it.
+     *
+     * @param world the world
+     */
+    void completePendingChanges(World world) {
+        flushQueue.complete(world);
     }
 
     private Stream<Substring> parseArgs(String input) {
@@ -472,6 +489,9 @@ public void handleCommand(CommandEvent event) {
         }
 
         LocalSession session = worldEdit.getSessionManager().get(actor);
+        // A command may read or change any world, so it must not see the
+        // changes of earlier commands half applied
+        flushQueue.completeAll();
         Request.request().setSession(session);
         if (actor instanceof Entity) {
             Extent extent = ((Entity) actor).getExtent();
@@ -534,22 +554,31 @@ public void handleCommand(CommandEvent event) {
             if (editSessionOpt.isPresent()) {
                 EditSession editSession = editSessionOpt.get();
                 session.remember(editSession);
-                editSession.flushSession();
-
-                if (config.profile) {
-                    long time = System.currentTimeMillis() - start;
-                    double timeS = (time / 1000.0);
-                    int changed = editSession.getBlockChangeCount();
-                    double throughput = timeS == 0 ? changed : changed / timeS;
-                    actor.printDebug(TranslatableComponent.of(
-                            "worldedit.command.time-elapsed",
-                            TextComponent.of(timeS),
-                            TextComponent.of(changed),
-                            TextComponent.of(Math.round(throughput))
-                    ));
-                }
 
-                worldEdit.flushBlockBag(actor, editSession);
+                Runnable onFlushed = () -> {
+                    if (config.profile) {
+                        long time = System.currentTimeMillis() - start;
+                        double timeS = (time / 1000.0);
+                        int changed = editSession.getBlockChangeCount();
+                        double throughput = timeS == 0 ? changed : changed / timeS;
+                        actor.printDebug(TranslatableComponent.of(
+                                "worldedit.command.time-elapsed",
+                                TextComponent.of(timeS),
+                                TextComponent.of(changed),
+                                TextComponent.of(Math.round(throughput))
+                        ));
+                    }
+
+                    worldEdit.flushBlockBag(actor, editSession);
+                };
+                if (config.flushTickBudget > 0) {
+                    // Spread large edits over several ticks
+                    flushQueue.flush(platformManager.queryCapability(Capability.USER_COMMANDS),
+                        editSession, onFlushed);
+                } else {
+                    editSession.flushSession();
+                    onFlushed.run();
+                }
             }
             Request.reset();
         }
@@ -321,6 +321,9 @@ public void handleBlockInteract(BlockInteractEvent event) {
         Request.reset();
         Request.request().setSession(session);
         Request.request().setWorld(player.getWorld());
+        // Tools must not see or interleave with the changes of a command
+        // that are still being applied
+        platformCommandManager.completePendingChanges(player.getWorld());
 
         try {
             if (event.getType() == Interaction.HIT) {
@@ -368,6 +371,7 @@ public void handlePlayerInput(PlayerInputEvent event) {
         Request.reset();
         Request.request().setSession(session);
         Request.request().setWorld(player.getWorld());
+        platformCommandManager.completePendingChanges(player.getWorld());
 
         try {
             switch (event.getInputType()) {
@@ -0,0 +1,164 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extension.platform;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.world.World;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Applies the changes of edit sessions over several ticks, so that a large
+ * edit does not stall the server.
+ *
+ * <p>Sessions are flushed oldest first with
+ * {@link EditSession#flushSession(RunContext)}, using a new context from the
+ * given supplier for every tick. Until a session is flushed, its world is
+ * only partly changed, so the pending changes must be completed before
+ * anything else reads or changes that world. This class is not thread safe,
+ * and should only be used from the thread that runs commands.</p>
+ */
+class SessionFlushQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionFlushQueue.class);
+
+    private final Supplier<? extends RunContext> contexts;
+    private final Deque<PendingFlush> queue = new ArrayDeque<>();
+    private int taskId = -1;
+
+    /**
+     * Create a new queue.
+     *
+     * @param contexts a supplier of the context of each tick
+     */
+    SessionFlushQueue(Supplier<? extends RunContext> contexts) {
+        checkNotNull(contexts);
+        this.contexts = contexts;
+    }
+
+    /**
+     * Flush an edit session, applying as many changes as the budget of this
+     * tick allows and queueing the rest for later ticks.
+     *
+     * <p>If the platform cannot schedule a task, the rest of the changes
+     * are applied at once.</p>
+     *
+     * @param platform the platform to schedule ticks with
+     * @param editSession the edit session
+     * @param onFlushed called once all changes have been applied
+     */
+    void flush(Platform platform, EditSession editSession, Runnable onFlushed) {
+        queue.add(new PendingFlush(editSession, onFlushed));
+        run(contexts.get());
+        if (!queue.isEmpty() && taskId == -1) {
+            taskId = platform.schedule(1, 1, () -> run(contexts.get()));
+            if (taskId == -1) {
+                completeAll();
+            }
+        }
+    }
+
+    /**
+     * Apply queued changes, oldest first, until the given context asks to
+     * stop.
+     *
+     * @param run the context
+     */
+    void run(RunContext run) {
+        while (!queue.isEmpty()) {
+            PendingFlush next = queue.peek();
+            try {
+                if (!next.editSession.flushSession(run)) {
+                    return;
+                }
+            } catch (WorldEditException e) {
+                log.warn("Failed to apply the changes of an edit session", e);
+            }
+            queue.remove();
+            next.onFlushed.run();
+        }
+    }
+
+    /**
+     * Apply the pending changes to a world at once, along with those queued
+     * before them, so that the world can be edited again.
+     *
+     * @param world the world
+     */
+    void complete(World world) {
+        int count = 0;
+        int index = 0;
+        for (PendingFlush pending : queue) {
+            index++;
+            if (world.equals(pending.editSession.getWorld())) {
+                count = index;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            complete(queue.remove());
+        }
+    }
+
+    /**
+     * Apply all pending changes at once.
+     */
+    void completeAll() {
+        while (!queue.isEmpty()) {
+            complete(queue.remove());
+        }
+    }
+
+    /**
+     * Apply all pending changes at once, and forget the scheduled task, such
+     * as when the platform that runs it is unloaded.
+     */
+    void unload() {
+        completeAll();
+        taskId = -1;
+    }
+
+    private static void complete(PendingFlush pending) {
+        try {
+            pending.editSession.flushSession();
+        } catch (RuntimeException e) {
+            log.warn("Failed to apply the changes of an edit session", e);
+        }
+        pending.onFlushed.run();
+    }
+
+    private static final class PendingFlush {
+        private final EditSession editSession;
+        private final Runnable onFlushed;
+
+        private PendingFlush(EditSession editSession, Runnable onFlushed) {
+            this.editSession = editSession;
+            this.onFlushed = onFlushed;
+        }
+    }
+
+}
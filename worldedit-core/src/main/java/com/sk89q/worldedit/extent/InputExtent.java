@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.extent;
 
 import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.internal.block.BlockStateIdAccess;
 import com.sk89q.worldedit.internal.util.DeprecationUtil;
 import com.sk89q.worldedit.internal.util.NonAbstractForCompatibility;
 import com.sk89q.worldedit.math.BlockVector2;
@@ -57,6 +58,36 @@ public interface InputExtent {
      */
     BaseBlock getFullBlock(BlockVector3 position);
 
+    /**
+     * Read the blocks of a cuboid as internal block state IDs.
+     *
+     * <p>The IDs are written to {@code buffer} starting at {@code offset},
+     * with X varying fastest, then Z, then Y. The block at (x, y, z) is
+     * therefore written at {@code offset + ((y - minY) * lengthZ + (z - minZ)) * lengthX + (x - minX)},
+     * and the buffer must have room for the volume of the cuboid. A block
+     * without an internal ID is written as {@link BlockStateIdAccess#invalidId()},
+     * and should be read with {@link #getBlock(BlockVector3)} instead.</p>
+     *
+     * <p>The default implementation calls {@link #getBlock(BlockVector3)} for
+     * every block. Extents that can read many blocks at once, such as worlds
+     * and clipboards, should override it.</p>
+     *
+     * @param min the minimum point of the cuboid
+     * @param max the maximum point of the cuboid
+     * @param buffer the buffer to write the IDs to
+     * @param offset the index in the buffer of the first ID
+     */
+    default void getBlockStateIds(BlockVector3 min, BlockVector3 max, int[] buffer, int offset) {
+        int index = offset;
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    buffer[index++] = BlockStateIdAccess.getBlockStateId(getBlock(BlockVector3.at(x, y, z)));
+                }
+            }
+        }
+    }
+
     /**
      * Get the biome at the given location.
      *
@@ -0,0 +1,295 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.cache;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.internal.block.BlockStateIdAccess;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.util.SideEffectSet;
+import com.sk89q.worldedit.util.collection.PalettedIntArray;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.sk89q.worldedit.util.collection.SectionedBitSet.isInBounds;
+import static com.sk89q.worldedit.util.collection.SectionedBitSet.sectionIndex;
+import static com.sk89q.worldedit.util.collection.SectionedBitSet.sectionKey;
+
+/**
+ * Caches the {@link BlockState}s returned by {@link #getBlock(BlockVector3)}
+ * for the most recently used 16x16x16 chunk sections.
+ *
+ * <p>Each section is kept as a {@link PalettedIntArray} of block state
+ * IDs, filled in as positions are read. Sections are evicted in least
+ * recently used order. Every {@link #setBlock(BlockVector3, BlockStateHolder)}
+ * call forgets the state of its position, so the next read goes to the
+ * extent again. If the change applies side effects, which may change the
+ * blocks around it, the sections of the position and of its neighbours are
+ * forgotten instead. The cache is cleared when a commit starts, as the
+ * world may have been changed by other means in the meantime.</p>
+ *
+ * <p>Reads may happen from several threads at once, such as during
+ * parallel evaluation, but writes must not happen at the same time.</p>
+ */
+public class ChunkSectionExtentCache extends AbstractDelegateExtent {
+
+    /**
+     * The default number of sections to keep.
+     */
+    public static final int DEFAULT_MAX_SECTIONS = 256;
+
+    private static final int UNKNOWN = BlockStateIdAccess.invalidId();
+
+    private final int maxSections;
+    private final Supplier<SideEffectSet> sideEffects;
+    private final Long2ObjectLinkedOpenHashMap<PalettedIntArray> sections = new Long2ObjectLinkedOpenHashMap<>();
+    private long lastKey;
+    @Nullable
+    private PalettedIntArray lastSection;
+    // bumped on every change, so a read racing a change does not cache a stale state
+    private long generation;
+
+    @Nullable
+    private BlockVector3 lastFullPosition;
+    @Nullable
+    private BaseBlock lastFullBlock;
+
+    /**
+     * Create a new instance, keeping {@value #DEFAULT_MAX_SECTIONS} sections.
+     * Every change is assumed to apply the default side effects.
+     *
+     * @param extent the extent
+     */
+    public ChunkSectionExtentCache(Extent extent) {
+        this(extent, DEFAULT_MAX_SECTIONS);
+    }
+
+    /**
+     * Create a new instance. Every change is assumed to apply the default
+     * side effects.
+     *
+     * @param extent the extent
+     * @param maxSections the maximum number of sections to keep
+     */
+    public ChunkSectionExtentCache(Extent extent, int maxSections) {
+        this(extent, maxSections, SideEffectSet::defaults);
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @param extent the extent
+     * @param maxSections the maximum number of sections to keep
+     * @param sideEffects the side effects that the extent currently applies
+     *     to changes
+     */
+    public ChunkSectionExtentCache(Extent extent, int maxSections, Supplier<SideEffectSet> sideEffects) {
+        super(extent);
+        checkArgument(maxSections > 0, "maxSections must be positive");
+        checkNotNull(sideEffects);
+        this.maxSections = maxSections;
+        this.sideEffects = sideEffects;
+    }
+
+    @Nullable
+    private PalettedIntArray getSection(long key, boolean create) {
+        if (lastSection != null && lastKey == key) {
+            return lastSection;
+        }
+        PalettedIntArray section = sections.getAndMoveToLast(key);
+        if (section == null) {
+            if (!create) {
+                return null;
+            }
+            if (sections.size() >= maxSections) {
+                sections.removeFirst();
+            }
+            section = new PalettedIntArray(UNKNOWN);
+            sections.putAndMoveToLast(key, section);
+        }
+        lastKey = key;
+        lastSection = section;
+        return section;
+    }
+
+    @Override
+    public BlockState getBlock(BlockVector3 position) {
+        int x = position.getX();
+        int y = position.getY();
+        int z = position.getZ();
+        if (!isInBounds(x, y, z)) {
+            return super.getBlock(position);
+        }
+        long key = sectionKey(x, y, z);
+        int index = sectionIndex(x, y, z);
+
+        long readGeneration;
+        synchronized (sections) {
+            PalettedIntArray section = getSection(key, false);
+            if (section != null) {
+                int id = section.get(index);
+                if (id != UNKNOWN) {
+                    BlockState cached = BlockStateIdAccess.getBlockStateById(id);
+                    if (cached != null) {
+                        return cached;
+                    }
+                }
+            }
+            readGeneration = generation;
+        }
+
+        BlockState block = super.getBlock(position);
+        int id = BlockStateIdAccess.getBlockStateId(block);
+        if (id != UNKNOWN) {
+            synchronized (sections) {
+                if (generation == readGeneration) {
+                    getSection(key, true).set(index, id);
+                }
+            }
+        }
+        return block;
+    }
+
+    @Override
+    public BaseBlock getFullBlock(BlockVector3 position) {
+        synchronized (sections) {
+            if (lastFullBlock != null && position.equals(lastFullPosition)) {
+                return lastFullBlock;
+            }
+        }
+        BaseBlock block = super.getFullBlock(position);
+        synchronized (sections) {
+            lastFullPosition = position;
+            lastFullBlock = block;
+        }
+        return block;
+    }
+
+    @Override
+    public void getBlockStateIds(BlockVector3 min, BlockVector3 max, int[] buffer, int offset) {
+        // a bulk read is already cheaper than the cache
+        getExtent().getBlockStateIds(min, max, buffer, offset);
+    }
+
+    @Override
+    public <T extends BlockStateHolder<T>> boolean setBlock(BlockVector3 location, T block) throws WorldEditException {
+        try {
+            return super.setBlock(location, block);
+        } finally {
+            if (sideEffects.get().doesApplyAny()) {
+                forgetAround(location);
+            } else {
+                forget(location);
+            }
+        }
+    }
+
+    private void forget(BlockVector3 location) {
+        int x = location.getX();
+        int y = location.getY();
+        int z = location.getZ();
+        synchronized (sections) {
+            generation++;
+            if (location.equals(lastFullPosition)) {
+                lastFullPosition = null;
+                lastFullBlock = null;
+            }
+            if (isInBounds(x, y, z)) {
+                PalettedIntArray section = getSection(sectionKey(x, y, z), false);
+                if (section != null) {
+                    section.set(sectionIndex(x, y, z), UNKNOWN);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget the section of a position, and the sections of its
+     * neighbours, as side effects such as neighbour updates may have
+     * changed blocks around it.
+     */
+    private void forgetAround(BlockVector3 location) {
+        int x = location.getX();
+        int y = location.getY();
+        int z = location.getZ();
+        synchronized (sections) {
+            generation++;
+            lastFullPosition = null;
+            lastFullBlock = null;
+            forgetSection(x, y, z);
+            // neighbours on the edge of the section are in another section
+            if ((x & 15) == 0) {
+                forgetSection(x - 1, y, z);
+            } else if ((x & 15) == 15) {
+                forgetSection(x + 1, y, z);
+            }
+            if ((y & 15) == 0) {
+                forgetSection(x, y - 1, z);
+            } else if ((y & 15) == 15) {
+                forgetSection(x, y + 1, z);
+            }
+            if ((z & 15) == 0) {
+                forgetSection(x, y, z - 1);
+            } else if ((z & 15) == 15) {
+                forgetSection(x, y, z + 1);
+            }
+        }
+    }
+
+    private void forgetSection(int x, int y, int z) {
+        if (!isInBounds(x, y, z)) {
+            return;
+        }
+        long key = sectionKey(x, y, z);
+        if (sections.remove(key) != null && lastKey == key) {
+            lastSection = null;
+        }
+    }
+
+    /**
+     * Forget every cached block.
+     */
+    public void clear() {
+        synchronized (sections) {
+            generation++;
+            sections.clear();
+            sections.trim();
+            lastSection = null;
+            lastFullPosition = null;
+            lastFullBlock = null;
+        }
+    }
+
+    @Override
+    protected Operation commitBefore() {
+        clear();
+        return null;
+    }
+
+}
@@ -30,7 +30,10 @@
 /**
  * Returns the same cached {@link BlockState} for repeated calls to
  * {@link #getBlock(BlockVector3)} with the same position.
+ *
+ * @deprecated Use {@link ChunkSectionExtentCache}, which caches more than one position
  */
+@Deprecated
 public class LastAccessExtentCache extends AbstractDelegateExtent {
 
     private CachedBlock<BlockState> lastBlock;
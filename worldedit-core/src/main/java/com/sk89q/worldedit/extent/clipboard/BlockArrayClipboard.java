@@ -23,6 +23,7 @@
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.entity.Entity;
 import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.internal.block.BlockStateIdAccess;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.Location;
@@ -148,6 +149,27 @@ public BaseBlock getFullBlock(BlockVector3 position) {
         return BlockTypes.AIR.getDefaultState().toBaseBlock();
     }
 
+    @Override
+    public void getBlockStateIds(BlockVector3 min, BlockVector3 max, int[] buffer, int offset) {
+        BlockVector3 minimumPoint = region.getMinimumPoint();
+        BlockVector3 maximumPoint = region.getMaximumPoint();
+        int airId = BlockStateIdAccess.getBlockStateId(BlockTypes.AIR.getDefaultState());
+        int index = offset;
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    BaseBlock block = null;
+                    if (x >= minimumPoint.getX() && x <= maximumPoint.getX()
+                            && y >= minimumPoint.getY() && y <= maximumPoint.getY()
+                            && z >= minimumPoint.getZ() && z <= maximumPoint.getZ()) {
+                        block = blocks[x - minimumPoint.getX()][y - minimumPoint.getY()][z - minimumPoint.getZ()];
+                    }
+                    buffer[index++] = block == null ? airId : BlockStateIdAccess.getBlockStateId(block.toImmutableState());
+                }
+            }
+        }
+    }
+
     @Override
     public <B extends BlockStateHolder<B>> boolean setBlock(BlockVector3 position, B block) throws WorldEditException {
         if (region.contains(position)) {
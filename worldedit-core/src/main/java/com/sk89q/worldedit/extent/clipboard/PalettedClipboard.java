@@ -0,0 +1,344 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.entity.BaseEntity;
+import com.sk89q.worldedit.entity.Entity;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.internal.block.BlockStateIdAccess;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.Location;
+import com.sk89q.worldedit.util.collection.BlockMap;
+import com.sk89q.worldedit.util.collection.PalettedIntArray;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.biome.BiomeTypes;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import com.sk89q.worldedit.world.block.BlockTypes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Stores block data in 16x16x16 sections, each holding a palette of block
+ * state IDs and a bit-packed array of palette indexes.
+ *
+ * <p>Blocks with NBT data are stored separately in a sparse map, so a
+ * clipboard of mostly plain blocks only costs a few bits per block. Sections
+ * that are never written to stay unallocated and read as air.</p>
+ */
+public class PalettedClipboard implements Clipboard {
+
+    private static final int NO_BIOME = 0;
+
+    private final Region region;
+    private BlockVector3 origin;
+    private final BlockVector3 minimumPoint;
+    private final int sectionsX;
+    private final int sectionsZ;
+    private final PalettedIntArray[] sections;
+    private final BlockMap<BaseBlock> nbtBlocks = BlockMap.create();
+    private PalettedIntArray[] biomeSections = null;
+    private final List<BiomeType> biomePalette = new ArrayList<>();
+    private final Map<BiomeType, Integer> biomeIds = new HashMap<>();
+    private final List<ClipboardEntity> entities = new ArrayList<>();
+
+    /**
+     * Create a new instance.
+     *
+     * <p>The origin will be placed at the region's lowest minimum point.</p>
+     *
+     * @param region the bounding region
+     */
+    public PalettedClipboard(Region region) {
+        checkNotNull(region);
+        this.region = region.clone();
+        this.origin = region.getMinimumPoint();
+        this.minimumPoint = region.getMinimumPoint();
+
+        BlockVector3 dimensions = getDimensions();
+        this.sectionsX = (dimensions.getBlockX() + 15) >> 4;
+        int sectionsY = (dimensions.getBlockY() + 15) >> 4;
+        this.sectionsZ = (dimensions.getBlockZ() + 15) >> 4;
+        this.sections = new PalettedIntArray[sectionsX * sectionsY * sectionsZ];
+    }
+
+    @Override
+    public Region getRegion() {
+        return region;
+    }
+
+    @Override
+    public BlockVector3 getOrigin() {
+        return origin;
+    }
+
+    @Override
+    public void setOrigin(BlockVector3 origin) {
+        this.origin = origin;
+    }
+
+    @Override
+    public BlockVector3 getDimensions() {
+        return region.getMaximumPoint().subtract(region.getMinimumPoint()).add(1, 1, 1);
+    }
+
+    @Override
+    public BlockVector3 getMinimumPoint() {
+        return region.getMinimumPoint();
+    }
+
+    @Override
+    public BlockVector3 getMaximumPoint() {
+        return region.getMaximumPoint();
+    }
+
+    @Override
+    public List<? extends Entity> getEntities(Region region) {
+        List<Entity> filtered = new ArrayList<>();
+        for (Entity entity : entities) {
+            if (region.contains(entity.getLocation().toVector().toBlockPoint())) {
+                filtered.add(entity);
+            }
+        }
+        return Collections.unmodifiableList(filtered);
+    }
+
+    @Override
+    public List<? extends Entity> getEntities() {
+        return Collections.unmodifiableList(entities);
+    }
+
+    @Nullable
+    @Override
+    public Entity createEntity(Location location, BaseEntity entity) {
+        ClipboardEntity ret = new ClipboardEntity(location, entity);
+        entities.add(ret);
+        return ret;
+    }
+
+    private int sectionIndex(int x, int y, int z) {
+        return ((y >> 4) * sectionsZ + (z >> 4)) * sectionsX + (x >> 4);
+    }
+
+    private static int indexInSection(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    private static int airId() {
+        return BlockStateIdAccess.getBlockStateId(BlockTypes.AIR.getDefaultState());
+    }
+
+    private static BlockState stateById(int id) {
+        BlockState state = BlockStateIdAccess.getBlockStateById(id);
+        if (state == null) {
+            throw new IllegalStateException("No state for ID " + id);
+        }
+        return state;
+    }
+
+    @Override
+    public BlockState getBlock(BlockVector3 position) {
+        if (region.contains(position)) {
+            int x = position.getX() - minimumPoint.getX();
+            int y = position.getY() - minimumPoint.getY();
+            int z = position.getZ() - minimumPoint.getZ();
+            PalettedIntArray section = sections[sectionIndex(x, y, z)];
+            if (section != null) {
+                return stateById(section.get(indexInSection(x, y, z)));
+            }
+        }
+
+        return BlockTypes.AIR.getDefaultState();
+    }
+
+    @Override
+    public BaseBlock getFullBlock(BlockVector3 position) {
+        if (!nbtBlocks.isEmpty()) {
+            BaseBlock block = nbtBlocks.get(position);
+            if (block != null) {
+                return block;
+            }
+        }
+        return getBlock(position).toBaseBlock();
+    }
+
+    @Override
+    public void getBlockStateIds(BlockVector3 min, BlockVector3 max, int[] buffer, int offset) {
+        BlockVector3 maximumPoint = getMaximumPoint();
+        int airId = airId();
+        int rowLength = max.getX() - min.getX() + 1;
+        // the part of each row that is within the clipboard
+        int fromX = Math.max(min.getX(), minimumPoint.getX());
+        int toX = Math.min(max.getX(), maximumPoint.getX());
+        int index = offset;
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                int rowEnd = index + rowLength;
+                if (fromX > toX
+                        || y < minimumPoint.getY() || y > maximumPoint.getY()
+                        || z < minimumPoint.getZ() || z > maximumPoint.getZ()) {
+                    Arrays.fill(buffer, index, rowEnd, airId);
+                    index = rowEnd;
+                    continue;
+                }
+                Arrays.fill(buffer, index, index + fromX - min.getX(), airId);
+                index += fromX - min.getX();
+
+                int ry = y - minimumPoint.getY();
+                int rz = z - minimumPoint.getZ();
+                int x = fromX - minimumPoint.getX();
+                int end = toX - minimumPoint.getX();
+                while (x <= end) {
+                    int sectionEnd = Math.min(end, x | 15);
+                    PalettedIntArray section = sections[sectionIndex(x, ry, rz)];
+                    if (section == null) {
+                        Arrays.fill(buffer, index, index + sectionEnd - x + 1, airId);
+                        index += sectionEnd - x + 1;
+                    } else {
+                        for (int i = indexInSection(x, ry, rz), last = indexInSection(sectionEnd, ry, rz); i <= last; i++) {
+                            buffer[index++] = section.get(i);
+                        }
+                    }
+                    x = sectionEnd + 1;
+                }
+
+                Arrays.fill(buffer, index, rowEnd, airId);
+                index = rowEnd;
+            }
+        }
+    }
+
+    @Override
+    public <B extends BlockStateHolder<B>> boolean setBlock(BlockVector3 position, B block) throws WorldEditException {
+        if (region.contains(position)) {
+            int x = position.getX() - minimumPoint.getX();
+            int y = position.getY() - minimumPoint.getY();
+            int z = position.getZ() - minimumPoint.getZ();
+            int id = BlockStateIdAccess.getBlockStateId(block.toImmutableState());
+            int sectionIndex = sectionIndex(x, y, z);
+            PalettedIntArray section = sections[sectionIndex];
+            if (section == null) {
+                section = new PalettedIntArray(airId());
+                sections[sectionIndex] = section;
+            }
+            section.set(indexInSection(x, y, z), id);
+
+            BaseBlock baseBlock = block.toBaseBlock();
+            if (baseBlock.hasNbtData()) {
+                nbtBlocks.put(position, baseBlock);
+            } else if (!nbtBlocks.isEmpty()) {
+                nbtBlocks.remove(position);
+            }
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean hasBiomes() {
+        return biomeSections != null;
+    }
+
+    @Override
+    public BiomeType getBiome(BlockVector3 position) {
+        if (biomeSections != null
+                && position.containedWithin(getMinimumPoint(), getMaximumPoint())) {
+            int x = position.getX() - minimumPoint.getX();
+            int y = position.getY() - minimumPoint.getY();
+            int z = position.getZ() - minimumPoint.getZ();
+            PalettedIntArray section = biomeSections[sectionIndex(x, y, z)];
+            if (section != null) {
+                int id = section.get(indexInSection(x, y, z));
+                if (id != NO_BIOME) {
+                    return biomePalette.get(id - 1);
+                }
+            }
+        }
+
+        return BiomeTypes.OCEAN;
+    }
+
+    @Override
+    public boolean setBiome(BlockVector3 position, BiomeType biome) {
+        if (position.containedWithin(getMinimumPoint(), getMaximumPoint())) {
+            int x = position.getX() - minimumPoint.getX();
+            int y = position.getY() - minimumPoint.getY();
+            int z = position.getZ() - minimumPoint.getZ();
+            if (biomeSections == null) {
+                biomeSections = new PalettedIntArray[sections.length];
+            }
+            int sectionIndex = sectionIndex(x, y, z);
+            PalettedIntArray section = biomeSections[sectionIndex];
+            if (section == null) {
+                section = new PalettedIntArray(NO_BIOME);
+                biomeSections[sectionIndex] = section;
+            }
+            section.set(indexInSection(x, y, z), biomeId(biome));
+            return true;
+        }
+        return false;
+    }
+
+    private int biomeId(BiomeType biome) {
+        return biomeIds.computeIfAbsent(biome, b -> {
+            biomePalette.add(b);
+            return biomePalette.size();
+        });
+    }
+
+    @Nullable
+    @Override
+    public Operation commit() {
+        return null;
+    }
+
+    /**
+     * Stores entity data.
+     */
+    private class ClipboardEntity extends StoredEntity {
+        ClipboardEntity(Location location, BaseEntity entity) {
+            super(location, entity);
+        }
+
+        @Override
+        public boolean remove() {
+            return entities.remove(this);
+        }
+
+        @Nullable
+        @Override
+        public <T> T getFacet(Class<? extends T> cls) {
+            return null;
+        }
+    }
+
+}
@@ -31,8 +31,8 @@
 import com.sk89q.jnbt.Tag;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.entity.BaseEntity;
-import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.PalettedClipboard;
 import com.sk89q.worldedit.extent.clipboard.io.legacycompat.BannerBlockCompatibilityHandler;
 import com.sk89q.worldedit.extent.clipboard.io.legacycompat.BedBlockCompatibilityHandler;
 import com.sk89q.worldedit.extent.clipboard.io.legacycompat.EntityNBTCompatibilityHandler;
@@ -159,27 +159,13 @@ public Clipboard read() throws IOException {
         // Get blocks
         byte[] blockId = requireTag(schematic, "Blocks", ByteArrayTag.class).getValue();
         byte[] blockData = requireTag(schematic, "Data", ByteArrayTag.class).getValue();
-        byte[] addId = new byte[0];
-        short[] blocks = new short[blockId.length]; // Have to later combine IDs
 
         // We support 4096 block IDs using the same method as vanilla Minecraft, where
-        // the highest 4 bits are stored in a separate byte array.
-        if (schematic.containsKey("AddBlocks")) {
-            addId = requireTag(schematic, "AddBlocks", ByteArrayTag.class).getValue();
-        }
-
-        // Combine the AddBlocks data with the first 8-bit block ID
-        for (int index = 0; index < blockId.length; index++) {
-            if ((index >> 1) >= addId.length) { // No corresponding AddBlocks index
-                blocks[index] = (short) (blockId[index] & 0xFF);
-            } else {
-                if ((index & 1) == 0) {
-                    blocks[index] = (short) (((addId[index >> 1] & 0x0F) << 8) + (blockId[index] & 0xFF));
-                } else {
-                    blocks[index] = (short) (((addId[index >> 1] & 0xF0) << 4) + (blockId[index] & 0xFF));
-                }
-            }
-        }
+        // the highest 4 bits are stored in a separate byte array. They are combined
+        // with the first 8-bit block ID as blocks are read.
+        byte[] addId = schematic.containsKey("AddBlocks")
+            ? requireTag(schematic, "AddBlocks", ByteArrayTag.class).getValue()
+            : new byte[0];
 
         // Need to pull out tile entities
         final ListTag tileEntityTag = getTag(schematic, "TileEntities", ListTag.class);
@@ -200,7 +186,7 @@ public Clipboard read() throws IOException {
             int z = t.getInt("z");
             int index = y * width * length + z * width + x;
 
-            BlockState block = getBlockState(blocks[index], blockData[index]);
+            BlockState block = getBlockState(combineId(blockId, addId, index), blockData[index]);
             BlockState newBlock = block;
             if (newBlock != null) {
                 for (NBTCompatibilityHandler handler : COMPATIBILITY_HANDLERS) {
@@ -229,7 +215,7 @@ public Clipboard read() throws IOException {
             blockStates.put(vec, newBlock);
         }
 
-        BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
+        PalettedClipboard clipboard = new PalettedClipboard(region);
         clipboard.setOrigin(origin);
 
 
@@ -239,7 +225,7 @@ public Clipboard read() throws IOException {
                 for (int z = 0; z < length; ++z) {
                     int index = y * width * length + z * width + x;
                     BlockVector3 pt = BlockVector3.at(x, y, z);
-                    BlockState state = blockStates.computeIfAbsent(pt, p -> getBlockState(blocks[index], blockData[index]));
+                    BlockState state = blockStates.computeIfAbsent(pt, p -> getBlockState(combineId(blockId, addId, index), blockData[index]));
 
                     try {
                         if (state != null) {
@@ -249,7 +235,7 @@ public Clipboard read() throws IOException {
                                 clipboard.setBlock(region.getMinimumPoint().add(pt), state);
                             }
                         } else {
-                            short block = blocks[index];
+                            short block = combineId(blockId, addId, index);
                             byte data = blockData[index];
                             int combined = block << 8 | data;
                             if (unknownBlocks.add(combined)) {
@@ -257,7 +243,7 @@ public Clipboard read() throws IOException {
                                         + block + ":" + data + ". This is most likely a bad schematic.");
                             }
                         }
-                    } catch (WorldEditException ignored) { // BlockArrayClipboard won't throw this
+                    } catch (WorldEditException ignored) { // PalettedClipboard won't throw this
                     }
                 }
             }
@@ -299,6 +285,18 @@ public Clipboard read() throws IOException {
         return clipboard;
     }
 
+    private static short combineId(byte[] blockId, byte[] addId, int index) {
+        if ((index >> 1) >= addId.length) { // No corresponding AddBlocks index
+            return (short) (blockId[index] & 0xFF);
+        } else {
+            if ((index & 1) == 0) {
+                return (short) (((addId[index >> 1] & 0x0F) << 8) + (blockId[index] & 0xFF));
+            } else {
+                return (short) (((addId[index >> 1] & 0xF0) << 4) + (blockId[index] & 0xFF));
+            }
+        }
+    }
+
     private String convertEntityId(String id) {
         switch (id) {
             case "AreaEffectCloud": return "area_effect_cloud";
@@ -20,13 +20,14 @@
 package com.sk89q.worldedit.extent.clipboard.io;
 
 import com.google.common.collect.Maps;
-import com.sk89q.jnbt.ByteArrayTag;
+import com.google.common.io.ByteStreams;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.IntArrayTag;
 import com.sk89q.jnbt.IntTag;
 import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.NBTCompoundVisitor;
+import com.sk89q.jnbt.NBTConstants;
 import com.sk89q.jnbt.NBTInputStream;
-import com.sk89q.jnbt.NamedTag;
 import com.sk89q.jnbt.ShortTag;
 import com.sk89q.jnbt.StringTag;
 import com.sk89q.jnbt.Tag;
@@ -37,8 +38,8 @@
 import com.sk89q.worldedit.extension.input.ParserContext;
 import com.sk89q.worldedit.extension.platform.Capability;
 import com.sk89q.worldedit.extension.platform.Platform;
-import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.PalettedClipboard;
 import com.sk89q.worldedit.internal.Constants;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.CuboidRegion;
@@ -52,21 +53,33 @@
 import com.sk89q.worldedit.world.entity.EntityType;
 import com.sk89q.worldedit.world.entity.EntityTypes;
 import com.sk89q.worldedit.world.storage.NBTConversions;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.OptionalInt;
-import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Reads schematic files using the Sponge Schematic Specification.
+ *
+ * <p>The schematic is read with {@link NBTInputStream#readCompound(NBTCompoundVisitor)}.
+ * Block and biome data are decoded into the clipboard as they are read
+ * when the tags they depend on come before them, as they do in schematics
+ * written by {@link SpongeSchematicWriter}, and are buffered until the end
+ * of the schematic otherwise.</p>
  */
 public class SpongeSchematicReader extends NBTSchematicReader {
 
@@ -88,8 +101,50 @@ public SpongeSchematicReader(NBTInputStream inputStream) {
 
     @Override
     public Clipboard read() throws IOException {
-        CompoundTag schematicTag = getBaseTag();
-        Map<String, Tag> schematic = schematicTag.getValue();
+        SchematicVisitor visitor = new SchematicVisitor();
+        inputStream.readCompound(visitor);
+        return visitor.finish();
+    }
+
+    @Override
+    public OptionalInt getDataVersion() {
+        try {
+            Map<String, Tag> schematic = new HashMap<>();
+            inputStream.readCompound(new NBTCompoundVisitor() {
+                @Override
+                public Action visitEntry(String name, int type) {
+                    return name.equals("Version") || name.equals("DataVersion") ? Action.READ : Action.SKIP;
+                }
+
+                @Override
+                public void visitTag(String name, Tag tag) {
+                    schematic.put(name, tag);
+                }
+            });
+            schematicVersion = requireTag(schematic, "Version", IntTag.class).getValue();
+            if (schematicVersion == 1) {
+                return OptionalInt.of(Constants.DATA_VERSION_MC_1_13_2);
+            } else if (schematicVersion == 2) {
+                int dataVersion = requireTag(schematic, "DataVersion", IntTag.class).getValue();
+                if (dataVersion < 0) {
+                    return OptionalInt.empty();
+                }
+                return OptionalInt.of(dataVersion);
+            }
+            return OptionalInt.empty();
+        } catch (IOException e) {
+            return OptionalInt.empty();
+        }
+    }
+
+    /**
+     * Set up the data version and fixer from the version tags.
+     *
+     * @param schematic the tags read so far
+     * @throws IOException if the version tags are missing or not supported
+     */
+    private void readVersion(Map<String, Tag> schematic) throws IOException {
+        schematicVersion = requireTag(schematic, "Version", IntTag.class).getValue();
 
         final Platform platform = WorldEdit.getInstance().getPlatformManager()
                 .queryCapability(Capability.WORLD_EDITING);
@@ -98,7 +153,6 @@ public Clipboard read() throws IOException {
         if (schematicVersion == 1) {
             dataVersion = Constants.DATA_VERSION_MC_1_13_2; // this is a relatively safe assumption unless someone imports a schematic from 1.12, e.g. sponge 7.1-
             fixer = platform.getDataFixer();
-            return readVersion1(schematicTag);
         } else if (schematicVersion == 2) {
             dataVersion = requireTag(schematic, "DataVersion", IntTag.class).getValue();
             if (dataVersion < 0) {
@@ -120,66 +174,62 @@ public Clipboard read() throws IOException {
                             dataVersion, liveDataVersion);
                 }
             }
-
-            BlockArrayClipboard clip = readVersion1(schematicTag);
-            return readVersion2(clip, schematicTag);
-        }
-        throw new IOException("This schematic version is currently not supported");
-    }
-
-    @Override
-    public OptionalInt getDataVersion() {
-        try {
-            CompoundTag schematicTag = getBaseTag();
-            Map<String, Tag> schematic = schematicTag.getValue();
-            if (schematicVersion == 1) {
-                return OptionalInt.of(Constants.DATA_VERSION_MC_1_13_2);
-            } else if (schematicVersion == 2) {
-                int dataVersion = requireTag(schematic, "DataVersion", IntTag.class).getValue();
-                if (dataVersion < 0) {
-                    return OptionalInt.empty();
-                }
-                return OptionalInt.of(dataVersion);
-            }
-            return OptionalInt.empty();
-        } catch (IOException e) {
-            return OptionalInt.empty();
+        } else {
+            throw new IOException("This schematic version is currently not supported");
         }
     }
 
-    private CompoundTag getBaseTag() throws IOException {
-        NamedTag rootTag = inputStream.readNamedTag();
-        CompoundTag schematicTag = (CompoundTag) rootTag.getTag();
-
-        // Check
-        Map<String, Tag> schematic = schematicTag.getValue();
-
-        schematicVersion = requireTag(schematic, "Version", IntTag.class).getValue();
-        return schematicTag;
-    }
-
-    private BlockArrayClipboard readVersion1(CompoundTag schematicTag) throws IOException {
-        BlockVector3 origin;
-        Region region;
-        Map<String, Tag> schematic = schematicTag.getValue();
-
+    private PalettedClipboard createClipboard(Map<String, Tag> schematic) throws IOException {
         int width = requireTag(schematic, "Width", ShortTag.class).getValue();
         int height = requireTag(schematic, "Height", ShortTag.class).getValue();
         int length = requireTag(schematic, "Length", ShortTag.class).getValue();
 
+        BlockVector3 min = readOffset(schematic);
+        Region region = new CuboidRegion(min, min.add(width, height, length).subtract(BlockVector3.ONE));
+        return new PalettedClipboard(region);
+    }
+
+    private BlockVector3 readOffset(Map<String, Tag> schematic) throws IOException {
         IntArrayTag offsetTag = getTag(schematic, "Offset", IntArrayTag.class);
-        int[] offsetParts;
-        if (offsetTag != null) {
-            offsetParts = offsetTag.getValue();
-            if  (offsetParts.length != 3) {
-                throw new IOException("Invalid offset specified in schematic.");
-            }
-        } else {
-            offsetParts = new int[] {0, 0, 0};
+        if (offsetTag == null) {
+            return BlockVector3.ZERO;
         }
+        int[] offsetParts = offsetTag.getValue();
+        if  (offsetParts.length != 3) {
+            throw new IOException("Invalid offset specified in schematic.");
+        }
+        return BlockVector3.at(offsetParts[0], offsetParts[1], offsetParts[2]);
+    }
 
-        BlockVector3 min = BlockVector3.at(offsetParts[0], offsetParts[1], offsetParts[2]);
+    /**
+     * Copy a clipboard to a new minimum point, for schematics with an
+     * "Offset" tag after the data that was decoded without it.
+     *
+     * @param clipboard the clipboard
+     * @param min the new minimum point
+     * @return the moved clipboard
+     * @throws IOException if a block could not be copied
+     */
+    private PalettedClipboard moveTo(PalettedClipboard clipboard, BlockVector3 min) throws IOException {
+        BlockVector3 shift = min.subtract(clipboard.getMinimumPoint());
+        PalettedClipboard moved = new PalettedClipboard(new CuboidRegion(
+                min, clipboard.getMaximumPoint().add(shift)));
+        try {
+            for (BlockVector3 position : clipboard.getRegion()) {
+                BlockVector3 target = position.add(shift);
+                moved.setBlock(target, clipboard.getFullBlock(position));
+                if (clipboard.hasBiomes()) {
+                    moved.setBiome(target, clipboard.getBiome(position));
+                }
+            }
+        } catch (WorldEditException e) {
+            throw new IOException("Failed to load a block in the schematic");
+        }
+        return moved;
+    }
 
+    private BlockVector3 readOrigin(PalettedClipboard clipboard, Map<String, Tag> schematic) throws IOException {
+        BlockVector3 min = clipboard.getMinimumPoint();
         CompoundTag metadataTag = getTag(schematic, "Metadata", CompoundTag.class);
         if (metadataTag != null && metadataTag.containsKey("WEOffsetX")) {
             // We appear to have WorldEdit Metadata
@@ -188,20 +238,20 @@ private BlockArrayClipboard readVersion1(CompoundTag schematicTag) throws IOExce
             int offsetY = requireTag(metadata, "WEOffsetY", IntTag.class).getValue();
             int offsetZ = requireTag(metadata, "WEOffsetZ", IntTag.class).getValue();
             BlockVector3 offset = BlockVector3.at(offsetX, offsetY, offsetZ);
-            origin = min.subtract(offset);
-            region = new CuboidRegion(min, min.add(width, height, length).subtract(BlockVector3.ONE));
+            return min.subtract(offset);
         } else {
-            origin = min;
-            region = new CuboidRegion(origin, origin.add(width, height, length).subtract(BlockVector3.ONE));
+            return min;
         }
+    }
 
+    private Int2ObjectMap<BlockState> readPalette(Map<String, Tag> schematic) throws IOException {
         IntTag paletteMaxTag = getTag(schematic, "PaletteMax", IntTag.class);
         Map<String, Tag> paletteObject = requireTag(schematic, "Palette", CompoundTag.class).getValue();
         if (paletteMaxTag != null && paletteObject.size() != paletteMaxTag.getValue()) {
             throw new IOException("Block palette size does not match expected size.");
         }
 
-        Map<Integer, BlockState> palette = new HashMap<>();
+        Int2ObjectMap<BlockState> palette = new Int2ObjectOpenHashMap<>();
 
         ParserContext parserContext = new ParserContext();
         parserContext.setRestricted(false);
@@ -222,155 +272,300 @@ private BlockArrayClipboard readVersion1(CompoundTag schematicTag) throws IOExce
             }
             palette.put(id, state);
         }
+        return palette;
+    }
 
-        byte[] blocks = requireTag(schematic, "BlockData", ByteArrayTag.class).getValue();
+    private Int2ObjectMap<BiomeType> readBiomePalette(Map<String, Tag> schematic) throws IOException {
+        IntTag maxTag = requireTag(schematic, "BiomePaletteMax", IntTag.class);
+        CompoundTag paletteTag = requireTag(schematic, "BiomePalette", CompoundTag.class);
 
-        Map<BlockVector3, Map<String, Tag>> tileEntitiesMap = new HashMap<>();
-        ListTag tileEntities = getTag(schematic, "BlockEntities", ListTag.class);
-        if (tileEntities == null) {
-            tileEntities = getTag(schematic, "TileEntities", ListTag.class);
+        Int2ObjectMap<BiomeType> palette = new Int2ObjectOpenHashMap<>();
+        if (maxTag.getValue() != paletteTag.getValue().size()) {
+            throw new IOException("Biome palette size does not match expected size.");
         }
-        if (tileEntities != null) {
-            List<Map<String, Tag>> tileEntityTags = tileEntities.getValue().stream()
-                    .map(tag -> (CompoundTag) tag)
-                    .map(CompoundTag::getValue)
-                    .collect(Collectors.toList());
-
-            for (Map<String, Tag> tileEntity : tileEntityTags) {
-                int[] pos = requireTag(tileEntity, "Pos", IntArrayTag.class).getValue();
-                final BlockVector3 pt = BlockVector3.at(pos[0], pos[1], pos[2]);
-                Map<String, Tag> values = Maps.newHashMap(tileEntity);
-                values.put("x", new IntTag(pt.getBlockX()));
-                values.put("y", new IntTag(pt.getBlockY()));
-                values.put("z", new IntTag(pt.getBlockZ()));
-                values.put("id", values.get("Id"));
-                values.remove("Id");
-                values.remove("Pos");
-                if (fixer != null) {
-                    tileEntity = fixer.fixUp(DataFixer.FixTypes.BLOCK_ENTITY, new CompoundTag(values), dataVersion).getValue();
-                } else {
-                    tileEntity = values;
-                }
-                tileEntitiesMap.put(pt, tileEntity);
+
+        for (Entry<String, Tag> palettePart : paletteTag.getValue().entrySet()) {
+            String key = palettePart.getKey();
+            if (fixer != null) {
+                key = fixer.fixUp(DataFixer.FixTypes.BIOME, key, dataVersion);
             }
+            BiomeType biome = BiomeTypes.get(key);
+            if (biome == null) {
+                log.warn("Unknown biome type :" + key
+                    + " in palette. Are you missing a mod or using a schematic made in a newer version of Minecraft?");
+            }
+            Tag idTag = palettePart.getValue();
+            if (!(idTag instanceof IntTag)) {
+                throw new IOException("Biome mapped to non-Int tag.");
+            }
+            palette.put(((IntTag) idTag).getValue(), biome);
         }
+        return palette;
+    }
 
-        BlockArrayClipboard clipboard = new BlockArrayClipboard(region);
-        clipboard.setOrigin(origin);
+    /**
+     * Reads the root compound of a schematic, decoding block and biome data
+     * into the clipboard as soon as the tags they need have been read.
+     */
+    private final class SchematicVisitor implements NBTCompoundVisitor {
+        private final Map<String, Tag> schematic = new HashMap<>();
+        private final Map<BlockVector3, Map<String, Tag>> tileEntitiesMap = new HashMap<>();
+        private boolean versionRead;
+        @Nullable
+        private PalettedClipboard clipboard;
+        @Nullable
+        private byte[] pendingBlocks;
+        @Nullable
+        private byte[] pendingBiomes;
+        private boolean blocksRead;
+
+        @Override
+        public Action visitEntry(String name, int type) {
+            switch (name) {
+                case "BlockData":
+                case "BiomeData":
+                    return type == NBTConstants.TYPE_BYTE_ARRAY ? Action.STREAM : Action.READ;
+                case "BlockEntities":
+                case "TileEntities":
+                    return type == NBTConstants.TYPE_LIST ? Action.STREAM : Action.READ;
+                default:
+                    return Action.READ;
+            }
+        }
 
-        int index = 0;
-        int i = 0;
-        int value;
-        int varintLength;
-        while (i < blocks.length) {
-            value = 0;
-            varintLength = 0;
+        @Override
+        public void visitTag(String name, Tag tag) {
+            schematic.put(name, tag);
+        }
 
-            while (true) {
-                value |= (blocks[i] & 127) << (varintLength++ * 7);
-                if (varintLength > 5) {
-                    throw new IOException("VarInt too big (probably corrupted data)");
-                }
-                if ((blocks[i] & 128) != 128) {
-                    i++;
-                    break;
+        @Override
+        public void visitByteArray(String name, int length, InputStream data) throws IOException {
+            if (name.equals("BlockData")) {
+                if (canDecode("Palette")) {
+                    readBlocks(data);
+                } else {
+                    pendingBlocks = readFully(data, length);
                 }
-                i++;
-            }
-            // index = (y * length * width) + (z * width) + x
-            int y = index / (width * length);
-            int z = (index % (width * length)) / width;
-            int x = (index % (width * length)) % width;
-            BlockState state = palette.get(value);
-            BlockVector3 pt = BlockVector3.at(x, y, z);
-            try {
-                if (tileEntitiesMap.containsKey(pt)) {
-                    clipboard.setBlock(clipboard.getMinimumPoint().add(pt), state.toBaseBlock(new CompoundTag(tileEntitiesMap.get(pt))));
+            } else {
+                if (canDecode("BiomePalette", "BiomePaletteMax")) {
+                    readBiomes(data);
                 } else {
-                    clipboard.setBlock(clipboard.getMinimumPoint().add(pt), state);
+                    pendingBiomes = readFully(data, length);
                 }
-            } catch (WorldEditException e) {
-                throw new IOException("Failed to load a block in the schematic");
             }
+        }
 
-            index++;
+        @Override
+        public void visitListEntry(String name, int index, Tag tag) throws IOException {
+            if (!(tag instanceof CompoundTag)) {
+                throw new IOException(name + " entry is not of tag type " + CompoundTag.class.getName());
+            }
+            Map<String, Tag> tileEntity = ((CompoundTag) tag).getValue();
+            int[] pos = requireTag(tileEntity, "Pos", IntArrayTag.class).getValue();
+            final BlockVector3 pt = BlockVector3.at(pos[0], pos[1], pos[2]);
+            Map<String, Tag> values = Maps.newHashMap(tileEntity);
+            values.put("x", new IntTag(pt.getBlockX()));
+            values.put("y", new IntTag(pt.getBlockY()));
+            values.put("z", new IntTag(pt.getBlockZ()));
+            values.put("id", values.get("Id"));
+            values.remove("Id");
+            values.remove("Pos");
+
+            if (blocksRead) {
+                BlockVector3 position = clipboard.getMinimumPoint().add(pt);
+                setBlock(position, clipboard.getBlock(position), fixTileEntity(values));
+            } else {
+                tileEntitiesMap.put(pt, values);
+            }
         }
 
-        return clipboard;
-    }
+        /**
+         * Check whether the tags needed to decode data have been read, and
+         * if so, make sure the version is read and the clipboard created.
+         *
+         * @param paletteTags the palette tags the data needs
+         * @return true if the data can be decoded
+         * @throws IOException if the read tags are invalid
+         */
+        private boolean canDecode(String... paletteTags) throws IOException {
+            // "Offset" is optional, so data is decoded without waiting for it
+            List<String> needed = new ArrayList<>(Arrays.asList("Version", "Width", "Height", "Length"));
+            needed.addAll(Arrays.asList(paletteTags));
+            if (schematic.containsKey("Version") && schematic.get("Version") instanceof IntTag
+                    && ((IntTag) schematic.get("Version")).getValue() == 2) {
+                needed.add("DataVersion");
+            }
+            if (!schematic.keySet().containsAll(needed)) {
+                return false;
+            }
+            prepare();
+            return true;
+        }
 
-    private Clipboard readVersion2(BlockArrayClipboard version1, CompoundTag schematicTag) throws IOException {
-        Map<String, Tag> schematic = schematicTag.getValue();
-        if (schematic.containsKey("BiomeData")) {
-            readBiomes(version1, schematic);
+        private void prepare() throws IOException {
+            if (!versionRead) {
+                readVersion(schematic);
+                versionRead = true;
+            }
+            if (clipboard == null) {
+                clipboard = createClipboard(schematic);
+            }
         }
-        if (schematic.containsKey("Entities")) {
-            readEntities(version1, schematic);
+
+        private Map<String, Tag> fixTileEntity(Map<String, Tag> values) {
+            if (fixer != null) {
+                return fixer.fixUp(DataFixer.FixTypes.BLOCK_ENTITY, new CompoundTag(values), dataVersion).getValue();
+            }
+            return values;
         }
-        return version1;
-    }
 
-    private void readBiomes(BlockArrayClipboard clipboard, Map<String, Tag> schematic) throws IOException {
-        ByteArrayTag dataTag = requireTag(schematic, "BiomeData", ByteArrayTag.class);
-        IntTag maxTag = requireTag(schematic, "BiomePaletteMax", IntTag.class);
-        CompoundTag paletteTag = requireTag(schematic, "BiomePalette", CompoundTag.class);
+        private void setBlock(BlockVector3 position, BlockState state, @Nullable Map<String, Tag> tileEntity) throws IOException {
+            try {
+                if (tileEntity != null) {
+                    clipboard.setBlock(position, state.toBaseBlock(new CompoundTag(tileEntity)));
+                } else {
+                    clipboard.setBlock(position, state);
+                }
+            } catch (WorldEditException e) {
+                throw new IOException("Failed to load a block in the schematic");
+            }
+        }
 
-        Map<Integer, BiomeType> palette = new HashMap<>();
-        if (maxTag.getValue() != paletteTag.getValue().size()) {
-            throw new IOException("Biome palette size does not match expected size.");
+        private void readBlocks(InputStream data) throws IOException {
+            Int2ObjectMap<BlockState> palette = readPalette(schematic);
+            BlockVector3 min = clipboard.getMinimumPoint();
+            BlockVector3 dimensions = clipboard.getDimensions();
+            int width = dimensions.getBlockX();
+            int length = dimensions.getBlockZ();
+
+            VarIntReader reader = new VarIntReader(data);
+            int index = 0;
+            int value;
+            while ((value = reader.read()) != -1) {
+                // index = (y * length * width) + (z * width) + x
+                int y = index / (width * length);
+                int z = (index % (width * length)) / width;
+                int x = (index % (width * length)) % width;
+                BlockState state = palette.get(value);
+                BlockVector3 pt = BlockVector3.at(x, y, z);
+                Map<String, Tag> tileEntity = tileEntitiesMap.isEmpty() ? null : tileEntitiesMap.remove(pt);
+                setBlock(min.add(pt), state, tileEntity == null ? null : fixTileEntity(tileEntity));
+
+                index++;
+            }
+            blocksRead = true;
         }
 
-        for (Entry<String, Tag> palettePart : paletteTag.getValue().entrySet()) {
-            String key = palettePart.getKey();
-            if (fixer != null) {
-                key = fixer.fixUp(DataFixer.FixTypes.BIOME, key, dataVersion);
+        private void readBiomes(InputStream data) throws IOException {
+            if (schematicVersion != 2) {
+                // biomes were added in version 2
+                return;
             }
-            BiomeType biome = BiomeTypes.get(key);
-            if (biome == null) {
-                log.warn("Unknown biome type :" + key
-                    + " in palette. Are you missing a mod or using a schematic made in a newer version of Minecraft?");
+            Int2ObjectMap<BiomeType> palette = readBiomePalette(schematic);
+            BlockVector3 min = clipboard.getMinimumPoint();
+            int width = clipboard.getDimensions().getX();
+            int height = clipboard.getDimensions().getY();
+
+            VarIntReader reader = new VarIntReader(data);
+            int biomeIndex = 0;
+            int bVal;
+            while ((bVal = reader.read()) != -1) {
+                int z = biomeIndex / width;
+                int x = biomeIndex % width;
+                BiomeType type = palette.get(bVal);
+                for (int y = 0; y < height; y++) {
+                    clipboard.setBiome(min.add(x, y, z), type);
+                }
+                biomeIndex++;
             }
-            Tag idTag = palettePart.getValue();
-            if (!(idTag instanceof IntTag)) {
-                throw new IOException("Biome mapped to non-Int tag.");
+        }
+
+        private Clipboard finish() throws IOException {
+            prepare();
+            if (!blocksRead) {
+                if (pendingBlocks == null) {
+                    throw new IOException("Schematic file is missing a \"BlockData\" tag");
+                }
+                readBlocks(new ByteArrayInputStream(pendingBlocks));
+                pendingBlocks = null;
             }
-            palette.put(((IntTag) idTag).getValue(), biome);
+            if (pendingBiomes != null) {
+                readBiomes(new ByteArrayInputStream(pendingBiomes));
+                pendingBiomes = null;
+            }
+            BlockVector3 offset = readOffset(schematic);
+            if (!clipboard.getMinimumPoint().equals(offset)) {
+                clipboard = moveTo(clipboard, offset);
+            }
+            clipboard.setOrigin(readOrigin(clipboard, schematic));
+            if (schematicVersion == 2 && schematic.containsKey("Entities")) {
+                readEntities(clipboard, schematic);
+            }
+            return clipboard;
         }
+    }
 
-        int width = clipboard.getDimensions().getX();
+    private static byte[] readFully(InputStream data, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        ByteStreams.readFully(data, bytes);
+        return bytes;
+    }
 
-        byte[] biomes = dataTag.getValue();
-        int biomeIndex = 0;
-        int biomeJ = 0;
-        int bVal;
-        int varIntLength;
-        BlockVector3 min = clipboard.getMinimumPoint();
-        while (biomeJ < biomes.length) {
-            bVal = 0;
-            varIntLength = 0;
+    /**
+     * Reads varints from a stream through a buffer.
+     */
+    private static final class VarIntReader {
+        private final InputStream in;
+        private final byte[] buffer = new byte[8192];
+        private int position;
+        private int limit;
+
+        private VarIntReader(InputStream in) {
+            this.in = in;
+        }
+
+        private int nextByte() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++] & 0xFF;
+        }
 
+        /**
+         * Read the next varint.
+         *
+         * @return the value, or -1 at the end of the stream
+         * @throws IOException if the data is corrupted
+         */
+        private int read() throws IOException {
+            int b = nextByte();
+            if (b == -1) {
+                return -1;
+            }
+            int value = 0;
+            int varintLength = 0;
             while (true) {
-                bVal |= (biomes[biomeJ] & 127) << (varIntLength++ * 7);
-                if (varIntLength > 5) {
+                value |= (b & 127) << (varintLength++ * 7);
+                if (varintLength > 5) {
                     throw new IOException("VarInt too big (probably corrupted data)");
                 }
-                if (((biomes[biomeJ] & 128) != 128)) {
-                    biomeJ++;
-                    break;
+                if ((b & 128) != 128) {
+                    return value;
+                }
+                b = nextByte();
+                if (b == -1) {
+                    throw new IOException("VarInt cut off (probably corrupted data)");
                 }
-                biomeJ++;
-            }
-            int z = biomeIndex / width;
-            int x = biomeIndex % width;
-            BiomeType type = palette.get(bVal);
-            for (int y = 0; y < clipboard.getRegion().getHeight(); y++) {
-                clipboard.setBiome(min.add(x, y, z), type);
             }
-            biomeIndex++;
         }
     }
 
-    private void readEntities(BlockArrayClipboard clipboard, Map<String, Tag> schematic) throws IOException {
+    private void readEntities(PalettedClipboard clipboard, Map<String, Tag> schematic) throws IOException {
         List<Tag> entList = requireTag(schematic, "Entities", ListTag.class).getValue();
         if (entList.isEmpty()) {
             return;
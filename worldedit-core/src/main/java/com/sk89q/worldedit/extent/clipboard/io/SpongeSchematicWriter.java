@@ -20,7 +20,6 @@
 package com.sk89q.worldedit.extent.clipboard.io;
 
 import com.google.common.collect.Maps;
-import com.sk89q.jnbt.ByteArrayTag;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.DoubleTag;
 import com.sk89q.jnbt.FloatTag;
@@ -35,20 +34,30 @@
 import com.sk89q.worldedit.entity.BaseEntity;
 import com.sk89q.worldedit.extension.platform.Capability;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.internal.block.BlockStateIdAccess;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.math.Vector3;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.Location;
 import com.sk89q.worldedit.world.biome.BiomeType;
 import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -76,16 +85,21 @@ public SpongeSchematicWriter(NBTOutputStream outputStream) {
     @Override
     public void write(Clipboard clipboard) throws IOException {
         // For now always write the latest version. Maybe provide support for earlier if more appear.
-        outputStream.writeNamedTag("Schematic", new CompoundTag(write2(clipboard)));
+        write2(clipboard);
     }
 
     /**
      * Writes a version 2 schematic file.
      *
+     * <p>The schematic compound is streamed to the output. Palettes are
+     * computed in a first pass over the clipboard, and block data is then
+     * encoded while it is written, so only the palettes and the indexes of
+     * blocks with NBT data are held in memory.</p>
+     *
      * @param clipboard The clipboard
-     * @return The schematic map
+     * @throws IOException if an I/O error occurs
      */
-    private Map<String, Tag> write2(Clipboard clipboard) {
+    private void write2(Clipboard clipboard) throws IOException {
         Region region = clipboard.getRegion();
         BlockVector3 origin = clipboard.getOrigin();
         BlockVector3 min = region.getMinimumPoint();
@@ -104,9 +118,33 @@ private Map<String, Tag> write2(Clipboard clipboard) {
             throw new IllegalArgumentException("Length of region too large for a .schematic");
         }
 
-        Map<String, Tag> schematic = new HashMap<>();
-        schematic.put("Version", new IntTag(CURRENT_VERSION));
-        schematic.put("DataVersion", new IntTag(
+        // First pass: palette, data length and the blocks with NBT data
+        Palette<BlockState> palette = new Palette<>(BlockState::getAsString);
+        IntList tileEntityIndexes = new IntArrayList();
+        long blockDataLength = 0;
+        int index = 0;
+        for (int y = 0; y < height; y++) {
+            int y0 = min.getBlockY() + y;
+            for (int z = 0; z < length; z++) {
+                int z0 = min.getBlockZ() + z;
+                for (int x = 0; x < width; x++) {
+                    int x0 = min.getBlockX() + x;
+                    BaseBlock block = clipboard.getFullBlock(BlockVector3.at(x0, y0, z0));
+                    if (block.getNbtData() != null) {
+                        tileEntityIndexes.add(index);
+                    }
+                    blockDataLength += varIntLength(palette.getOrAdd(block.toImmutableState()));
+                    index++;
+                }
+            }
+        }
+        if (blockDataLength > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Region too large for a .schematic");
+        }
+
+        outputStream.writeCompoundStart("Schematic");
+        outputStream.writeNamedTag("Version", new IntTag(CURRENT_VERSION));
+        outputStream.writeNamedTag("DataVersion", new IntTag(
                 WorldEdit.getInstance().getPlatformManager().queryCapability(Capability.WORLD_EDITING).getDataVersion()));
 
         Map<String, Tag> metadata = new HashMap<>();
@@ -114,135 +152,140 @@ private Map<String, Tag> write2(Clipboard clipboard) {
         metadata.put("WEOffsetY", new IntTag(offset.getBlockY()));
         metadata.put("WEOffsetZ", new IntTag(offset.getBlockZ()));
 
-        schematic.put("Metadata", new CompoundTag(metadata));
+        outputStream.writeNamedTag("Metadata", new CompoundTag(metadata));
 
-        schematic.put("Width", new ShortTag((short) width));
-        schematic.put("Height", new ShortTag((short) height));
-        schematic.put("Length", new ShortTag((short) length));
+        outputStream.writeNamedTag("Width", new ShortTag((short) width));
+        outputStream.writeNamedTag("Height", new ShortTag((short) height));
+        outputStream.writeNamedTag("Length", new ShortTag((short) length));
 
         // The Sponge format Offset refers to the 'min' points location in the world. That's our 'Origin'
-        schematic.put("Offset", new IntArrayTag(new int[]{
+        outputStream.writeNamedTag("Offset", new IntArrayTag(new int[]{
                 min.getBlockX(),
                 min.getBlockY(),
                 min.getBlockZ(),
         }));
 
-        int paletteMax = 0;
-        Map<String, Integer> palette = new HashMap<>();
-
-        List<CompoundTag> tileEntities = new ArrayList<>();
-
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream(width * height * length);
+        // The palette is written before the data, so readers can decode the data as it arrives
+        outputStream.writeNamedTag("PaletteMax", new IntTag(palette.size()));
+        writePalette("Palette", palette);
 
+        // Second pass: block data
+        outputStream.writeByteArrayStart("BlockData", (int) blockDataLength);
+        VarIntBuffer buffer = new VarIntBuffer();
+        int[] row = new int[width];
+        Int2IntMap paletteIds = new Int2IntOpenHashMap();
+        paletteIds.defaultReturnValue(-1);
         for (int y = 0; y < height; y++) {
             int y0 = min.getBlockY() + y;
             for (int z = 0; z < length; z++) {
                 int z0 = min.getBlockZ() + z;
+                clipboard.getBlockStateIds(BlockVector3.at(min.getBlockX(), y0, z0),
+                        BlockVector3.at(min.getBlockX() + width - 1, y0, z0), row, 0);
                 for (int x = 0; x < width; x++) {
-                    int x0 = min.getBlockX() + x;
-                    BlockVector3 point = BlockVector3.at(x0, y0, z0);
-                    BaseBlock block = clipboard.getFullBlock(point);
-                    if (block.getNbtData() != null) {
-                        Map<String, Tag> values = new HashMap<>(block.getNbtData().getValue());
-
-                        values.remove("id"); // Remove 'id' if it exists. We want 'Id'
-
-                        // Positions are kept in NBT, we don't want that.
-                        values.remove("x");
-                        values.remove("y");
-                        values.remove("z");
-
-                        values.put("Id", new StringTag(block.getNbtId()));
-                        values.put("Pos", new IntArrayTag(new int[] { x, y, z }));
-
-                        tileEntities.add(new CompoundTag(values));
+                    int id = row[x];
+                    int paletteId = paletteIds.get(id);
+                    if (paletteId == -1) {
+                        BlockState block = BlockStateIdAccess.isValidInternalId(id)
+                                ? BlockStateIdAccess.getBlockStateById(id) : null;
+                        if (block != null) {
+                            paletteId = palette.get(block);
+                            paletteIds.put(id, paletteId);
+                        } else {
+                            paletteId = palette.get(clipboard.getBlock(BlockVector3.at(min.getBlockX() + x, y0, z0)));
+                        }
                     }
-
-                    String blockKey = block.toImmutableState().getAsString();
-                    int blockId;
-                    if (palette.containsKey(blockKey)) {
-                        blockId = palette.get(blockKey);
-                    } else {
-                        blockId = paletteMax;
-                        palette.put(blockKey, blockId);
-                        paletteMax++;
-                    }
-
-                    while ((blockId & -128) != 0) {
-                        buffer.write(blockId & 127 | 128);
-                        blockId >>>= 7;
-                    }
-                    buffer.write(blockId);
+                    buffer.write(paletteId);
                 }
             }
         }
+        buffer.flush();
+
+        outputStream.writeListStart("BlockEntities", CompoundTag.class, tileEntityIndexes.size());
+        for (int i = 0; i < tileEntityIndexes.size(); i++) {
+            int tileIndex = tileEntityIndexes.getInt(i);
+            int x = tileIndex % width;
+            int z = (tileIndex / width) % length;
+            int y = tileIndex / (width * length);
+            BaseBlock block = clipboard.getFullBlock(min.add(x, y, z));
+            CompoundTag nbt = block.getNbtData();
+            Map<String, Tag> values = nbt == null ? new HashMap<>() : new HashMap<>(nbt.getValue());
 
-        schematic.put("PaletteMax", new IntTag(paletteMax));
+            values.remove("id"); // Remove 'id' if it exists. We want 'Id'
 
-        Map<String, Tag> paletteTag = new HashMap<>();
-        palette.forEach((key, value) -> paletteTag.put(key, new IntTag(value)));
+            // Positions are kept in NBT, we don't want that.
+            values.remove("x");
+            values.remove("y");
+            values.remove("z");
 
-        schematic.put("Palette", new CompoundTag(paletteTag));
-        schematic.put("BlockData", new ByteArrayTag(buffer.toByteArray()));
-        schematic.put("BlockEntities", new ListTag(CompoundTag.class, tileEntities));
+            values.put("Id", new StringTag(block.getNbtId()));
+            values.put("Pos", new IntArrayTag(new int[] { x, y, z }));
+
+            outputStream.writeListEntry(new CompoundTag(values));
+        }
 
         // version 2 stuff
         if (clipboard.hasBiomes()) {
-            writeBiomes(clipboard, schematic);
+            writeBiomes(clipboard);
         }
 
         if (!clipboard.getEntities().isEmpty()) {
-            writeEntities(clipboard, schematic);
+            writeEntities(clipboard);
         }
 
-        return schematic;
+        outputStream.writeCompoundEnd();
     }
 
-    private void writeBiomes(Clipboard clipboard, Map<String, Tag> schematic) {
+    private void writeBiomes(Clipboard clipboard) throws IOException {
         BlockVector3 min = clipboard.getMinimumPoint();
         int width = clipboard.getRegion().getWidth();
         int length = clipboard.getRegion().getLength();
 
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream(width * length);
-
-        int paletteMax = 0;
-        Map<String, Integer> palette = new HashMap<>();
+        Palette<BiomeType> palette = new Palette<>(BiomeType::getId);
+        long biomeDataLength = 0;
 
         for (int z = 0; z < length; z++) {
             int z0 = min.getBlockZ() + z;
             for (int x = 0; x < width; x++) {
                 int x0 = min.getBlockX() + x;
                 BlockVector3 pt = BlockVector3.at(x0, min.getBlockY(), z0);
-                BiomeType biome = clipboard.getBiome(pt);
-
-                String biomeKey = biome.getId();
-                int biomeId;
-                if (palette.containsKey(biomeKey)) {
-                    biomeId = palette.get(biomeKey);
-                } else {
-                    biomeId = paletteMax;
-                    palette.put(biomeKey, biomeId);
-                    paletteMax++;
-                }
-
-                while ((biomeId & -128) != 0) {
-                    buffer.write(biomeId & 127 | 128);
-                    biomeId >>>= 7;
-                }
-                buffer.write(biomeId);
+                biomeDataLength += varIntLength(palette.getOrAdd(clipboard.getBiome(pt)));
             }
         }
 
-        schematic.put("BiomePaletteMax", new IntTag(paletteMax));
+        outputStream.writeNamedTag("BiomePaletteMax", new IntTag(palette.size()));
+        writePalette("BiomePalette", palette);
+
+        outputStream.writeByteArrayStart("BiomeData", (int) biomeDataLength);
+        VarIntBuffer buffer = new VarIntBuffer();
+        for (int z = 0; z < length; z++) {
+            int z0 = min.getBlockZ() + z;
+            for (int x = 0; x < width; x++) {
+                int x0 = min.getBlockX() + x;
+                BlockVector3 pt = BlockVector3.at(x0, min.getBlockY(), z0);
+                buffer.write(palette.get(clipboard.getBiome(pt)));
+            }
+        }
+        buffer.flush();
+    }
 
-        Map<String, Tag> paletteTag = new HashMap<>();
-        palette.forEach((key, value) -> paletteTag.put(key, new IntTag(value)));
+    private void writePalette(String name, Palette<?> palette) throws IOException {
+        outputStream.writeCompoundStart(name);
+        for (Object2IntMap.Entry<String> entry : palette.ids.object2IntEntrySet()) {
+            outputStream.writeNamedTag(entry.getKey(), new IntTag(entry.getIntValue()));
+        }
+        outputStream.writeCompoundEnd();
+    }
 
-        schematic.put("BiomePalette", new CompoundTag(paletteTag));
-        schematic.put("BiomeData", new ByteArrayTag(buffer.toByteArray()));
+    private static int varIntLength(int value) {
+        int length = 1;
+        while ((value & -128) != 0) {
+            value >>>= 7;
+            length++;
+        }
+        return length;
     }
 
-    private void writeEntities(Clipboard clipboard, Map<String, Tag> schematic) {
+    private void writeEntities(Clipboard clipboard) throws IOException {
         List<CompoundTag> entities = clipboard.getEntities().stream().map(e -> {
             BaseEntity state = e.getState();
             if (state == null) {
@@ -264,7 +307,7 @@ private void writeEntities(Clipboard clipboard, Map<String, Tag> schematic) {
         if (entities.isEmpty()) {
             return;
         }
-        schematic.put("Entities", new ListTag(CompoundTag.class, entities));
+        outputStream.writeNamedTag("Entities", new ListTag(CompoundTag.class, entities));
     }
 
     private Tag writeVector(Vector3 vector) {
@@ -282,6 +325,82 @@ private Tag writeRotation(Location location) {
         return new ListTag(FloatTag.class, list);
     }
 
+    /**
+     * Assigns IDs to values in the order they are first seen, keyed by
+     * their string form.
+     */
+    private static final class Palette<T> {
+        private final Function<T, String> keyFunction;
+        private final Reference2IntMap<T> byReference = new Reference2IntOpenHashMap<>();
+        private final Object2IntMap<String> ids = new Object2IntLinkedOpenHashMap<>();
+
+        private Palette(Function<T, String> keyFunction) {
+            this.keyFunction = keyFunction;
+            this.byReference.defaultReturnValue(-1);
+            this.ids.defaultReturnValue(-1);
+        }
+
+        private int getOrAdd(T value) {
+            int id = byReference.getInt(value);
+            if (id == -1) {
+                String key = keyFunction.apply(value);
+                id = ids.getInt(key);
+                if (id == -1) {
+                    id = ids.size();
+                    ids.put(key, id);
+                }
+                byReference.put(value, id);
+            }
+            return id;
+        }
+
+        /**
+         * Get the ID of a value that is already in the palette.
+         *
+         * @throws IllegalStateException if the value is not in the palette
+         */
+        private int get(T value) {
+            int id = byReference.getInt(value);
+            if (id == -1) {
+                String key = keyFunction.apply(value);
+                id = ids.getInt(key);
+                if (id == -1) {
+                    throw new IllegalStateException("Clipboard changed while it was written: " + key + " is not in the palette");
+                }
+                byReference.put(value, id);
+            }
+            return id;
+        }
+
+        private int size() {
+            return ids.size();
+        }
+    }
+
+    /**
+     * Buffers varint-encoded values and writes them as byte array data.
+     */
+    private final class VarIntBuffer {
+        private final byte[] bytes = new byte[8192];
+        private int size;
+
+        private void write(int value) throws IOException {
+            if (size + 5 > bytes.length) {
+                flush();
+            }
+            while ((value & -128) != 0) {
+                bytes[size++] = (byte) (value & 127 | 128);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        private void flush() throws IOException {
+            outputStream.writeByteArrayData(bytes, 0, size);
+            size = 0;
+        }
+    }
+
     @Override
     public void close() throws IOException {
         outputStream.close();
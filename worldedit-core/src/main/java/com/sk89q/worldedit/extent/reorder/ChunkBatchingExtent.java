@@ -19,20 +19,23 @@
 
 package com.sk89q.worldedit.extent.reorder;
 
+import com.google.common.collect.ImmutableList;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.extent.AbstractBufferingExtent;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.RunContext;
-import com.sk89q.worldedit.internal.util.RegionOptimizedVectorSorter;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.util.collection.BlockMap;
+import com.sk89q.worldedit.util.formatting.text.Component;
+import com.sk89q.worldedit.util.formatting.text.TextComponent;
+import com.sk89q.worldedit.util.formatting.text.TranslatableComponent;
+import com.sk89q.worldedit.util.formatting.text.format.TextColor;
 import com.sk89q.worldedit.world.block.BaseBlock;
 import com.sk89q.worldedit.world.block.BlockStateHolder;
 
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
+import java.util.Map;
 
 /**
  * A special extent that batches changes into Minecraft chunks. This helps
@@ -88,19 +91,37 @@ protected Operation commitBefore() {
         return new Operation() {
 
             // we get modified between create/resume -- only create this on resume to prevent CME
-            private Iterator<BlockVector3> iterator;
+            private Iterator<Map.Entry<BlockVector3, BaseBlock>> iterator;
+            // the first block of the chunk to resume with, if we stopped before it
+            private Map.Entry<BlockVector3, BaseBlock> pending;
+            private int chunkX;
+            private int chunkZ;
+            private int affected;
 
             @Override
             public Operation resume(RunContext run) throws WorldEditException {
                 if (iterator == null) {
-                    List<BlockVector3> blockVectors = new ArrayList<>(blockMap.keySet());
-                    RegionOptimizedVectorSorter.sort(blockVectors);
-                    iterator = blockVectors.iterator();
+                    iterator = blockMap.chunkOrderIterator();
                 }
-                while (iterator.hasNext()) {
-                    BlockVector3 position = iterator.next();
-                    BaseBlock block = blockMap.get(position);
-                    getExtent().setBlock(position, block);
+                // only stop between chunks, so no chunk is left half-applied
+                boolean stop = false;
+                while (pending != null || iterator.hasNext()) {
+                    Map.Entry<BlockVector3, BaseBlock> entry = pending != null ? pending : iterator.next();
+                    pending = null;
+                    BlockVector3 position = entry.getKey();
+                    if (affected == 0 || position.getX() >> 4 != chunkX || position.getZ() >> 4 != chunkZ) {
+                        if (stop) {
+                            pending = entry;
+                            return this;
+                        }
+                        chunkX = position.getX() >> 4;
+                        chunkZ = position.getZ() >> 4;
+                    }
+                    getExtent().setBlock(position, entry.getValue());
+                    affected++;
+                    if (!run.shouldContinue()) {
+                        stop = true;
+                    }
                 }
                 blockMap.clear();
                 return null;
@@ -109,6 +130,14 @@ public Operation resume(RunContext run) throws WorldEditException {
             @Override
             public void cancel() {
             }
+
+            @Override
+            public Iterable<Component> getStatusMessages() {
+                return ImmutableList.of(TranslatableComponent.of(
+                        "worldedit.operation.affected.block",
+                        TextComponent.of(affected)
+                ).color(TextColor.LIGHT_PURPLE));
+            }
         };
     }
 
@@ -0,0 +1,117 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.transform;
+
+import com.sk89q.worldedit.internal.block.BlockStateIdAccess;
+import com.sk89q.worldedit.math.transform.Transform;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Caches the results of {@link BlockTransformExtent#transform(BlockStateHolder, Transform)}
+ * for one transform, in a table indexed by internal block state ID.
+ *
+ * <p>Each block state is transformed the first time it is seen, so
+ * transforming many blocks costs an array lookup per block rather than a
+ * walk over the properties of the state.</p>
+ */
+public final class BlockStateTransformCache {
+
+    private final Transform transform;
+    private volatile BlockState[] states = new BlockState[0];
+
+    /**
+     * Create a new instance.
+     *
+     * @param transform the transform
+     */
+    public BlockStateTransformCache(Transform transform) {
+        checkNotNull(transform);
+        this.transform = transform;
+    }
+
+    /**
+     * Get the transform.
+     *
+     * @return the transform
+     */
+    public Transform getTransform() {
+        return transform;
+    }
+
+    /**
+     * Transform a block state.
+     *
+     * @param state the block state
+     * @return the transformed block state
+     */
+    public BlockState transform(BlockState state) {
+        int id = BlockStateIdAccess.getBlockStateId(state);
+        if (!BlockStateIdAccess.isValidInternalId(id)) {
+            return BlockTransformExtent.transform(state, transform);
+        }
+
+        // A racing lookup may miss an entry and transform the state again,
+        // which gives the same result
+        BlockState[] table = states;
+        if (id < table.length) {
+            BlockState cached = table[id];
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        BlockState transformed = BlockTransformExtent.transform(state, transform);
+        synchronized (this) {
+            table = states;
+            if (id >= table.length) {
+                table = Arrays.copyOf(table, Math.max(id + 1, table.length * 2));
+            }
+            table[id] = transformed;
+            states = table;
+        }
+        return transformed;
+    }
+
+    /**
+     * Transform a block, keeping its NBT data.
+     *
+     * @param block the block
+     * @return the transformed block
+     */
+    @SuppressWarnings("unchecked")
+    public <B extends BlockStateHolder<B>> B transform(B block) {
+        if (block instanceof BlockState) {
+            return (B) transform((BlockState) block);
+        } else if (block instanceof BaseBlock) {
+            BlockState state = block.toImmutableState();
+            BlockState transformed = transform(state);
+            return transformed == state ? block : (B) transformed.toBaseBlock(((BaseBlock) block).getNbtData());
+        } else {
+            return BlockTransformExtent.transform(block, transform);
+        }
+    }
+
+}
@@ -55,6 +55,8 @@
 public class BlockTransformExtent extends AbstractDelegateExtent {
 
     private final Transform transform;
+    private final BlockStateTransformCache cache;
+    private BlockStateTransformCache inverseCache;
 
     /**
      * Create a new instance.
@@ -65,6 +67,7 @@ public BlockTransformExtent(Extent extent, Transform transform) {
         super(extent);
         checkNotNull(transform);
         this.transform = transform;
+        this.cache = new BlockStateTransformCache(transform);
     }
 
     /**
@@ -84,7 +87,13 @@ public Transform getTransform() {
      * @return the same block
      */
     private <T extends BlockStateHolder<T>> T transformBlock(T block, boolean reverse) {
-        return transform(block, reverse ? transform.inverse() : transform);
+        if (!reverse) {
+            return cache.transform(block);
+        }
+        if (inverseCache == null) {
+            inverseCache = new BlockStateTransformCache(transform.inverse());
+        }
+        return inverseCache.transform(block);
     }
 
     @Override
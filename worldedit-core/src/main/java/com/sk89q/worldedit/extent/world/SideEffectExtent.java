@@ -99,11 +99,15 @@ protected Operation commitBefore() {
             return null;
         }
         return new Operation() {
+            private boolean fixed;
+
             @Override
             public Operation resume(RunContext run) throws WorldEditException {
-                if (!dirtyChunks.isEmpty()) {
+                // this may be resumed many times, only fix the chunks once
+                if (!fixed && !dirtyChunks.isEmpty()) {
                     world.fixAfterFastMode(dirtyChunks);
                 }
+                fixed = true;
 
                 if (postEditSimulation) {
                     Iterator<Map.Entry<BlockVector3, BlockState>> positionIterator = positions.entrySet().iterator();
@@ -22,9 +22,13 @@
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.function.RegionFunction;
+import com.sk89q.worldedit.internal.block.BlockStateIdAccess;
 import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.SpanConsumer;
 import com.sk89q.worldedit.util.Countable;
 import com.sk89q.worldedit.world.block.BlockState;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -39,6 +43,8 @@ public class BlockDistributionCounter implements RegionFunction {
 
     private final List<Countable<BlockState>> distribution = new ArrayList<>();
     private final Map<BlockState, Countable<BlockState>> map = new HashMap<>();
+    private final Int2ObjectMap<Countable<BlockState>> byId = new Int2ObjectOpenHashMap<>();
+    private int[] rowIds = new int[16];
 
     public BlockDistributionCounter(Extent extent, boolean separateStates) {
         this.extent = extent;
@@ -47,20 +53,99 @@ public BlockDistributionCounter(Extent extent, boolean separateStates) {
 
     @Override
     public boolean apply(BlockVector3 position) throws WorldEditException {
-        BlockState blk = extent.getBlock(position);
+        getCountable(extent.getBlock(position)).increment();
+        return true;
+    }
+
+    /**
+     * Count every block of a cuboid, reading the blocks a chunk section at a
+     * time with {@link Extent#getBlockStateIds(BlockVector3, BlockVector3, int[], int)}.
+     *
+     * @param min the minimum point of the cuboid
+     * @param max the maximum point of the cuboid
+     */
+    public void apply(BlockVector3 min, BlockVector3 max) {
+        int[] ids = new int[16 * 16 * 16];
+        for (int chunkX = min.getX() >> 4; chunkX <= max.getX() >> 4; chunkX++) {
+            for (int chunkZ = min.getZ() >> 4; chunkZ <= max.getZ() >> 4; chunkZ++) {
+                for (int sectionY = min.getY() >> 4; sectionY <= max.getY() >> 4; sectionY++) {
+                    BlockVector3 from = BlockVector3.at(
+                        Math.max(min.getX(), chunkX << 4),
+                        Math.max(min.getY(), sectionY << 4),
+                        Math.max(min.getZ(), chunkZ << 4));
+                    BlockVector3 to = BlockVector3.at(
+                        Math.min(max.getX(), (chunkX << 4) + 15),
+                        Math.min(max.getY(), (sectionY << 4) + 15),
+                        Math.min(max.getZ(), (chunkZ << 4) + 15));
+                    extent.getBlockStateIds(from, to, ids, 0);
+                    count(from, to, ids);
+                }
+            }
+        }
+    }
+
+    /**
+     * Count every block of a row along the X axis, such as a span passed by
+     * {@link com.sk89q.worldedit.regions.Region#forEachSpan(SpanConsumer)}.
+     *
+     * @param y the Y coordinate of the row
+     * @param z the Z coordinate of the row
+     * @param minX the lowest X coordinate of the row
+     * @param maxX the highest X coordinate of the row
+     */
+    public void applySpan(int y, int z, int minX, int maxX) {
+        int length = maxX - minX + 1;
+        if (rowIds.length < length) {
+            rowIds = new int[length];
+        }
+        BlockVector3 from = BlockVector3.at(minX, y, z);
+        BlockVector3 to = BlockVector3.at(maxX, y, z);
+        extent.getBlockStateIds(from, to, rowIds, 0);
+        count(from, to, rowIds);
+    }
+
+    private void count(BlockVector3 from, BlockVector3 to, int[] ids) {
+        int lengthX = to.getX() - from.getX() + 1;
+        int lengthZ = to.getZ() - from.getZ() + 1;
+        int volume = lengthX * lengthZ * (to.getY() - from.getY() + 1);
+        int i = 0;
+        while (i < volume) {
+            int id = ids[i];
+            BlockState state = BlockStateIdAccess.isValidInternalId(id)
+                ? BlockStateIdAccess.getBlockStateById(id) : null;
+            if (state == null) {
+                BlockVector3 position = from.add(i % lengthX, i / (lengthX * lengthZ), (i / lengthX) % lengthZ);
+                getCountable(extent.getBlock(position)).increment();
+                i++;
+                continue;
+            }
+            // Count a run of the same block at once
+            int end = i + 1;
+            while (end < volume && ids[end] == id) {
+                end++;
+            }
+            Countable<BlockState> countable = byId.get(id);
+            if (countable == null) {
+                countable = getCountable(state);
+                byId.put(id, countable);
+            }
+            countable.setAmount(countable.getAmount() + end - i);
+            i = end;
+        }
+    }
+
+    private Countable<BlockState> getCountable(BlockState blk) {
         if (!separateStates) {
             blk = blk.getBlockType().getDefaultState();
         }
 
-        if (map.containsKey(blk)) {
-            map.get(blk).increment();
-        } else {
-            Countable<BlockState> c = new Countable<>(blk, 1);
+        Countable<BlockState> c = map.get(blk);
+        if (c == null) {
+            c = new Countable<>(blk, 0);
             map.put(blk, c);
             distribution.add(c);
         }
-
-        return true;
+        return c;
     }
 
     /**
@@ -27,11 +27,14 @@
 import com.sk89q.worldedit.internal.helper.MCDirections;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.math.Vector3;
+import com.sk89q.worldedit.math.transform.AffineTransform;
 import com.sk89q.worldedit.math.transform.Transform;
 import com.sk89q.worldedit.util.Direction;
 import com.sk89q.worldedit.util.Direction.Flag;
 import com.sk89q.worldedit.world.block.BaseBlock;
 
+import javax.annotation.Nullable;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -44,6 +47,8 @@ public class ExtentBlockCopy implements RegionFunction {
     private final BlockVector3 from;
     private final BlockVector3 to;
     private final Transform transform;
+    @Nullable
+    private final int[] matrix;
 
     /**
      * Make a new copy.
@@ -65,18 +70,61 @@ public ExtentBlockCopy(Extent source, BlockVector3 from, Extent destination, Blo
         this.destination = destination;
         this.to = to;
         this.transform = transform;
+        this.matrix = toBlockMatrix(transform);
+    }
+
+    /**
+     * Get the transform as an integer matrix, in the layout of
+     * {@link AffineTransform#coefficients()}, if it only swaps, flips and
+     * moves axes by whole blocks. Such a transform maps block positions
+     * exactly, so they can be transformed without going through doubles.
+     *
+     * @param transform the transform
+     * @return the matrix, or null if the transform is not block aligned
+     */
+    @Nullable
+    private static int[] toBlockMatrix(Transform transform) {
+        if (transform.isIdentity()) {
+            return new int[] { 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0 };
+        }
+        if (!(transform instanceof AffineTransform)) {
+            return null;
+        }
+        double[] coefficients = ((AffineTransform) transform).coefficients();
+        int[] matrix = new int[coefficients.length];
+        for (int i = 0; i < coefficients.length; i++) {
+            double coefficient = coefficients[i];
+            // keep translations small enough that the result can't overflow
+            double limit = i % 4 == 3 ? 1 << 30 : 1;
+            if (coefficient != Math.rint(coefficient) || Math.abs(coefficient) > limit) {
+                return null;
+            }
+            matrix[i] = (int) coefficient;
+        }
+        return matrix;
     }
 
     @Override
     public boolean apply(BlockVector3 position) throws WorldEditException {
         BaseBlock block = source.getFullBlock(position);
-        BlockVector3 orig = position.subtract(from);
-        BlockVector3 transformed = transform.apply(orig.toVector3()).toBlockPoint();
+        BlockVector3 target;
+        if (matrix != null) {
+            int x = position.getX() - from.getX();
+            int y = position.getY() - from.getY();
+            int z = position.getZ() - from.getZ();
+            target = BlockVector3.at(
+                x * matrix[0] + y * matrix[1] + z * matrix[2] + matrix[3] + to.getX(),
+                x * matrix[4] + y * matrix[5] + z * matrix[6] + matrix[7] + to.getY(),
+                x * matrix[8] + y * matrix[9] + z * matrix[10] + matrix[11] + to.getZ());
+        } else {
+            BlockVector3 orig = position.subtract(from);
+            target = transform.apply(orig.toVector3()).toBlockPoint().add(to);
+        }
 
         // Apply transformations to NBT data if necessary
         block = transformNbtData(block);
 
-        return destination.setBlock(transformed.add(to), block);
+        return destination.setBlock(target, block);
     }
 
     /**
@@ -31,6 +31,7 @@
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.RunContext;
 import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionBackend;
 import com.sk89q.worldedit.internal.expression.ExpressionException;
 import com.sk89q.worldedit.math.Vector3;
 import com.sk89q.worldedit.regions.NullRegion;
@@ -68,7 +69,7 @@ public Deform(Extent destination, Region region, String expression, Mode mode) {
         checkNotNull(region, "region");
         checkNotNull(mode, "mode");
         checkNotNull(expression, "expression");
-        this.expression = Expression.compile(expression, "x", "y", "z");
+        this.expression = Expression.compile(expression, ExpressionBackend.fromConfiguration(), "x", "y", "z");
         this.expression.optimize();
         this.destination = destination;
         this.region = region;
@@ -0,0 +1,151 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.mask;
+
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.internal.block.BlockStateIdAccess;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+
+import java.util.BitSet;
+import javax.annotation.Nullable;
+
+/**
+ * A mask that only depends on the block state at each position.
+ *
+ * <p>The mask is compiled into a set of the internal IDs of the matching
+ * block states the first time it is tested, so testing a position is a
+ * single lookup. Blocks without an internal ID are tested with
+ * {@link #test(BlockState)} instead.</p>
+ */
+public abstract class AbstractBlockMask extends AbstractExtentMask {
+
+    @Nullable
+    private volatile BitSet stateIds;
+
+    /**
+     * Construct a new mask.
+     *
+     * @param extent the extent
+     */
+    protected AbstractBlockMask(Extent extent) {
+        super(extent);
+    }
+
+    /**
+     * Test a block state.
+     *
+     * @param state the block state
+     * @return true if the criteria is met
+     */
+    public abstract boolean test(BlockState state);
+
+    @Override
+    public boolean test(BlockVector3 vector) {
+        BlockState state = getExtent().getBlock(vector);
+        int id = BlockStateIdAccess.getBlockStateId(state);
+        if (!BlockStateIdAccess.isValidInternalId(id)) {
+            return test(state);
+        }
+        return getStateIds().get(id);
+    }
+
+    /**
+     * Get the internal IDs of the block states that match this mask.
+     *
+     * <p>The returned set must not be modified.</p>
+     *
+     * @return the set of internal IDs
+     */
+    public BitSet getStateIds() {
+        BitSet ids = stateIds;
+        if (ids == null) {
+            synchronized (this) {
+                ids = stateIds;
+                if (ids == null) {
+                    ids = compile();
+                    stateIds = ids;
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Forget the compiled set of internal IDs, after the criteria have been
+     * changed.
+     */
+    protected void invalidate() {
+        stateIds = null;
+    }
+
+    /**
+     * Compile the set of the internal IDs of the matching block states.
+     *
+     * <p>The default implementation tests every state of every block type.
+     * Masks that know which states can match should override it.</p>
+     *
+     * @return the set of internal IDs
+     */
+    protected BitSet compile() {
+        BitSet ids = new BitSet();
+        for (BlockType type : BlockType.REGISTRY) {
+            for (BlockState state : type.getAllStates()) {
+                if (test(state)) {
+                    add(ids, state);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Add the internal ID of a block state to a set, if it has one.
+     *
+     * @param ids the set of internal IDs
+     * @param state the block state
+     */
+    protected static void add(BitSet ids, BlockState state) {
+        int id = BlockStateIdAccess.getBlockStateId(state);
+        if (BlockStateIdAccess.isValidInternalId(id)) {
+            ids.set(id);
+        }
+    }
+
+    /**
+     * Add the internal IDs of every state of a block type to a set.
+     *
+     * @param ids the set of internal IDs
+     * @param type the block type
+     */
+    protected static void add(BitSet ids, BlockType type) {
+        for (BlockState state : type.getAllStates()) {
+            add(ids, state);
+        }
+    }
+
+    @Nullable
+    @Override
+    public Mask2D toMask2D() {
+        return null;
+    }
+
+}
@@ -20,17 +20,18 @@
 package com.sk89q.worldedit.function.mask;
 
 import com.sk89q.worldedit.extent.Extent;
-import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.world.block.BlockCategory;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
 
-import javax.annotation.Nullable;
+import java.util.BitSet;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * A mask that tests whether a block matches a given {@link BlockCategory}, or tag.
  */
-public class BlockCategoryMask extends AbstractExtentMask {
+public class BlockCategoryMask extends AbstractBlockMask {
 
     private final BlockCategory category;
 
@@ -41,13 +42,16 @@ public BlockCategoryMask(Extent extent, BlockCategory category) {
     }
 
     @Override
-    public boolean test(BlockVector3 vector) {
-        return category.contains(getExtent().getBlock(vector));
+    public boolean test(BlockState block) {
+        return category.contains(block);
     }
 
-    @Nullable
     @Override
-    public Mask2D toMask2D() {
-        return null;
+    protected BitSet compile() {
+        BitSet ids = new BitSet();
+        for (BlockType type : category.getAll()) {
+            add(ids, type);
+        }
+        return ids;
     }
 }
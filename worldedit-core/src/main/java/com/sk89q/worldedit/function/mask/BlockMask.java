@@ -20,15 +20,14 @@
 package com.sk89q.worldedit.function.mask;
 
 import com.sk89q.worldedit.extent.Extent;
-import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.world.block.BaseBlock;
 import com.sk89q.worldedit.world.block.BlockState;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
-import javax.annotation.Nullable;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -39,7 +38,7 @@
  * <p>This mask checks for both an exact block type and state value match,
  * respecting fuzzy status of the BlockState.</p>
  */
-public class BlockMask extends AbstractExtentMask {
+public class BlockMask extends AbstractBlockMask {
 
     private final Set<BaseBlock> blocks = new HashSet<>();
 
@@ -73,6 +72,7 @@ public BlockMask(Extent extent, BaseBlock... block) {
     public void add(Collection<BaseBlock> blocks) {
         checkNotNull(blocks);
         this.blocks.addAll(blocks);
+        invalidate();
     }
 
     /**
@@ -94,8 +94,7 @@ public Collection<BaseBlock> getBlocks() {
     }
 
     @Override
-    public boolean test(BlockVector3 vector) {
-        BlockState block = getExtent().getBlock(vector);
+    public boolean test(BlockState block) {
         for (BaseBlock testBlock : blocks) {
             if (testBlock.equalsFuzzy(block)) {
                 return true;
@@ -105,10 +104,17 @@ public boolean test(BlockVector3 vector) {
         return false;
     }
 
-    @Nullable
     @Override
-    public Mask2D toMask2D() {
-        return null;
+    protected BitSet compile() {
+        BitSet ids = new BitSet();
+        for (BaseBlock testBlock : blocks) {
+            for (BlockState state : testBlock.getBlockType().getAllStates()) {
+                if (testBlock.equalsFuzzy(state)) {
+                    add(ids, state);
+                }
+            }
+        }
+        return ids;
     }
 
 }
@@ -22,15 +22,13 @@
 import com.google.common.collect.Maps;
 import com.sk89q.worldedit.blocks.Blocks;
 import com.sk89q.worldedit.extent.Extent;
-import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.registry.state.Property;
 import com.sk89q.worldedit.world.block.BlockState;
 import com.sk89q.worldedit.world.block.BlockType;
 
 import java.util.Map;
-import javax.annotation.Nullable;
 
-public class BlockStateMask extends AbstractExtentMask {
+public class BlockStateMask extends AbstractBlockMask {
 
     private final Map<String, String> states;
     private final boolean strict;
@@ -51,8 +49,7 @@ public BlockStateMask(Extent extent, Map<String, String> states, boolean strict)
     }
 
     @Override
-    public boolean test(BlockVector3 vector) {
-        BlockState block = getExtent().getBlock(vector);
+    public boolean test(BlockState block) {
         final Map<Property<Object>, Object> checkProps = cache
                 .computeIfAbsent(block.getBlockType(), (b -> Blocks.resolveProperties(states, b)));
         if (strict && checkProps.isEmpty()) {
@@ -61,10 +58,4 @@ public boolean test(BlockVector3 vector) {
         return checkProps.entrySet().stream()
                 .allMatch(entry -> block.getState(entry.getKey()) == entry.getValue());
     }
-
-    @Nullable
-    @Override
-    public Mask2D toMask2D() {
-        return null;
-    }
 }
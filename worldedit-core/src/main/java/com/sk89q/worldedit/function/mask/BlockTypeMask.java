@@ -20,14 +20,14 @@
 package com.sk89q.worldedit.function.mask;
 
 import com.sk89q.worldedit.extent.Extent;
-import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockState;
 import com.sk89q.worldedit.world.block.BlockType;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
-import javax.annotation.Nullable;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -38,7 +38,7 @@
  * <p>This mask checks for ONLY the block type. If state should also be checked,
  * use {@link BlockMask}.</p>
  */
-public class BlockTypeMask extends AbstractExtentMask {
+public class BlockTypeMask extends AbstractBlockMask {
 
     private final Set<BlockType> blocks = new HashSet<>();
 
@@ -72,6 +72,7 @@ public BlockTypeMask(Extent extent, BlockType... block) {
     public void add(Collection<BlockType> blocks) {
         checkNotNull(blocks);
         this.blocks.addAll(blocks);
+        invalidate();
     }
 
     /**
@@ -93,13 +94,16 @@ public Collection<BlockType> getBlocks() {
     }
 
     @Override
-    public boolean test(BlockVector3 vector) {
-        return blocks.contains(getExtent().getBlock(vector).getBlockType());
+    public boolean test(BlockState block) {
+        return blocks.contains(block.getBlockType());
     }
 
-    @Nullable
     @Override
-    public Mask2D toMask2D() {
-        return null;
+    protected BitSet compile() {
+        BitSet ids = new BitSet();
+        for (BlockType type : blocks) {
+            add(ids, type);
+        }
+        return ids;
     }
 }
@@ -0,0 +1,214 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.mask;
+
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.internal.block.BlockStateIdAccess;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Combines masks that only depend on the block state, so the combination
+ * is compiled into a single set of internal IDs.
+ *
+ * <p>The extent is the extent of the first combined mask, and setting
+ * the extent sets it on every combined mask. If a combined mask is given
+ * another extent on its own, {@link #isStale()} tells the masks that folded
+ * it to fold again. If a combined mask is changed, the set is compiled
+ * again.</p>
+ */
+final class CombinedBlockMask extends AbstractBlockMask {
+
+    private enum Operation {
+        AND,
+        OR,
+        NOT
+    }
+
+    /**
+     * Negate a mask.
+     *
+     * @param mask the mask
+     * @return a new mask
+     */
+    static AbstractBlockMask negate(AbstractBlockMask mask) {
+        return new CombinedBlockMask(Operation.NOT, new AbstractBlockMask[] { mask });
+    }
+
+    /**
+     * Fold the masks that only depend on the block state of the same extent
+     * into one mask each. Other masks are kept as they are.
+     *
+     * @param masks the masks
+     * @param union true to match blocks matched by any of the masks, false to
+     *              match blocks matched by all of them
+     * @return the folded masks
+     */
+    static List<Mask> fold(Collection<Mask> masks, boolean union) {
+        Map<Extent, List<AbstractBlockMask>> byExtent = new IdentityHashMap<>();
+        List<Mask> others = new ArrayList<>();
+        for (Mask mask : masks) {
+            if (mask instanceof AbstractBlockMask) {
+                AbstractBlockMask blockMask = (AbstractBlockMask) mask;
+                byExtent.computeIfAbsent(blockMask.getExtent(), extent -> new ArrayList<>()).add(blockMask);
+            } else {
+                others.add(mask);
+            }
+        }
+
+        // The folded masks are cheap, so they are tested first
+        List<Mask> folded = new ArrayList<>(masks.size());
+        for (List<AbstractBlockMask> group : byExtent.values()) {
+            if (group.size() == 1) {
+                folded.add(group.get(0));
+            } else {
+                folded.add(new CombinedBlockMask(union ? Operation.OR : Operation.AND,
+                    group.toArray(new AbstractBlockMask[0])));
+            }
+        }
+        folded.addAll(others);
+        return folded;
+    }
+
+    private final Operation operation;
+    private final AbstractBlockMask[] masks;
+    private BitSet[] sources = new BitSet[0];
+
+    private CombinedBlockMask(Operation operation, AbstractBlockMask[] masks) {
+        super(masks[0].getExtent());
+        this.operation = operation;
+        this.masks = masks;
+    }
+
+    @Override
+    public Extent getExtent() {
+        return masks[0].getExtent();
+    }
+
+    @Override
+    public void setExtent(Extent extent) {
+        super.setExtent(extent);
+        // Called by the super constructor before the masks are set
+        if (masks != null) {
+            for (AbstractBlockMask mask : masks) {
+                mask.setExtent(extent);
+            }
+        }
+    }
+
+    /**
+     * Get whether the combined masks no longer read the same extent, so
+     * they have to be folded again.
+     *
+     * @return true if the combined masks read different extents
+     */
+    boolean isStale() {
+        Extent extent = getExtent();
+        for (AbstractBlockMask mask : masks) {
+            if (mask.getExtent() != extent) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean test(BlockState state) {
+        switch (operation) {
+            case AND:
+                for (AbstractBlockMask mask : masks) {
+                    if (!mask.test(state)) {
+                        return false;
+                    }
+                }
+                return true;
+            case OR:
+                for (AbstractBlockMask mask : masks) {
+                    if (mask.test(state)) {
+                        return true;
+                    }
+                }
+                return false;
+            case NOT:
+                return !masks[0].test(state);
+            default:
+                throw new IllegalStateException("Unknown operation " + operation);
+        }
+    }
+
+    @Override
+    public BitSet getStateIds() {
+        BitSet ids = super.getStateIds();
+        BitSet[] sources = this.sources;
+        for (int i = 0; i < masks.length; i++) {
+            if (masks[i].getStateIds() != sources[i]) {
+                invalidate();
+                return super.getStateIds();
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    protected BitSet compile() {
+        BitSet[] sources = new BitSet[masks.length];
+        for (int i = 0; i < masks.length; i++) {
+            sources[i] = masks[i].getStateIds();
+        }
+        this.sources = sources;
+
+        BitSet ids;
+        switch (operation) {
+            case AND:
+                ids = (BitSet) sources[0].clone();
+                for (int i = 1; i < sources.length; i++) {
+                    ids.and(sources[i]);
+                }
+                return ids;
+            case OR:
+                ids = new BitSet();
+                for (BitSet source : sources) {
+                    ids.or(source);
+                }
+                return ids;
+            case NOT:
+                ids = new BitSet();
+                for (BlockType type : BlockType.REGISTRY) {
+                    for (BlockState state : type.getAllStates()) {
+                        int id = BlockStateIdAccess.getBlockStateId(state);
+                        if (BlockStateIdAccess.isValidInternalId(id) && !sources[0].get(id)) {
+                            ids.set(id);
+                        }
+                    }
+                }
+                return ids;
+            default:
+                throw new IllegalStateException("Unknown operation " + operation);
+        }
+    }
+
+}
@@ -20,15 +20,16 @@
 package com.sk89q.worldedit.function.mask;
 
 import com.sk89q.worldedit.extent.Extent;
-import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
 
-import javax.annotation.Nullable;
+import java.util.BitSet;
 
 /**
  * A mask that returns true whenever the block at the location is not
  * an air block (it contains some other block).
  */
-public class ExistingBlockMask extends AbstractExtentMask {
+public class ExistingBlockMask extends AbstractBlockMask {
 
     /**
      * Create a new existing block map.
@@ -40,14 +41,19 @@ public ExistingBlockMask(Extent extent) {
     }
 
     @Override
-    public boolean test(BlockVector3 vector) {
-        return !getExtent().getBlock(vector).getBlockType().getMaterial().isAir();
+    public boolean test(BlockState block) {
+        return !block.getBlockType().getMaterial().isAir();
     }
 
-    @Nullable
     @Override
-    public Mask2D toMask2D() {
-        return null;
+    protected BitSet compile() {
+        BitSet ids = new BitSet();
+        for (BlockType type : BlockType.REGISTRY) {
+            if (!type.getMaterial().isAir()) {
+                add(ids, type);
+            }
+        }
+        return ids;
     }
 
 }
@@ -22,6 +22,7 @@
 import com.sk89q.worldedit.internal.expression.EvaluationException;
 import com.sk89q.worldedit.internal.expression.Expression;
 import com.sk89q.worldedit.internal.expression.ExpressionException;
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.shape.WorldEditExpressionEnvironment;
 
@@ -40,6 +41,8 @@ public class ExpressionMask extends AbstractMask {
 
     private final Expression expression;
     private final IntSupplier timeout;
+    // masks may be tested on several threads, each evaluating its own frame
+    private final ThreadLocal<ExpressionFrame> frames;
 
     /**
      * Create a new instance.
@@ -64,6 +67,7 @@ public ExpressionMask(Expression expression, @Nullable IntSupplier timeout) {
         checkNotNull(expression);
         this.expression = expression;
         this.timeout = timeout;
+        this.frames = ThreadLocal.withInitial(expression::newFrame);
     }
 
     @Override
@@ -72,12 +76,14 @@ public boolean test(BlockVector3 vector) {
             if (expression.getEnvironment() instanceof WorldEditExpressionEnvironment) {
                 ((WorldEditExpressionEnvironment) expression.getEnvironment()).setCurrentBlock(vector.toVector3());
             }
-            if (timeout == null) {
-                return expression.evaluate(vector.getX(), vector.getY(), vector.getZ()) > 0;
-            } else {
-                return expression.evaluate(new double[]{vector.getX(), vector.getY(), vector.getZ()},
-                        timeout.getAsInt()) > 0;
+            ExpressionFrame frame = frames.get();
+            if (timeout != null) {
+                frame.setTimeout(timeout.getAsInt());
             }
+            frame.set(0, vector.getX());
+            frame.set(1, vector.getY());
+            frame.set(2, vector.getZ());
+            return frame.evaluate() > 0;
         } catch (EvaluationException e) {
             return false;
         }
@@ -21,10 +21,12 @@
 
 import com.sk89q.worldedit.math.BlockVector3;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import javax.annotation.Nullable;
@@ -35,10 +37,17 @@
  * Combines several masks and requires that all masks return true
  * when a certain position is tested. It serves as a logical AND operation
  * on a list of masks.
+ *
+ * <p>Masks that only depend on the block state, such as {@link BlockMask},
+ * are folded into a single set of block state IDs when they test the same
+ * extent.</p>
  */
 public class MaskIntersection extends AbstractMask {
 
     private final Set<Mask> masks = new HashSet<>();
+    private final Set<Mask> maskView = new MaskView();
+    @Nullable
+    private volatile Mask[] folded;
 
     /**
      * Create a new intersection.
@@ -67,6 +76,7 @@ public MaskIntersection(Mask... mask) {
     public void add(Collection<Mask> masks) {
         checkNotNull(masks);
         this.masks.addAll(masks);
+        folded = null;
     }
 
     /**
@@ -81,15 +91,50 @@ public void add(Mask... mask) {
     /**
      * Get the masks that are tested with.
      *
+     * <p>Changes to the returned collection change the masks that are
+     * tested with.</p>
+     *
      * @return the masks
      */
     public Collection<Mask> getMasks() {
-        return masks;
+        return maskView;
+    }
+
+    /**
+     * Get the masks to test, with the masks that only depend on the block
+     * state folded together.
+     *
+     * <p>The masks are folded again if one of them has since been given
+     * another extent.</p>
+     *
+     * @return the masks to test
+     */
+    protected Mask[] getFoldedMasks() {
+        Mask[] folded = this.folded;
+        if (folded == null || isStale(folded)) {
+            folded = CombinedBlockMask.fold(masks, isUnion()).toArray(new Mask[0]);
+            this.folded = folded;
+        }
+        return folded;
+    }
+
+    private static boolean isStale(Mask[] folded) {
+        for (Mask mask : folded) {
+            if (mask instanceof CombinedBlockMask && ((CombinedBlockMask) mask).isStale()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isUnion() {
+        return false;
     }
 
     @Override
     public boolean test(BlockVector3 vector) {
-        if (masks.isEmpty()) {
+        Mask[] masks = getFoldedMasks();
+        if (masks.length == 0) {
             return false;
         }
 
@@ -117,4 +162,62 @@ public Mask2D toMask2D() {
         return new MaskIntersection2D(mask2dList);
     }
 
+    /**
+     * A view of the masks that folds them again when they are changed.
+     */
+    private final class MaskView extends AbstractSet<Mask> {
+
+        @Override
+        public boolean add(Mask mask) {
+            checkNotNull(mask);
+            if (masks.add(mask)) {
+                folded = null;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (masks.remove(o)) {
+                folded = null;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return masks.contains(o);
+        }
+
+        @Override
+        public Iterator<Mask> iterator() {
+            Iterator<Mask> iterator = masks.iterator();
+            return new Iterator<Mask>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Mask next() {
+                    return iterator.next();
+                }
+
+                @Override
+                public void remove() {
+                    iterator.remove();
+                    folded = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return masks.size();
+        }
+
+    }
+
 }
@@ -51,9 +51,14 @@ public MaskUnion(Mask... mask) {
         super(mask);
     }
 
+    @Override
+    boolean isUnion() {
+        return true;
+    }
+
     @Override
     public boolean test(BlockVector3 vector) {
-        Collection<Mask> masks = getMasks();
+        Mask[] masks = getFoldedMasks();
 
         for (Mask mask : masks) {
             if (mask.test(vector)) {
@@ -66,6 +66,8 @@ public static Mask negate(final Mask mask) {
             return ALWAYS_FALSE;
         } else if (mask instanceof AlwaysFalse) {
             return ALWAYS_TRUE;
+        } else if (mask instanceof AbstractBlockMask) {
+            return CombinedBlockMask.negate((AbstractBlockMask) mask);
         }
 
         checkNotNull(mask);
@@ -20,28 +20,31 @@
 package com.sk89q.worldedit.function.mask;
 
 import com.sk89q.worldedit.extent.Extent;
-import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
 
-import javax.annotation.Nullable;
+import java.util.BitSet;
 
-public class SolidBlockMask extends AbstractExtentMask {
+public class SolidBlockMask extends AbstractBlockMask {
 
     public SolidBlockMask(Extent extent) {
         super(extent);
     }
 
     @Override
-    public boolean test(BlockVector3 vector) {
-        Extent extent = getExtent();
-        BlockState block = extent.getBlock(vector);
+    public boolean test(BlockState block) {
         return block.getBlockType().getMaterial().isMovementBlocker();
     }
 
-    @Nullable
     @Override
-    public Mask2D toMask2D() {
-        return null;
+    protected BitSet compile() {
+        BitSet ids = new BitSet();
+        for (BlockType type : BlockType.REGISTRY) {
+            if (type.getMaterial().isMovementBlocker()) {
+                add(ids, type);
+            }
+        }
+        return ids;
     }
 
 }
@@ -0,0 +1,109 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.operation;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A run context that asks operations to stop once a time or step budget has
+ * been spent, such as the share of a server tick given to an operation.
+ *
+ * <p>Every call to {@link #shouldContinue()} counts as one step. Once the
+ * budget is spent, this context keeps returning {@code false}; create a new
+ * one for the next run.</p>
+ */
+public class BudgetedRunContext extends RunContext {
+
+    private final long deadline;
+    private final int maxSteps;
+    private int steps;
+    private boolean exhausted;
+
+    /**
+     * Create a new context with a time and a step budget, starting now.
+     *
+     * @param time the time budget
+     * @param unit the unit of the time budget
+     * @param maxSteps the maximum number of steps
+     */
+    public BudgetedRunContext(long time, TimeUnit unit, int maxSteps) {
+        checkNotNull(unit);
+        checkArgument(time >= 0, "time must be >= 0");
+        checkArgument(maxSteps >= 0, "maxSteps must be >= 0");
+        this.deadline = System.nanoTime() + unit.toNanos(time);
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * Create a new context with only a time budget, starting now.
+     *
+     * @param time the time budget
+     * @param unit the unit of the time budget
+     * @return the context
+     */
+    public static BudgetedRunContext ofTime(long time, TimeUnit unit) {
+        return new BudgetedRunContext(time, unit, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Create a new context with only a step budget.
+     *
+     * @param maxSteps the maximum number of steps
+     * @return the context
+     */
+    public static BudgetedRunContext ofSteps(int maxSteps) {
+        return new BudgetedRunContext(Long.MAX_VALUE / 2, TimeUnit.NANOSECONDS, maxSteps);
+    }
+
+    /**
+     * Get the number of steps taken so far.
+     *
+     * @return the number of steps
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * Return whether the budget of this context has been spent.
+     *
+     * @return true if spent
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    @Override
+    public boolean shouldContinue() {
+        if (exhausted) {
+            return false;
+        }
+        if (steps >= maxSteps || System.nanoTime() - deadline >= 0) {
+            exhausted = true;
+            return false;
+        }
+        steps++;
+        return true;
+    }
+
+}
@@ -69,6 +69,7 @@ public OperationQueue(Operation... operation) {
         checkNotNull(operation);
         for (Operation o : operation) {
             offer(o);
+            operations.add(o);
         }
     }
 
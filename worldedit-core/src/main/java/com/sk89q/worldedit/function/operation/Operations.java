@@ -22,6 +22,8 @@
 import com.sk89q.worldedit.MaxChangedBlocksException;
 import com.sk89q.worldedit.WorldEditException;
 
+import javax.annotation.Nullable;
+
 /**
  * Operation helper methods.
  */
@@ -78,4 +80,22 @@ public static void completeBlindly(Operation op) {
         }
     }
 
+    /**
+     * Resume a given operation until it completes, or until the given
+     * context asks it to stop. The returned operation should be resumed
+     * again later, such as on the next tick, with a new context.
+     *
+     * @param op operation to execute
+     * @param run the context of this run
+     * @return the operation to resume later, or null if it completed
+     * @throws WorldEditException WorldEdit exception
+     */
+    @Nullable
+    public static Operation resumeWithin(@Nullable Operation op, RunContext run) throws WorldEditException {
+        while (op != null && run.shouldContinue()) {
+            op = op.resume(run);
+        }
+        return op;
+    }
+
 }
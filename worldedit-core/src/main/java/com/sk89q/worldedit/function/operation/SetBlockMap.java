@@ -19,12 +19,18 @@
 
 package com.sk89q.worldedit.function.operation;
 
+import com.google.common.collect.ImmutableList;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.util.collection.BlockMap;
+import com.sk89q.worldedit.util.formatting.text.Component;
+import com.sk89q.worldedit.util.formatting.text.TextComponent;
+import com.sk89q.worldedit.util.formatting.text.TranslatableComponent;
+import com.sk89q.worldedit.util.formatting.text.format.TextColor;
 import com.sk89q.worldedit.world.block.BaseBlock;
 
+import java.util.Iterator;
 import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -33,6 +39,8 @@ public class SetBlockMap implements Operation {
 
     private final Extent extent;
     private final BlockMap<BaseBlock> blocks;
+    private Iterator<Map.Entry<BlockVector3, BaseBlock>> iterator;
+    private int affected;
 
     public SetBlockMap(Extent extent, BlockMap<BaseBlock> blocks) {
         this.extent = checkNotNull(extent);
@@ -41,8 +49,17 @@ public SetBlockMap(Extent extent, BlockMap<BaseBlock> blocks) {
 
     @Override
     public Operation resume(RunContext run) throws WorldEditException {
-        for (Map.Entry<BlockVector3, BaseBlock> entry : blocks.entrySet()) {
+        // only create this on resume, the map may be modified before then
+        if (iterator == null) {
+            iterator = blocks.entrySet().iterator();
+        }
+        while (iterator.hasNext()) {
+            Map.Entry<BlockVector3, BaseBlock> entry = iterator.next();
             extent.setBlock(entry.getKey(), entry.getValue());
+            affected++;
+            if (!run.shouldContinue()) {
+                return iterator.hasNext() ? this : null;
+            }
         }
         return null;
     }
@@ -51,4 +68,12 @@ public Operation resume(RunContext run) throws WorldEditException {
     public void cancel() {
     }
 
+    @Override
+    public Iterable<Component> getStatusMessages() {
+        return ImmutableList.of(TranslatableComponent.of(
+                "worldedit.operation.affected.block",
+                TextComponent.of(affected)
+        ).color(TextColor.LIGHT_PURPLE));
+    }
+
 }
@@ -23,19 +23,48 @@
 import com.sk89q.worldedit.world.block.BaseBlock;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.annotation.Nullable;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Uses a random pattern of a weighted list of patterns.
+ *
+ * <p>Patterns are picked with an alias table, which takes the same time
+ * for any number of patterns. Without a seed, the random numbers come from
+ * the random number generator of the current thread. With a seed, they are
+ * a hash of the seed and the position, so the same seed always gives the
+ * same blocks at the same positions, in any order and from any thread.</p>
  */
 public class RandomPattern extends AbstractPattern {
 
-    private final Random random = new Random();
+    private final boolean seeded;
+    private final long seed;
     private final List<Chance> patterns = new ArrayList<>();
-    private double max = 0;
+    @Nullable
+    private volatile AliasTable table;
+
+    /**
+     * Create a new pattern that picks patterns at random.
+     */
+    public RandomPattern() {
+        this.seeded = false;
+        this.seed = 0;
+    }
+
+    /**
+     * Create a new pattern that picks patterns depending on the seed and
+     * the position.
+     *
+     * @param seed the seed
+     */
+    public RandomPattern(long seed) {
+        this.seeded = true;
+        this.seed = seed;
+    }
 
     /**
      * Add a pattern to the weight list of patterns.
@@ -44,27 +73,144 @@ public class RandomPattern extends AbstractPattern {
      * the sum of the probabilities of all added patterns.</p>
      *
      * @param pattern the pattern
-     * @param chance the chance, which can be any positive number
+     * @param chance the chance, which can be any positive number, or zero
+     *               for a pattern that is never picked
      */
-    public void add(Pattern pattern, double chance) {
+    public synchronized void add(Pattern pattern, double chance) {
         checkNotNull(pattern);
         patterns.add(new Chance(pattern, chance));
-        max += chance;
+        table = null;
+    }
+
+    /**
+     * Get the patterns that this pattern picks from.
+     *
+     * @return the patterns, in the order they were added
+     */
+    public synchronized List<Pattern> getPatterns() {
+        List<Pattern> result = new ArrayList<>(patterns.size());
+        for (Chance chance : patterns) {
+            result.add(chance.getPattern());
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private AliasTable getTable() {
+        AliasTable table = this.table;
+        if (table == null) {
+            synchronized (this) {
+                table = this.table;
+                if (table == null) {
+                    table = new AliasTable(patterns);
+                    this.table = table;
+                }
+            }
+        }
+        return table;
     }
 
     @Override
     public BaseBlock applyBlock(BlockVector3 position) {
-        double r = random.nextDouble();
-        double offset = 0;
+        AliasTable table = getTable();
+        if (table.patterns.length == 0) {
+            throw new RuntimeException("ProportionalFillPattern");
+        }
 
-        for (Chance chance : patterns) {
-            if (r <= (offset + chance.getChance()) / max) {
-                return chance.getPattern().applyBlock(position);
+        long bits = seeded ? hash(seed, position) : ThreadLocalRandom.current().nextLong();
+        return table.pick(bits).applyBlock(position);
+    }
+
+    /**
+     * Hash a seed and a position into 64 random bits, with the mixing
+     * function of SplitMix64.
+     */
+    private static long hash(long seed, BlockVector3 position) {
+        long hash = mix(seed + position.getX() * 0x9E3779B97F4A7C15L);
+        hash = mix(hash + position.getY() * 0xC2B2AE3D27D4EB4FL);
+        return mix(hash + position.getZ() * 0x165667B19E3779F9L);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * An alias table of the patterns, built with Vose's method.
+     *
+     * <p>Each column holds a pattern and an alias. A pick chooses a column
+     * uniformly, then the pattern of the column with its probability, or
+     * the alias otherwise.</p>
+     */
+    private static final class AliasTable {
+        private final Pattern[] patterns;
+        private final double[] probabilities;
+        private final int[] aliases;
+
+        private AliasTable(List<Chance> allChances) {
+            // Patterns without a positive chance are never picked, so they
+            // are left out instead of relying on the rounding below
+            List<Chance> chances = new ArrayList<>(allChances.size());
+            double max = 0;
+            for (Chance chance : allChances) {
+                if (chance.getChance() > 0) {
+                    chances.add(chance);
+                    max += chance.getChance();
+                }
+            }
+            int size = chances.size();
+            patterns = new Pattern[size];
+            probabilities = new double[size];
+            aliases = new int[size];
+
+            // Probabilities scaled so that the average column is 1
+            double[] scaled = new double[size];
+            int[] small = new int[size];
+            int[] large = new int[size];
+            int smallSize = 0;
+            int largeSize = 0;
+            for (int i = 0; i < size; i++) {
+                Chance chance = chances.get(i);
+                patterns[i] = chance.getPattern();
+                aliases[i] = i;
+                scaled[i] = chance.getChance() * size / max;
+                if (scaled[i] < 1) {
+                    small[smallSize++] = i;
+                } else {
+                    large[largeSize++] = i;
+                }
+            }
+
+            // Fill each small column up with a part of a large one
+            while (smallSize > 0 && largeSize > 0) {
+                int less = small[--smallSize];
+                int more = large[--largeSize];
+                probabilities[less] = scaled[less];
+                aliases[less] = more;
+                scaled[more] = (scaled[more] + scaled[less]) - 1;
+                if (scaled[more] < 1) {
+                    small[smallSize++] = more;
+                } else {
+                    large[largeSize++] = more;
+                }
+            }
+
+            // Whatever is left is full, up to rounding errors
+            while (largeSize > 0) {
+                probabilities[large[--largeSize]] = 1;
+            }
+            while (smallSize > 0) {
+                probabilities[small[--smallSize]] = 1;
             }
-            offset += chance.getChance();
         }
 
-        throw new RuntimeException("ProportionalFillPattern");
+        private Pattern pick(long bits) {
+            // The high bits pick the column, the low bits decide against the alias
+            int column = (int) (((bits >>> 32) * patterns.length) >>> 32);
+            double coin = (bits & 0xFFFFFFFFL) * 0x1.0p-32;
+            return patterns[coin < probabilities[column] ? column : aliases[column]];
+        }
     }
 
     private static class Chance {
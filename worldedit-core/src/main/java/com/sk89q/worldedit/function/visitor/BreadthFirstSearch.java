@@ -26,20 +26,21 @@
 import com.sk89q.worldedit.function.operation.RunContext;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.util.Direction;
+import com.sk89q.worldedit.util.collection.SectionedBitSet;
 import com.sk89q.worldedit.util.formatting.text.Component;
 import com.sk89q.worldedit.util.formatting.text.TextComponent;
 import com.sk89q.worldedit.util.formatting.text.TranslatableComponent;
 import com.sk89q.worldedit.util.formatting.text.format.TextColor;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Queue;
-import java.util.Set;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.sk89q.worldedit.math.BitMath.unpackX;
+import static com.sk89q.worldedit.math.BitMath.unpackY;
+import static com.sk89q.worldedit.math.BitMath.unpackZ;
 
 /**
  * Performs a breadth-first search starting from points added with
@@ -51,12 +52,23 @@
  * <p>As an abstract implementation, this class can be used to implement
  * functionality that starts at certain points and extends outward from
  * those points.</p>
+ *
+ * <p>Queued positions are packed into longs, and visited positions are kept
+ * in a {@link SectionedBitSet}, so a search needs a few bits per visited
+ * block. Positions with a Y coordinate outside [-2048, 2048) are never
+ * visited. The search stops between blocks when the {@link RunContext}
+ * says so, and continues when resumed.</p>
  */
 public abstract class BreadthFirstSearch implements Operation {
 
+    private static final int XZ_BITS = 26;
+    private static final int Y_BITS = 12;
+    private static final long XZ_MASK = (1L << XZ_BITS) - 1;
+    private static final long Y_MASK = (1L << Y_BITS) - 1;
+
     private final RegionFunction function;
-    private final Queue<BlockVector3> queue = new ArrayDeque<>();
-    private final Set<BlockVector3> visited = new HashSet<>();
+    private final LongArrayFIFOQueue queue = new LongArrayFIFOQueue();
+    private final SectionedBitSet visited = new SectionedBitSet();
     private final List<BlockVector3> directions = new ArrayList<>();
     private int affected = 0;
 
@@ -124,25 +136,24 @@ protected void addDiagonal() {
      * @param position the position
      */
     public void visit(BlockVector3 position) {
-        if (!visited.contains(position)) {
-            queue.add(position);
-            visited.add(position);
+        int x = position.getX();
+        int y = position.getY();
+        int z = position.getZ();
+        if (isPackable(x, y, z) && visited.add(x, y, z)) {
+            queue.enqueue(pack(x, y, z));
         }
     }
 
-    /**
-     * Try to visit the given 'to' location.
-     *
-     * @param from the origin block
-     * @param to the block under question
-     */
-    private void visit(BlockVector3 from, BlockVector3 to) {
-        if (!visited.contains(to)) {
-            visited.add(to);
-            if (isVisitable(from, to)) {
-                queue.add(to);
-            }
-        }
+    private static boolean isPackable(int x, int y, int z) {
+        // an out of range value overflows into the higher bits
+        return ((x + (1 << (XZ_BITS - 1))) >>> XZ_BITS) == 0
+            && ((z + (1 << (XZ_BITS - 1))) >>> XZ_BITS) == 0
+            && ((y + (1 << (Y_BITS - 1))) >>> Y_BITS) == 0;
+    }
+
+    // the layout of BlockVector3#toLongPackedForm, with a signed Y
+    private static long pack(int x, int y, int z) {
+        return (x & XZ_MASK) | ((z & XZ_MASK) << XZ_BITS) | ((y & Y_MASK) << (XZ_BITS * 2));
     }
 
     /**
@@ -166,15 +177,38 @@ public int getAffected() {
 
     @Override
     public Operation resume(RunContext run) throws WorldEditException {
-        BlockVector3 position;
+        int directionCount = directions.size();
+        int[] offsets = new int[directionCount * 3];
+        for (int i = 0; i < directionCount; i++) {
+            BlockVector3 direction = directions.get(i);
+            offsets[i * 3] = direction.getX();
+            offsets[i * 3 + 1] = direction.getY();
+            offsets[i * 3 + 2] = direction.getZ();
+        }
 
-        while ((position = queue.poll()) != null) {
+        while (!queue.isEmpty()) {
+            long packed = queue.dequeueLong();
+            int x = unpackX(packed);
+            int y = unpackY(packed);
+            int z = unpackZ(packed);
+            BlockVector3 position = BlockVector3.at(x, y, z);
             if (function.apply(position)) {
                 affected++;
             }
 
-            for (BlockVector3 dir : directions) {
-                visit(position, position.add(dir));
+            for (int i = 0; i < offsets.length; i += 3) {
+                int toX = x + offsets[i];
+                int toY = y + offsets[i + 1];
+                int toZ = z + offsets[i + 2];
+                // test the bit set first, so only new positions get a vector
+                if (isPackable(toX, toY, toZ) && visited.add(toX, toY, toZ)
+                    && isVisitable(position, BlockVector3.at(toX, toY, toZ))) {
+                    queue.enqueue(pack(toX, toY, toZ));
+                }
+            }
+
+            if (!run.shouldContinue()) {
+                return queue.isEmpty() ? null : this;
             }
         }
 
@@ -0,0 +1,375 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.visitor;
+
+import com.google.common.collect.ImmutableList;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.function.mask.AbstractBlockMask;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.function.pattern.RandomPattern;
+import com.sk89q.worldedit.function.pattern.RandomStatePattern;
+import com.sk89q.worldedit.internal.block.BlockStateIdAccess;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.formatting.text.Component;
+import com.sk89q.worldedit.util.formatting.text.TextComponent;
+import com.sk89q.worldedit.util.formatting.text.TranslatableComponent;
+import com.sk89q.worldedit.util.formatting.text.format.TextColor;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Sets the blocks of a {@link Region} from a {@link Pattern}, evaluating the
+ * pattern in parallel.
+ *
+ * <p>The region is split into chunk columns. For each column, the positions
+ * in the region that match the optional {@link Mask} are selected on the
+ * thread that resumes this operation, reading the blocks of a block mask in
+ * bulk. The pattern is then evaluated for the selected positions on
+ * a {@link ForkJoinPool} into a buffer of block state IDs, and buffered
+ * columns are written to the target extent on the resuming thread, in
+ * region file and chunk order. Columns are processed in windows of a few
+ * per thread, so a window sees the blocks written by previous windows, but
+ * not those of its own.</p>
+ *
+ * <p>Only the pattern is called from pool threads, so only patterns that
+ * do not read from any extent are supported. See
+ * {@link #isSupported(Pattern)}.</p>
+ */
+public class ParallelRegionVisitor implements Operation {
+
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final Comparator<BlockVector2> REGION_FILE_ORDER =
+        Comparator.<BlockVector2>comparingInt(c -> c.getBlockX() >> 5)
+            .thenComparingInt(c -> c.getBlockZ() >> 5)
+            .thenComparingInt(BlockVector2::getBlockX)
+            .thenComparingInt(BlockVector2::getBlockZ);
+
+    private final Region region;
+    @Nullable
+    private final Mask mask;
+    private final Pattern pattern;
+    private final Extent target;
+    private final ForkJoinPool pool;
+    private final boolean cuboid;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+    private final Deque<BlockVector2> remainingChunks;
+    private final int windowSize;
+    private int[] maskIds = new int[0];
+    private int affected = 0;
+
+    /**
+     * Create a new visitor.
+     *
+     * @param region the region to visit
+     * @param mask a mask that positions must match, or {@code null} to visit all positions
+     * @param pattern the pattern to take blocks from
+     * @param target the extent to set blocks in
+     * @param pool the pool to evaluate on
+     * @throws IllegalArgumentException if the pattern is not {@linkplain #isSupported(Pattern) supported}
+     */
+    public ParallelRegionVisitor(Region region, @Nullable Mask mask, Pattern pattern, Extent target, ForkJoinPool pool) {
+        checkNotNull(region);
+        checkNotNull(pattern);
+        checkNotNull(target);
+        checkNotNull(pool);
+        checkArgument(isSupported(pattern), "Pattern can't be evaluated in parallel: %s", pattern);
+        this.region = region;
+        this.mask = mask;
+        this.pattern = pattern;
+        this.target = target;
+        this.pool = pool;
+        this.cuboid = region instanceof CuboidRegion;
+
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        this.minX = min.getBlockX();
+        this.minY = min.getBlockY();
+        this.minZ = min.getBlockZ();
+        this.maxX = max.getBlockX();
+        this.maxY = max.getBlockY();
+        this.maxZ = max.getBlockZ();
+
+        List<BlockVector2> chunks = new ArrayList<>();
+        for (int cx = minX >> 4; cx <= maxX >> 4; cx++) {
+            for (int cz = minZ >> 4; cz <= maxZ >> 4; cz++) {
+                chunks.add(BlockVector2.at(cx, cz));
+            }
+        }
+        chunks.sort(REGION_FILE_ORDER);
+        this.remainingChunks = new ArrayDeque<>(chunks);
+        this.windowSize = Math.max(1, pool.getParallelism() * CHUNKS_PER_THREAD);
+    }
+
+    /**
+     * Tests whether a pattern can be evaluated by this visitor. Supported
+     * patterns compute their blocks from the position alone, without reading
+     * from any extent: single blocks, random states of a block, and random
+     * patterns of supported patterns.
+     *
+     * @param pattern the pattern
+     * @return true if the pattern is supported
+     */
+    public static boolean isSupported(Pattern pattern) {
+        if (pattern instanceof BlockStateHolder || pattern instanceof RandomStatePattern) {
+            return true;
+        }
+        if (pattern instanceof RandomPattern) {
+            for (Pattern child : ((RandomPattern) pattern).getPatterns()) {
+                if (!isSupported(child)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of affected objects.
+     *
+     * @return the number of affected
+     */
+    public int getAffected() {
+        return affected;
+    }
+
+    @Override
+    public Operation resume(RunContext run) throws WorldEditException {
+        while (!remainingChunks.isEmpty()) {
+            List<ForkJoinTask<ColumnResult>> window = new ArrayList<>(windowSize);
+            for (int i = 0; i < windowSize && !remainingChunks.isEmpty(); i++) {
+                ColumnSelection selection = select(remainingChunks.poll());
+                window.add(pool.submit(() -> evaluate(selection)));
+            }
+            // wait for the whole window before writing, so the selection of the next window sees its blocks
+            List<ColumnResult> results = new ArrayList<>(window.size());
+            for (ForkJoinTask<ColumnResult> task : window) {
+                results.add(task.join());
+            }
+            for (ColumnResult result : results) {
+                commit(result);
+            }
+            if (!run.shouldContinue()) {
+                return remainingChunks.isEmpty() ? null : this;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Select the positions of a chunk column that are in the region and
+     * match the mask. This reads from extents, so it is only called on the
+     * resuming thread.
+     */
+    private ColumnSelection select(BlockVector2 chunk) {
+        int startX = Math.max(minX, chunk.getBlockX() << 4);
+        int endX = Math.min(maxX, (chunk.getBlockX() << 4) + 15);
+        int startZ = Math.max(minZ, chunk.getBlockZ() << 4);
+        int endZ = Math.min(maxZ, (chunk.getBlockZ() << 4) + 15);
+        ColumnSelection selection = new ColumnSelection(chunk, startX, endX, startZ, endZ);
+
+        if (cuboid) {
+            selection.selected.set(0, selection.volume);
+        } else {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = startZ; z <= endZ; z++) {
+                    region.forEachSpan(y, z, startX, endX, (spanY, spanZ, fromX, toX) ->
+                        selection.selected.set(selection.index(fromX, spanY, spanZ), selection.index(toX, spanY, spanZ) + 1));
+                }
+            }
+        }
+
+        if (mask instanceof AbstractBlockMask) {
+            AbstractBlockMask blockMask = (AbstractBlockMask) mask;
+            if (maskIds.length < selection.volume) {
+                maskIds = new int[selection.volume];
+            }
+            blockMask.getExtent().getBlockStateIds(
+                BlockVector3.at(startX, minY, startZ), BlockVector3.at(endX, maxY, endZ), maskIds, 0);
+            BitSet stateIds = blockMask.getStateIds();
+            BitSet selected = selection.selected;
+            for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+                int id = maskIds[i];
+                boolean matches = BlockStateIdAccess.isValidInternalId(id)
+                    ? stateIds.get(id) : mask.test(selection.position(i));
+                if (!matches) {
+                    selected.clear(i);
+                }
+            }
+        } else if (mask != null) {
+            BitSet selected = selection.selected;
+            for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+                if (!mask.test(selection.position(i))) {
+                    selected.clear(i);
+                }
+            }
+        }
+        return selection;
+    }
+
+    /**
+     * Evaluate the pattern for the selected positions of a chunk column.
+     * This runs on pool threads.
+     */
+    private ColumnResult evaluate(ColumnSelection selection) {
+        ColumnResult result = new ColumnResult(selection.chunk);
+        BitSet selected = selection.selected;
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            BlockVector3 position = selection.position(i);
+            result.add(position.getY() - minY, position.getZ() & 15, position.getX() & 15,
+                pattern.applyBlock(position));
+        }
+        return result;
+    }
+
+    private void commit(ColumnResult result) throws WorldEditException {
+        int baseX = result.chunk.getBlockX() << 4;
+        int baseZ = result.chunk.getBlockZ() << 4;
+        for (int i = 0; i < result.size; i++) {
+            int local = result.positions[i];
+            BlockVector3 position = BlockVector3.at(
+                baseX + (local & 15), minY + (local >>> 8), baseZ + ((local >>> 4) & 15));
+            BaseBlock nbtBlock = result.nbtBlocks == null ? null : result.nbtBlocks.get(i);
+            boolean changed;
+            if (nbtBlock != null) {
+                changed = target.setBlock(position, nbtBlock);
+            } else {
+                BlockState state = BlockStateIdAccess.getBlockStateById(result.stateIds[i]);
+                if (state == null) {
+                    throw new IllegalStateException("No state for ID " + result.stateIds[i]);
+                }
+                changed = target.setBlock(position, state);
+            }
+            if (changed) {
+                affected++;
+            }
+        }
+    }
+
+    @Override
+    public void cancel() {
+        remainingChunks.clear();
+    }
+
+    @Override
+    public Iterable<Component> getStatusMessages() {
+        return ImmutableList.of(TranslatableComponent.of(
+                "worldedit.operation.affected.block",
+                TextComponent.of(getAffected())
+        ).color(TextColor.LIGHT_PURPLE));
+    }
+
+    /**
+     * The positions of one chunk column to evaluate the pattern at, indexed
+     * like {@link Extent#getBlockStateIds(BlockVector3, BlockVector3, int[], int)}.
+     */
+    private final class ColumnSelection {
+        private final BlockVector2 chunk;
+        private final int startX;
+        private final int startZ;
+        private final int lengthX;
+        private final int lengthZ;
+        private final int volume;
+        private final BitSet selected;
+
+        private ColumnSelection(BlockVector2 chunk, int startX, int endX, int startZ, int endZ) {
+            this.chunk = chunk;
+            this.startX = startX;
+            this.startZ = startZ;
+            this.lengthX = endX - startX + 1;
+            this.lengthZ = endZ - startZ + 1;
+            this.volume = lengthX * lengthZ * (maxY - minY + 1);
+            this.selected = new BitSet(volume);
+        }
+
+        private int index(int x, int y, int z) {
+            return ((y - minY) * lengthZ + (z - startZ)) * lengthX + (x - startX);
+        }
+
+        private BlockVector3 position(int index) {
+            int x = index % lengthX;
+            int rest = index / lengthX;
+            return BlockVector3.at(startX + x, minY + rest / lengthZ, startZ + rest % lengthZ);
+        }
+    }
+
+    /**
+     * The evaluated blocks of one chunk column, as local positions and
+     * block state IDs.
+     */
+    private static final class ColumnResult {
+        private final BlockVector2 chunk;
+        private int[] positions = new int[256];
+        private int[] stateIds = new int[256];
+        @Nullable
+        private Int2ObjectMap<BaseBlock> nbtBlocks;
+        private int size;
+
+        private ColumnResult(BlockVector2 chunk) {
+            this.chunk = chunk;
+        }
+
+        private void add(int relativeY, int localZ, int localX, BaseBlock block) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+                stateIds = Arrays.copyOf(stateIds, size * 2);
+            }
+            positions[size] = (relativeY << 8) | (localZ << 4) | localX;
+            stateIds[size] = BlockStateIdAccess.getBlockStateId(block.toImmutableState());
+            if (block.hasNbtData() || !BlockStateIdAccess.isValidInternalId(stateIds[size])) {
+                if (nbtBlocks == null) {
+                    nbtBlocks = new Int2ObjectOpenHashMap<>();
+                }
+                nbtBlocks.put(size, block);
+            }
+            size++;
+        }
+    }
+
+}
@@ -0,0 +1,514 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.history.changeset;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+import com.sk89q.worldedit.internal.block.BlockStateIdAccess;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An extension of {@link ArrayListHistory} that stores {@link BlockChange}s
+ * as packed primitives instead of objects.
+ *
+ * <p>Each block change is stored as a long-packed position plus the internal
+ * IDs of the previous and current block states. Changes are appended to a
+ * fixed-size segment; full segments are sealed by delta-encoding and
+ * deflating them. Once the sealed segments held in memory exceed the memory
+ * budget, they are written out to a temporary file and read back on demand
+ * during undo and redo.</p>
+ *
+ * <p>Blocks with NBT data, and positions that cannot be long-packed, are
+ * kept on the heap. Other changes are stored as in {@link ArrayListHistory}.
+ * Call {@link #close()} once the history is no longer needed, to remove
+ * the temporary file. The temporary file of a history that is garbage
+ * collected without being closed is removed the next time any history
+ * spills, or when the JVM exits.</p>
+ */
+public class PackedBlockHistory extends ArrayListHistory implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(PackedBlockHistory.class);
+
+    private static final int SEGMENT_SIZE = 16384;
+    private static final int INITIAL_BUFFER_SIZE = 64;
+    /**
+     * Upper bound on the encoded size of one change: a 10-byte delta varlong
+     * and two 5-byte varints.
+     */
+    private static final int MAX_ENCODED_CHANGE_SIZE = 20;
+
+    private static final ReferenceQueue<PackedBlockHistory> collectedHistories = new ReferenceQueue<>();
+    // keeps the references reachable until they are enqueued or cleared
+    private static final Set<SpillFileReference> spillFiles = ConcurrentHashMap.newKeySet();
+
+    private final long memoryBudget;
+    private final List<Segment> segments = new ArrayList<>();
+    private long sealedBytesInMemory;
+    private final Int2ObjectMap<BaseBlock> nbtPrevious = new Int2ObjectOpenHashMap<>();
+    private final Int2ObjectMap<BaseBlock> nbtCurrent = new Int2ObjectOpenHashMap<>();
+
+    // the active segment grows up to SEGMENT_SIZE, so small edits stay small
+    private long[] positions = new long[INITIAL_BUFFER_SIZE];
+    private int[] previousIds = new int[INITIAL_BUFFER_SIZE];
+    private int[] currentIds = new int[INITIAL_BUFFER_SIZE];
+    private int activeCount;
+    private int packedCount;
+
+    @Nullable
+    private Path spillFile;
+    @Nullable
+    private SpillFileReference spillFileReference;
+    private long spillFileSize;
+    private boolean spillFailed;
+
+    /**
+     * Create a new instance.
+     *
+     * @param memoryBudget the number of bytes of sealed segments to hold in
+     *     memory before spilling them to disk, or -1 to never spill
+     */
+    public PackedBlockHistory(long memoryBudget) {
+        checkArgument(memoryBudget >= -1, "memoryBudget >= -1 required");
+        this.memoryBudget = memoryBudget;
+    }
+
+    @Override
+    public void add(Change change) {
+        checkNotNull(change);
+        if (!isRecordingChanges()) {
+            return;
+        }
+
+        if (change instanceof BlockChange) {
+            BlockChange blockChange = (BlockChange) change;
+            BlockVector3 position = blockChange.getPosition();
+            int previousId = BlockStateIdAccess.getBlockStateId(blockChange.getPrevious().toImmutableState());
+            int currentId = BlockStateIdAccess.getBlockStateId(blockChange.getCurrent().toImmutableState());
+            if (BlockVector3.isLongPackable(position)
+                && BlockStateIdAccess.isValidInternalId(previousId)
+                && BlockStateIdAccess.isValidInternalId(currentId)) {
+                addPacked(position.toLongPackedForm(), blockChange, previousId, currentId);
+                return;
+            }
+        }
+        super.add(change);
+    }
+
+    private void addPacked(long position, BlockChange change, int previousId, int currentId) {
+        int index = packedCount++;
+        if (change.getPrevious().hasNbtData()) {
+            nbtPrevious.put(index, change.getPrevious());
+        }
+        if (change.getCurrent().hasNbtData()) {
+            nbtCurrent.put(index, change.getCurrent());
+        }
+        if (activeCount == positions.length) {
+            int newSize = Math.min(SEGMENT_SIZE, positions.length * 2);
+            positions = Arrays.copyOf(positions, newSize);
+            previousIds = Arrays.copyOf(previousIds, newSize);
+            currentIds = Arrays.copyOf(currentIds, newSize);
+        }
+        positions[activeCount] = position;
+        previousIds[activeCount] = previousId;
+        currentIds[activeCount] = currentId;
+        if (++activeCount == SEGMENT_SIZE) {
+            sealActiveSegment();
+        }
+    }
+
+    private void sealActiveSegment() {
+        byte[] raw = new byte[activeCount * MAX_ENCODED_CHANGE_SIZE];
+        int rawLength = encode(positions, previousIds, currentIds, activeCount, raw);
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] compressed;
+        try {
+            deflater.setInput(raw, 0, rawLength);
+            deflater.finish();
+            compressed = new byte[Math.max(64, rawLength / 2)];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            compressed = Arrays.copyOf(compressed, length);
+        } finally {
+            deflater.end();
+        }
+
+        segments.add(new Segment(activeCount, rawLength, compressed));
+        sealedBytesInMemory += compressed.length;
+        activeCount = 0;
+
+        if (memoryBudget != -1 && !spillFailed && sealedBytesInMemory > memoryBudget) {
+            spill();
+        }
+    }
+
+    /**
+     * Write all sealed segments that are still in memory to the spill file.
+     */
+    private void spill() {
+        try {
+            if (spillFile == null) {
+                deleteCollectedSpillFiles();
+                spillFile = Files.createTempFile("worldedit-history", ".bin");
+                spillFile.toFile().deleteOnExit();
+                spillFileReference = new SpillFileReference(this, spillFile);
+                spillFiles.add(spillFileReference);
+            }
+            try (FileChannel channel = FileChannel.open(spillFile, StandardOpenOption.WRITE)) {
+                for (Segment segment : segments) {
+                    if (segment.data == null) {
+                        continue;
+                    }
+                    // positional writes, so a failed write is overwritten by the next spill
+                    ByteBuffer buffer = ByteBuffer.wrap(segment.data);
+                    long position = spillFileSize;
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                    segment.fileOffset = spillFileSize;
+                    spillFileSize += segment.length;
+                    segment.data = null;
+                    sealedBytesInMemory -= segment.length;
+                }
+            }
+        } catch (IOException e) {
+            // keep the rest in memory, the history is still complete
+            log.warn("Failed to spill edit history to disk, keeping it in memory from now on", e);
+            spillFailed = true;
+        }
+    }
+
+    /**
+     * Delete the spill files of histories that were garbage collected
+     * without being closed.
+     */
+    private static void deleteCollectedSpillFiles() {
+        Reference<? extends PackedBlockHistory> reference;
+        while ((reference = collectedHistories.poll()) != null) {
+            SpillFileReference spillFileReference = (SpillFileReference) reference;
+            spillFiles.remove(spillFileReference);
+            try {
+                Files.deleteIfExists(spillFileReference.file);
+            } catch (IOException e) {
+                log.warn("Failed to delete edit history file " + spillFileReference.file, e);
+            }
+        }
+    }
+
+    private byte[] readCompressed(Segment segment) {
+        if (segment.data != null) {
+            return segment.data;
+        }
+        checkNotNull(spillFile, "Segment was spilled, but there is no spill file");
+        byte[] data = new byte[segment.length];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        try (FileChannel channel = FileChannel.open(spillFile, StandardOpenOption.READ)) {
+            long position = segment.fileOffset;
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, position);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of history file " + spillFile);
+                }
+                position += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read spilled history", e);
+        }
+        return data;
+    }
+
+    private DecodedSegment decode(Segment segment) {
+        byte[] raw = new byte[segment.rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(readCompressed(segment));
+            int length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                length += inflater.inflate(raw, length, raw.length - length);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted history segment", e);
+        } finally {
+            inflater.end();
+        }
+        DecodedSegment decoded = new DecodedSegment(segment.count);
+        decodeInto(raw, decoded);
+        return decoded;
+    }
+
+    private static int encode(long[] positions, int[] previousIds, int[] currentIds, int count, byte[] out) {
+        int offset = 0;
+        long lastPosition = 0;
+        for (int i = 0; i < count; i++) {
+            long delta = positions[i] - lastPosition;
+            lastPosition = positions[i];
+            offset = writeVarLong(out, offset, (delta << 1) ^ (delta >> 63));
+            offset = writeVarLong(out, offset, previousIds[i] & 0xFFFFFFFFL);
+            offset = writeVarLong(out, offset, currentIds[i] & 0xFFFFFFFFL);
+        }
+        return offset;
+    }
+
+    private static int writeVarLong(byte[] out, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static void decodeInto(byte[] raw, DecodedSegment decoded) {
+        int offset = 0;
+        long lastPosition = 0;
+        for (int i = 0; i < decoded.positions.length; i++) {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = raw[offset++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            lastPosition += (value >>> 1) ^ -(value & 1);
+            decoded.positions[i] = lastPosition;
+            for (int k = 0; k < 2; k++) {
+                int id = 0;
+                shift = 0;
+                do {
+                    b = raw[offset++];
+                    id |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                if (k == 0) {
+                    decoded.previousIds[i] = id;
+                } else {
+                    decoded.currentIds[i] = id;
+                }
+            }
+        }
+    }
+
+    private static BaseBlock toBlock(int id, Int2ObjectMap<BaseBlock> nbtBlocks, int index) {
+        if (!nbtBlocks.isEmpty()) {
+            BaseBlock block = nbtBlocks.get(index);
+            if (block != null) {
+                return block;
+            }
+        }
+        BlockState state = BlockStateIdAccess.getBlockStateById(id);
+        if (state == null) {
+            throw new IllegalStateException("No state for ID " + id);
+        }
+        return state.toBaseBlock();
+    }
+
+    private Change createChange(long position, int previousId, int currentId, int index) {
+        return new BlockChange(BlockVector3.fromLongPackedForm(position),
+            toBlock(previousId, nbtPrevious, index),
+            toBlock(currentId, nbtCurrent, index));
+    }
+
+    private DecodedSegment snapshotActive() {
+        DecodedSegment decoded = new DecodedSegment(activeCount);
+        System.arraycopy(positions, 0, decoded.positions, 0, activeCount);
+        System.arraycopy(previousIds, 0, decoded.previousIds, 0, activeCount);
+        System.arraycopy(currentIds, 0, decoded.currentIds, 0, activeCount);
+        return decoded;
+    }
+
+    @Override
+    public Iterator<Change> forwardIterator() {
+        return Iterators.concat(super.forwardIterator(), new PackedIterator(false));
+    }
+
+    @Override
+    public Iterator<Change> backwardIterator() {
+        return Iterators.concat(super.backwardIterator(), new PackedIterator(true));
+    }
+
+    @Override
+    public int size() {
+        return super.size() + packedCount;
+    }
+
+    /**
+     * Delete the spill file, if one was created. This history must not be
+     * used afterwards.
+     *
+     * @throws IOException if the file could not be deleted
+     */
+    @Override
+    public void close() throws IOException {
+        if (spillFileReference != null) {
+            spillFiles.remove(spillFileReference);
+            spillFileReference.clear();
+            spillFileReference = null;
+        }
+        if (spillFile != null) {
+            Path file = spillFile;
+            spillFile = null;
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Get the file that sealed segments have been spilled to.
+     *
+     * @return the spill file, or null if nothing has been spilled or the
+     *     history was closed
+     */
+    @Nullable
+    Path getSpillFile() {
+        return spillFile;
+    }
+
+    /**
+     * Iterates the packed changes, decoding one segment at a time.
+     */
+    private final class PackedIterator extends AbstractIterator<Change> {
+
+        private final boolean reverse;
+        private final int segmentCount = segments.size();
+        // segment index in [0, segmentCount], where segmentCount is the active buffer
+        private int segmentIndex;
+        private int firstIndexOfSegment;
+        private DecodedSegment current;
+        private int cursor;
+
+        private PackedIterator(boolean reverse) {
+            this.reverse = reverse;
+            this.segmentIndex = reverse ? segmentCount + 1 : -1;
+            this.firstIndexOfSegment = reverse ? packedCount : 0;
+        }
+
+        private boolean advanceSegment() {
+            if (reverse) {
+                if (segmentIndex == 0) {
+                    return false;
+                }
+                segmentIndex--;
+            } else {
+                if (current != null) {
+                    firstIndexOfSegment += current.positions.length;
+                }
+                if (segmentIndex == segmentCount) {
+                    return false;
+                }
+                segmentIndex++;
+            }
+            current = segmentIndex == segmentCount ? snapshotActive() : decode(segments.get(segmentIndex));
+            if (reverse) {
+                firstIndexOfSegment -= current.positions.length;
+                cursor = current.positions.length - 1;
+            } else {
+                cursor = 0;
+            }
+            return true;
+        }
+
+        @Override
+        protected Change computeNext() {
+            while (current == null || (reverse ? cursor < 0 : cursor >= current.positions.length)) {
+                if (!advanceSegment()) {
+                    return endOfData();
+                }
+            }
+            int i = reverse ? cursor-- : cursor++;
+            return createChange(current.positions[i], current.previousIds[i], current.currentIds[i],
+                firstIndexOfSegment + i);
+        }
+    }
+
+    private static final class SpillFileReference extends PhantomReference<PackedBlockHistory> {
+        private final Path file;
+
+        private SpillFileReference(PackedBlockHistory history, Path file) {
+            super(history, collectedHistories);
+            this.file = file;
+        }
+    }
+
+    private static final class Segment {
+        private final int count;
+        private final int rawLength;
+        private final int length;
+        @Nullable
+        private byte[] data;
+        private long fileOffset = -1;
+
+        private Segment(int count, int rawLength, byte[] data) {
+            this.count = count;
+            this.rawLength = rawLength;
+            this.length = data.length;
+            this.data = data;
+        }
+    }
+
+    private static final class DecodedSegment {
+        private final long[] positions;
+        private final int[] previousIds;
+        private final int[] currentIds;
+
+        private DecodedSegment(int count) {
+            this.positions = new long[count];
+            this.previousIds = new int[count];
+            this.currentIds = new int[count];
+        }
+    }
+}
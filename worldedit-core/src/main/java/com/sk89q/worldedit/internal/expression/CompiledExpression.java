@@ -26,4 +26,19 @@ public interface CompiledExpression {
 
     Double execute(ExecutionData executionData);
 
+    /**
+     * Execute the expression, requiring it to result in a value.
+     *
+     * @param executionData the execution data
+     * @return the result
+     * @throws EvaluationException if the expression did not result in a value
+     */
+    default double evaluate(ExecutionData executionData) throws EvaluationException {
+        Double result = execute(executionData);
+        if (result == null) {
+            throw new EvaluationException(-1, "Expression must result in a value");
+        }
+        return result;
+    }
+
 }
@@ -34,6 +34,8 @@ public class ExecutionData {
     private final SlotTable slots;
     private final Functions functions;
     private final Instant deadline;
+    private Object boundKey;
+    private LocalSlot.Variable[] boundVariables;
 
     public ExecutionData(SlotTable slots, Functions functions, Instant deadline) {
         this.slots = slots;
@@ -49,6 +51,32 @@ public Functions getFunctions() {
         return requireNonNull(functions, "Cannot use functions in a constant");
     }
 
+    /**
+     * Get the variables with the given names, creating any that do not exist yet.
+     *
+     * <p>The variables bound for the most recent {@code key} are kept, so code
+     * that is evaluated many times with the same data only looks them up once.
+     * Each key must always be passed the same names.</p>
+     *
+     * @param key the owner of the names
+     * @param names the variable names
+     * @return the variables, in the order of the names
+     */
+    public LocalSlot.Variable[] bindVariables(Object key, String[] names) {
+        if (boundKey != key) {
+            SlotTable slots = getSlots();
+            LocalSlot.Variable[] variables = new LocalSlot.Variable[names.length];
+            for (int i = 0; i < names.length; i++) {
+                String name = names[i];
+                variables[i] = slots.initVariable(name)
+                    .orElseThrow(() -> new EvaluationException(-1, "'" + name + "' is not a variable"));
+            }
+            boundVariables = variables;
+            boundKey = key;
+        }
+        return boundVariables;
+    }
+
     public Instant getDeadline() {
         return deadline;
     }
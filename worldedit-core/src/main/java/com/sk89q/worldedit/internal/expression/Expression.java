@@ -23,6 +23,7 @@
 import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.antlr.ExpressionLexer;
 import com.sk89q.worldedit.antlr.ExpressionParser;
+import com.sk89q.worldedit.internal.expression.bytecode.BytecodeCompiler;
 import com.sk89q.worldedit.internal.expression.invoke.ExpressionCompiler;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
@@ -30,7 +31,6 @@
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
-import java.time.Instant;
 import java.util.List;
 import java.util.Objects;
 
@@ -71,19 +71,32 @@ public class Expression {
     private final ExpressionParser.AllStatementsContext root;
     private final Functions functions = Functions.create();
     private final CompiledExpression compiledExpression;
+    private final boolean sharingState;
+    private ExpressionFrame frame;
 
     public static Expression compile(String expression, String... variableNames) throws ExpressionException {
-        return new Expression(expression, variableNames);
+        return compile(expression, ExpressionBackend.METHOD_HANDLES, variableNames);
     }
 
-    private Expression(String expression, String... variableNames) throws ExpressionException {
+    /**
+     * Compile an expression with the given backend.
+     *
+     * @param expression the expression
+     * @param backend the backend to compile with
+     * @param variableNames the names of the input variables
+     * @return the compiled expression
+     * @throws ExpressionException if the expression is invalid
+     */
+    public static Expression compile(String expression, ExpressionBackend backend,
+                                     String... variableNames) throws ExpressionException {
+        return new Expression(expression, backend, variableNames);
+    }
+
+    private Expression(String expression, ExpressionBackend backend, String... variableNames) throws ExpressionException {
         checkNotNull(expression, "Expression cannot be null.");
         checkArgument(!expression.isEmpty(), "Expression cannot be empty string.");
         this.source = expression;
-        slots.putSlot("e", new LocalSlot.Constant(Math.E));
-        slots.putSlot("pi", new LocalSlot.Constant(Math.PI));
-        slots.putSlot("true", new LocalSlot.Constant(1));
-        slots.putSlot("false", new LocalSlot.Constant(0));
+        putConstants(slots);
 
         for (String variableName : variableNames) {
             slots.initVariable(variableName)
@@ -107,7 +120,17 @@ private Expression(String expression, String... variableNames) throws Expression
             throw new ParserException(parser.getState(), e);
         }
         ParseTreeWalker.DEFAULT.walk(new ExpressionValidator(slots.keySet(), functions), root);
-        this.compiledExpression = new ExpressionCompiler().compileExpression(root, functions);
+        SharedStateDetector sharedStateDetector = new SharedStateDetector(providedSlots);
+        ParseTreeWalker.DEFAULT.walk(sharedStateDetector, root);
+        this.sharingState = sharedStateDetector.isShared();
+        // always compiled, as compiling the handles reports the errors of the expression
+        CompiledExpression handles = new ExpressionCompiler().compileExpression(root, functions);
+        if (backend == ExpressionBackend.BYTECODE) {
+            this.compiledExpression = new BytecodeCompiler().compileExpression(root, slots)
+                .orElse(handles);
+        } else {
+            this.compiledExpression = handles;
+        }
     }
 
     public double evaluate(double... values) throws EvaluationException {
@@ -115,22 +138,69 @@ public double evaluate(double... values) throws EvaluationException {
     }
 
     public double evaluate(double[] values, int timeout) throws EvaluationException {
-        for (int i = 0; i < values.length; ++i) {
-            String slotName = providedSlots.get(i);
-            LocalSlot.Variable slot = slots.getVariable(slotName)
-                .orElseThrow(() -> new EvaluationException(-1,
-                    "Tried to assign to non-variable " + slotName + "."));
-
-            slot.setValue(values[i]);
+        if (frame == null) {
+            frame = new ExpressionFrame(compiledExpression, slots, providedSlots, functions, timeout);
+        } else {
+            frame.setTimeout(timeout);
         }
+        return frame.evaluate(values);
+    }
 
-        Instant deadline = Instant.now().plusMillis(timeout);
-        // evaluation exceptions are thrown out of this method
-        Double result = compiledExpression.execute(new ExecutionData(slots, functions, deadline));
-        if (result == null) {
-            throw new EvaluationException(-1, "Expression must result in a value");
+    /**
+     * Create a new frame to evaluate this expression with, using the
+     * configured timeout.
+     *
+     * @return the frame
+     * @see #newFrame(int)
+     */
+    public ExpressionFrame newFrame() {
+        return newFrame(WorldEdit.getInstance().getConfiguration().calculationTimeout);
+    }
+
+    /**
+     * Create a new frame to evaluate this expression with. The frame has
+     * its own variables, separate from {@linkplain #getSlots() the slots}
+     * used by {@link #evaluate(double...)}, so frames may be evaluated on
+     * several threads at once.
+     *
+     * <p>The {@linkplain #getEnvironment() environment} and the
+     * {@code megabuf} buffer are still shared by all frames.</p>
+     *
+     * @param timeout the timeout of each evaluation, in milliseconds
+     * @return the frame
+     */
+    public ExpressionFrame newFrame(int timeout) {
+        SlotTable frameSlots = new SlotTable();
+        putConstants(frameSlots);
+        for (String variableName : providedSlots) {
+            frameSlots.initVariable(variableName);
         }
-        return result;
+        return new ExpressionFrame(compiledExpression, frameSlots, providedSlots, functions, timeout);
+    }
+
+    /**
+     * Check whether evaluations of this expression may depend on each
+     * other, or on the world. This is the case if the expression queries
+     * its {@linkplain #getEnvironment() environment}, uses the
+     * {@code megabuf} buffers, or assigns to a variable other than its
+     * inputs, as the value of such a variable carries over from one
+     * evaluation of a frame to the next.
+     *
+     * <p>An expression that does not share state gives the same results
+     * when separate {@linkplain #newFrame(int) frames} evaluate it in any
+     * order, on any thread.</p>
+     *
+     * @return true if evaluations may share state
+     */
+    public boolean isSharingState() {
+        return sharingState;
+    }
+
+    private static void putConstants(SlotTable slots) {
+        slots.putSlot("e", new LocalSlot.Constant(Math.E));
+        slots.putSlot("pi", new LocalSlot.Constant(Math.PI));
+        slots.putSlot("true", new LocalSlot.Constant(1));
+        slots.putSlot("false", new LocalSlot.Constant(0));
     }
 
     public void optimize() {
@@ -0,0 +1,50 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression;
+
+import com.sk89q.worldedit.WorldEdit;
+
+/**
+ * The ways an {@link Expression} can be compiled.
+ */
+public enum ExpressionBackend {
+    /**
+     * Compile into a tree of method handles, which supports every expression.
+     */
+    METHOD_HANDLES,
+    /**
+     * Compile into a generated class when the expression is simple enough,
+     * which is faster to evaluate but slower to compile. Expressions with
+     * loops, {@code switch}, {@code return}, or functions other than the math
+     * functions are compiled into method handles instead.
+     */
+    BYTECODE;
+
+    /**
+     * Get the backend to compile the expressions of edits with, which is
+     * {@link #METHOD_HANDLES} unless the configuration opts into
+     * {@link #BYTECODE}.
+     *
+     * @return the backend
+     */
+    public static ExpressionBackend fromConfiguration() {
+        return WorldEdit.getInstance().getConfiguration().bytecodeExpressions ? BYTECODE : METHOD_HANDLES;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The variables of one evaluation context of an {@link Expression}.
+ *
+ * <p>A frame is not thread-safe, but any number of frames of the same
+ * expression may be evaluated at once, such as one per thread. Inputs are
+ * bound to indexes when the frame is created, in the order the variable
+ * names were passed to {@link Expression#compile(String, String...)}, so
+ * evaluating a frame does not look up any slot by name or allocate.</p>
+ */
+public final class ExpressionFrame {
+
+    private final CompiledExpression compiledExpression;
+    private final SlotTable slots;
+    private final LocalSlot.Variable[] inputs;
+    private final FrameData data;
+
+    ExpressionFrame(CompiledExpression compiledExpression, SlotTable slots, List<String> inputNames,
+                    Functions functions, int timeout) {
+        this.compiledExpression = compiledExpression;
+        this.slots = slots;
+        this.inputs = new LocalSlot.Variable[inputNames.size()];
+        for (int i = 0; i < inputs.length; i++) {
+            String name = inputNames.get(i);
+            inputs[i] = slots.getVariable(name)
+                .orElseThrow(() -> new EvaluationException(-1,
+                    "Tried to assign to non-variable " + name + "."));
+        }
+        this.data = new FrameData(slots, functions);
+        setTimeout(timeout);
+    }
+
+    /**
+     * Set the time each evaluation may take.
+     *
+     * @param timeout the timeout in milliseconds, or a negative value for no limit
+     */
+    public void setTimeout(int timeout) {
+        data.timeoutNanos = timeout < 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    /**
+     * Get the number of inputs of this frame.
+     *
+     * @return the number of inputs
+     */
+    public int getInputCount() {
+        return inputs.length;
+    }
+
+    /**
+     * Set the value of an input.
+     *
+     * @param index the index of the input
+     * @param value the value
+     */
+    public void set(int index, double value) {
+        inputs[index].setValue(value);
+    }
+
+    /**
+     * Get the variable of an input, to read its value after evaluation.
+     *
+     * @param index the index of the input
+     * @return the variable
+     */
+    public LocalSlot.Variable getInput(int index) {
+        return inputs[index];
+    }
+
+    /**
+     * Get the slots of this frame, to query variables after evaluation.
+     *
+     * @return the slot table
+     */
+    public SlotTable getSlots() {
+        return slots;
+    }
+
+    /**
+     * Evaluate the expression with the current input values.
+     *
+     * @return the result
+     * @throws EvaluationException if evaluation failed
+     */
+    public double evaluate() throws EvaluationException {
+        data.checks = 0;
+        return compiledExpression.evaluate(data);
+    }
+
+    /**
+     * Set the values of the first inputs, then evaluate the expression.
+     *
+     * @param values the input values
+     * @return the result
+     * @throws EvaluationException if evaluation failed
+     */
+    public double evaluate(double... values) throws EvaluationException {
+        for (int i = 0; i < values.length; i++) {
+            inputs[i].setValue(values[i]);
+        }
+        return evaluate();
+    }
+
+    /**
+     * Execution data that checks the clock only every few deadline checks,
+     * starting at the first check of an evaluation. Expressions without
+     * loops never check the clock.
+     */
+    private static final class FrameData extends ExecutionData {
+
+        private static final int CHECK_INTERVAL = 128;
+
+        private long timeoutNanos;
+        private long start;
+        private int checks;
+
+        FrameData(SlotTable slots, Functions functions) {
+            super(slots, functions, Instant.MAX);
+        }
+
+        @Override
+        public void checkDeadline() {
+            if (checks++ % CHECK_INTERVAL != 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (checks == 1) {
+                start = now;
+            } else if (now - start > timeoutNanos) {
+                throw new ExpressionTimeoutException("Calculations exceeded time limit.");
+            }
+        }
+    }
+}
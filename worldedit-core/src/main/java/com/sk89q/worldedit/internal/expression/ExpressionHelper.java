@@ -59,6 +59,51 @@ public static void checkIterations(int iterations, ParserRuleContext ctx) {
         check(iterations <= 256, ctx, "Loop exceeded 256 iterations");
     }
 
+    // Usable AlmostEqual function, based on http://www.cygnus-software.com/papers/comparingfloats/comparingfloats.htm
+    public static boolean almostEqual2sComplement(double a, double b) {
+        // Make sure maxUlps is non-negative and small enough that the
+        // default NAN won't compare as equal to anything.
+        //assert(maxUlps > 0 && maxUlps < 4 * 1024 * 1024); // this is for floats, not doubles
+
+        long aLong = Double.doubleToRawLongBits(a);
+        // Make aLong lexicographically ordered as a twos-complement long
+        if (aLong < 0) {
+            aLong = 0x8000000000000000L - aLong;
+        }
+
+        long bLong = Double.doubleToRawLongBits(b);
+        // Make bLong lexicographically ordered as a twos-complement long
+        if (bLong < 0) {
+            bLong = 0x8000000000000000L - bLong;
+        }
+
+        final long longDiff = Math.abs(aLong - bLong);
+        return longDiff <= 450359963L;
+    }
+
+    private static final double[] factorials = new double[171];
+
+    static {
+        factorials[0] = 1;
+        for (int i = 1; i < factorials.length; ++i) {
+            factorials[i] = factorials[i - 1] * i;
+        }
+    }
+
+    public static double factorial(double x) {
+        final int n = (int) x;
+
+        if (n < 0) {
+            return 0;
+        }
+
+        if (n >= factorials.length) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        return factorials[n];
+    }
+
     public static MethodHandle resolveFunction(Functions functions,
                                                ExpressionParser.FunctionCallContext ctx) {
         String fnName = ctx.name.getText();
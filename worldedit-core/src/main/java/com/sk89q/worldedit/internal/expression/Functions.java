@@ -222,7 +222,10 @@ public void setEnvironment(ExpressionEnvironment environment) {
     }
 
     private static double[] getSubBuffer(Int2ObjectMap<double[]> megabuf, int key) {
-        return megabuf.computeIfAbsent(key, k -> new double[1024]);
+        // frames of one expression may be evaluated on several threads
+        synchronized (megabuf) {
+            return megabuf.computeIfAbsent(key, k -> new double[1024]);
+        }
     }
 
     private static double getBufferItem(final Int2ObjectMap<double[]> megabuf, final int index) {
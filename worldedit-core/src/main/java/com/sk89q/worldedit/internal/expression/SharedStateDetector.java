@@ -0,0 +1,92 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression;
+
+import com.google.common.collect.ImmutableSet;
+import com.sk89q.worldedit.antlr.ExpressionBaseListener;
+import com.sk89q.worldedit.antlr.ExpressionParser;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Finds whether an expression uses state that is shared between
+ * evaluations: the environment, the {@code megabuf} buffers, or variables
+ * other than its inputs, whose values carry over from one evaluation to
+ * the next.
+ */
+class SharedStateDetector extends ExpressionBaseListener {
+
+    private static final Set<String> SHARED_FUNCTIONS = ImmutableSet.of(
+        "query", "queryAbs", "queryRel", "megabuf", "gmegabuf", "closest", "gclosest"
+    );
+    private static final Set<String> ASSIGNING_FUNCTIONS = ImmutableSet.of("rotate", "swap");
+
+    private final Set<String> inputNames = new HashSet<>();
+    private boolean shared;
+
+    SharedStateDetector(Collection<String> inputNames) {
+        this.inputNames.addAll(inputNames);
+    }
+
+    boolean isShared() {
+        return shared;
+    }
+
+    private void assign(String name) {
+        if (!inputNames.contains(name)) {
+            shared = true;
+        }
+    }
+
+    @Override
+    public void enterAssignment(ExpressionParser.AssignmentContext ctx) {
+        assign(ctx.target.getText());
+    }
+
+    @Override
+    public void enterSimpleForStatement(ExpressionParser.SimpleForStatementContext ctx) {
+        assign(ctx.counter.getText());
+    }
+
+    @Override
+    public void enterPreCrementExpr(ExpressionParser.PreCrementExprContext ctx) {
+        assign(ctx.target.getText());
+    }
+
+    @Override
+    public void enterPostCrementExpr(ExpressionParser.PostCrementExprContext ctx) {
+        assign(ctx.target.getText());
+    }
+
+    @Override
+    public void enterFunctionCall(ExpressionParser.FunctionCallContext ctx) {
+        String name = ctx.name.getText();
+        if (SHARED_FUNCTIONS.contains(name)) {
+            shared = true;
+        } else if (ASSIGNING_FUNCTIONS.contains(name)) {
+            // the first two arguments are variables that are written to
+            for (int i = 0; i < Math.min(2, ctx.args.size()); i++) {
+                assign(ctx.args.get(i).getText());
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression.bytecode;
+
+import com.sk89q.worldedit.antlr.ExpressionParser;
+import com.sk89q.worldedit.internal.expression.CompiledExpression;
+import com.sk89q.worldedit.internal.expression.SlotTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compiles an expression from an AST into a generated class.
+ *
+ * <p>Only expressions without loops, {@code switch} or {@code return}, that
+ * call no functions other than the pure math functions, and that only read
+ * variables which are initialized before evaluation are supported. They are
+ * compiled into straight-line code over {@code double} locals, with constant
+ * subexpressions folded and common subexpressions computed once.</p>
+ */
+public class BytecodeCompiler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BytecodeCompiler.class);
+    private static final String CLASS_NAME_PREFIX = BytecodeCompiler.class.getName() + "$Generated";
+    private static final AtomicInteger classCounter = new AtomicInteger();
+
+    /**
+     * Compile an expression, if it is supported.
+     *
+     * @param root the parsed expression
+     * @param slots the slots of the expression before its first evaluation
+     * @return the compiled expression, or empty if it is not supported
+     */
+    public Optional<CompiledExpression> compileExpression(ExpressionParser.AllStatementsContext root,
+                                                          SlotTable slots) {
+        String className = CLASS_NAME_PREFIX + classCounter.incrementAndGet();
+        GraphBuilder.Graph graph;
+        byte[] classFile;
+        try {
+            graph = new GraphBuilder(slots).build(root);
+            classFile = CodeGenerator.generate(className.replace('.', '/'), graph);
+        } catch (UnsupportedExpressionException e) {
+            return Optional.empty();
+        }
+        try {
+            Class<?> type = new GeneratedClassLoader().define(className, classFile);
+            return Optional.of((CompiledExpression) type.getConstructor(String[].class)
+                .newInstance((Object) graph.variables));
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LOGGER.warn("Failed to load a compiled expression, falling back to method handles", e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Loads a single generated class. Each class gets its own loader, so it
+     * can be unloaded as soon as its expression is no longer used.
+     */
+    private static final class GeneratedClassLoader extends ClassLoader {
+
+        GeneratedClassLoader() {
+            super(CompiledExpression.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+}
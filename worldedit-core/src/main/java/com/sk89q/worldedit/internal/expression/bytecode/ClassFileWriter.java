@@ -0,0 +1,316 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression.bytecode;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.GOTO;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.WIDE;
+
+/**
+ * Writes a class file, supporting only what {@link CodeGenerator} needs.
+ *
+ * <p>Classes are written in the Java 5 format, which the JVM verifies by type
+ * inference, so no stack map frames have to be computed.</p>
+ */
+final class ClassFileWriter {
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_PRIVATE = 0x0002;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int VERSION = 49;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_FIELD_REF = 9;
+    private static final int CONSTANT_METHOD_REF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayDataOutput pool = ByteStreams.newDataOutput();
+    private final Map<String, Integer> poolIndexes = new HashMap<>();
+    private int poolCount = 1;
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<byte[]> methods = new ArrayList<>();
+
+    private int constant(String key, int size, Consumer<ByteArrayDataOutput> writer) {
+        Integer index = poolIndexes.get(key);
+        if (index == null) {
+            writer.accept(pool);
+            index = poolCount;
+            poolCount += size;
+            if (poolCount > 0xFFFF) {
+                throw new UnsupportedExpressionException("Too many constants");
+            }
+            poolIndexes.put(key, index);
+        }
+        return index;
+    }
+
+    int utf8(String value) {
+        return constant("utf8 " + value, 1, out -> {
+            out.writeByte(CONSTANT_UTF8);
+            out.writeUTF(value);
+        });
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return constant("class " + internalName, 1, out -> {
+            out.writeByte(CONSTANT_CLASS);
+            out.writeShort(name);
+        });
+    }
+
+    int doubleConstant(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        return constant("double " + bits, 2, out -> {
+            out.writeByte(CONSTANT_DOUBLE);
+            out.writeLong(bits);
+        });
+    }
+
+    private int nameAndType(String name, String descriptor) {
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        return constant("nameAndType " + name + " " + descriptor, 1, out -> {
+            out.writeByte(CONSTANT_NAME_AND_TYPE);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classRef(owner);
+        int nameAndType = nameAndType(name, descriptor);
+        return constant("member" + tag + " " + owner + " " + name + " " + descriptor, 1, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_FIELD_REF, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        return memberRef(CONSTANT_METHOD_REF, owner, name, descriptor);
+    }
+
+    void field(int access, String name, String descriptor) {
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        out.writeShort(access);
+        out.writeShort(utf8(name));
+        out.writeShort(utf8(descriptor));
+        // attributes
+        out.writeShort(0);
+        fields.add(out.toByteArray());
+    }
+
+    void method(int access, String name, String descriptor, Code code) {
+        byte[] bytes = code.toByteArray();
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        out.writeShort(access);
+        out.writeShort(utf8(name));
+        out.writeShort(utf8(descriptor));
+        // attributes: only Code
+        out.writeShort(1);
+        out.writeShort(utf8("Code"));
+        out.writeInt(12 + bytes.length);
+        out.writeShort(code.maxStack);
+        out.writeShort(code.maxLocals);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        // exception table
+        out.writeShort(0);
+        // attributes
+        out.writeShort(0);
+        methods.add(out.toByteArray());
+    }
+
+    byte[] toByteArray(int access, String name, String superName, String... interfaces) {
+        int thisIndex = classRef(name);
+        int superIndex = classRef(superName);
+        int[] interfaceIndexes = Arrays.stream(interfaces).mapToInt(this::classRef).toArray();
+
+        ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        out.writeInt(MAGIC);
+        out.writeShort(0);
+        out.writeShort(VERSION);
+        out.writeShort(poolCount);
+        out.write(pool.toByteArray());
+        out.writeShort(access);
+        out.writeShort(thisIndex);
+        out.writeShort(superIndex);
+        out.writeShort(interfaceIndexes.length);
+        for (int index : interfaceIndexes) {
+            out.writeShort(index);
+        }
+        out.writeShort(fields.size());
+        fields.forEach(out::write);
+        out.writeShort(methods.size());
+        methods.forEach(out::write);
+        // attributes
+        out.writeShort(0);
+        return out.toByteArray();
+    }
+
+    /**
+     * A position in the code that can be jumped to.
+     */
+    static final class Label {
+
+        private int position = -1;
+        private int stack = -1;
+        private final List<int[]> references = new ArrayList<>();
+
+    }
+
+    /**
+     * The code of a method. The operand stack depth is tracked in slots as
+     * instructions are added, to compute the maximum.
+     */
+    static final class Code {
+
+        private byte[] bytes = new byte[64];
+        private int length;
+        private final List<Label> labels = new ArrayList<>();
+        private int stack;
+        private int maxStack;
+        private int maxLocals;
+
+        Code(int maxLocals) {
+            this.maxLocals = maxLocals;
+        }
+
+        private void put(int value) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, length * 2);
+            }
+            bytes[length++] = (byte) value;
+        }
+
+        private void putShort(int value) {
+            put(value >>> 8);
+            put(value);
+        }
+
+        private void adjustStack(int change) {
+            stack += change;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        /**
+         * Add an instruction without operands.
+         */
+        void insn(int opcode, int stackChange) {
+            put(opcode);
+            adjustStack(stackChange);
+        }
+
+        /**
+         * Add an instruction with one byte operand.
+         */
+        void insnByte(int opcode, int operand, int stackChange) {
+            put(opcode);
+            put(operand);
+            adjustStack(stackChange);
+        }
+
+        /**
+         * Add an instruction with a two byte operand, such as a constant pool index.
+         */
+        void insnShort(int opcode, int operand, int stackChange) {
+            put(opcode);
+            putShort(operand);
+            adjustStack(stackChange);
+        }
+
+        /**
+         * Add an instruction that loads or stores a local variable.
+         */
+        void local(int opcode, int index, int size, int stackChange) {
+            if (index > 0xFF) {
+                put(WIDE);
+                insnShort(opcode, index, stackChange);
+            } else {
+                insnByte(opcode, index, stackChange);
+            }
+            maxLocals = Math.max(maxLocals, index + size);
+        }
+
+        /**
+         * Add a jump to the given label.
+         */
+        void jump(int opcode, Label label, int stackChange) {
+            adjustStack(stackChange);
+            label.references.add(new int[] { length, length + 1 });
+            label.stack = stack;
+            put(opcode);
+            putShort(0);
+            if (!labels.contains(label)) {
+                labels.add(label);
+            }
+            if (opcode == GOTO) {
+                // unreachable until the next label
+                stack = 0;
+            }
+        }
+
+        /**
+         * Place the label at the current position.
+         */
+        void mark(Label label) {
+            label.position = length;
+            if (label.stack != -1) {
+                stack = label.stack;
+            }
+        }
+
+        byte[] toByteArray() {
+            if (length > 0xFFFF) {
+                throw new UnsupportedExpressionException("Expression is too large");
+            }
+            for (Label label : labels) {
+                for (int[] reference : label.references) {
+                    int offset = label.position - reference[0];
+                    if (offset != (short) offset) {
+                        throw new UnsupportedExpressionException("Expression is too large");
+                    }
+                    bytes[reference[1]] = (byte) (offset >>> 8);
+                    bytes[reference[1] + 1] = (byte) offset;
+                }
+            }
+            return Arrays.copyOf(bytes, length);
+        }
+    }
+}
@@ -0,0 +1,471 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression.bytecode;
+
+import com.sk89q.worldedit.internal.expression.CompiledExpression;
+import com.sk89q.worldedit.internal.expression.ExecutionData;
+import com.sk89q.worldedit.internal.expression.ExpressionHelper;
+import com.sk89q.worldedit.internal.expression.LocalSlot;
+import com.sk89q.worldedit.internal.expression.bytecode.ClassFileWriter.Code;
+import com.sk89q.worldedit.internal.expression.bytecode.ClassFileWriter.Label;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.collect.Sets.newIdentityHashSet;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.AALOAD;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.ACONST_NULL;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.ALOAD;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.ARETURN;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.ASTORE;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.BIPUSH;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.D2L;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.DADD;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.DCMPG;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.DCMPL;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.DCONST_0;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.DCONST_1;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.DDIV;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.DLOAD;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.DMUL;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.DNEG;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.DREM;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.DSTORE;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.DSUB;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.GETFIELD;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.GOTO;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.ICONST_0;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.IFEQ;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.IFGE;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.IFGT;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.IFLE;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.IFLT;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.IFNE;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.INVOKESPECIAL;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.INVOKESTATIC;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.INVOKEVIRTUAL;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.L2D;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.L2I;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.LCONST_1;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.LDC2_W;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.LNEG;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.LSHL;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.LSHR;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.LSUB;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.PUTFIELD;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.RETURN;
+import static com.sk89q.worldedit.internal.expression.bytecode.Opcodes.SIPUSH;
+
+/**
+ * Generates a class implementing {@link CompiledExpression} from an
+ * expression graph.
+ *
+ * <p>The variables the expression reads are loaded into locals first, then
+ * every node used more than once is computed into a local, in dependency
+ * order. As nodes are pure, computing them early does not change the
+ * result. The remaining nodes are computed where they are used. Finally the
+ * assigned variables are written back and the result is returned.</p>
+ */
+final class CodeGenerator {
+
+    private static final String OBJECT = internalName(Object.class);
+    private static final String STRING_ARRAY = "[" + descriptor(String.class);
+    private static final String VARIABLE = internalName(LocalSlot.Variable.class);
+    private static final String NAMES_FIELD = "names";
+
+    // locals of execute
+    private static final int THIS = 0;
+    private static final int DATA = 1;
+    private static final int VARIABLES = 2;
+    private static final int FIRST_FREE = 3;
+
+    private static String internalName(Class<?> type) {
+        // resolved from the class, so this still works if relocated
+        return type.getName().replace('.', '/');
+    }
+
+    private static String descriptor(Class<?> type) {
+        return "L" + internalName(type) + ";";
+    }
+
+    /**
+     * Generate the class. Its only constructor takes the names of the
+     * graph's variables.
+     *
+     * @param name the internal name of the class
+     * @param graph the graph
+     * @return the class file
+     */
+    static byte[] generate(String name, GraphBuilder.Graph graph) {
+        ClassFileWriter writer = new ClassFileWriter();
+        writer.field(ClassFileWriter.ACC_PRIVATE | ClassFileWriter.ACC_FINAL, NAMES_FIELD, STRING_ARRAY);
+
+        Code init = new Code(2);
+        init.local(ALOAD, THIS, 1, 1);
+        init.insnShort(INVOKESPECIAL, writer.methodRef(OBJECT, "<init>", "()V"), -1);
+        init.local(ALOAD, THIS, 1, 1);
+        init.local(ALOAD, 1, 1, 1);
+        init.insnShort(PUTFIELD, writer.fieldRef(name, NAMES_FIELD, STRING_ARRAY), -2);
+        init.insn(RETURN, 0);
+        writer.method(ClassFileWriter.ACC_PUBLIC, "<init>", "(" + STRING_ARRAY + ")V", init);
+
+        Code execute = new CodeGenerator(writer, name, graph).generateExecute();
+        writer.method(ClassFileWriter.ACC_PUBLIC, "execute",
+            "(" + descriptor(ExecutionData.class) + ")" + descriptor(Double.class), execute);
+
+        return writer.toByteArray(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_FINAL | ClassFileWriter.ACC_SUPER,
+            name, OBJECT, internalName(CompiledExpression.class));
+    }
+
+    private final ClassFileWriter writer;
+    private final String name;
+    private final GraphBuilder.Graph graph;
+    private final Code code = new Code(FIRST_FREE);
+    private final Map<Node, Integer> uses = new IdentityHashMap<>();
+    private final Map<Node, Integer> locals = new IdentityHashMap<>();
+
+    private CodeGenerator(ClassFileWriter writer, String name, GraphBuilder.Graph graph) {
+        this.writer = writer;
+        this.name = name;
+        this.graph = graph;
+    }
+
+    private Code generateExecute() {
+        for (Node value : graph.values) {
+            countUses(value);
+        }
+        countResultUses(graph.result);
+
+        if (graph.variables.length > 0) {
+            code.local(ALOAD, DATA, 1, 1);
+            code.local(ALOAD, THIS, 1, 1);
+            code.local(ALOAD, THIS, 1, 1);
+            code.insnShort(GETFIELD, writer.fieldRef(name, NAMES_FIELD, STRING_ARRAY), 0);
+            code.insnShort(INVOKEVIRTUAL, writer.methodRef(internalName(ExecutionData.class), "bindVariables",
+                "(" + descriptor(Object.class) + STRING_ARRAY + ")[" + descriptor(LocalSlot.Variable.class)), -2);
+            code.local(ASTORE, VARIABLES, 1, -1);
+        }
+
+        List<Node> hoisted = new ArrayList<>();
+        Set<Node> visited = newIdentityHashSet();
+        for (Node value : graph.values) {
+            collectHoisted(value, visited, hoisted);
+        }
+        collectResultHoisted(graph.result, visited, hoisted);
+        int nextLocal = FIRST_FREE;
+        for (Node node : hoisted) {
+            if (node.op == Node.Op.VARIABLE) {
+                loadVariable(node.variable);
+                code.insnShort(INVOKEVIRTUAL, writer.methodRef(VARIABLE, "getValue", "()D"), 1);
+            } else {
+                emitValue(node);
+            }
+            code.local(DSTORE, nextLocal, 2, -2);
+            locals.put(node, nextLocal);
+            nextLocal += 2;
+        }
+
+        for (int i = 0; i < graph.targets.length; i++) {
+            loadVariable(graph.targets[i]);
+            emitValue(graph.values[i]);
+            code.insnShort(INVOKEVIRTUAL, writer.methodRef(VARIABLE, "setValue", "(D)V"), -3);
+        }
+
+        emitResult(graph.result);
+        return code;
+    }
+
+    // Analysis
+
+    private void countUses(Node node) {
+        if (uses.merge(node, 1, Integer::sum) == 1) {
+            for (Node arg : node.args) {
+                countUses(arg);
+            }
+        }
+    }
+
+    private void countResultUses(Node result) {
+        if (result.op == Node.Op.NONE) {
+            return;
+        }
+        if (result.nullable) {
+            countUses(result.args[0]);
+            countResultUses(result.args[1]);
+            countResultUses(result.args[2]);
+        } else {
+            countUses(result);
+        }
+    }
+
+    private boolean isHoisted(Node node) {
+        // variables are read before any is written
+        return node.op == Node.Op.VARIABLE
+            || (node.op != Node.Op.CONSTANT && uses.get(node) > 1);
+    }
+
+    private void collectHoisted(Node node, Set<Node> visited, List<Node> hoisted) {
+        if (!visited.add(node)) {
+            return;
+        }
+        for (Node arg : node.args) {
+            collectHoisted(arg, visited, hoisted);
+        }
+        if (isHoisted(node)) {
+            hoisted.add(node);
+        }
+    }
+
+    private void collectResultHoisted(Node result, Set<Node> visited, List<Node> hoisted) {
+        if (result.op == Node.Op.NONE) {
+            return;
+        }
+        if (result.nullable) {
+            collectHoisted(result.args[0], visited, hoisted);
+            collectResultHoisted(result.args[1], visited, hoisted);
+            collectResultHoisted(result.args[2], visited, hoisted);
+        } else {
+            collectHoisted(result, visited, hoisted);
+        }
+    }
+
+    // Emission
+
+    private void loadVariable(int index) {
+        code.local(ALOAD, VARIABLES, 1, 1);
+        pushInt(index);
+        code.insn(AALOAD, -1);
+    }
+
+    private void pushInt(int value) {
+        if (value <= 5) {
+            code.insn(ICONST_0 + value, 1);
+        } else if (value <= Byte.MAX_VALUE) {
+            code.insnByte(BIPUSH, value, 1);
+        } else {
+            code.insnShort(SIPUSH, value, 1);
+        }
+    }
+
+    private void invokeStatic(Class<?> owner, String method, String descriptor, int stackChange) {
+        code.insnShort(INVOKESTATIC, writer.methodRef(internalName(owner), method, descriptor), stackChange);
+    }
+
+    private void emitValue(Node node) {
+        Integer local = locals.get(node);
+        if (local != null) {
+            code.local(DLOAD, local, 2, 2);
+            return;
+        }
+        switch (node.op) {
+            case CONSTANT:
+                if (Double.doubleToRawLongBits(node.value) == 0) {
+                    code.insn(DCONST_0, 2);
+                } else if (node.value == 1) {
+                    code.insn(DCONST_1, 2);
+                } else {
+                    code.insnShort(LDC2_W, writer.doubleConstant(node.value), 2);
+                }
+                return;
+            case NEGATE:
+                emitValue(node.args[0]);
+                code.insn(DNEG, 0);
+                return;
+            case COMPLEMENT:
+                // ~x == -x - 1
+                emitValue(node.args[0]);
+                code.insn(D2L, 0);
+                code.insn(LNEG, 0);
+                code.insn(LCONST_1, 2);
+                code.insn(LSUB, -2);
+                code.insn(L2D, 0);
+                return;
+            case FACTORIAL:
+                emitValue(node.args[0]);
+                invokeStatic(ExpressionHelper.class, "factorial", "(D)D", 0);
+                return;
+            case ROUND:
+                emitValue(node.args[0]);
+                invokeStatic(Math.class, "round", "(D)J", 0);
+                code.insn(L2D, 0);
+                return;
+            case MATH:
+                emitValue(node.args[0]);
+                invokeStatic(Math.class, node.function, "(D)D", 0);
+                return;
+            case ADD:
+                emitArithmetic(node, DADD);
+                return;
+            case SUBTRACT:
+                emitArithmetic(node, DSUB);
+                return;
+            case MULTIPLY:
+                emitArithmetic(node, DMUL);
+                return;
+            case DIVIDE:
+                emitArithmetic(node, DDIV);
+                return;
+            case MODULO:
+                emitArithmetic(node, DREM);
+                return;
+            case POWER:
+                emitMath(node, "pow");
+                return;
+            case ATAN2:
+                emitMath(node, "atan2");
+                return;
+            case MIN:
+                emitMath(node, "min");
+                return;
+            case MAX:
+                emitMath(node, "max");
+                return;
+            case SHIFT_LEFT:
+                emitShift(node, LSHL);
+                return;
+            case SHIFT_RIGHT:
+                emitShift(node, LSHR);
+                return;
+            case SELECT: {
+                Label ifFalse = new Label();
+                Label end = new Label();
+                emitCondition(node.args[0], ifFalse);
+                emitValue(node.args[1]);
+                code.jump(GOTO, end, 0);
+                code.mark(ifFalse);
+                emitValue(node.args[2]);
+                code.mark(end);
+                return;
+            }
+            default:
+                if (node.op.isBoolean()) {
+                    Label ifFalse = new Label();
+                    Label end = new Label();
+                    emitCondition(node, ifFalse);
+                    code.insn(DCONST_1, 2);
+                    code.jump(GOTO, end, 0);
+                    code.mark(ifFalse);
+                    code.insn(DCONST_0, 2);
+                    code.mark(end);
+                    return;
+                }
+                throw new IllegalStateException("Cannot emit " + node.op + " as a value");
+        }
+    }
+
+    private void emitArithmetic(Node node, int opcode) {
+        emitValue(node.args[0]);
+        emitValue(node.args[1]);
+        code.insn(opcode, -2);
+    }
+
+    private void emitMath(Node node, String method) {
+        emitValue(node.args[0]);
+        emitValue(node.args[1]);
+        invokeStatic(Math.class, method, "(DD)D", -2);
+    }
+
+    private void emitShift(Node node, int opcode) {
+        // (double) ((long) l << (long) r)
+        emitValue(node.args[0]);
+        code.insn(D2L, 0);
+        emitValue(node.args[1]);
+        code.insn(D2L, 0);
+        code.insn(L2I, -1);
+        code.insn(opcode, -1);
+        code.insn(L2D, 0);
+    }
+
+    /**
+     * Jump to {@code ifFalse} if the node is false, i.e. {@code 0}.
+     */
+    private void emitCondition(Node node, Label ifFalse) {
+        if (!locals.containsKey(node)) {
+            // dcmpg/dcmpl push 1/-1 for NaN, making every comparison false
+            switch (node.op) {
+                case LESS:
+                    emitComparison(node, DCMPG, IFGE, ifFalse);
+                    return;
+                case LESS_EQUAL:
+                    emitComparison(node, DCMPG, IFGT, ifFalse);
+                    return;
+                case GREATER:
+                    emitComparison(node, DCMPL, IFLE, ifFalse);
+                    return;
+                case GREATER_EQUAL:
+                    emitComparison(node, DCMPL, IFLT, ifFalse);
+                    return;
+                case EQUAL:
+                    emitComparison(node, DCMPL, IFNE, ifFalse);
+                    return;
+                case NOT_EQUAL:
+                    emitComparison(node, DCMPL, IFEQ, ifFalse);
+                    return;
+                case NEAR:
+                    emitValue(node.args[0]);
+                    emitValue(node.args[1]);
+                    invokeStatic(ExpressionHelper.class, "almostEqual2sComplement", "(DD)Z", -3);
+                    code.jump(IFEQ, ifFalse, -1);
+                    return;
+                case NOT:
+                    // true only if exactly 0
+                    emitValue(node.args[0]);
+                    code.insn(DCONST_0, 2);
+                    code.insn(DCMPL, -3);
+                    code.jump(IFNE, ifFalse, -1);
+                    return;
+                default:
+                    break;
+            }
+        }
+        // false only if exactly 0, NaN is true
+        emitValue(node);
+        code.insn(DCONST_0, 2);
+        code.insn(DCMPL, -3);
+        code.jump(IFEQ, ifFalse, -1);
+    }
+
+    private void emitComparison(Node node, int compare, int jumpIfFalse, Label ifFalse) {
+        emitValue(node.args[0]);
+        emitValue(node.args[1]);
+        code.insn(compare, -3);
+        code.jump(jumpIfFalse, ifFalse, -1);
+    }
+
+    private void emitResult(Node result) {
+        if (result.op == Node.Op.NONE) {
+            code.insn(ACONST_NULL, 1);
+            code.insn(ARETURN, -1);
+        } else if (result.nullable) {
+            Label ifFalse = new Label();
+            emitCondition(result.args[0], ifFalse);
+            emitResult(result.args[1]);
+            code.mark(ifFalse);
+            emitResult(result.args[2]);
+        } else {
+            emitValue(result);
+            invokeStatic(Double.class, "valueOf", "(D)" + descriptor(Double.class), -1);
+            code.insn(ARETURN, -1);
+        }
+    }
+}
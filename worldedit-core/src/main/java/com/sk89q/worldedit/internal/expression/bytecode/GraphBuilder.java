@@ -0,0 +1,726 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression.bytecode;
+
+import com.google.common.collect.ImmutableSet;
+import com.sk89q.worldedit.antlr.ExpressionBaseVisitor;
+import com.sk89q.worldedit.antlr.ExpressionParser;
+import com.sk89q.worldedit.internal.expression.ExpressionHelper;
+import com.sk89q.worldedit.internal.expression.LocalSlot;
+import com.sk89q.worldedit.internal.expression.SlotTable;
+import com.sk89q.worldedit.internal.expression.bytecode.Node.Op;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.RuleNode;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static com.sk89q.worldedit.antlr.ExpressionLexer.ASSIGN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.DIVIDE;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.DIVIDE_ASSIGN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.EQUAL;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.EXCLAMATION_MARK;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.GREATER_THAN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.GREATER_THAN_OR_EQUAL;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.INCREMENT;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.LEFT_SHIFT;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.LESS_THAN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.LESS_THAN_OR_EQUAL;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.MINUS;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.MINUS_ASSIGN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.MODULO;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.MODULO_ASSIGN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.NEAR;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.NOT_EQUAL;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.PLUS;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.PLUS_ASSIGN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.POWER_ASSIGN;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.RIGHT_SHIFT;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.TIMES;
+import static com.sk89q.worldedit.antlr.ExpressionLexer.TIMES_ASSIGN;
+
+/**
+ * Builds the graph of an expression by evaluating it symbolically.
+ *
+ * <p>Each variable holds the node computing its current value. Both branches
+ * of a condition are evaluated, and the variables they assign are merged with
+ * {@link Op#SELECT}. Nodes with constant inputs are folded as they are
+ * created, and equal nodes are interned, which eliminates common
+ * subexpressions.</p>
+ */
+class GraphBuilder extends ExpressionBaseVisitor<Node> {
+
+    /**
+     * The {@code double(double)} methods of {@link Math} exposed as functions.
+     */
+    private static final Set<String> MATH_FUNCTIONS = ImmutableSet.of(
+        "sin", "cos", "tan", "asin", "acos", "atan",
+        "sinh", "cosh", "tanh", "sqrt", "cbrt", "abs",
+        "ceil", "floor", "rint", "exp", "log", "log10"
+    );
+
+    private static final Node NONE = new Node(Op.NONE, 0, -1, null);
+    private static final Node UNDEFINED = new Node(Op.UNDEFINED, 0, -1, null);
+
+    /**
+     * The result of building a graph.
+     */
+    static final class Graph {
+
+        /**
+         * The names of the variables read or written, indexed by {@link Node#variable}.
+         */
+        final String[] variables;
+        /**
+         * The variables assigned by the expression.
+         */
+        final int[] targets;
+        /**
+         * The final values of the {@linkplain #targets assigned variables}.
+         */
+        final Node[] values;
+        /**
+         * The result, which may be {@linkplain Node#nullable nullable}.
+         */
+        final Node result;
+
+        private Graph(String[] variables, int[] targets, Node[] values, Node result) {
+            this.variables = variables;
+            this.targets = targets;
+            this.values = values;
+            this.result = result;
+        }
+    }
+
+    private final SlotTable slots;
+    private final Map<Node, Node> nodes = new HashMap<>();
+    private final List<String> variables = new ArrayList<>();
+    private Map<String, Node> assigned = new LinkedHashMap<>();
+
+    /**
+     * Create a new builder.
+     *
+     * @param slots the slots of the expression before its first evaluation
+     */
+    GraphBuilder(SlotTable slots) {
+        this.slots = slots;
+    }
+
+    Graph build(ExpressionParser.AllStatementsContext root) {
+        Node result = root.accept(this);
+        List<Integer> targets = new ArrayList<>();
+        List<Node> values = new ArrayList<>();
+        for (Map.Entry<String, Node> entry : assigned.entrySet()) {
+            String name = entry.getKey();
+            Node value = entry.getValue();
+            if (value == UNDEFINED) {
+                throw new UnsupportedExpressionException("'" + name + "' is only assigned on some paths");
+            }
+            if (value.op == Op.VARIABLE && variables.get(value.variable).equals(name)) {
+                // unchanged
+                continue;
+            }
+            targets.add(variableIndex(name));
+            values.add(value);
+        }
+        return new Graph(
+            variables.toArray(new String[0]),
+            targets.stream().mapToInt(Integer::intValue).toArray(),
+            values.toArray(new Node[0]),
+            result == null ? NONE : result
+        );
+    }
+
+    private int variableIndex(String name) {
+        int index = variables.indexOf(name);
+        if (index == -1) {
+            index = variables.size();
+            variables.add(name);
+        }
+        return index;
+    }
+
+    // Variables
+
+    /**
+     * Get the value a name has before the expression assigns it.
+     */
+    private Node initialValue(String name) {
+        LocalSlot slot = slots.getSlot(name).orElse(null);
+        if (slot instanceof LocalSlot.Constant) {
+            return constant(slot.getValue());
+        }
+        if (slot instanceof LocalSlot.Variable) {
+            return intern(new Node(Op.VARIABLE, 0, variableIndex(name), null));
+        }
+        return null;
+    }
+
+    private Node read(Token nameToken) {
+        String name = nameToken.getText();
+        Node value = assigned.get(name);
+        if (value == null) {
+            value = initialValue(name);
+        }
+        if (value == null || value == UNDEFINED) {
+            // may or may not be an error, depending on earlier evaluations
+            throw new UnsupportedExpressionException("'" + name + "' may not be initialized");
+        }
+        return value;
+    }
+
+    private Node write(Token nameToken, Node value) {
+        String name = nameToken.getText();
+        if (slots.getSlot(name).filter(LocalSlot.Constant.class::isInstance).isPresent()) {
+            throw new UnsupportedExpressionException("'" + name + "' is not a variable");
+        }
+        assigned.put(name, value);
+        return value;
+    }
+
+    private Node conditional(Node condition, Supplier<Node> trueBranch, Supplier<Node> falseBranch) {
+        if (condition.isConstant()) {
+            return condition.value != 0 ? trueBranch.get() : falseBranch.get();
+        }
+        Map<String, Node> before = assigned;
+        assigned = new LinkedHashMap<>(before);
+        Node trueValue = trueBranch.get();
+        Map<String, Node> afterTrue = assigned;
+        assigned = new LinkedHashMap<>(before);
+        Node falseValue = falseBranch.get();
+        Map<String, Node> afterFalse = assigned;
+
+        assigned = new LinkedHashMap<>();
+        Set<String> names = new LinkedHashSet<>(afterTrue.keySet());
+        names.addAll(afterFalse.keySet());
+        for (String name : names) {
+            Node ifTrue = afterTrue.containsKey(name) ? afterTrue.get(name) : initialValue(name);
+            Node ifFalse = afterFalse.containsKey(name) ? afterFalse.get(name) : initialValue(name);
+            if (ifTrue == null || ifTrue == UNDEFINED || ifFalse == null || ifFalse == UNDEFINED) {
+                assigned.put(name, UNDEFINED);
+            } else {
+                assigned.put(name, select(condition, ifTrue, ifFalse));
+            }
+        }
+        return select(condition, trueValue, falseValue);
+    }
+
+    // Node creation
+
+    private Node intern(Node node) {
+        Node existing = nodes.putIfAbsent(node, node);
+        return existing == null ? node : existing;
+    }
+
+    private Node constant(double value) {
+        return intern(new Node(Op.CONSTANT, value, -1, null));
+    }
+
+    private Node unary(Op op, Node arg) {
+        return unary(op, null, arg);
+    }
+
+    private Node unary(Op op, String function, Node arg) {
+        if (arg.isConstant()) {
+            return constant(fold(op, function, arg.value, 0));
+        }
+        if (op == Op.NEGATE && arg.op == Op.NEGATE) {
+            return arg.args[0];
+        }
+        if (op == Op.NOT && arg.op == Op.NOT && arg.args[0].op.isBoolean()) {
+            return arg.args[0];
+        }
+        return intern(new Node(op, 0, -1, function, arg));
+    }
+
+    private Node binary(Op op, Node left, Node right) {
+        if (left.isConstant() && right.isConstant()) {
+            return constant(fold(op, null, left.value, right.value));
+        }
+        // identities that hold for every double, including -0.0 and NaN
+        switch (op) {
+            case ADD:
+                if (isConstant(right, -0.0)) {
+                    return left;
+                }
+                if (isConstant(left, -0.0)) {
+                    return right;
+                }
+                break;
+            case SUBTRACT:
+                if (isConstant(right, 0.0)) {
+                    return left;
+                }
+                break;
+            case MULTIPLY:
+                if (isConstant(right, 1.0)) {
+                    return left;
+                }
+                if (isConstant(left, 1.0)) {
+                    return right;
+                }
+                break;
+            case DIVIDE:
+                if (isConstant(right, 1.0)) {
+                    return left;
+                }
+                break;
+            default:
+                break;
+        }
+        return intern(new Node(op, 0, -1, null, left, right));
+    }
+
+    private static boolean isConstant(Node node, double value) {
+        return node.isConstant()
+            && Double.doubleToRawLongBits(node.value) == Double.doubleToRawLongBits(value);
+    }
+
+    private Node select(Node condition, Node ifTrue, Node ifFalse) {
+        if (condition.isConstant()) {
+            return condition.value != 0 ? ifTrue : ifFalse;
+        }
+        if (ifTrue == ifFalse) {
+            return ifTrue;
+        }
+        if (condition.op == Op.NOT) {
+            return select(condition.args[0], ifFalse, ifTrue);
+        }
+        return intern(new Node(Op.SELECT, 0, -1, null, condition, ifTrue, ifFalse));
+    }
+
+    private static double fold(Op op, String function, double a, double b) {
+        switch (op) {
+            case NEGATE:
+                return -a;
+            case NOT:
+                return a == 0 ? 1 : 0;
+            case COMPLEMENT:
+                return (double) ~(long) a;
+            case FACTORIAL:
+                return ExpressionHelper.factorial(a);
+            case ROUND:
+                return (double) Math.round(a);
+            case MATH:
+                return math(function, a);
+            case ADD:
+                return a + b;
+            case SUBTRACT:
+                return a - b;
+            case MULTIPLY:
+                return a * b;
+            case DIVIDE:
+                return a / b;
+            case MODULO:
+                return a % b;
+            case POWER:
+                return Math.pow(a, b);
+            case SHIFT_LEFT:
+                return (double) ((long) a << (long) b);
+            case SHIFT_RIGHT:
+                return (double) ((long) a >> (long) b);
+            case LESS:
+                return bool(a < b);
+            case LESS_EQUAL:
+                return bool(a <= b);
+            case GREATER:
+                return bool(a > b);
+            case GREATER_EQUAL:
+                return bool(a >= b);
+            case EQUAL:
+                return bool(a == b);
+            case NOT_EQUAL:
+                return bool(a != b);
+            case NEAR:
+                return bool(ExpressionHelper.almostEqual2sComplement(a, b));
+            case ATAN2:
+                return Math.atan2(a, b);
+            case MIN:
+                return Math.min(a, b);
+            case MAX:
+                return Math.max(a, b);
+            default:
+                throw new IllegalArgumentException("Cannot fold " + op);
+        }
+    }
+
+    private static double bool(boolean value) {
+        return value ? 1 : 0;
+    }
+
+    private static double math(String function, double a) {
+        switch (function) {
+            case "sin":
+                return Math.sin(a);
+            case "cos":
+                return Math.cos(a);
+            case "tan":
+                return Math.tan(a);
+            case "asin":
+                return Math.asin(a);
+            case "acos":
+                return Math.acos(a);
+            case "atan":
+                return Math.atan(a);
+            case "sinh":
+                return Math.sinh(a);
+            case "cosh":
+                return Math.cosh(a);
+            case "tanh":
+                return Math.tanh(a);
+            case "sqrt":
+                return Math.sqrt(a);
+            case "cbrt":
+                return Math.cbrt(a);
+            case "abs":
+                return Math.abs(a);
+            case "ceil":
+                return Math.ceil(a);
+            case "floor":
+                return Math.floor(a);
+            case "rint":
+                return Math.rint(a);
+            case "exp":
+                return Math.exp(a);
+            case "log":
+                return Math.log(a);
+            case "log10":
+                return Math.log10(a);
+            default:
+                throw new IllegalArgumentException("Unknown function " + function);
+        }
+    }
+
+    // Visitor
+
+    private Node value(ParserRuleContext ctx) {
+        Node value = ctx.accept(this);
+        if (value == null || value.nullable) {
+            throw new UnsupportedExpressionException("Expression may not result in a value");
+        }
+        return value;
+    }
+
+    private Node statement(ParserRuleContext ctx) {
+        if (ctx == null) {
+            return NONE;
+        }
+        Node value = ctx.accept(this);
+        return value == null ? NONE : value;
+    }
+
+    @Override
+    public Node visitIfStatement(ExpressionParser.IfStatementContext ctx) {
+        return conditional(value(ctx.condition),
+            () -> statement(ctx.trueBranch),
+            () -> statement(ctx.falseBranch));
+    }
+
+    @Override
+    public Node visitTernaryExpr(ExpressionParser.TernaryExprContext ctx) {
+        return conditional(value(ctx.condition),
+            () -> value(ctx.trueBranch),
+            () -> value(ctx.falseBranch));
+    }
+
+    @Override
+    public Node visitConditionalAndExpr(ExpressionParser.ConditionalAndExprContext ctx) {
+        return conditional(value(ctx.left),
+            () -> value(ctx.right),
+            () -> constant(0));
+    }
+
+    @Override
+    public Node visitConditionalOrExpr(ExpressionParser.ConditionalOrExprContext ctx) {
+        Node left = value(ctx.left);
+        return conditional(left,
+            () -> left,
+            () -> value(ctx.right));
+    }
+
+    @Override
+    public Node visitWhileStatement(ExpressionParser.WhileStatementContext ctx) {
+        throw new UnsupportedExpressionException("Loops are not supported");
+    }
+
+    @Override
+    public Node visitDoStatement(ExpressionParser.DoStatementContext ctx) {
+        throw new UnsupportedExpressionException("Loops are not supported");
+    }
+
+    @Override
+    public Node visitForStatement(ExpressionParser.ForStatementContext ctx) {
+        throw new UnsupportedExpressionException("Loops are not supported");
+    }
+
+    @Override
+    public Node visitSimpleForStatement(ExpressionParser.SimpleForStatementContext ctx) {
+        throw new UnsupportedExpressionException("Loops are not supported");
+    }
+
+    @Override
+    public Node visitBreakStatement(ExpressionParser.BreakStatementContext ctx) {
+        throw new UnsupportedExpressionException("Loops are not supported");
+    }
+
+    @Override
+    public Node visitContinueStatement(ExpressionParser.ContinueStatementContext ctx) {
+        throw new UnsupportedExpressionException("Loops are not supported");
+    }
+
+    @Override
+    public Node visitReturnStatement(ExpressionParser.ReturnStatementContext ctx) {
+        throw new UnsupportedExpressionException("Return is not supported");
+    }
+
+    @Override
+    public Node visitSwitchStatement(ExpressionParser.SwitchStatementContext ctx) {
+        throw new UnsupportedExpressionException("Switch is not supported");
+    }
+
+    @Override
+    public Node visitPostCrementExpr(ExpressionParser.PostCrementExprContext ctx) {
+        Node value = read(ctx.target);
+        write(ctx.target, crement(ctx.op, value));
+        return value;
+    }
+
+    @Override
+    public Node visitPreCrementExpr(ExpressionParser.PreCrementExprContext ctx) {
+        return write(ctx.target, crement(ctx.op, read(ctx.target)));
+    }
+
+    private Node crement(Token op, Node value) {
+        return binary(op.getType() == INCREMENT ? Op.ADD : Op.SUBTRACT, value, constant(1));
+    }
+
+    @Override
+    public Node visitPlusMinusExpr(ExpressionParser.PlusMinusExprContext ctx) {
+        Node value = value(ctx.expr);
+        switch (ctx.op.getType()) {
+            case PLUS:
+                return value;
+            case MINUS:
+                return unary(Op.NEGATE, value);
+            default:
+                throw ExpressionHelper.evalException(ctx, "Invalid text for plus/minus expr: " + ctx.op.getText());
+        }
+    }
+
+    @Override
+    public Node visitNotExpr(ExpressionParser.NotExprContext ctx) {
+        return unary(Op.NOT, value(ctx.expr));
+    }
+
+    @Override
+    public Node visitComplementExpr(ExpressionParser.ComplementExprContext ctx) {
+        return unary(Op.COMPLEMENT, value(ctx.expr));
+    }
+
+    @Override
+    public Node visitPowerExpr(ExpressionParser.PowerExprContext ctx) {
+        return binary(Op.POWER, value(ctx.left), value(ctx.right));
+    }
+
+    @Override
+    public Node visitMultiplicativeExpr(ExpressionParser.MultiplicativeExprContext ctx) {
+        Node left = value(ctx.left);
+        Node right = value(ctx.right);
+        switch (ctx.op.getType()) {
+            case TIMES:
+                return binary(Op.MULTIPLY, left, right);
+            case DIVIDE:
+                return binary(Op.DIVIDE, left, right);
+            case MODULO:
+                return binary(Op.MODULO, left, right);
+            default:
+                throw ExpressionHelper.evalException(ctx, "Invalid text for multiplicative expr: " + ctx.op.getText());
+        }
+    }
+
+    @Override
+    public Node visitAddExpr(ExpressionParser.AddExprContext ctx) {
+        Node left = value(ctx.left);
+        Node right = value(ctx.right);
+        switch (ctx.op.getType()) {
+            case PLUS:
+                return binary(Op.ADD, left, right);
+            case MINUS:
+                return binary(Op.SUBTRACT, left, right);
+            default:
+                throw ExpressionHelper.evalException(ctx, "Invalid text for additive expr: " + ctx.op.getText());
+        }
+    }
+
+    @Override
+    public Node visitShiftExpr(ExpressionParser.ShiftExprContext ctx) {
+        Node left = value(ctx.left);
+        Node right = value(ctx.right);
+        switch (ctx.op.getType()) {
+            case LEFT_SHIFT:
+                return binary(Op.SHIFT_LEFT, left, right);
+            case RIGHT_SHIFT:
+                return binary(Op.SHIFT_RIGHT, left, right);
+            default:
+                throw ExpressionHelper.evalException(ctx, "Invalid text for shift expr: " + ctx.op.getText());
+        }
+    }
+
+    @Override
+    public Node visitRelationalExpr(ExpressionParser.RelationalExprContext ctx) {
+        Node left = value(ctx.left);
+        Node right = value(ctx.right);
+        switch (ctx.op.getType()) {
+            case LESS_THAN:
+                return binary(Op.LESS, left, right);
+            case LESS_THAN_OR_EQUAL:
+                return binary(Op.LESS_EQUAL, left, right);
+            case GREATER_THAN:
+                return binary(Op.GREATER, left, right);
+            case GREATER_THAN_OR_EQUAL:
+                return binary(Op.GREATER_EQUAL, left, right);
+            default:
+                throw ExpressionHelper.evalException(ctx, "Invalid text for relational expr: " + ctx.op.getText());
+        }
+    }
+
+    @Override
+    public Node visitEqualityExpr(ExpressionParser.EqualityExprContext ctx) {
+        Node left = value(ctx.left);
+        Node right = value(ctx.right);
+        switch (ctx.op.getType()) {
+            case EQUAL:
+                return binary(Op.EQUAL, left, right);
+            case NOT_EQUAL:
+                return binary(Op.NOT_EQUAL, left, right);
+            case NEAR:
+                return binary(Op.NEAR, left, right);
+            default:
+                throw ExpressionHelper.evalException(ctx, "Invalid text for equality expr: " + ctx.op.getText());
+        }
+    }
+
+    @Override
+    public Node visitPostfixExpr(ExpressionParser.PostfixExprContext ctx) {
+        Node value = value(ctx.expr);
+        if (ctx.op.getType() == EXCLAMATION_MARK) {
+            return unary(Op.FACTORIAL, value);
+        }
+        throw ExpressionHelper.evalException(ctx,
+            "Invalid text for post-unary expr: " + ctx.op.getText());
+    }
+
+    @Override
+    public Node visitAssignment(ExpressionParser.AssignmentContext ctx) {
+        int type = ctx.assignmentOperator().start.getType();
+        // the argument is evaluated first, as it may assign the target too
+        Node arg = value(ctx.expression());
+        if (type == ASSIGN) {
+            return write(ctx.target, arg);
+        }
+        Node value = read(ctx.target);
+        switch (type) {
+            case POWER_ASSIGN:
+                return write(ctx.target, binary(Op.POWER, value, arg));
+            case TIMES_ASSIGN:
+                return write(ctx.target, binary(Op.MULTIPLY, value, arg));
+            case DIVIDE_ASSIGN:
+                return write(ctx.target, binary(Op.DIVIDE, value, arg));
+            case MODULO_ASSIGN:
+                return write(ctx.target, binary(Op.MODULO, value, arg));
+            case PLUS_ASSIGN:
+                return write(ctx.target, binary(Op.ADD, value, arg));
+            case MINUS_ASSIGN:
+                return write(ctx.target, binary(Op.SUBTRACT, value, arg));
+            default:
+                throw ExpressionHelper.evalException(ctx, "Invalid text for assign expr: "
+                    + ctx.assignmentOperator().getText());
+        }
+    }
+
+    @Override
+    public Node visitFunctionCall(ExpressionParser.FunctionCallContext ctx) {
+        String name = ctx.name.getText();
+        List<Node> args = new ArrayList<>(ctx.args.size());
+        for (ExpressionParser.ExpressionContext arg : ctx.args) {
+            args.add(value(arg));
+        }
+        if (args.size() == 1) {
+            if (name.equals("ln")) {
+                return unary(Op.MATH, "log", args.get(0));
+            }
+            if (MATH_FUNCTIONS.contains(name)) {
+                return unary(Op.MATH, name, args.get(0));
+            }
+            if (name.equals("round")) {
+                return unary(Op.ROUND, args.get(0));
+            }
+        }
+        if (args.size() == 2 && name.equals("atan2")) {
+            return binary(Op.ATAN2, args.get(0), args.get(1));
+        }
+        if (!args.isEmpty() && (name.equals("min") || name.equals("max"))) {
+            Op op = name.equals("min") ? Op.MIN : Op.MAX;
+            Node result = args.get(0);
+            for (int i = 1; i < args.size(); i++) {
+                result = binary(op, result, args.get(i));
+            }
+            return result;
+        }
+        throw new UnsupportedExpressionException("Function '" + name + "' is not supported");
+    }
+
+    @Override
+    public Node visitConstantExpression(ExpressionParser.ConstantExpressionContext ctx) {
+        return constant(Double.parseDouble(ctx.getText()));
+    }
+
+    @Override
+    public Node visitIdExpr(ExpressionParser.IdExprContext ctx) {
+        return read(ctx.source);
+    }
+
+    @Override
+    public Node visitChildren(RuleNode node) {
+        // like the handle compiler, the result is that of the last child with one
+        Node result = defaultResult();
+        int n = node.getChildCount();
+        for (int i = 0; i < n; i++) {
+            ParseTree c = node.getChild(i);
+            if (c instanceof TerminalNode && ((TerminalNode) c).getSymbol().getType() == Token.EOF) {
+                break;
+            }
+            Node childResult = c.accept(this);
+            if (childResult != null) {
+                result = childResult;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression.bytecode;
+
+import java.util.Arrays;
+
+/**
+ * A value in an expression graph.
+ *
+ * <p>Nodes are immutable and interned by {@link GraphBuilder}, so two nodes
+ * computing the same value from the same inputs are the same instance.</p>
+ */
+final class Node {
+
+    enum Op {
+        /**
+         * A constant {@linkplain #value value}.
+         */
+        CONSTANT(0),
+        /**
+         * The value a {@linkplain #variable variable} had when evaluation started.
+         */
+        VARIABLE(0),
+        /**
+         * No value, e.g. from an {@code if} statement without an {@code else}.
+         */
+        NONE(0),
+        /**
+         * A variable that is only assigned on some paths.
+         */
+        UNDEFINED(0),
+        NEGATE(1),
+        NOT(1),
+        COMPLEMENT(1),
+        FACTORIAL(1),
+        ROUND(1),
+        /**
+         * A {@code double(double)} method of {@link Math}, named by {@link #function}.
+         */
+        MATH(1),
+        ADD(2),
+        SUBTRACT(2),
+        MULTIPLY(2),
+        DIVIDE(2),
+        MODULO(2),
+        POWER(2),
+        SHIFT_LEFT(2),
+        SHIFT_RIGHT(2),
+        LESS(2),
+        LESS_EQUAL(2),
+        GREATER(2),
+        GREATER_EQUAL(2),
+        EQUAL(2),
+        NOT_EQUAL(2),
+        NEAR(2),
+        ATAN2(2),
+        MIN(2),
+        MAX(2),
+        /**
+         * The second argument if the first is true, else the third.
+         */
+        SELECT(3);
+
+        final int arity;
+
+        Op(int arity) {
+            this.arity = arity;
+        }
+
+        boolean isBoolean() {
+            switch (this) {
+                case NOT:
+                case LESS:
+                case LESS_EQUAL:
+                case GREATER:
+                case GREATER_EQUAL:
+                case EQUAL:
+                case NOT_EQUAL:
+                case NEAR:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    final Op op;
+    final double value;
+    final int variable;
+    final String function;
+    final Node[] args;
+    final boolean nullable;
+    private final int hash;
+
+    Node(Op op, double value, int variable, String function, Node... args) {
+        this.op = op;
+        this.value = value;
+        this.variable = variable;
+        this.function = function;
+        this.args = args;
+        this.nullable = op == Op.NONE
+            || (op == Op.SELECT && (args[1].nullable || args[2].nullable));
+        int hash = op.hashCode();
+        hash = 31 * hash + Double.hashCode(value);
+        hash = 31 * hash + variable;
+        hash = 31 * hash + (function == null ? 0 : function.hashCode());
+        for (Node arg : args) {
+            hash = 31 * hash + System.identityHashCode(arg);
+        }
+        this.hash = hash;
+    }
+
+    boolean isConstant() {
+        return op == Op.CONSTANT;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Node)) {
+            return false;
+        }
+        Node other = (Node) o;
+        if (op != other.op
+            || Double.doubleToLongBits(value) != Double.doubleToLongBits(other.value)
+            || variable != other.variable
+            || (function == null ? other.function != null : !function.equals(other.function))
+            || args.length != other.args.length) {
+            return false;
+        }
+        // arguments are interned already
+        for (int i = 0; i < args.length; i++) {
+            if (args[i] != other.args[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        switch (op) {
+            case CONSTANT:
+                return String.valueOf(value);
+            case VARIABLE:
+                return "$" + variable;
+            case MATH:
+                return function + Arrays.toString(args);
+            default:
+                return op + Arrays.toString(args);
+        }
+    }
+}
@@ -21,7 +21,6 @@
 
 import com.sk89q.worldedit.antlr.ExpressionBaseVisitor;
 import com.sk89q.worldedit.antlr.ExpressionParser;
-import com.sk89q.worldedit.internal.expression.EvaluationException;
 import com.sk89q.worldedit.internal.expression.ExecutionData;
 import com.sk89q.worldedit.internal.expression.ExpressionHelper;
 import com.sk89q.worldedit.internal.expression.Functions;
@@ -466,70 +465,25 @@ public MethodHandle visitEqualityExpr(ExpressionParser.EqualityExprContext ctx)
                 case NOT_EQUAL:
                     return (l, r) -> ExpressionHandles.boolToDouble(l != r);
                 case NEAR:
-                    return (l, r) -> ExpressionHandles.boolToDouble(almostEqual2sComplement(l, r));
+                    return (l, r) -> ExpressionHandles.boolToDouble(ExpressionHelper.almostEqual2sComplement(l, r));
                 default:
                     throw ExpressionHelper.evalException(ctx, "Invalid text for equality expr: " + ctx.op.getText());
             }
         });
     }
 
-    // Usable AlmostEqual function, based on http://www.cygnus-software.com/papers/comparingfloats/comparingfloats.htm
-    private static boolean almostEqual2sComplement(double a, double b) {
-        // Make sure maxUlps is non-negative and small enough that the
-        // default NAN won't compare as equal to anything.
-        //assert(maxUlps > 0 && maxUlps < 4 * 1024 * 1024); // this is for floats, not doubles
-
-        long aLong = Double.doubleToRawLongBits(a);
-        // Make aLong lexicographically ordered as a twos-complement long
-        if (aLong < 0) {
-            aLong = 0x8000000000000000L - aLong;
-        }
-
-        long bLong = Double.doubleToRawLongBits(b);
-        // Make bLong lexicographically ordered as a twos-complement long
-        if (bLong < 0) {
-            bLong = 0x8000000000000000L - bLong;
-        }
-
-        final long longDiff = Math.abs(aLong - bLong);
-        return longDiff <= 450359963L;
-    }
-
     @Override
     public MethodHandle visitPostfixExpr(ExpressionParser.PostfixExprContext ctx) {
         MethodHandle value = evaluateForValue(ctx.expr);
         if (ctx.op.getType() == EXCLAMATION_MARK) {
             return ExpressionHandles.call(data ->
-                factorial((double) ExpressionHandles.standardInvoke(value, data))
+                ExpressionHelper.factorial((double) ExpressionHandles.standardInvoke(value, data))
             );
         }
         throw ExpressionHelper.evalException(ctx,
             "Invalid text for post-unary expr: " + ctx.op.getText());
     }
 
-    private static final double[] factorials = new double[171];
-
-    static {
-        factorials[0] = 1;
-        for (int i = 1; i < factorials.length; ++i) {
-            factorials[i] = factorials[i - 1] * i;
-        }
-    }
-
-    private static double factorial(double x) throws EvaluationException {
-        final int n = (int) x;
-
-        if (n < 0) {
-            return 0;
-        }
-
-        if (n >= factorials.length) {
-            return Double.POSITIVE_INFINITY;
-        }
-
-        return factorials[n];
-    }
-
     @Override
     public MethodHandle visitAssignment(ExpressionParser.AssignmentContext ctx) {
         int type = extractToken(ctx.assignmentOperator()).getType();
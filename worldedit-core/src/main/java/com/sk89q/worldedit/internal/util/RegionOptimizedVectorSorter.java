@@ -20,6 +20,7 @@
 package com.sk89q.worldedit.internal.util;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
 
 import java.util.ArrayList;
@@ -62,13 +63,39 @@ public class RegionOptimizedVectorSorter {
     private static final long FLIP_REGION_Z_SIGN = 0x1_00_00L << REGION_Z_SHIFT;
 
     private static long key(BlockVector3 elem) {
-        long x = elem.getX();
-        long z = elem.getZ();
-        return (((x << (REGION_X_SHIFT - 9)) & REGION_X_MASK) ^ FLIP_REGION_X_SIGN)
-            | (((z << (REGION_Z_SHIFT - 9)) & REGION_Z_MASK) ^ FLIP_REGION_Z_SIGN)
-            | ((x << (CHUNK_X_SHIFT - 4)) & CHUNK_X_MASK)
-            | ((z << (CHUNK_Z_SHIFT - 4)) & CHUNK_Z_MASK)
-            | (Y_MAX - elem.getY());
+        return key(elem.getX(), elem.getY(), elem.getZ());
+    }
+
+    /**
+     * Get the key that this sorter orders a position by. Comparing keys
+     * with {@link Long#compareUnsigned(long, long)} gives the order of
+     * {@link #sort(List)}.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the sort key
+     */
+    public static long key(int x, int y, int z) {
+        long lx = x;
+        long lz = z;
+        return (((lx << (REGION_X_SHIFT - 9)) & REGION_X_MASK) ^ FLIP_REGION_X_SIGN)
+            | (((lz << (REGION_Z_SHIFT - 9)) & REGION_Z_MASK) ^ FLIP_REGION_Z_SIGN)
+            | ((lx << (CHUNK_X_SHIFT - 4)) & CHUNK_X_MASK)
+            | ((lz << (CHUNK_Z_SHIFT - 4)) & CHUNK_Z_MASK)
+            | (Y_MAX - y);
+    }
+
+    /**
+     * Sort chunk positions in the order this sorter puts their blocks in,
+     * by region file, then chunk.
+     *
+     * @param chunks the chunk positions to sort
+     */
+    public static void sortChunks(List<BlockVector2> chunks) {
+        chunks.sort((a, b) -> Long.compareUnsigned(
+            key(a.getBlockX() << 4, 0, a.getBlockZ() << 4),
+            key(b.getBlockX() << 4, 0, b.getBlockZ() << 4)));
     }
 
     private static final int NUMBER_OF_BITS = 64;
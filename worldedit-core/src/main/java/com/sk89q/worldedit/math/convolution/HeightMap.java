@@ -21,12 +21,18 @@
 
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.MaxChangedBlocksException;
+import com.sk89q.worldedit.WorldEdit;
 import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.internal.util.RegionOptimizedVectorSorter;
+import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.world.block.BlockState;
 import com.sk89q.worldedit.world.block.BlockTypes;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import javax.annotation.Nullable;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -66,18 +72,57 @@ public HeightMap(EditSession session, Region region, @Nullable Mask mask) {
         int minZ = region.getMinimumPoint().getBlockZ();
         int maxY = region.getMaximumPoint().getBlockY();
 
-        // Store current heightmap data
+        // Store current heightmap data, a chunk at a time
         data = new int[width * height];
-        for (int z = 0; z < height; ++z) {
-            for (int x = 0; x < width; ++x) {
-                data[z * width + x] = session.getHighestTerrainBlock(x + minX, z + minZ, minY, maxY, mask);
+        for (int index : getColumnsInChunkOrder()) {
+            int x = index % width;
+            int z = index / width;
+            data[index] = session.getHighestTerrainBlock(x + minX, z + minZ, minY, maxY, mask);
+        }
+    }
+
+    /**
+     * Get the indices of the columns, grouped by chunk, with the chunks in
+     * region file order.
+     *
+     * @return the column indices
+     */
+    private int[] getColumnsInChunkOrder() {
+        int minX = region.getMinimumPoint().getBlockX();
+        int minZ = region.getMinimumPoint().getBlockZ();
+        int maxX = minX + width - 1;
+        int maxZ = minZ + height - 1;
+
+        List<BlockVector2> chunks = new ArrayList<>();
+        for (int cx = minX >> 4; cx <= maxX >> 4; cx++) {
+            for (int cz = minZ >> 4; cz <= maxZ >> 4; cz++) {
+                chunks.add(BlockVector2.at(cx, cz));
+            }
+        }
+        RegionOptimizedVectorSorter.sortChunks(chunks);
+
+        int[] columns = new int[width * height];
+        int i = 0;
+        for (BlockVector2 chunk : chunks) {
+            int startX = Math.max(minX, chunk.getBlockX() << 4);
+            int endX = Math.min(maxX, (chunk.getBlockX() << 4) + 15);
+            int startZ = Math.max(minZ, chunk.getBlockZ() << 4);
+            int endZ = Math.min(maxZ, (chunk.getBlockZ() << 4) + 15);
+            for (int z = startZ; z <= endZ; ++z) {
+                for (int x = startX; x <= endX; ++x) {
+                    columns[i++] = (z - minZ) * width + (x - minX);
+                }
             }
         }
+        return columns;
     }
 
     /**
      * Apply the filter 'iterations' amount times.
      *
+     * <p>Each iteration is filtered in bands of rows on
+     * {@link WorldEdit#getComputePool()}.</p>
+     *
      * @param filter the filter
      * @param iterations the number of iterations
      * @return number of blocks affected
@@ -89,8 +134,9 @@ public int applyFilter(HeightMapFilter filter, int iterations) throws MaxChanged
         int[] newData = new int[data.length];
         System.arraycopy(data, 0, newData, 0, data.length);
 
+        ForkJoinPool pool = WorldEdit.getInstance().getComputePool();
         for (int i = 0; i < iterations; ++i) {
-            newData = filter.filter(newData, width, height);
+            newData = filter.filter(newData, width, height, pool);
         }
 
         return apply(newData);
@@ -116,57 +162,56 @@ public int apply(int[] data) throws MaxChangedBlocksException {
 
         int blocksChanged = 0;
 
-        // Apply heightmap
-        for (int z = 0; z < height; ++z) {
-            for (int x = 0; x < width; ++x) {
-                int index = z * width + x;
-                int curHeight = this.data[index];
+        // Apply heightmap, a chunk at a time
+        for (int index : getColumnsInChunkOrder()) {
+            int x = index % width;
+            int z = index / width;
+            int curHeight = this.data[index];
 
-                // Clamp newHeight within the selection area
-                int newHeight = Math.min(maxY, data[index]);
+            // Clamp newHeight within the selection area
+            int newHeight = Math.min(maxY, data[index]);
 
-                // Offset x,z to be 'real' coordinates
-                int xr = x + originX;
-                int zr = z + originZ;
+            // Offset x,z to be 'real' coordinates
+            int xr = x + originX;
+            int zr = z + originZ;
 
-                // We are keeping the topmost blocks so take that in account for the scale
-                double scale = (double) (curHeight - originY) / (double) (newHeight - originY);
+            // We are keeping the topmost blocks so take that in account for the scale
+            double scale = (double) (curHeight - originY) / (double) (newHeight - originY);
 
-                // Depending on growing or shrinking we need to start at the bottom or top
-                if (newHeight > curHeight) {
-                    // Set the top block of the column to be the same type (this might go wrong with rounding)
-                    BlockState existing = session.getBlock(BlockVector3.at(xr, curHeight, zr));
+            // Depending on growing or shrinking we need to start at the bottom or top
+            if (newHeight > curHeight) {
+                // Set the top block of the column to be the same type (this might go wrong with rounding)
+                BlockState existing = session.getBlock(BlockVector3.at(xr, curHeight, zr));
 
-                    // Skip water/lava
-                    if (existing.getBlockType() != BlockTypes.WATER && existing.getBlockType() != BlockTypes.LAVA) {
-                        session.setBlock(BlockVector3.at(xr, newHeight, zr), existing);
-                        ++blocksChanged;
+                // Skip water/lava
+                if (existing.getBlockType() != BlockTypes.WATER && existing.getBlockType() != BlockTypes.LAVA) {
+                    session.setBlock(BlockVector3.at(xr, newHeight, zr), existing);
+                    ++blocksChanged;
 
-                        // Grow -- start from 1 below top replacing airblocks
-                        for (int y = newHeight - 1 - originY; y >= 0; --y) {
-                            int copyFrom = (int) (y * scale);
-                            session.setBlock(BlockVector3.at(xr, originY + y, zr), session.getBlock(BlockVector3.at(xr, originY + copyFrom, zr)));
-                            ++blocksChanged;
-                        }
-                    }
-                } else if (curHeight > newHeight) {
-                    // Shrink -- start from bottom
-                    for (int y = 0; y < newHeight - originY; ++y) {
+                    // Grow -- start from 1 below top replacing airblocks
+                    for (int y = newHeight - 1 - originY; y >= 0; --y) {
                         int copyFrom = (int) (y * scale);
                         session.setBlock(BlockVector3.at(xr, originY + y, zr), session.getBlock(BlockVector3.at(xr, originY + copyFrom, zr)));
                         ++blocksChanged;
                     }
-
-                    // Set the top block of the column to be the same type
-                    // (this could otherwise go wrong with rounding)
-                    session.setBlock(BlockVector3.at(xr, newHeight, zr), session.getBlock(BlockVector3.at(xr, curHeight, zr)));
+                }
+            } else if (curHeight > newHeight) {
+                // Shrink -- start from bottom
+                for (int y = 0; y < newHeight - originY; ++y) {
+                    int copyFrom = (int) (y * scale);
+                    session.setBlock(BlockVector3.at(xr, originY + y, zr), session.getBlock(BlockVector3.at(xr, originY + copyFrom, zr)));
                     ++blocksChanged;
+                }
 
-                    // Fill rest with air
-                    for (int y = newHeight + 1; y <= curHeight; ++y) {
-                        session.setBlock(BlockVector3.at(xr, y, zr), fillerAir);
-                        ++blocksChanged;
-                    }
+                // Set the top block of the column to be the same type
+                // (this could otherwise go wrong with rounding)
+                session.setBlock(BlockVector3.at(xr, newHeight, zr), session.getBlock(BlockVector3.at(xr, curHeight, zr)));
+                ++blocksChanged;
+
+                // Fill rest with air
+                for (int y = newHeight + 1; y <= curHeight; ++y) {
+                    session.setBlock(BlockVector3.at(xr, y, zr), fillerAir);
+                    ++blocksChanged;
                 }
             }
         }
@@ -19,6 +19,13 @@
 
 package com.sk89q.worldedit.math.convolution;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import javax.annotation.Nullable;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -28,6 +35,9 @@
  */
 public class HeightMapFilter {
 
+    private static final int BANDS_PER_THREAD = 4;
+    private static final int MIN_BAND_SIZE = 16 * 1024;
+
     private Kernel kernel;
 
     /**
@@ -80,50 +90,161 @@ public void setKernel(Kernel kernel) {
      * @return the modified height map
      */
     public int[] filter(int[] inData, int width, int height) {
+        return filter(inData, width, height, null);
+    }
+
+    /**
+     * Filter with a 2D kernel, splitting the rows into bands that are
+     * filtered on a pool.
+     *
+     * @param inData the data
+     * @param width the width
+     * @param height the height
+     * @param pool the pool to filter on, or null to filter on the calling thread
+     *
+     * @return the modified height map
+     */
+    public int[] filter(int[] inData, int width, int height, @Nullable ForkJoinPool pool) {
         checkNotNull(inData);
 
-        int index = 0;
-        float[] matrix = kernel.getKernelData(null);
+        Taps taps = new Taps(kernel, width);
         int[] outData = new int[inData.length];
 
-        int kh = kernel.getHeight();
-        int kw = kernel.getWidth();
-        int kox = kernel.getXOrigin();
-        int koy = kernel.getYOrigin();
+        int bands = pool == null ? 1
+            : Math.min(pool.getParallelism() * BANDS_PER_THREAD, (width * height) / MIN_BAND_SIZE);
+        if (bands <= 1) {
+            filterRows(inData, outData, width, height, 0, height, taps);
+            return outData;
+        }
 
-        for (int y = 0; y < height; ++y) {
-            for (int x = 0; x < width; ++x) {
-                float z = 0;
+        int rowsPerBand = (height + bands - 1) / bands;
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(bands);
+        for (int start = 0; start < height; start += rowsPerBand) {
+            int bandStart = start;
+            int bandEnd = Math.min(height, start + rowsPerBand);
+            tasks.add(pool.submit(() -> filterRows(inData, outData, width, height, bandStart, bandEnd, taps)));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
+        return outData;
+    }
 
-                for (int ky = 0; ky < kh; ++ky) {
-                    int offsetY = y + ky - koy;
-                    // Clamp coordinates inside data
-                    if (offsetY < 0 || offsetY >= height) {
-                        offsetY = y;
-                    }
+    private static void filterRows(int[] inData, int[] outData, int width, int height,
+                                   int startY, int endY, Taps taps) {
+        int count = taps.weights.length;
+        float[] weights = taps.weights;
+        int[] offsets = taps.offsets;
+        int innerStart = Math.min(taps.left, width);
+        int innerEnd = Math.max(innerStart, width - taps.right);
+        float[] sums = new float[width];
+
+        for (int y = startY; y < endY; ++y) {
+            int rowIndex = y * width;
+            if (y < taps.top || y >= height - taps.bottom || innerStart == innerEnd) {
+                for (int x = 0; x < width; ++x) {
+                    outData[rowIndex + x] = filterClamped(inData, width, height, x, y, taps);
+                }
+                continue;
+            }
 
-                    offsetY *= width;
+            // no clamping is needed inside the row, so sum each kernel entry over the
+            // whole row at once, still adding the entries of a position in kernel order
+            Arrays.fill(sums, innerStart, innerEnd, 0);
+            for (int t = 0; t < count; ++t) {
+                float weight = weights[t];
+                int offset = rowIndex + offsets[t];
+                for (int x = innerStart; x < innerEnd; ++x) {
+                    sums[x] += weight * inData[offset + x];
+                }
+            }
+            for (int x = innerStart; x < innerEnd; ++x) {
+                outData[rowIndex + x] = (int) (sums[x] + 0.5);
+            }
+
+            for (int x = 0; x < innerStart; ++x) {
+                outData[rowIndex + x] = filterClamped(inData, width, height, x, y, taps);
+            }
+            for (int x = innerEnd; x < width; ++x) {
+                outData[rowIndex + x] = filterClamped(inData, width, height, x, y, taps);
+            }
+        }
+    }
+
+    private static int filterClamped(int[] inData, int width, int height, int x, int y, Taps taps) {
+        float z = 0;
+        for (int t = 0; t < taps.weights.length; ++t) {
+            int offsetY = y + taps.dy[t];
+            // Clamp coordinates inside data
+            if (offsetY < 0 || offsetY >= height) {
+                offsetY = y;
+            }
 
-                    int matrixOffset = ky * kw;
-                    for (int kx = 0; kx < kw; ++kx) {
-                        float f = matrix[matrixOffset + kx];
-                        if (f == 0) {
-                            continue;
-                        }
+            int offsetX = x + taps.dx[t];
+            // Clamp coordinates inside data
+            if (offsetX < 0 || offsetX >= width) {
+                offsetX = x;
+            }
 
-                        int offsetX = x + kx - kox;
-                        // Clamp coordinates inside data
-                        if (offsetX < 0 || offsetX >= width) {
-                            offsetX = x;
-                        }
+            z += taps.weights[t] * inData[offsetY * width + offsetX];
+        }
+        return (int) (z + 0.5);
+    }
 
-                        z += f * inData[offsetY + offsetX];
+    /**
+     * The non-zero entries of a kernel, in the order they are summed.
+     */
+    private static final class Taps {
+
+        private final float[] weights;
+        private final int[] dx;
+        private final int[] dy;
+        private final int[] offsets;
+        // how far the kernel reaches in each direction
+        private final int left;
+        private final int right;
+        private final int top;
+        private final int bottom;
+
+        Taps(Kernel kernel, int width) {
+            float[] matrix = kernel.getKernelData(null);
+            int kw = kernel.getWidth();
+            int kh = kernel.getHeight();
+            int kox = kernel.getXOrigin();
+            int koy = kernel.getYOrigin();
+
+            int count = 0;
+            for (float f : matrix) {
+                if (f != 0) {
+                    count++;
+                }
+            }
+            weights = new float[count];
+            dx = new int[count];
+            dy = new int[count];
+            offsets = new int[count];
+
+            int t = 0;
+            for (int ky = 0; ky < kh; ++ky) {
+                for (int kx = 0; kx < kw; ++kx) {
+                    float f = matrix[ky * kw + kx];
+                    if (f == 0) {
+                        continue;
                     }
+                    weights[t] = f;
+                    dx[t] = kx - kox;
+                    dy[t] = ky - koy;
+                    offsets[t] = dy[t] * width + dx[t];
+                    t++;
                 }
-                outData[index++] = (int) (z + 0.5);
             }
+
+            left = kox;
+            right = kw - 1 - kox;
+            top = koy;
+            bottom = kh - 1 - koy;
         }
-        return outData;
+
     }
 
 }
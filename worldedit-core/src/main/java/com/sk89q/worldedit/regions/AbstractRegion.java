@@ -31,6 +31,7 @@
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.function.IntPredicate;
 
 public abstract class AbstractRegion implements Region {
 
@@ -161,18 +162,14 @@ public Set<BlockVector2> getChunks() {
         final BlockVector3 max = getMaximumPoint();
 
         final int minY = min.getBlockY();
-
-        for (int x = min.getBlockX(); x <= max.getBlockX(); ++x) {
-            for (int z = min.getBlockZ(); z <= max.getBlockZ(); ++z) {
-                if (!contains(BlockVector3.at(x, minY, z))) {
-                    continue;
-                }
-
-                chunks.add(BlockVector2.at(
-                    x >> ChunkStore.CHUNK_SHIFTS,
-                    z >> ChunkStore.CHUNK_SHIFTS
-                ));
+        final SpanConsumer consumer = (y, z, minX, maxX) -> {
+            for (int chunkX = minX >> ChunkStore.CHUNK_SHIFTS; chunkX <= maxX >> ChunkStore.CHUNK_SHIFTS; ++chunkX) {
+                chunks.add(BlockVector2.at(chunkX, z >> ChunkStore.CHUNK_SHIFTS));
             }
+        };
+
+        for (int z = min.getBlockZ(); z <= max.getBlockZ(); ++z) {
+            forEachSpan(minY, z, min.getBlockX(), max.getBlockX(), consumer);
         }
 
         return chunks;
@@ -185,18 +182,15 @@ public Set<BlockVector3> getChunkCubes() {
         final BlockVector3 min = getMinimumPoint();
         final BlockVector3 max = getMaximumPoint();
 
-        for (int x = min.getBlockX(); x <= max.getBlockX(); ++x) {
-            for (int y = min.getBlockY(); y <= max.getBlockY(); ++y) {
-                for (int z = min.getBlockZ(); z <= max.getBlockZ(); ++z) {
-                    if (!contains(BlockVector3.at(x, y, z))) {
-                        continue;
+        for (int chunkX = min.getBlockX() >> ChunkStore.CHUNK_SHIFTS; chunkX <= max.getBlockX() >> ChunkStore.CHUNK_SHIFTS; ++chunkX) {
+            for (int chunkY = min.getBlockY() >> ChunkStore.CHUNK_SHIFTS; chunkY <= max.getBlockY() >> ChunkStore.CHUNK_SHIFTS; ++chunkY) {
+                for (int chunkZ = min.getBlockZ() >> ChunkStore.CHUNK_SHIFTS; chunkZ <= max.getBlockZ() >> ChunkStore.CHUNK_SHIFTS; ++chunkZ) {
+                    BlockVector3 chunk = BlockVector3.at(chunkX, chunkY, chunkZ);
+                    BlockVector3 from = chunk.shl(ChunkStore.CHUNK_SHIFTS).getMaximum(min);
+                    BlockVector3 to = chunk.add(1, 1, 1).shl(ChunkStore.CHUNK_SHIFTS).subtract(1, 1, 1).getMinimum(max);
+                    if (containsAny(from, to)) {
+                        chunks.add(chunk);
                     }
-
-                    chunks.add(BlockVector3.at(
-                        x >> ChunkStore.CHUNK_SHIFTS,
-                        y >> ChunkStore.CHUNK_SHIFTS,
-                        z >> ChunkStore.CHUNK_SHIFTS
-                    ));
                 }
             }
         }
@@ -204,8 +198,50 @@ public Set<BlockVector3> getChunkCubes() {
         return chunks;
     }
 
+    /**
+     * Check whether any block of a cuboid is in this region.
+     *
+     * @param from the minimum point of the cuboid
+     * @param to the maximum point of the cuboid
+     * @return true if a block of the cuboid is in the region
+     */
+    private boolean containsAny(BlockVector3 from, BlockVector3 to) {
+        final boolean[] found = new boolean[1];
+        final SpanConsumer consumer = (y, z, minX, maxX) -> found[0] = true;
+        for (int y = from.getBlockY(); y <= to.getBlockY() && !found[0]; ++y) {
+            for (int z = from.getBlockZ(); z <= to.getBlockZ() && !found[0]; ++z) {
+                forEachSpan(y, z, from.getBlockX(), to.getBlockX(), consumer);
+            }
+        }
+        return found[0];
+    }
+
     // Sub-class utilities
 
+    /**
+     * Pass the span of a row that is a single run of blocks, given X bounds
+     * that may be slightly too wide, such as bounds computed in floating
+     * point. The bounds are narrowed until both ends are in the region.
+     *
+     * @param y the Y coordinate of the row
+     * @param z the Z coordinate of the row
+     * @param from a lower bound of the X coordinates of the span
+     * @param to an upper bound of the X coordinates of the span
+     * @param contains tests whether the block at an X coordinate of the row is in the region
+     * @param consumer the consumer of the span
+     */
+    protected static void trimSpan(int y, int z, int from, int to, IntPredicate contains, SpanConsumer consumer) {
+        while (from <= to && !contains.test(from)) {
+            from++;
+        }
+        while (to > from && !contains.test(to)) {
+            to--;
+        }
+        if (from <= to) {
+            consumer.accept(y, z, from, to);
+        }
+    }
+
     protected final int getWorldMinY() {
         return world == null ? 0 : world.getMinY();
     }
@@ -199,6 +199,9 @@ public boolean addVertex(BlockVector3 vertex) {
             triangles.add(edge.createTriangle(vertexD));
         }
 
+        // The last triangle may have been removed from the mesh
+        lastTriangle = null;
+
         if (!vertexBacklog.isEmpty()) {
             // Remove the new vertex
             vertices.remove(vertex);
@@ -290,6 +293,42 @@ public boolean contains(BlockVector3 position) {
         return containsRaw(position.toVector3());
     }
 
+    @Override
+    public void forEachSpan(int y, int z, int minX, int maxX, SpanConsumer consumer) {
+        if (!isDefined()) {
+            return;
+        }
+        final BlockVector3 min = getMinimumPoint();
+        final BlockVector3 max = getMaximumPoint();
+        if (y < min.getBlockY() || y > max.getBlockY() || z < min.getBlockZ() || z > max.getBlockZ()) {
+            return;
+        }
+
+        // The row is the part of the line that is below every triangle
+        double from = Math.max(minX, min.getBlockX());
+        double to = Math.min(maxX, max.getBlockX());
+        for (Triangle triangle : triangles) {
+            Vector3 normal = triangle.getNormal();
+            double rest = triangle.getMaxDotProduct() - normal.getY() * y - normal.getZ() * z;
+            if (normal.getX() > 0) {
+                to = Math.min(to, rest / normal.getX());
+            } else if (normal.getX() < 0) {
+                from = Math.max(from, rest / normal.getX());
+            } else if (rest < -1e-9 * (1 + Math.abs(triangle.getMaxDotProduct()))) {
+                return;
+            }
+            if (from > to + 2) {
+                return;
+            }
+        }
+
+        // One block of slack on each side makes up for rounding. The blocks
+        // in between are still tested, as points on a face may round either way.
+        int fromX = Math.max(Math.max(minX, min.getBlockX()), (int) Math.floor(from) - 1);
+        int toX = Math.min(Math.min(maxX, max.getBlockX()), (int) Math.ceil(to) + 1);
+        super.forEachSpan(y, z, fromX, toX, consumer);
+    }
+
     private boolean containsRaw(Vector3 pt) {
         if (lastTriangle != null && lastTriangle.above(pt)) {
             return false;
@@ -325,6 +325,20 @@ public boolean contains(BlockVector3 position) {
         return position.containedWithin(min, max);
     }
 
+    @Override
+    public void forEachSpan(int y, int z, int minX, int maxX, SpanConsumer consumer) {
+        BlockVector3 min = getMinimumPoint();
+        BlockVector3 max = getMaximumPoint();
+        if (y < min.getBlockY() || y > max.getBlockY() || z < min.getBlockZ() || z > max.getBlockZ()) {
+            return;
+        }
+        int from = Math.max(minX, min.getBlockX());
+        int to = Math.min(maxX, max.getBlockX());
+        if (from <= to) {
+            consumer.accept(y, z, from, to);
+        }
+    }
+
     @Override
     public Iterator<BlockVector3> iterator() {
         return new Iterator<BlockVector3>() {
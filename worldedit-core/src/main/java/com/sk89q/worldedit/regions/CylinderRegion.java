@@ -284,7 +284,30 @@ public boolean contains(BlockVector3 position) {
             return false;
         }
 
-        return position.toBlockVector2().subtract(center).toVector2().divide(radius).lengthSq() <= 1;
+        return contains(position.getBlockX(), position.getBlockZ());
+    }
+
+    private boolean contains(int x, int z) {
+        double dx = (x - center.getBlockX()) / radius.getX();
+        double dz = (z - center.getBlockZ()) / radius.getZ();
+        return dx * dx + dz * dz <= 1;
+    }
+
+    @Override
+    public void forEachSpan(int y, int z, int minX, int maxX, SpanConsumer consumer) {
+        if (y < minY || y > maxY) {
+            return;
+        }
+        double dz = (z - center.getBlockZ()) / radius.getZ();
+        double rest = 1 - dz * dz;
+        if (rest < -1e-9) {
+            return;
+        }
+        // One block of slack on each side makes up for rounding
+        double halfWidth = radius.getX() * Math.sqrt(Math.max(0, rest));
+        int from = Math.max(minX, (int) Math.floor(center.getBlockX() - halfWidth) - 1);
+        int to = Math.min(maxX, (int) Math.ceil(center.getBlockX() + halfWidth) + 1);
+        trimSpan(y, z, from, to, x -> contains(x, z), consumer);
     }
 
 
@@ -191,18 +191,14 @@ public Set<BlockVector2> getChunks() {
         final BlockVector3 min = getMinimumPoint();
         final BlockVector3 max = getMaximumPoint();
         final int centerY = center.getBlockY();
-
-        for (int x = min.getBlockX(); x <= max.getBlockX(); ++x) {
-            for (int z = min.getBlockZ(); z <= max.getBlockZ(); ++z) {
-                if (!contains(BlockVector3.at(x, centerY, z))) {
-                    continue;
-                }
-
-                chunks.add(BlockVector2.at(
-                    x >> ChunkStore.CHUNK_SHIFTS,
-                    z >> ChunkStore.CHUNK_SHIFTS
-                ));
+        final SpanConsumer consumer = (y, z, minX, maxX) -> {
+            for (int chunkX = minX >> ChunkStore.CHUNK_SHIFTS; chunkX <= maxX >> ChunkStore.CHUNK_SHIFTS; ++chunkX) {
+                chunks.add(BlockVector2.at(chunkX, z >> ChunkStore.CHUNK_SHIFTS));
             }
+        };
+
+        for (int z = min.getBlockZ(); z <= max.getBlockZ(); ++z) {
+            forEachSpan(centerY, z, min.getBlockX(), max.getBlockX(), consumer);
         }
 
         return chunks;
@@ -210,7 +206,29 @@ public Set<BlockVector2> getChunks() {
 
     @Override
     public boolean contains(BlockVector3 position) {
-        return position.subtract(center).toVector3().divide(radius).lengthSq() <= 1;
+        return contains(position.getBlockX(), position.getBlockY(), position.getBlockZ());
+    }
+
+    private boolean contains(int x, int y, int z) {
+        double dx = (x - center.getBlockX()) / radius.getX();
+        double dy = (y - center.getBlockY()) / radius.getY();
+        double dz = (z - center.getBlockZ()) / radius.getZ();
+        return dx * dx + dy * dy + dz * dz <= 1;
+    }
+
+    @Override
+    public void forEachSpan(int y, int z, int minX, int maxX, SpanConsumer consumer) {
+        double dy = (y - center.getBlockY()) / radius.getY();
+        double dz = (z - center.getBlockZ()) / radius.getZ();
+        double rest = 1 - dy * dy - dz * dz;
+        if (rest < -1e-9) {
+            return;
+        }
+        // One block of slack on each side makes up for rounding
+        double halfWidth = radius.getX() * Math.sqrt(Math.max(0, rest));
+        int from = Math.max(minX, (int) Math.floor(center.getBlockX() - halfWidth) - 1);
+        int to = Math.min(maxX, (int) Math.ceil(center.getBlockX() + halfWidth) + 1);
+        trimSpan(y, z, from, to, x -> contains(x, y, z), consumer);
     }
 
     /**
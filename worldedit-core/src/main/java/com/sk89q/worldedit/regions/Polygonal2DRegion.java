@@ -25,10 +25,12 @@
 import com.sk89q.worldedit.regions.iterator.FlatRegionIterator;
 import com.sk89q.worldedit.util.formatting.text.TranslatableComponent;
 import com.sk89q.worldedit.world.World;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -317,6 +319,18 @@ public static boolean contains(List<BlockVector2> points, int minY, int maxY, Bl
             return false;
         }
 
+        return contains(points, targetX, targetZ);
+    }
+
+    /**
+     * Checks to see if a column is inside a polygon of at least three points.
+     *
+     * @param points a list of points
+     * @param targetX the X coordinate of the column
+     * @param targetZ the Z coordinate of the column
+     * @return true if the given polygon contains the given column
+     */
+    private static boolean contains(List<BlockVector2> points, int targetX, int targetZ) {
         boolean inside = false;
         int npoints = points.size();
         int xNew;
@@ -367,6 +381,68 @@ public static boolean contains(List<BlockVector2> points, int minY, int maxY, Bl
         return inside;
     }
 
+    @Override
+    public void forEachSpan(int y, int z, int minX, int maxX, SpanConsumer consumer) {
+        if (points.size() < 3 || y < minY || y > maxY || z < min.getBlockZ() || z > max.getBlockZ()) {
+            return;
+        }
+        minX = Math.max(minX, min.getBlockX());
+        maxX = Math.min(maxX, max.getBlockX());
+        if (minX > maxX) {
+            return;
+        }
+
+        // Whether a column is in the polygon only changes at the X of a
+        // point, or where an edge crosses the row
+        IntArrayList critical = new IntArrayList();
+        critical.add(minX);
+        BlockVector2 previous = points.get(points.size() - 1);
+        for (BlockVector2 point : points) {
+            critical.add(point.getBlockX());
+            int z1 = previous.getBlockZ();
+            int z2 = point.getBlockZ();
+            if (z1 != z2 && Math.min(z1, z2) <= z && z <= Math.max(z1, z2)) {
+                double crossing = previous.getBlockX()
+                    + (double) (z - z1) * (point.getBlockX() - previous.getBlockX()) / (z2 - z1);
+                int floor = (int) Math.floor(crossing);
+                critical.add(floor);
+                critical.add(floor + 1);
+            }
+            previous = point;
+        }
+        int[] xs = critical.toIntArray();
+        Arrays.sort(xs);
+
+        // Test each critical column, and one column of each gap between them
+        int start = Integer.MIN_VALUE;
+        for (int i = 0; i < xs.length; i++) {
+            int x = xs[i];
+            if (x < minX || x > maxX || (i > 0 && x == xs[i - 1])) {
+                continue;
+            }
+            int next = maxX + 1;
+            for (int j = i + 1; j < xs.length; j++) {
+                if (xs[j] > x) {
+                    next = Math.min(next, xs[j]);
+                    break;
+                }
+            }
+            for (int from = x; from < next; from = from == x ? x + 1 : next) {
+                if (contains(points, from, z)) {
+                    if (start == Integer.MIN_VALUE) {
+                        start = from;
+                    }
+                } else if (start != Integer.MIN_VALUE) {
+                    consumer.accept(y, z, start, from - 1);
+                    start = Integer.MIN_VALUE;
+                }
+            }
+        }
+        if (start != Integer.MIN_VALUE) {
+            consumer.accept(y, z, start, maxX);
+        }
+    }
+
     /**
      * Return the number of points.
      *
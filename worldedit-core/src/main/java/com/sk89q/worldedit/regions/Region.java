@@ -139,6 +139,85 @@ default long getVolume() {
      */
     boolean contains(BlockVector3 position);
 
+    /**
+     * Visit the blocks of a row of this region along the X axis, as spans of
+     * consecutive blocks.
+     *
+     * <p>Only blocks with an X coordinate from {@code minX} to {@code maxX}
+     * are visited. Spans are passed in increasing X order, and two spans
+     * never touch. The default implementation tests every block with
+     * {@link #contains(BlockVector3)}; regions that can compute their spans
+     * directly should override it.</p>
+     *
+     * @param y the Y coordinate of the row
+     * @param z the Z coordinate of the row
+     * @param minX the lowest X coordinate to visit
+     * @param maxX the highest X coordinate to visit
+     * @param consumer the consumer of the spans
+     */
+    default void forEachSpan(int y, int z, int minX, int maxX, SpanConsumer consumer) {
+        int start = Integer.MIN_VALUE;
+        for (int x = minX; x <= maxX; x++) {
+            if (contains(BlockVector3.at(x, y, z))) {
+                if (start == Integer.MIN_VALUE) {
+                    start = x;
+                }
+            } else if (start != Integer.MIN_VALUE) {
+                consumer.accept(y, z, start, x - 1);
+                start = Integer.MIN_VALUE;
+            }
+        }
+        if (start != Integer.MIN_VALUE) {
+            consumer.accept(y, z, start, maxX);
+        }
+    }
+
+    /**
+     * Visit every block of this region as spans along the X axis.
+     *
+     * <p>Rows are visited with Y varying faster than Z, which is the order of
+     * {@link com.sk89q.worldedit.regions.iterator.RegionIterator}.</p>
+     *
+     * @param consumer the consumer of the spans
+     */
+    default void forEachSpan(SpanConsumer consumer) {
+        BlockVector3 min = getMinimumPoint();
+        BlockVector3 max = getMaximumPoint();
+        for (int z = min.getBlockZ(); z <= max.getBlockZ(); z++) {
+            for (int y = min.getBlockY(); y <= max.getBlockY(); y++) {
+                forEachSpan(y, z, min.getBlockX(), max.getBlockX(), consumer);
+            }
+        }
+    }
+
+    /**
+     * Visit every block of this region as spans along the X axis, one chunk
+     * column at a time.
+     *
+     * <p>Spans are split at chunk borders. Within a chunk column, rows are
+     * visited with Z varying faster than Y, so the blocks of a 16x16x16
+     * section are visited together.</p>
+     *
+     * @param consumer the consumer of the spans
+     */
+    default void forEachSpanInChunkOrder(SpanConsumer consumer) {
+        BlockVector3 min = getMinimumPoint();
+        BlockVector3 max = getMaximumPoint();
+        for (int chunkZ = min.getBlockZ() >> 4; chunkZ <= max.getBlockZ() >> 4; chunkZ++) {
+            int fromZ = Math.max(min.getBlockZ(), chunkZ << 4);
+            int toZ = Math.min(max.getBlockZ(), (chunkZ << 4) + 15);
+            for (int chunkX = min.getBlockX() >> 4; chunkX <= max.getBlockX() >> 4; chunkX++) {
+                int fromX = Math.max(min.getBlockX(), chunkX << 4);
+                int toX = Math.min(max.getBlockX(), (chunkX << 4) + 15);
+                for (int y = min.getBlockY(); y <= max.getBlockY(); y++) {
+                    for (int z = fromZ; z <= toZ; z++) {
+                        forEachSpan(y, z, fromX, toX, consumer);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Get a list of chunks.
      *
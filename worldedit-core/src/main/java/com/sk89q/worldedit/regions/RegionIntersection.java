@@ -23,8 +23,10 @@
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.util.formatting.text.TranslatableComponent;
 import com.sk89q.worldedit.world.World;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -132,6 +134,42 @@ public boolean contains(BlockVector3 position) {
         return false;
     }
 
+    @Override
+    public void forEachSpan(int y, int z, int minX, int maxX, SpanConsumer consumer) {
+        if (regions.size() == 1) {
+            regions.get(0).forEachSpan(y, z, minX, maxX, consumer);
+            return;
+        }
+
+        // Spans are packed with the first X in the high bits, so they sort by it
+        LongArrayList spans = new LongArrayList();
+        SpanConsumer collector = (spanY, spanZ, from, to) -> spans.add(((long) from << 32) | (to & 0xFFFFFFFFL));
+        for (Region region : regions) {
+            region.forEachSpan(y, z, minX, maxX, collector);
+        }
+        if (spans.isEmpty()) {
+            return;
+        }
+        long[] sorted = spans.toLongArray();
+        Arrays.sort(sorted);
+
+        // Merge the spans that overlap or touch
+        int start = (int) (sorted[0] >> 32);
+        int end = (int) sorted[0];
+        for (int i = 1; i < sorted.length; i++) {
+            int from = (int) (sorted[i] >> 32);
+            int to = (int) sorted[i];
+            if (from <= end + 1L) {
+                end = Math.max(end, to);
+            } else {
+                consumer.accept(y, z, start, end);
+                start = from;
+                end = to;
+            }
+        }
+        consumer.accept(y, z, start, end);
+    }
+
     @Override
     public Iterator<BlockVector3> iterator() {
         return Iterators.concat(Iterators.transform(regions.iterator(), r -> r.iterator()));
@@ -22,6 +22,8 @@
 import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.SpanConsumer;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 import java.util.Iterator;
 import java.util.NoSuchElementException;
@@ -35,6 +37,12 @@ public class FlatRegionIterator implements Iterator<BlockVector2>  {
     private final int minX;
     private final int maxX;
     private final int maxZ;
+    private final IntArrayList spans = new IntArrayList();
+    private final SpanConsumer collector = (y, z, from, to) -> {
+        spans.add(from);
+        spans.add(to);
+    };
+    private int span;
     private int nextX;
     private int nextZ;
 
@@ -49,27 +57,43 @@ public FlatRegionIterator(Region region) {
         this.y = min.getBlockY();
 
         this.minX = min.getBlockX();
+        this.maxX = max.getBlockX();
 
-        this.nextX = minX;
         this.nextZ = min.getBlockZ();
-
-        this.maxX = max.getBlockX();
         this.maxZ = max.getBlockZ();
 
-        forward();
+        if (nextZ <= maxZ && minX <= maxX) {
+            readRow();
+            forward();
+        }
     }
 
-    @Override
-    public boolean hasNext() {
-        return nextX != Integer.MIN_VALUE;
+    private void readRow() {
+        spans.clear();
+        span = 0;
+        region.forEachSpan(y, nextZ, minX, maxX, collector);
+        if (!spans.isEmpty()) {
+            nextX = spans.getInt(0);
+        }
     }
 
+    /**
+     * Move to the next row that has a span left.
+     */
     private void forward() {
-        while (hasNext() && !region.contains(BlockVector3.at(nextX, y, nextZ))) {
-            forwardOne();
+        while (span >= spans.size()) {
+            if (++nextZ > maxZ) {
+                return;
+            }
+            readRow();
         }
     }
 
+    @Override
+    public boolean hasNext() {
+        return span < spans.size();
+    }
+
     @Override
     public BlockVector2 next() {
         if (!hasNext()) {
@@ -78,22 +102,18 @@ public BlockVector2 next() {
 
         BlockVector2 answer = BlockVector2.at(nextX, nextZ);
 
-        forwardOne();
-        forward();
-
-        return answer;
-    }
-
-    private void forwardOne() {
-        if (++nextX <= maxX) {
-            return;
+        if (nextX < spans.getInt(span + 1)) {
+            nextX++;
+        } else {
+            span += 2;
+            if (span < spans.size()) {
+                nextX = spans.getInt(span);
+            } else {
+                forward();
+            }
         }
-        nextX = minX;
 
-        if (++nextZ <= maxZ) {
-            return;
-        }
-        nextX = Integer.MIN_VALUE;
+        return answer;
     }
 
 }
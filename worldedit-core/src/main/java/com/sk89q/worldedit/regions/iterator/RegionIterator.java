@@ -21,80 +21,110 @@
 
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.SpanConsumer;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+/**
+ * Iterates over the blocks of a region, with X varying fastest, then Y,
+ * then Z.
+ *
+ * <p>Each row is read as spans with
+ * {@link Region#forEachSpan(int, int, int, int, SpanConsumer)}, so blocks
+ * outside of the region are skipped without testing them one by one.</p>
+ */
 public class RegionIterator implements Iterator<BlockVector3> {
 
     private final Region region;
+    private final int minX;
     private final int maxX;
+    private final int minY;
     private final int maxY;
     private final int maxZ;
-    private final BlockVector3 min;
+    private final IntArrayList spans = new IntArrayList();
+    private final SpanConsumer collector = (y, z, from, to) -> {
+        spans.add(from);
+        spans.add(to);
+    };
+    private int rowY;
+    private int rowZ;
+    private int span;
     private int nextX;
-    private int nextY;
-    private int nextZ;
 
     public RegionIterator(Region region) {
         checkNotNull(region);
 
         this.region = region;
 
+        BlockVector3 min = region.getMinimumPoint();
         BlockVector3 max = region.getMaximumPoint();
+        this.minX = min.getBlockX();
         this.maxX = max.getBlockX();
+        this.minY = min.getBlockY();
         this.maxY = max.getBlockY();
         this.maxZ = max.getBlockZ();
 
-        this.min = region.getMinimumPoint();
-        this.nextX = min.getBlockX();
-        this.nextY = min.getBlockY();
-        this.nextZ = min.getBlockZ();
-
-        forward();
+        this.rowY = minY;
+        this.rowZ = min.getBlockZ();
+        if (rowZ <= maxZ && minY <= maxY && minX <= maxX) {
+            readRow();
+            forward();
+        }
     }
 
-    @Override
-    public boolean hasNext() {
-        return nextX != Integer.MIN_VALUE;
+    private void readRow() {
+        spans.clear();
+        span = 0;
+        region.forEachSpan(rowY, rowZ, minX, maxX, collector);
+        if (!spans.isEmpty()) {
+            nextX = spans.getInt(0);
+        }
     }
 
+    /**
+     * Move to the next row that has a span left.
+     */
     private void forward() {
-        while (hasNext() && !region.contains(BlockVector3.at(nextX, nextY, nextZ))) {
-            forwardOne();
+        while (span >= spans.size()) {
+            if (++rowY > maxY) {
+                rowY = minY;
+                if (++rowZ > maxZ) {
+                    return;
+                }
+            }
+            readRow();
         }
     }
 
     @Override
-    public BlockVector3 next() {
-        if (!hasNext()) {
-            throw new java.util.NoSuchElementException();
-        }
-
-        BlockVector3 answer = BlockVector3.at(nextX, nextY, nextZ);
-
-        forwardOne();
-        forward();
-
-        return answer;
+    public boolean hasNext() {
+        return span < spans.size();
     }
 
-    private void forwardOne() {
-        if (++nextX <= maxX) {
-            return;
+    @Override
+    public BlockVector3 next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
         }
-        nextX = min.getBlockX();
 
-        if (++nextY <= maxY) {
-            return;
+        BlockVector3 answer = BlockVector3.at(nextX, rowY, rowZ);
+
+        if (nextX < spans.getInt(span + 1)) {
+            nextX++;
+        } else {
+            span += 2;
+            if (span < spans.size()) {
+                nextX = spans.getInt(span);
+            } else {
+                forward();
+            }
         }
-        nextY = min.getBlockY();
 
-        if (++nextZ <= maxZ) {
-            return;
-        }
-        nextX = Integer.MIN_VALUE;
+        return answer;
     }
 
     @Override
@@ -71,6 +71,25 @@ public Edge getEdge(int index) {
         return new Edge(vertices[index], vertices[index + 1]);
     }
 
+    /**
+     * Returns the unit normal of the plane the triangle is in.
+     *
+     * @return the normal
+     */
+    public Vector3 getNormal() {
+        return normal;
+    }
+
+    /**
+     * Returns the largest dot product of the normal with a vertex. Points
+     * with a larger dot product are above the triangle.
+     *
+     * @return the dot product
+     */
+    public double getMaxDotProduct() {
+        return maxDotProduct;
+    }
+
     /**
      * Returns whether the given point is above the plane the triangle is in.
      *
@@ -28,7 +28,8 @@ public class WorldEditExpressionEnvironment implements ExpressionEnvironment {
 
     private final Vector3 unit;
     private final Vector3 zero2;
-    private Vector3 current = Vector3.ZERO;
+    // one environment may be shared by expression frames on several threads
+    private final ThreadLocal<Vector3> current = ThreadLocal.withInitial(() -> Vector3.ZERO);
     private final Extent extent;
 
     public WorldEditExpressionEnvironment(Extent extent, Vector3 unit, Vector3 zero) {
@@ -43,7 +44,7 @@ public BlockVector3 toWorld(double x, double y, double z) {
     }
 
     public Vector3 toWorldRel(double x, double y, double z) {
-        return current.add(x, y, z);
+        return current.get().add(x, y, z);
     }
 
     @SuppressWarnings("deprecation")
@@ -83,7 +84,7 @@ public int getBlockDataRel(double x, double y, double z) {
     }
 
     public void setCurrentBlock(Vector3 current) {
-        this.current = current;
+        this.current.set(current);
     }
 
 }
@@ -299,7 +299,10 @@ protected UUID getKey(SessionKey key) {
      */
     public synchronized void remove(SessionOwner owner) {
         checkNotNull(owner);
-        sessions.remove(getKey(owner));
+        SessionHolder stored = sessions.remove(getKey(owner));
+        if (stored != null) {
+            stored.session.clearHistory();
+        }
     }
 
     /**
@@ -315,6 +318,9 @@ public synchronized void unload() {
      */
     public synchronized void clear() {
         saveChangedSessions();
+        for (SessionHolder stored : sessions.values()) {
+            stored.session.clearHistory();
+        }
         sessions.clear();
     }
 
@@ -338,6 +344,8 @@ private synchronized void saveChangedSessions() {
                     }
 
                     it.remove();
+                    // the history is not saved, so release it now
+                    stored.session.clearHistory();
                 }
             }
         }
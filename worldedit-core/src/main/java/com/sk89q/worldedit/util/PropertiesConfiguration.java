@@ -88,6 +88,7 @@ public void load() {
         maxRadius = getInt("max-radius", maxRadius);
         maxSuperPickaxeSize = getInt("max-super-pickaxe-size", maxSuperPickaxeSize);
         maxBrushRadius = getInt("max-brush-radius", maxBrushRadius);
+        flushTickBudget = Math.max(0, getInt("flush-tick-budget", flushTickBudget));
         logCommands = getBool("log-commands", logCommands);
         logFile = getString("log-file", logFile);
         logFormat = getString("log-format", logFormat);
@@ -111,6 +112,9 @@ public void load() {
         navigationUseGlass = getBool("nav-use-glass", navigationUseGlass);
         scriptTimeout = getInt("scripting-timeout", scriptTimeout);
         calculationTimeout = getInt("calculation-timeout", calculationTimeout);
+        parallelEvaluation = getBool("parallel-evaluation", parallelEvaluation);
+        parallelThreads = Math.max(0, getInt("parallel-threads", parallelThreads));
+        bytecodeExpressions = getBool("bytecode-expressions", bytecodeExpressions);
         maxCalculationTimeout = getInt("max-calculation-timeout", maxCalculationTimeout);
         saveDir = getString("schematic-save-dir", saveDir);
         scriptsDir = getString("craftscript-dir", scriptsDir);
@@ -122,6 +126,7 @@ public void load() {
         setDefaultLocaleName(getString("default-locale", defaultLocaleName));
 
         LocalSession.MAX_HISTORY_SIZE = Math.max(15, getInt("history-size", 15));
+        historyMemoryBudget = Math.max(-1, getInt("history-memory-budget", historyMemoryBudget));
 
         String snapshotsDir = getString("snapshots-dir", "");
         boolean experimentalSnapshots = getBool("snapshots-experimental", false);
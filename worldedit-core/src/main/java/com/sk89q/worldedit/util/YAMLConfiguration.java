@@ -74,6 +74,7 @@ public void load() {
 
         maxRadius = Math.max(-1, config.getInt("limits.max-radius", maxRadius));
         maxBrushRadius = config.getInt("limits.max-brush-radius", maxBrushRadius);
+        flushTickBudget = Math.max(0, config.getInt("limits.flush-tick-budget", flushTickBudget));
         maxSuperPickaxeSize = Math.max(1, config.getInt(
                 "limits.max-super-pickaxe-size", maxSuperPickaxeSize));
 
@@ -108,12 +109,16 @@ public void load() {
 
         calculationTimeout = config.getInt("calculation.timeout", calculationTimeout);
         maxCalculationTimeout = config.getInt("calculation.max-timeout", maxCalculationTimeout);
+        parallelEvaluation = config.getBoolean("calculation.parallel.enabled", parallelEvaluation);
+        parallelThreads = Math.max(0, config.getInt("calculation.parallel.threads", parallelThreads));
+        bytecodeExpressions = config.getBoolean("calculation.bytecode", bytecodeExpressions);
 
         saveDir = config.getString("saving.dir", saveDir);
 
         allowSymlinks = config.getBoolean("files.allow-symbolic-links", false);
         LocalSession.MAX_HISTORY_SIZE = Math.max(0, config.getInt("history.size", 15));
         SessionManager.EXPIRATION_GRACE = config.getInt("history.expiration", 10) * 60 * 1000;
+        historyMemoryBudget = Math.max(-1, config.getInt("history.memory-budget", historyMemoryBudget));
 
         showHelpInfo = config.getBoolean("show-help-on-first-use", true);
         serverSideCUI = config.getBoolean("server-side-cui", true);
@@ -24,14 +24,17 @@
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMaps;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntIterator;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMaps;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
 
 import java.util.AbstractCollection;
 import java.util.AbstractMap;
 import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
@@ -206,7 +209,8 @@ public boolean replace(BlockVector3 key, V oldValue, V newValue) {
 
     @Override
     public V replace(BlockVector3 key, V value) {
-        return getOrCreateMap(toGroupKey(key)).replace(toInnerKey(key), value);
+        return cleanlyModifyMap(toGroupKey(key),
+            map -> map.replace(toInnerKey(key), value));
     }
 
     @Override
@@ -434,6 +438,137 @@ public int size() {
         return maps.values().stream().mapToInt(Map::size).sum();
     }
 
+    @Override
+    public boolean isEmpty() {
+        // empty sub-maps are always removed, so this is cheaper than size()
+        return maps.isEmpty();
+    }
+
+    /**
+     * Get an iterator over the entries of this map, ordered by region file,
+     * then by chunk, then by Y from the top down.
+     *
+     * <p>Only the keys of one 64x64 column of the map are sorted at a time,
+     * so no list of every position is built. The map must not be modified
+     * while iterating.</p>
+     *
+     * @return the iterator
+     */
+    public Iterator<Entry<BlockVector3, V>> chunkOrderIterator() {
+        return new ChunkOrderIterator();
+    }
+
+    /*
+     * Column sort keys hold a signed region X and Z, shifted to be unsigned,
+     * then the 64x64 column in the region. Order is region X, region Z,
+     * column X, column Z. Group keys are sorted by column sort key in the
+     * top 40 bits and group Y in the low 24 bits.
+     *
+     * Position sort keys within a column hold the chunk in the column,
+     * the inverted Y (so higher Y sorts first), and the inner X and Z.
+     */
+
+    private static final int REGION_OFFSET = 1 << 16;
+    private static final int BITS_17 = mask(17);
+    private static final int BITS_3 = mask(3);
+    private static final int INNER_XZ = INNER_X | INNER_Z;
+
+    private static long toColumnSortKey(long groupKey) {
+        int columnX = fixSign((int) (groupKey & GROUP_X), 20);
+        int columnZ = fixSign((int) ((groupKey & GROUP_Z) >>> 20), 20);
+        return ((long) ((columnX >> 3) + REGION_OFFSET) << 23)
+            | ((long) ((columnZ >> 3) + REGION_OFFSET) << 6)
+            | ((columnX & BITS_3) << 3)
+            | (columnZ & BITS_3);
+    }
+
+    private static long fromColumnSortKey(long columnSortKey) {
+        int columnX = ((((int) (columnSortKey >>> 23) & BITS_17) - REGION_OFFSET) << 3)
+            | ((int) (columnSortKey >>> 3) & BITS_3);
+        int columnZ = ((((int) (columnSortKey >>> 6) & BITS_17) - REGION_OFFSET) << 3)
+            | ((int) columnSortKey & BITS_3);
+        return (columnX & BITS_20) | ((columnZ & BITS_20) << 20);
+    }
+
+    private final class ChunkOrderIterator implements Iterator<Entry<BlockVector3, V>> {
+
+        private final long[] groups;
+        private int groupIndex;
+        private long columnKey;
+        private long[] positions = new long[0];
+        private int positionIndex;
+        private int positionCount;
+
+        private ChunkOrderIterator() {
+            groups = new long[maps.size()];
+            int i = 0;
+            for (LongIterator iterator = maps.keySet().iterator(); iterator.hasNext();) {
+                long groupKey = iterator.nextLong();
+                // flip the sign bit, so the signed sort orders the unsigned keys
+                groups[i++] = ((toColumnSortKey(groupKey) << 24) | ((groupKey & GROUP_Y) >>> 40)) ^ Long.MIN_VALUE;
+            }
+            Arrays.sort(groups);
+            for (i = 0; i < groups.length; i++) {
+                groups[i] ^= Long.MIN_VALUE;
+            }
+        }
+
+        /**
+         * Sort the positions of the next column.
+         */
+        private void loadColumn() {
+            long columnSortKey = groups[groupIndex] >>> 24;
+            columnKey = fromColumnSortKey(columnSortKey);
+            positionCount = 0;
+            positionIndex = 0;
+            int end = groupIndex;
+            int size = 0;
+            while (end < groups.length && groups[end] >>> 24 == columnSortKey) {
+                size += maps.get(groupKeyOf(groups[end])).size();
+                end++;
+            }
+            if (positions.length < size) {
+                positions = new long[size];
+            }
+            for (; groupIndex < end; groupIndex++) {
+                long groupY = groups[groupIndex] & BITS_24;
+                for (IntIterator iterator = maps.get(columnKey | (groupY << 40)).keySet().iterator(); iterator.hasNext();) {
+                    int innerKey = iterator.nextInt();
+                    int y = (int) (groupY << 8) | ((innerKey & INNER_Y) >>> 12);
+                    int chunk = ((innerKey & (3 << 4)) >>> 2) | ((innerKey & (3 << 10)) >>> 10);
+                    positions[positionCount++] = ((long) chunk << 44)
+                        | ((Integer.MAX_VALUE - y) & 0xFFFFFFFFL) << 12
+                        | (innerKey & INNER_XZ);
+                }
+            }
+            Arrays.sort(positions, 0, positionCount);
+        }
+
+        private long groupKeyOf(long sortedGroup) {
+            return fromColumnSortKey(sortedGroup >>> 24) | ((sortedGroup & BITS_24) << 40);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return positionIndex < positionCount || groupIndex < groups.length;
+        }
+
+        @Override
+        public Entry<BlockVector3, V> next() {
+            if (positionIndex == positionCount) {
+                if (groupIndex == groups.length) {
+                    throw new NoSuchElementException();
+                }
+                loadColumn();
+            }
+            long position = positions[positionIndex++];
+            int y = Integer.MAX_VALUE - (int) (position >>> 12);
+            long groupKey = columnKey | (((long) (y >>> 8) & BITS_24) << 40);
+            int innerKey = ((int) position & INNER_XZ) | ((y & BITS_8) << 12);
+            return new LazyEntry(groupKey, innerKey, maps.get(groupKey).get(innerKey));
+        }
+    }
+
     // no keySet override, since we can't really optimize it.
     // we can optimize values access though, by skipping BV construction.
 
@@ -0,0 +1,143 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.collection;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A fixed size bit set that allocates its words in pages of 4096 bits, when
+ * a bit in the page is first set.
+ *
+ * <p>Unlike {@link java.util.BitSet}, a set that only has bits set in a few
+ * places of a large range of indices stays small.</p>
+ */
+public final class PagedBitSet {
+
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+    private static final int PAGE_WORDS = (1 << PAGE_SHIFT) / Long.SIZE;
+
+    private final int size;
+    private final long[][] pages;
+
+    /**
+     * Create a new set of the given size.
+     *
+     * @param size the number of bits
+     */
+    public PagedBitSet(int size) {
+        checkArgument(size >= 0, "size must be >= 0");
+        this.size = size;
+        this.pages = new long[(int) ((size + (long) PAGE_MASK) >>> PAGE_SHIFT)][];
+    }
+
+    /**
+     * Get the number of bits in this set.
+     *
+     * @return the number of bits
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the value of a bit.
+     *
+     * @param index the index of the bit
+     * @return true if the bit is set
+     */
+    public boolean get(int index) {
+        long[] page = pages[index >>> PAGE_SHIFT];
+        return page != null && (page[(index & PAGE_MASK) >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Set a bit.
+     *
+     * @param index the index of the bit
+     */
+    public void set(int index) {
+        checkIndex(index);
+        int pageIndex = index >>> PAGE_SHIFT;
+        long[] page = pages[pageIndex];
+        if (page == null) {
+            page = pages[pageIndex] = new long[PAGE_WORDS];
+        }
+        page[(index & PAGE_MASK) >>> 6] |= 1L << index;
+    }
+
+    /**
+     * Set a range of bits.
+     *
+     * @param fromIndex the index of the first bit to set
+     * @param toIndex the index after the last bit to set
+     */
+    public void set(int fromIndex, int toIndex) {
+        checkArgument(fromIndex <= toIndex, "fromIndex > toIndex");
+        for (int index = fromIndex; index < toIndex; index++) {
+            set(index);
+        }
+    }
+
+    /**
+     * Get the index of the first set bit at or after an index.
+     *
+     * @param fromIndex the index to start at
+     * @return the index of the set bit, or -1 if there is none
+     */
+    public int nextSetBit(int fromIndex) {
+        checkArgument(fromIndex >= 0, "fromIndex must be >= 0");
+        int index = fromIndex;
+        while (index < size) {
+            long[] page = pages[index >>> PAGE_SHIFT];
+            if (page == null) {
+                index = ((index >>> PAGE_SHIFT) + 1) << PAGE_SHIFT;
+                if (index <= 0) {
+                    return -1;
+                }
+                continue;
+            }
+            int wordIndex = (index & PAGE_MASK) >>> 6;
+            long word = page[wordIndex] & (-1L << index);
+            while (true) {
+                if (word != 0) {
+                    int found = (index & ~PAGE_MASK) + wordIndex * Long.SIZE + Long.numberOfTrailingZeros(word);
+                    return found < size ? found : -1;
+                }
+                if (++wordIndex == PAGE_WORDS) {
+                    break;
+                }
+                word = page[wordIndex];
+            }
+            index = ((index >>> PAGE_SHIFT) + 1) << PAGE_SHIFT;
+            if (index <= 0) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+    }
+
+}
@@ -0,0 +1,300 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.collection;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * A fixed-size array of {@value #SIZE} ints, stored as a palette of distinct
+ * values and a bit-packed {@code long[]} of palette indexes.
+ *
+ * <p>Indexes are packed back-to-back and may span two longs, the same layout
+ * as the 1.13 to 1.15 chunk section format. The number of bits per entry
+ * grows as new values are added, and starts at zero while only a single
+ * value is present.</p>
+ */
+public final class PalettedIntArray {
+
+    /**
+     * The number of entries, i.e. one 16x16x16 chunk section.
+     */
+    public static final int SIZE = 16 * 16 * 16;
+
+    /**
+     * Palettes larger than this use a hash map for reverse lookups.
+     */
+    private static final int LINEAR_LOOKUP_LIMIT = 16;
+
+    private int[] palette;
+    private int paletteSize;
+    private Int2IntOpenHashMap paletteLookup;
+    private int bits;
+    private long mask;
+    private long[] data;
+
+    /**
+     * Create a new array with every entry set to {@code initialValue}.
+     *
+     * @param initialValue the initial value
+     */
+    public PalettedIntArray(int initialValue) {
+        this.palette = new int[] { initialValue };
+        this.paletteSize = 1;
+    }
+
+    /**
+     * Create a new array from an existing palette and packed data.
+     *
+     * <p>The palette and data are copied. The number of bits per entry is
+     * derived from the length of {@code data}.</p>
+     *
+     * @param palette the palette
+     * @param data the packed palette indexes, of length {@code 64 * bits}
+     */
+    public PalettedIntArray(int[] palette, long[] data) {
+        if (palette.length == 0) {
+            throw new IllegalArgumentException("Palette must not be empty");
+        }
+        if (data.length % 64 != 0) {
+            throw new IllegalArgumentException("Invalid packed data length: " + data.length);
+        }
+        this.palette = palette.clone();
+        this.paletteSize = palette.length;
+        this.bits = data.length / 64;
+        this.mask = (1L << bits) - 1;
+        this.data = bits == 0 ? null : data.clone();
+        if (paletteSize > (1 << bits)) {
+            throw new IllegalArgumentException("Palette of size " + paletteSize + " does not fit in " + bits + " bits");
+        }
+        if (paletteSize > LINEAR_LOOKUP_LIMIT) {
+            buildLookup();
+        }
+    }
+
+    /**
+     * Get the value at the given index.
+     *
+     * @param index the index, from 0 to {@value #SIZE} exclusive
+     * @return the value
+     */
+    public int get(int index) {
+        if (bits == 0) {
+            checkElementIndex(index, SIZE);
+            return palette[0];
+        }
+        return palette[readIndex(data, bits, mask, index)];
+    }
+
+    /**
+     * Set the value at the given index.
+     *
+     * @param index the index, from 0 to {@value #SIZE} exclusive
+     * @param value the value
+     */
+    public void set(int index, int value) {
+        checkElementIndex(index, SIZE);
+        int paletteIndex = paletteIndexOf(value);
+        if (paletteIndex < 0) {
+            if (paletteSize == (1 << bits)) {
+                growTo(bits + 1);
+            }
+            paletteIndex = addToPalette(value);
+        }
+        if (bits == 0) {
+            return;
+        }
+        writeIndex(index, paletteIndex);
+    }
+
+    /**
+     * Set every entry to {@code value}, discarding the current palette.
+     *
+     * @param value the value
+     */
+    public void fill(int value) {
+        this.palette = new int[] { value };
+        this.paletteSize = 1;
+        this.paletteLookup = null;
+        this.bits = 0;
+        this.mask = 0;
+        this.data = null;
+    }
+
+    /**
+     * Check if every entry holds the same value.
+     *
+     * <p>This is only a cheap check of the palette, so it may return
+     * {@code false} for arrays that were later overwritten with one value.</p>
+     *
+     * @return true if the palette only holds a single value
+     */
+    public boolean isUniform() {
+        return paletteSize == 1;
+    }
+
+    /**
+     * Get the number of bits used per entry.
+     *
+     * @return the bits per entry
+     */
+    public int getBitsPerEntry() {
+        return bits;
+    }
+
+    /**
+     * Get the number of distinct values in the palette.
+     *
+     * @return the palette size
+     */
+    public int getPaletteSize() {
+        return paletteSize;
+    }
+
+    /**
+     * Get the value of a palette entry.
+     *
+     * @param paletteIndex the palette index
+     * @return the value
+     */
+    public int getPaletteEntry(int paletteIndex) {
+        checkElementIndex(paletteIndex, paletteSize);
+        return palette[paletteIndex];
+    }
+
+    /**
+     * Copy all values, in index order, into {@code target}.
+     *
+     * @param target the target array
+     * @param offset the offset in the target array to start at
+     */
+    public void copyTo(int[] target, int offset) {
+        if (bits == 0) {
+            Arrays.fill(target, offset, offset + SIZE, palette[0]);
+            return;
+        }
+        for (int i = 0; i < SIZE; i++) {
+            target[offset + i] = palette[readIndex(data, bits, mask, i)];
+        }
+    }
+
+    /**
+     * Get an estimate of the heap used by this array, in bytes.
+     *
+     * @return the estimated size
+     */
+    public long estimateSize() {
+        long size = 32 + 16 + palette.length * 4L;
+        if (data != null) {
+            size += 16 + data.length * 8L;
+        }
+        if (paletteLookup != null) {
+            size += 64 + paletteLookup.size() * 16L;
+        }
+        return size;
+    }
+
+    /**
+     * Read a palette index from packed data in the layout used by this class.
+     *
+     * @param data the packed data
+     * @param bits the bits per entry, greater than zero
+     * @param mask {@code (1 << bits) - 1}
+     * @param index the entry index
+     * @return the palette index
+     */
+    static int readIndex(long[] data, int bits, long mask, int index) {
+        int bitIndex = index * bits;
+        int longIndex = bitIndex >>> 6;
+        int offset = bitIndex & 63;
+        long value = data[longIndex] >>> offset;
+        if (offset + bits > 64) {
+            value |= data[longIndex + 1] << (64 - offset);
+        }
+        return (int) (value & mask);
+    }
+
+    private void writeIndex(int index, int paletteIndex) {
+        int bitIndex = index * bits;
+        int longIndex = bitIndex >>> 6;
+        int offset = bitIndex & 63;
+        long value = paletteIndex;
+        data[longIndex] = (data[longIndex] & ~(mask << offset)) | (value << offset);
+        int overflow = offset + bits - 64;
+        if (overflow > 0) {
+            long overflowMask = (1L << overflow) - 1;
+            data[longIndex + 1] = (data[longIndex + 1] & ~overflowMask) | (value >>> (bits - overflow));
+        }
+    }
+
+    private int paletteIndexOf(int value) {
+        if (paletteLookup != null) {
+            return paletteLookup.get(value);
+        }
+        for (int i = 0; i < paletteSize; i++) {
+            if (palette[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int addToPalette(int value) {
+        if (paletteSize == palette.length) {
+            palette = Arrays.copyOf(palette, Math.max(4, paletteSize * 2));
+        }
+        int paletteIndex = paletteSize++;
+        palette[paletteIndex] = value;
+        if (paletteLookup != null) {
+            paletteLookup.put(value, paletteIndex);
+        } else if (paletteSize > LINEAR_LOOKUP_LIMIT) {
+            buildLookup();
+        }
+        return paletteIndex;
+    }
+
+    private void buildLookup() {
+        paletteLookup = new Int2IntOpenHashMap(paletteSize * 2);
+        paletteLookup.defaultReturnValue(-1);
+        for (int i = 0; i < paletteSize; i++) {
+            paletteLookup.put(palette[i], i);
+        }
+    }
+
+    private void growTo(int newBits) {
+        long[] oldData = data;
+        int oldBits = bits;
+        long oldMask = mask;
+        this.bits = newBits;
+        this.mask = (1L << newBits) - 1;
+        this.data = new long[64 * newBits];
+        if (oldBits == 0) {
+            // every entry was palette index 0, which is all zero bits
+            return;
+        }
+        for (int i = 0; i < SIZE; i++) {
+            writeIndex(i, readIndex(oldData, oldBits, oldMask, i));
+        }
+    }
+
+}
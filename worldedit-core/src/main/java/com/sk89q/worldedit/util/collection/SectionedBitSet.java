@@ -0,0 +1,196 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.collection;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A set of block positions, stored as a bit set of 4096 bits for every
+ * 16x16x16 section that contains a position.
+ *
+ * <p>Dense sets use about one bit per position, and as neighbouring
+ * positions are usually in the same section, most lookups do not hash.
+ * X and Z coordinates must be in [-2<sup>25</sup>, 2<sup>25</sup>), and Y
+ * coordinates in [-2<sup>23</sup>, 2<sup>23</sup>).</p>
+ */
+public final class SectionedBitSet {
+
+    private static final int SECTION_SIZE = 16 * 16 * 16;
+    private static final long SECTION_XZ_MASK = (1L << 22) - 1;
+    private static final long SECTION_Y_MASK = (1L << 20) - 1;
+
+    /**
+     * Check whether a position can be stored.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return true if the position is within bounds
+     */
+    public static boolean isInBounds(int x, int y, int z) {
+        // an out of bounds value overflows into the higher bits
+        return ((x + (1 << 25)) >>> 26) == 0
+            && ((z + (1 << 25)) >>> 26) == 0
+            && ((y + (1 << 23)) >>> 24) == 0;
+    }
+
+    /**
+     * Get a key for the 16x16x16 section that contains a position. Every
+     * section has its own key if the position is
+     * {@linkplain #isInBounds(int, int, int) in bounds}.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the key of the section
+     */
+    public static long sectionKey(int x, int y, int z) {
+        return ((x >> 4) & SECTION_XZ_MASK)
+            | (((z >> 4) & SECTION_XZ_MASK) << 22)
+            | (((y >> 4) & SECTION_Y_MASK) << 44);
+    }
+
+    /**
+     * Get the index of a position within its 16x16x16 section, in YZX
+     * order.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return the index, from 0 to 4095
+     */
+    public static int sectionIndex(int x, int y, int z) {
+        return ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+    }
+
+    private final Long2ObjectOpenHashMap<long[]> sections = new Long2ObjectOpenHashMap<>();
+    private long lastKey;
+    private long[] lastSection;
+    private long size;
+
+    private long[] getSection(int x, int y, int z, boolean create) {
+        checkArgument(isInBounds(x, y, z), "Position out of bounds: (%s, %s, %s)", x, y, z);
+        long key = sectionKey(x, y, z);
+        if (lastSection != null && lastKey == key) {
+            return lastSection;
+        }
+        long[] section = sections.get(key);
+        if (section == null) {
+            if (!create) {
+                return null;
+            }
+            section = new long[SECTION_SIZE / Long.SIZE];
+            sections.put(key, section);
+        }
+        lastKey = key;
+        lastSection = section;
+        return section;
+    }
+
+    /**
+     * Add a position.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return true if the position was not in the set yet
+     */
+    public boolean add(int x, int y, int z) {
+        long[] section = getSection(x, y, z, true);
+        int index = sectionIndex(x, y, z);
+        long bit = 1L << index;
+        long word = section[index >>> 6];
+        if ((word & bit) != 0) {
+            return false;
+        }
+        section[index >>> 6] = word | bit;
+        size++;
+        return true;
+    }
+
+    /**
+     * Add a position.
+     *
+     * @param position the position
+     * @return true if the position was not in the set yet
+     */
+    public boolean add(BlockVector3 position) {
+        return add(position.getX(), position.getY(), position.getZ());
+    }
+
+    /**
+     * Check whether a position is in the set.
+     *
+     * @param x the X coordinate
+     * @param y the Y coordinate
+     * @param z the Z coordinate
+     * @return true if the position is in the set
+     */
+    public boolean contains(int x, int y, int z) {
+        long[] section = getSection(x, y, z, false);
+        if (section == null) {
+            return false;
+        }
+        int index = sectionIndex(x, y, z);
+        return (section[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Check whether a position is in the set.
+     *
+     * @param position the position
+     * @return true if the position is in the set
+     */
+    public boolean contains(BlockVector3 position) {
+        return contains(position.getX(), position.getY(), position.getZ());
+    }
+
+    /**
+     * Get the number of positions in the set.
+     *
+     * @return the number of positions
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Check whether the set has no positions.
+     *
+     * @return true if the set is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove every position.
+     */
+    public void clear() {
+        sections.clear();
+        sections.trim();
+        lastSection = null;
+        size = 0;
+    }
+
+}
@@ -22,6 +22,8 @@
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -71,4 +73,22 @@ public static ExecutorService newBoundedCachedThreadPool(int minThreads, int max
         return threadPoolExecutor;
     }
 
+    /**
+     * Creates a fork-join pool of daemon threads, for parallel computations
+     * that should never keep the JVM alive.
+     *
+     * @param parallelism  the number of threads, or 0 for one per processor
+     * @param threadFormat thread name formatter
+     * @return the newly created pool
+     */
+    public static ForkJoinPool newDaemonForkJoinPool(int parallelism, String threadFormat) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setDaemon(true);
+            thread.setName(String.format(threadFormat, thread.getPoolIndex()));
+            return thread;
+        }, null, false);
+    }
+
 }
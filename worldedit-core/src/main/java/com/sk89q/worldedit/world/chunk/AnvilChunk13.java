@@ -19,12 +19,16 @@
 
 package com.sk89q.worldedit.world.chunk;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
 import com.sk89q.jnbt.ByteTag;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.jnbt.IntTag;
 import com.sk89q.jnbt.ListTag;
 import com.sk89q.jnbt.LongArrayTag;
 import com.sk89q.jnbt.NBTUtils;
+import com.sk89q.jnbt.StringTag;
 import com.sk89q.jnbt.Tag;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.registry.state.Property;
@@ -38,15 +42,59 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntUnaryOperator;
 import javax.annotation.Nullable;
 
 /**
  * The chunk format for Minecraft 1.13 to 1.15
+ *
+ * <p>The palettes of the sections are parsed when the chunk is constructed,
+ * so format errors are reported for the whole chunk, but blocks are only
+ * read from the packed block state table of a section when asked for.</p>
  */
 public class AnvilChunk13 implements Chunk {
 
+    /**
+     * Palette entries parsed to block states, shared by all chunks since
+     * the same entries repeat across a world. Cleared when the platform is
+     * unloaded, and entries whose block type is no longer registered are
+     * parsed again.
+     */
+    private static final Cache<PaletteKey, BlockState> PALETTE_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(8192)
+            .build();
+
+    /**
+     * Whether a class overrides the deprecated {@link #readBlockStates}.
+     */
+    private static final ClassValue<Boolean> OVERRIDES_READ_BLOCK_STATES = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            for (Class<?> c = type; c != AnvilChunk13.class; c = c.getSuperclass()) {
+                try {
+                    c.getDeclaredMethod("readBlockStates", BlockState[].class, long[].class, BlockState[].class);
+                    return true;
+                } catch (NoSuchMethodException ignored) {
+                    // check the superclass
+                }
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Forget the block states of all palette entries read so far.
+     *
+     * <p>Internal use only. This is called when the platform is unloaded,
+     * since the block states belong to its registries.</p>
+     */
+    public static void clearPaletteCache() {
+        PALETTE_CACHE.invalidateAll();
+    }
+
     private final CompoundTag rootTag;
-    private final BlockState[][] blocks;
+    private final Section[] sections;
     private final int rootX;
     private final int rootZ;
 
@@ -64,11 +112,11 @@ public AnvilChunk13(CompoundTag tag) throws DataException {
         rootX = NBTUtils.getChildTag(rootTag.getValue(), "xPos", IntTag.class).getValue();
         rootZ = NBTUtils.getChildTag(rootTag.getValue(), "zPos", IntTag.class).getValue();
 
-        blocks = new BlockState[16][];
+        sections = new Section[16];
 
-        List<Tag> sections = NBTUtils.getChildTag(rootTag.getValue(), "Sections", ListTag.class).getValue();
+        List<Tag> sectionList = NBTUtils.getChildTag(rootTag.getValue(), "Sections", ListTag.class).getValue();
 
-        for (Tag rawSectionTag : sections) {
+        for (Tag rawSectionTag : sectionList) {
             if (!(rawSectionTag instanceof CompoundTag)) {
                 continue;
             }
@@ -83,77 +131,116 @@ public AnvilChunk13(CompoundTag tag) throws DataException {
                 continue;
             }
 
-            // parse palette
-            List<CompoundTag> paletteEntries = sectionTag.getList("Palette", CompoundTag.class);
-            int paletteSize = paletteEntries.size();
-            if (paletteSize == 0) {
-                continue;
-            }
-            BlockState[] palette = new BlockState[paletteSize];
-            for (int paletteEntryId = 0; paletteEntryId < paletteSize; paletteEntryId++) {
-                CompoundTag paletteEntry = paletteEntries.get(paletteEntryId);
-                BlockType type = BlockTypes.get(paletteEntry.getString("Name"));
-                if (type == null) {
-                    throw new InvalidFormatException("Invalid block type: " + paletteEntry.getString("Name"));
-                }
-                BlockState blockState = type.getDefaultState();
-                if (paletteEntry.containsKey("Properties")) {
-                    CompoundTag properties = NBTUtils.getChildTag(paletteEntry.getValue(), "Properties", CompoundTag.class);
-                    for (Property<?> property : blockState.getStates().keySet()) {
-                        if (properties.containsKey(property.getName())) {
-                            String value = properties.getString(property.getName());
-                            try {
-                                blockState = getBlockStateWith(blockState, property, value);
-                            } catch (IllegalArgumentException e) {
-                                throw new InvalidFormatException("Invalid block state for " + blockState.getBlockType().getId() + ", " + property.getName() + ": " + value);
-                            }
-                        }
-                    }
-                }
-                palette[paletteEntryId] = blockState;
-            }
+            sections[y] = readSection(sectionTag);
+        }
+    }
 
-            // parse block states
-            long[] blockStatesSerialized = NBTUtils.getChildTag(sectionTag.getValue(), "BlockStates", LongArrayTag.class).getValue();
+    /**
+     * Parse the palette of a section and create a reader of its blocks.
+     *
+     * @param sectionTag the section tag
+     * @return the section, or null if the section has no blocks
+     * @throws DataException on a data error
+     */
+    @Nullable
+    private Section readSection(CompoundTag sectionTag) throws DataException {
+        // parse palette
+        List<CompoundTag> paletteEntries = sectionTag.getList("Palette", CompoundTag.class);
+        int paletteSize = paletteEntries.size();
+        if (paletteSize == 0) {
+            return null;
+        }
+        BlockState[] palette = new BlockState[paletteSize];
+        for (int paletteEntryId = 0; paletteEntryId < paletteSize; paletteEntryId++) {
+            palette[paletteEntryId] = getPaletteState(paletteEntries.get(paletteEntryId));
+        }
 
-            BlockState[] chunkSectionBlocks = new BlockState[16 * 16 * 16];
-            blocks[y] = chunkSectionBlocks;
+        // parse block states
+        long[] blockStatesSerialized = NBTUtils.getChildTag(sectionTag.getValue(), "BlockStates", LongArrayTag.class).getValue();
 
-            readBlockStates(palette, blockStatesSerialized, chunkSectionBlocks);
+        if (OVERRIDES_READ_BLOCK_STATES.get(getClass())) {
+            BlockState[] blocks = new BlockState[16 * 16 * 16];
+            readBlockStates(palette, blockStatesSerialized, blocks);
+            return new Section(blocks, IntUnaryOperator.identity());
         }
+        return new Section(palette, createIndexReader(palette.length, blockStatesSerialized));
     }
 
-    protected void readBlockStates(BlockState[] palette, long[] blockStatesSerialized, BlockState[] chunkSectionBlocks) throws InvalidFormatException {
-        int paletteBits = 4;
-        while ((1 << paletteBits) < palette.length) {
-            ++paletteBits;
+    private BlockState getPaletteState(CompoundTag paletteEntry) throws InvalidFormatException {
+        PaletteKey key = new PaletteKey(paletteEntry);
+        BlockState blockState = PALETTE_CACHE.getIfPresent(key);
+        BlockType type = BlockTypes.get(key.name);
+        if (blockState != null && blockState.getBlockType() == type) {
+            return blockState;
         }
-        int paletteMask = (1 << paletteBits) - 1;
 
-        long currentSerializedValue = 0;
-        int nextSerializedItem = 0;
-        int remainingBits = 0;
-        for (int blockPos = 0; blockPos < chunkSectionBlocks.length; blockPos++) {
-            int localBlockId;
-            if (remainingBits < paletteBits) {
-                int bitsNextLong = paletteBits - remainingBits;
-                localBlockId = (int) currentSerializedValue;
-                if (nextSerializedItem >= blockStatesSerialized.length) {
-                    throw new InvalidFormatException("Too short block state table");
+        if (type == null) {
+            throw new InvalidFormatException("Invalid block type: " + key.name);
+        }
+        blockState = type.getDefaultState();
+        for (Property<?> property : blockState.getStates().keySet()) {
+            String value = key.properties.get(property.getName());
+            if (value != null) {
+                try {
+                    blockState = getBlockStateWith(blockState, property, value);
+                } catch (IllegalArgumentException e) {
+                    throw new InvalidFormatException("Invalid block state for " + blockState.getBlockType().getId() + ", " + property.getName() + ": " + value);
                 }
-                currentSerializedValue = blockStatesSerialized[nextSerializedItem++];
-                localBlockId |= (currentSerializedValue & ((1 << bitsNextLong) - 1)) << remainingBits;
-                currentSerializedValue >>>= bitsNextLong;
-                remainingBits = 64 - bitsNextLong;
-            } else {
-                localBlockId = (int) (currentSerializedValue & paletteMask);
-                currentSerializedValue >>>= paletteBits;
-                remainingBits -= paletteBits;
             }
-            if (localBlockId >= palette.length) {
-                throw new InvalidFormatException("Invalid block state table entry: " + localBlockId);
+        }
+        PALETTE_CACHE.put(key, blockState);
+        return blockState;
+    }
+
+    /**
+     * Create a reader of palette indexes from a packed block state table,
+     * where entries may span two longs.
+     *
+     * @param paletteSize the size of the palette
+     * @param blockStatesSerialized the packed block state table
+     * @return a function from the index of a block in the section to its palette index
+     * @throws InvalidFormatException if the table is too short
+     */
+    protected IntUnaryOperator createIndexReader(int paletteSize, long[] blockStatesSerialized) throws InvalidFormatException {
+        int paletteBits = 4;
+        while ((1 << paletteBits) < paletteSize) {
+            ++paletteBits;
+        }
+        if ((long) blockStatesSerialized.length * 64 < 16 * 16 * 16 * paletteBits) {
+            throw new InvalidFormatException("Too short block state table");
+        }
+        int bits = paletteBits;
+        long paletteMask = (1L << paletteBits) - 1;
+
+        return blockPos -> {
+            int bitIndex = blockPos * bits;
+            int longIndex = bitIndex >> 6;
+            int bitOffset = bitIndex & 63;
+            long value = blockStatesSerialized[longIndex] >>> bitOffset;
+            if (bitOffset + bits > 64) {
+                value |= blockStatesSerialized[longIndex + 1] << (64 - bitOffset);
             }
-            chunkSectionBlocks[blockPos] = palette[localBlockId];
+            return (int) (value & paletteMask);
+        };
+    }
+
+    /**
+     * Read the packed block state table of a section into an array of blocks.
+     *
+     * <p>Subclasses that override this method are still supported, but their
+     * sections are decoded in full when the chunk is constructed.</p>
+     *
+     * @param palette the palette of the section
+     * @param blockStatesSerialized the packed block state table
+     * @param chunkSectionBlocks the array to read the blocks of the section into
+     * @throws InvalidFormatException if the table is invalid
+     * @deprecated override {@link #createIndexReader(int, long[])} instead
+     */
+    @Deprecated
+    protected void readBlockStates(BlockState[] palette, long[] blockStatesSerialized, BlockState[] chunkSectionBlocks) throws InvalidFormatException {
+        Section section = new Section(palette, createIndexReader(palette.length, blockStatesSerialized));
+        for (int blockPos = 0; blockPos < chunkSectionBlocks.length; blockPos++) {
+            chunkSectionBlocks[blockPos] = section.get(blockPos);
         }
     }
 
@@ -221,12 +308,12 @@ public BaseBlock getBlock(BlockVector3 position) throws DataException {
         int section = y >> 4;
         int yIndex = y & 0x0F;
 
-        if (section < 0 || section >= blocks.length) {
+        if (section < 0 || section >= sections.length) {
             throw new DataException("Chunk does not contain position " + position);
         }
 
-        BlockState[] sectionBlocks = blocks[section];
-        BlockState state = sectionBlocks != null ? sectionBlocks[(yIndex << 8) | (z << 4) | x] : BlockTypes.AIR.getDefaultState();
+        Section sectionBlocks = sections[section];
+        BlockState state = sectionBlocks != null ? sectionBlocks.get((yIndex << 8) | (z << 4) | x) : BlockTypes.AIR.getDefaultState();
 
         CompoundTag tileEntity = getBlockTileEntity(position);
 
@@ -237,4 +324,69 @@ public BaseBlock getBlock(BlockVector3 position) throws DataException {
         return state.toBaseBlock();
     }
 
+    /**
+     * A decoded section: its palette, and a reader of its packed block
+     * state table.
+     */
+    private static final class Section {
+        private final BlockState[] palette;
+        private final IntUnaryOperator indexReader;
+
+        private Section(BlockState[] palette, IntUnaryOperator indexReader) {
+            this.palette = palette;
+            this.indexReader = indexReader;
+        }
+
+        private BlockState get(int blockPos) throws InvalidFormatException {
+            int index = indexReader.applyAsInt(blockPos);
+            if (index >= palette.length) {
+                throw new InvalidFormatException("Invalid block state table entry: " + index);
+            }
+            return palette[index];
+        }
+    }
+
+    /**
+     * The name and properties of a palette entry.
+     */
+    private static final class PaletteKey {
+        private final String name;
+        private final Map<String, String> properties;
+        private final int hashCode;
+
+        private PaletteKey(CompoundTag paletteEntry) throws InvalidFormatException {
+            this.name = paletteEntry.getString("Name");
+            if (paletteEntry.containsKey("Properties")) {
+                CompoundTag propertiesTag = NBTUtils.getChildTag(paletteEntry.getValue(), "Properties", CompoundTag.class);
+                ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
+                for (Map.Entry<String, Tag> entry : propertiesTag.getValue().entrySet()) {
+                    if (entry.getValue() instanceof StringTag) {
+                        builder.put(entry.getKey(), ((StringTag) entry.getValue()).getValue());
+                    }
+                }
+                this.properties = builder.build();
+            } else {
+                this.properties = ImmutableMap.of();
+            }
+            this.hashCode = Objects.hash(name, properties);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PaletteKey)) {
+                return false;
+            }
+            PaletteKey that = (PaletteKey) o;
+            return name.equals(that.name) && properties.equals(that.properties);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
 }
@@ -21,8 +21,8 @@
 
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.world.DataException;
-import com.sk89q.worldedit.world.block.BlockState;
-import com.sk89q.worldedit.world.storage.InvalidFormatException;
+
+import java.util.function.IntUnaryOperator;
 
 /**
  * The chunk format for Minecraft 1.16 and newer
@@ -40,14 +40,7 @@ public AnvilChunk16(CompoundTag tag) throws DataException {
     }
 
     @Override
-    protected void readBlockStates(BlockState[] palette, long[] blockStatesSerialized, BlockState[] chunkSectionBlocks) throws InvalidFormatException {
-        PackedIntArrayReader reader = new PackedIntArrayReader(blockStatesSerialized);
-        for (int blockPos = 0; blockPos < chunkSectionBlocks.length; blockPos++) {
-            int index = reader.get(blockPos);
-            if (index >= palette.length) {
-                throw new InvalidFormatException("Invalid block state table entry: " + index);
-            }
-            chunkSectionBlocks[blockPos] = palette[index];
-        }
+    protected IntUnaryOperator createIndexReader(int paletteSize, long[] blockStatesSerialized) {
+        return new PackedIntArrayReader(blockStatesSerialized)::get;
     }
 }
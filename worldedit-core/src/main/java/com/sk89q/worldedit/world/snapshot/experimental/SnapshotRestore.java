@@ -25,25 +25,59 @@
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.SpanConsumer;
+import com.sk89q.worldedit.util.concurrency.EvenMoreExecutors;
 import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.block.BaseBlock;
 import com.sk89q.worldedit.world.chunk.Chunk;
 import com.sk89q.worldedit.world.storage.ChunkStore;
 import com.sk89q.worldedit.world.storage.MissingChunkException;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * A snapshot restore operation.
+ *
+ * <p>Chunks are loaded and decoded on an {@link ExecutorService}, a few
+ * chunks ahead of the chunk being restored. Chunks are requested in region
+ * file order, so a snapshot that caches its open region files only needs to
+ * keep a few of them. The decoded blocks are then set in the
+ * {@link EditSession} on the thread calling {@link #restore()}. The
+ * {@link Snapshot} must therefore support concurrent calls to
+ * {@link Snapshot#getChunk(BlockVector3)}.</p>
  */
 public class SnapshotRestore {
 
-    private final Map<BlockVector2, ArrayList<BlockVector3>> neededChunks = new LinkedHashMap<>();
+    private static final int CHUNKS_PER_THREAD = 2;
+    private static final int DEFAULT_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+    private static final Comparator<BlockVector2> REGION_FILE_ORDER =
+        Comparator.<BlockVector2>comparingInt(c -> c.getBlockX() >> 5)
+            .thenComparingInt(c -> c.getBlockZ() >> 5)
+            .thenComparingInt(BlockVector2::getBlockX)
+            .thenComparingInt(BlockVector2::getBlockZ);
+
+    private final List<BlockVector2> neededChunks;
     private final Snapshot snapshot;
     private final EditSession editSession;
+    private final Region region;
+    private final boolean cuboid;
+    @Nullable
+    private final ExecutorService executor;
+    private final int prefetch;
+    private final BlockVector3 min;
+    private final BlockVector3 max;
     private ArrayList<BlockVector2> missingChunks;
     private ArrayList<BlockVector2> errorChunks;
     private String lastErrorMessage;
@@ -51,68 +85,63 @@ public class SnapshotRestore {
     /**
      * Construct the snapshot restore operation.
      *
+     * <p>Chunks are loaded on a thread pool that is created for each call to
+     * {@link #restore()}, since loading them blocks on I/O.</p>
+     *
      * @param snapshot The {@link Snapshot} to restore from
      * @param editSession The {@link EditSession} to restore to
      * @param region The {@link Region} to restore to
      */
     public SnapshotRestore(Snapshot snapshot, EditSession editSession, Region region) {
-        this.snapshot = snapshot;
-        this.editSession = editSession;
-
-        if (region instanceof CuboidRegion) {
-            findNeededCuboidChunks(region);
-        } else {
-            findNeededChunks(region);
-        }
+        this(snapshot, editSession, region, null, DEFAULT_THREADS * CHUNKS_PER_THREAD);
     }
 
     /**
-     * Find needed chunks in the axis-aligned bounding box of the region.
+     * Construct the snapshot restore operation.
      *
-     * @param region The {@link Region} to iterate
+     * @param snapshot The {@link Snapshot} to restore from
+     * @param editSession The {@link EditSession} to restore to
+     * @param region The {@link Region} to restore to
+     * @param executor The executor to load and decode chunks on, or
+     *     {@code null} to create a thread pool for each restore
+     * @param prefetch The maximum number of chunks to load ahead
      */
-    private void findNeededCuboidChunks(Region region) {
-        BlockVector3 min = region.getMinimumPoint();
-        BlockVector3 max = region.getMaximumPoint();
-
-        // First, we need to group points by chunk so that we only need
-        // to keep one chunk in memory at any given moment
-        for (int x = min.getBlockX(); x <= max.getBlockX(); ++x) {
-            for (int y = min.getBlockY(); y <= max.getBlockY(); ++y) {
-                for (int z = min.getBlockZ(); z <= max.getBlockZ(); ++z) {
-                    BlockVector3 pos = BlockVector3.at(x, y, z);
-                    checkAndAddBlock(pos);
-                }
-            }
-        }
+    public SnapshotRestore(Snapshot snapshot, EditSession editSession, Region region,
+                           @Nullable ExecutorService executor, int prefetch) {
+        checkNotNull(snapshot);
+        checkNotNull(editSession);
+        checkNotNull(region);
+        this.snapshot = snapshot;
+        this.editSession = editSession;
+        this.region = region;
+        this.cuboid = region instanceof CuboidRegion;
+        this.executor = executor;
+        this.prefetch = Math.max(1, prefetch);
+        this.min = region.getMinimumPoint();
+        this.max = region.getMaximumPoint();
+
+        this.neededChunks = cuboid ? findNeededCuboidChunks() : new ArrayList<>(region.getChunks());
+        this.neededChunks.sort(REGION_FILE_ORDER);
     }
 
     /**
-     * Find needed chunks in the region.
+     * Find needed chunks in the axis-aligned bounding box of the region.
      *
-     * @param region The {@link Region} to iterate
+     * @return the chunks
      */
-    private void findNeededChunks(Region region) {
-        // First, we need to group points by chunk so that we only need
-        // to keep one chunk in memory at any given moment
-        for (BlockVector3 pos : region) {
-            checkAndAddBlock(pos);
-        }
-    }
-
-    private void checkAndAddBlock(BlockVector3 pos) {
-        if (editSession.getMask() != null && !editSession.getMask().test(pos)) {
-            return;
-        }
+    private List<BlockVector2> findNeededCuboidChunks() {
+        int minChunkX = min.getBlockX() >> ChunkStore.CHUNK_SHIFTS;
+        int minChunkZ = min.getBlockZ() >> ChunkStore.CHUNK_SHIFTS;
+        int maxChunkX = max.getBlockX() >> ChunkStore.CHUNK_SHIFTS;
+        int maxChunkZ = max.getBlockZ() >> ChunkStore.CHUNK_SHIFTS;
 
-        BlockVector2 chunkPos = ChunkStore.toChunk(pos);
-
-        // Unidentified chunk
-        if (!neededChunks.containsKey(chunkPos)) {
-            neededChunks.put(chunkPos, new ArrayList<>());
+        List<BlockVector2> chunks = new ArrayList<>((maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1));
+        for (int x = minChunkX; x <= maxChunkX; ++x) {
+            for (int z = minChunkZ; z <= maxChunkZ; ++z) {
+                chunks.add(BlockVector2.at(x, z));
+            }
         }
-
-        neededChunks.get(chunkPos).add(pos);
+        return chunks;
     }
 
     /**
@@ -134,29 +163,107 @@ public void restore() throws MaxChangedBlocksException {
         missingChunks = new ArrayList<>();
         errorChunks = new ArrayList<>();
 
-        // Now let's start restoring!
-        for (Map.Entry<BlockVector2, ArrayList<BlockVector3>> entry : neededChunks.entrySet()) {
-            BlockVector2 chunkPos = entry.getKey();
-            Chunk chunk;
-
-            try {
-                // This will need to be changed if we start officially supporting 3d snapshots.
-                chunk = snapshot.getChunk(chunkPos.toBlockVector3());
-                // Good, the chunk could be at least loaded
-
-                // Now just copy blocks!
-                for (BlockVector3 pos : entry.getValue()) {
-                    try {
-                        editSession.setBlock(pos, chunk.getBlock(pos));
-                    } catch (DataException e) {
-                        // this is a workaround: just ignore for now
+        ExecutorService executor = this.executor;
+        if (executor == null) {
+            executor = EvenMoreExecutors.newBoundedCachedThreadPool(DEFAULT_THREADS, DEFAULT_THREADS, prefetch,
+                "WorldEdit Snapshot Restore - %s");
+        }
+        Deque<Future<DecodedChunk>> pending = new ArrayDeque<>(prefetch);
+        int next = 0;
+        try {
+            // Now let's start restoring!
+            while (next < neededChunks.size() || !pending.isEmpty()) {
+                while (next < neededChunks.size() && pending.size() < prefetch) {
+                    BlockVector2 chunkPos = neededChunks.get(next++);
+                    pending.add(executor.submit(() -> decode(chunkPos)));
+                }
+
+                DecodedChunk decoded = await(pending.poll());
+                if (decoded.error instanceof MissingChunkException) {
+                    missingChunks.add(decoded.chunkPos);
+                } else if (decoded.error != null) {
+                    errorChunks.add(decoded.chunkPos);
+                    lastErrorMessage = decoded.error.getMessage();
+                } else {
+                    apply(decoded);
+                }
+            }
+        } finally {
+            for (Future<DecodedChunk> future : pending) {
+                future.cancel(false);
+            }
+            if (executor != this.executor) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private DecodedChunk await(Future<DecodedChunk> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while restoring");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Load a chunk and read every block of it that is in the region.
+     *
+     * @param chunkPos the chunk to decode
+     * @return the decoded chunk
+     */
+    private DecodedChunk decode(BlockVector2 chunkPos) {
+        DecodedChunk decoded = new DecodedChunk(chunkPos);
+        Chunk chunk;
+        try {
+            // This will need to be changed if we start officially supporting 3d snapshots.
+            chunk = snapshot.getChunk(chunkPos.toBlockVector3());
+        } catch (IOException | DataException e) {
+            decoded.error = e;
+            return decoded;
+        }
+        // Good, the chunk could be at least loaded
+        decoded.blocks = new BaseBlock[(decoded.maxX - decoded.minX + 1)
+            * (max.getBlockY() - decoded.minY + 1) * (decoded.maxZ - decoded.minZ + 1)];
+
+        SpanConsumer read = (y, z, fromX, toX) -> {
+            for (int x = fromX; x <= toX; ++x) {
+                try {
+                    decoded.blocks[decoded.index(x, y, z)] = chunk.getBlock(BlockVector3.at(x, y, z));
+                } catch (DataException e) {
+                    // this is a workaround: just ignore for now
+                }
+            }
+        };
+        for (int y = decoded.minY; y <= max.getBlockY(); ++y) {
+            for (int z = decoded.minZ; z <= decoded.maxZ; ++z) {
+                if (cuboid) {
+                    read.accept(y, z, decoded.minX, decoded.maxX);
+                } else {
+                    region.forEachSpan(y, z, decoded.minX, decoded.maxX, read);
+                }
+            }
+        }
+        return decoded;
+    }
+
+    private void apply(DecodedChunk decoded) throws MaxChangedBlocksException {
+        // Now just copy blocks!
+        for (int y = decoded.minY; y <= max.getBlockY(); ++y) {
+            for (int z = decoded.minZ; z <= decoded.maxZ; ++z) {
+                for (int x = decoded.minX; x <= decoded.maxX; ++x) {
+                    BaseBlock block = decoded.blocks[decoded.index(x, y, z)];
+                    if (block != null) {
+                        editSession.setBlock(BlockVector3.at(x, y, z), block);
                     }
                 }
-            } catch (MissingChunkException me) {
-                missingChunks.add(chunkPos);
-            } catch (IOException | DataException me) {
-                errorChunks.add(chunkPos);
-                lastErrorMessage = me.getMessage();
             }
         }
     }
@@ -200,4 +307,34 @@ public String getLastErrorMessage() {
         return lastErrorMessage;
     }
 
+    /**
+     * The blocks of one chunk that are in the region, or the reason the
+     * chunk could not be loaded.
+     */
+    private final class DecodedChunk {
+        private final BlockVector2 chunkPos;
+        private final int minX;
+        private final int minY;
+        private final int minZ;
+        private final int maxX;
+        private final int maxZ;
+        private BaseBlock[] blocks;
+        private Exception error;
+
+        private DecodedChunk(BlockVector2 chunkPos) {
+            this.chunkPos = chunkPos;
+            int chunkX = chunkPos.getBlockX() << ChunkStore.CHUNK_SHIFTS;
+            int chunkZ = chunkPos.getBlockZ() << ChunkStore.CHUNK_SHIFTS;
+            this.minX = Math.max(min.getBlockX(), chunkX);
+            this.minY = min.getBlockY();
+            this.minZ = Math.max(min.getBlockZ(), chunkZ);
+            this.maxX = Math.min(max.getBlockX(), chunkX + 15);
+            this.maxZ = Math.min(max.getBlockZ(), chunkZ + 15);
+        }
+
+        private int index(int x, int y, int z) {
+            return ((y - minY) * (maxZ - minZ + 1) + (z - minZ)) * (maxX - minX + 1) + (x - minX);
+        }
+    }
+
 }
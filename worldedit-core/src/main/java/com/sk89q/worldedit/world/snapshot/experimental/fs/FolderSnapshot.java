@@ -19,6 +19,8 @@
 
 package com.sk89q.worldedit.world.snapshot.experimental.fs;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
@@ -28,15 +30,17 @@
 import com.sk89q.worldedit.world.snapshot.experimental.SnapshotInfo;
 import com.sk89q.worldedit.world.storage.ChunkStoreHelper;
 import com.sk89q.worldedit.world.storage.LegacyChunkStore;
+import com.sk89q.worldedit.world.storage.MappedMcRegionReader;
 import com.sk89q.worldedit.world.storage.McRegionChunkStore;
-import com.sk89q.worldedit.world.storage.McRegionReader;
 import com.sk89q.worldedit.world.storage.MissingChunkException;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
@@ -59,6 +63,18 @@ public class FolderSnapshot implements Snapshot {
      */
     private static final Object NOT_FOUND_TOKEN = new Object();
 
+    /**
+     * The number of mapped region files to keep headers of, per snapshot.
+     */
+    private static final int MAPPED_REGION_CACHE_SIZE = 64;
+
+    /**
+     * The number of region files to keep in memory, per snapshot, when they
+     * can't be mapped. Restores request chunks in region file order, so only
+     * the files being worked on need to be kept.
+     */
+    private static final int LOADED_REGION_CACHE_SIZE = 4;
+
     private static Object getRegionFolder(Path folder) throws IOException {
         Path regionDir = folder.resolve("region");
         if (Files.exists(regionDir)) {
@@ -96,6 +112,14 @@ private static Object getRegionFolder(Path folder) throws IOException {
     private final Path folder;
     private final AtomicReference<Object> regionFolder = new AtomicReference<>();
     private final @Nullable Closer closeCallback;
+    private final Cache<Path, MappedMcRegionReader> mappedReaders = CacheBuilder.newBuilder()
+        .maximumSize(MAPPED_REGION_CACHE_SIZE)
+        .build();
+    private final Cache<Path, MappedMcRegionReader> loadedReaders = CacheBuilder.newBuilder()
+        // a single segment, so the size limit applies to the whole cache
+        .concurrencyLevel(1)
+        .maximumSize(LOADED_REGION_CACHE_SIZE)
+        .build();
 
     public FolderSnapshot(SnapshotInfo info, Path folder, @Nullable Closer closeCallback) {
         this.info = info;
@@ -151,14 +175,36 @@ public CompoundTag getChunkTag(BlockVector3 position) throws DataException, IOEx
                 throw new MissingChunkException();
             }
         }
-        try (InputStream stream = Files.newInputStream(regionFile)) {
-            McRegionReader regionReader = new McRegionReader(stream);
-            return ChunkStoreHelper.readCompoundTag(() -> regionReader.getChunkInputStream(pos));
+        MappedMcRegionReader regionReader = getReader(regionFile);
+        return ChunkStoreHelper.readCompoundTag(() -> regionReader.getChunkInputStream(pos));
+    }
+
+    /**
+     * Get a reader for a region file. Files on the default file system are
+     * mapped, and files on other file systems, such as zips, are read into
+     * memory once and kept while their chunks are being read.
+     */
+    private MappedMcRegionReader getReader(Path regionFile) throws IOException {
+        try {
+            if (regionFile.getFileSystem() == FileSystems.getDefault()) {
+                return mappedReaders.get(regionFile, () -> new MappedMcRegionReader(regionFile));
+            }
+            return loadedReaders.get(regionFile, () ->
+                new MappedMcRegionReader(ByteBuffer.wrap(Files.readAllBytes(regionFile))));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
         }
     }
 
     @Override
     public void close() throws IOException {
+        mappedReaders.asMap().values().forEach(MappedMcRegionReader::close);
+        mappedReaders.invalidateAll();
+        loadedReaders.asMap().values().forEach(MappedMcRegionReader::close);
+        loadedReaders.invalidateAll();
         if (closeCallback != null) {
             closeCallback.close();
         }
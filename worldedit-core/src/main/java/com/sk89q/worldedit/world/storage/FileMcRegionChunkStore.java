@@ -19,7 +19,10 @@
 
 package com.sk89q.worldedit.world.storage;
 
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.World;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -31,6 +34,8 @@
 public class FileMcRegionChunkStore extends McRegionChunkStore {
 
     private final File path;
+    private String mappedFilename;
+    private MappedMcRegionReader mappedReader;
 
     /**
      * Create an instance. The passed path is the folder to read the
@@ -42,14 +47,51 @@ public FileMcRegionChunkStore(File path) {
         this.path = path;
     }
 
+    @Override
+    public CompoundTag getChunkTag(BlockVector2 position, World world) throws DataException, IOException {
+        MappedMcRegionReader reader = getMappedReader(getFilename(position));
+        return ChunkStoreHelper.readCompoundTag(() -> reader.getChunkInputStream(position));
+    }
+
+    private MappedMcRegionReader getMappedReader(String name) throws IOException, DataException {
+        if (!name.equals(mappedFilename)) {
+            closeMappedReader();
+            mappedReader = new MappedMcRegionReader(findFile(name).toPath());
+            mappedFilename = name;
+        }
+        return mappedReader;
+    }
+
+    private void closeMappedReader() {
+        if (mappedReader != null) {
+            mappedReader.close();
+            mappedReader = null;
+            mappedFilename = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closeMappedReader();
+        super.close();
+    }
+
     @Override
     protected InputStream getInputStream(String name, String world) throws IOException, DataException {
+        try {
+            return new FileInputStream(findFile(name));
+        } catch (FileNotFoundException e) {
+            throw new MissingChunkException();
+        }
+    }
+
+    private File findFile(String name) throws MissingChunkException {
         Pattern ext = Pattern.compile(".*\\.mc[ra]$"); // allow either file extension, both work the same
         File file = null;
         File[] files = new File(path, "region").listFiles();
 
         if (files == null) {
-            throw new FileNotFoundException();
+            throw new MissingChunkException();
         }
 
         for (File f : files) {
@@ -61,14 +103,10 @@ protected InputStream getInputStream(String name, String world) throws IOExcepti
             }
         }
 
-        try {
-            if (file == null) {
-                throw new FileNotFoundException();
-            }
-            return new FileInputStream(file);
-        } catch (FileNotFoundException e) {
+        if (file == null) {
             throw new MissingChunkException();
         }
+        return file;
     }
 
     @Override
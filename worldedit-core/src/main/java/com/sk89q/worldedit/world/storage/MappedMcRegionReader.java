@@ -0,0 +1,192 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.storage;
+
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.util.io.ByteBufferInputStream;
+import com.sk89q.worldedit.world.DataException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reader for a MCRegion file that maps the whole file into memory.
+ *
+ * <p>Unlike {@link McRegionReader}, chunks can be read in any order and from
+ * several threads at once, and compressed chunk data is inflated straight
+ * from the mapped file. A mapped file must be on the default file system;
+ * files on other file systems can be read into memory instead.</p>
+ *
+ * <p>Each thread reuses a single {@link Inflater}, so a thread must finish
+ * with a chunk stream before it opens the next one.</p>
+ *
+ * @see McRegionReader for the format
+ */
+public class MappedMcRegionReader implements Closeable {
+
+    private static final int VERSION_GZIP = McRegionReader.VERSION_GZIP;
+    private static final int VERSION_DEFLATE = McRegionReader.VERSION_DEFLATE;
+    private static final int SECTOR_BYTES = McRegionReader.SECTOR_BYTES;
+    private static final int SECTOR_INTS = McRegionReader.SECTOR_INTS;
+    private static final int INFLATE_BUFFER_SIZE = 8192;
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private volatile ByteBuffer data;
+    private final int[] offsets = new int[SECTOR_INTS];
+
+    /**
+     * Construct the reader, mapping the given file.
+     *
+     * @param file the region file
+     * @throws IOException if the file could not be mapped
+     */
+    public MappedMcRegionReader(Path file) throws IOException {
+        this(map(file));
+    }
+
+    /**
+     * Construct the reader over the contents of a region file.
+     *
+     * @param data the contents of the region file, from position 0 to its capacity
+     */
+    public MappedMcRegionReader(ByteBuffer data) {
+        this.data = data;
+
+        if (data.capacity() >= SECTOR_BYTES) {
+            IntBuffer header = data.asIntBuffer();
+            header.get(offsets);
+        }
+    }
+
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Gets the uncompressed data input stream for a chunk.
+     *
+     * @param position chunk position
+     * @return an input stream
+     * @throws IOException if there is an error getting the chunk data
+     * @throws DataException if there is an error getting the chunk data
+     */
+    public InputStream getChunkInputStream(BlockVector2 position) throws IOException, DataException {
+        ByteBuffer data = this.data;
+        if (data == null) {
+            throw new IOException("The region reader is closed");
+        }
+        int x = position.getBlockX() & 31;
+        int z = position.getBlockZ() & 31;
+
+        int offset = getOffset(x, z);
+
+        // The chunk hasn't been generated
+        if (offset == 0) {
+            throw new DataException("The chunk at " + x + "," + z + " is not generated");
+        }
+
+        long start = (long) (offset >>> 8) * SECTOR_BYTES;
+        int numSectors = offset & 0xFF;
+
+        if (start + McRegionReader.CHUNK_HEADER_SIZE > data.capacity()) {
+            throw new DataException("MCRegion file does not contain "
+                    + x + "," + z + " in full");
+        }
+
+        int length = data.getInt((int) start);
+
+        if (length > SECTOR_BYTES * numSectors) {
+            throw new DataException("MCRegion chunk at "
+                    + x + "," + z + " has an invalid length of " + length);
+        }
+        if (length < 1 || start + 4 + length > data.capacity()) {
+            throw new DataException("MCRegion file does not contain "
+                    + x + "," + z + " in full");
+        }
+
+        byte version = data.get((int) start + 4);
+
+        ByteBuffer chunk = data.duplicate();
+        chunk.limit((int) start + 4 + length);
+        chunk.position((int) start + McRegionReader.CHUNK_HEADER_SIZE);
+        InputStream compressed = new ByteBufferInputStream(chunk);
+
+        if (version == VERSION_GZIP) {
+            return new GZIPInputStream(compressed);
+        } else if (version == VERSION_DEFLATE) {
+            Inflater inflater = INFLATER.get();
+            inflater.reset();
+            return new InflaterInputStream(compressed, inflater, INFLATE_BUFFER_SIZE);
+        } else {
+            throw new DataException("MCRegion chunk at "
+                    + x + "," + z + " has an unsupported version of " + version);
+        }
+    }
+
+    /**
+     * Get the offset for a chunk. May return 0 if it doesn't exist.
+     *
+     * @param x the X coordinate
+     * @param z the Z coordinate
+     * @return the offset
+     */
+    private int getOffset(int x, int z) {
+        return offsets[x + z * 32];
+    }
+
+    /**
+     * Returns whether the file contains a chunk.
+     *
+     * @param x the X coordinate
+     * @param z the Z coordinate
+     * @return the offset
+     */
+    public boolean hasChunk(int x, int z) {
+        return getOffset(x, z) != 0;
+    }
+
+    /**
+     * Drop this reader's reference to the region data. No more chunks can be
+     * read afterwards.
+     *
+     * <p>A mapped file is unmapped by the garbage collector once no chunk
+     * streams read from it any more; until then, some platforms such as
+     * Windows don't allow the file to be deleted or replaced. The mapping is
+     * not released explicitly, since reading from an unmapped buffer crashes
+     * the JVM.</p>
+     */
+    @Override
+    public void close() {
+        data = null;
+    }
+
+}
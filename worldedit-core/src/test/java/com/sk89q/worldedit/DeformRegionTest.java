@@ -0,0 +1,167 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit;
+
+import com.sk89q.worldedit.event.extent.EditSessionEvent;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.internal.expression.Expression;
+import com.sk89q.worldedit.internal.expression.ExpressionFrame;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.Vector2;
+import com.sk89q.worldedit.math.Vector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.regions.shape.WorldEditExpressionEnvironment;
+import com.sk89q.worldedit.util.Direction;
+import com.sk89q.worldedit.util.eventbus.EventBus;
+import com.sk89q.worldedit.util.test.ClipboardWorld;
+import com.sk89q.worldedit.util.test.TestBlockRegistry;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.sk89q.worldedit.util.test.TestBlockRegistry.type;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("Deforming a region")
+@Execution(ExecutionMode.SAME_THREAD)
+class DeformRegionTest {
+
+    private static final Region CUBOID = new CuboidRegion(BlockVector3.at(-20, 10, -5), BlockVector3.at(13, 18, 21));
+    private static final Region CYLINDER = new CylinderRegion(BlockVector3.at(-4, 0, 8), Vector2.at(11, 9), 10, 16);
+    private static final Vector3 ZERO = Vector3.at(-3.5, 14, 8);
+
+    @BeforeEach
+    void setUp() {
+        TestBlockRegistry.setUp();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        TestBlockRegistry.tearDown();
+    }
+
+    static Stream<Arguments> deforms() {
+        String[] expressions = {
+            "y = y + 1",
+            "x = -x",
+            "rotate(x, z, 0.4)",
+            "x = x * 0.9; z = z + sin(y)",
+            // these share state between evaluations, so they always run serially
+            "a = x; x = z; z = a",
+            "c = c + 1; y = y + c % 3",
+            "megabuf(0, megabuf(0) + 1); x = x + megabuf(0) % 2",
+        };
+        Stream.Builder<Arguments> arguments = Stream.builder();
+        for (String expression : expressions) {
+            arguments.add(Arguments.of(expression, "cuboid", CUBOID, Vector3.ONE));
+            arguments.add(Arguments.of(expression, "cylinder", CYLINDER, Vector3.ONE));
+            arguments.add(Arguments.of(expression, "scaled cuboid", CUBOID, Vector3.at(4, 2, 4)));
+        }
+        return arguments.build();
+    }
+
+    private static BlockArrayClipboard createWorld(Region region) throws WorldEditException {
+        BlockArrayClipboard blocks = new BlockArrayClipboard(new CuboidRegion(
+            region.getMinimumPoint().subtract(5, 5, 5), region.getMaximumPoint().add(5, 5, 5)));
+        BlockType[] types = {
+            type("minecraft:stone"), type("minecraft:dirt"), type("minecraft:air"),
+            type("minecraft:oak_log"), type("minecraft:chest"),
+        };
+        Direction[] facings = { Direction.NORTH, Direction.EAST, Direction.SOUTH, Direction.WEST };
+        for (BlockVector3 position : blocks.getRegion()) {
+            int hash = position.getX() * 31 + position.getY() * 7 + position.getZ() * 13;
+            BlockType blockType = types[Math.floorMod(hash, types.length)];
+            BlockState state = blockType.getDefaultState();
+            if (blockType.getPropertyMap().containsKey("facing")) {
+                state = state.with(blockType.getProperty("facing"), facings[Math.floorMod(hash / 5, 4)]);
+            }
+            blocks.setBlock(position, state);
+        }
+        return blocks;
+    }
+
+    private static BlockArrayClipboard deform(Region region, Vector3 unit, String expression, boolean parallel)
+            throws WorldEditException {
+        BlockArrayClipboard blocks = createWorld(region);
+        ClipboardWorld world = new ClipboardWorld(blocks);
+        try (EditSession editSession = new EditSession(new EventBus(), world, -1, null,
+                new EditSessionEvent(world, null, -1, null))) {
+            editSession.setParallelEvaluation(parallel);
+            editSession.deformRegion(region, ZERO, unit, expression, -1);
+        }
+        return blocks;
+    }
+
+    @ParameterizedTest(name = "{0} on a {1}")
+    @MethodSource("deforms")
+    @DisplayName("moves the same blocks as a block by block deform")
+    void matchesReference(String expression, String name, Region region, Vector3 unit) throws WorldEditException {
+        BlockArrayClipboard expected = createWorld(region);
+        referenceDeform(expected, region, unit, expression);
+
+        BlockArrayClipboard serial = deform(region, unit, expression, false);
+        BlockArrayClipboard parallel = deform(region, unit, expression, true);
+        for (BlockVector3 position : expected.getRegion()) {
+            assertEquals(expected.getBlock(position), serial.getBlock(position), "serial " + position);
+            assertEquals(expected.getBlock(position), parallel.getBlock(position), "parallel " + position);
+        }
+    }
+
+    /**
+     * Deforms block by block, in the order of the region, reading every
+     * source before writing.
+     */
+    private static void referenceDeform(BlockArrayClipboard blocks, Region region, Vector3 unit, String expressionString)
+            throws WorldEditException {
+        Expression expression = Expression.compile(expressionString, "x", "y", "z");
+        WorldEditExpressionEnvironment environment = new WorldEditExpressionEnvironment(blocks, unit, ZERO);
+        expression.setEnvironment(environment);
+        ExpressionFrame frame = expression.newFrame(-1);
+
+        List<BlockVector3> targets = new ArrayList<>();
+        List<BaseBlock> materials = new ArrayList<>();
+        for (BlockVector3 position : region) {
+            Vector3 scaled = position.toVector3().subtract(ZERO).divide(unit);
+            frame.evaluate(scaled.getX(), scaled.getY(), scaled.getZ());
+            BlockVector3 source = environment.toWorld(frame.getInput(0).getValue(), frame.getInput(1).getValue(),
+                frame.getInput(2).getValue());
+            targets.add(position);
+            materials.add(blocks.getFullBlock(source));
+        }
+        for (int i = 0; i < targets.size(); i++) {
+            blocks.setBlock(targets.get(i), materials.get(i));
+        }
+    }
+
+}
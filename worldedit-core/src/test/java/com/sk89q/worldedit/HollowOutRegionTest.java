@@ -0,0 +1,235 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit;
+
+import com.sk89q.worldedit.event.extent.EditSessionEvent;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.Vector2;
+import com.sk89q.worldedit.math.Vector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.EllipsoidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.eventbus.EventBus;
+import com.sk89q.worldedit.util.test.ClipboardWorld;
+import com.sk89q.worldedit.util.test.TestBlockRegistry;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static com.sk89q.worldedit.util.test.TestBlockRegistry.type;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("Hollowing out a region")
+@Execution(ExecutionMode.SAME_THREAD)
+class HollowOutRegionTest {
+
+    private static final BlockVector3[] DIRECTIONS = {
+        BlockVector3.UNIT_X, BlockVector3.UNIT_MINUS_X,
+        BlockVector3.UNIT_Y, BlockVector3.UNIT_MINUS_Y,
+        BlockVector3.UNIT_Z, BlockVector3.UNIT_MINUS_Z,
+    };
+
+    @BeforeEach
+    void setUp() {
+        TestBlockRegistry.setUp();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        TestBlockRegistry.tearDown();
+    }
+
+    /**
+     * A region, and which blocks of the world around it are solid.
+     */
+    private static final class Shape {
+        private final Region region;
+        private final Predicate<BlockVector3> solid;
+
+        private Shape(Region region, Predicate<BlockVector3> solid) {
+            this.region = region;
+            this.solid = solid;
+        }
+    }
+
+    static Stream<Arguments> shapes() {
+        BlockVector3 center = BlockVector3.at(-20, 40, -7);
+        Random random = new Random(42);
+        Set<BlockVector3> scattered = new HashSet<>();
+        for (int i = 0; i < 1500; i++) {
+            scattered.add(center.add(random.nextInt(21) - 10, random.nextInt(15) - 7, random.nextInt(19) - 9));
+        }
+        Shape[] shapes = {
+            // a solid ball in a box
+            new Shape(new CuboidRegion(center.subtract(9, 9, 9), center.add(9, 9, 9)),
+                position -> position.distanceSq(center) <= 36),
+            // a completely solid box, with nothing to flood
+            new Shape(new CuboidRegion(center.subtract(4, 3, 5), center.add(4, 3, 5)),
+                position -> true),
+            // a solid cylinder with an open tunnel into its middle
+            new Shape(new CylinderRegion(center, Vector2.at(7, 7), 34, 46),
+                position -> !(position.getY() == 40 && position.getZ() == -7 && position.getX() <= -20)),
+            // scattered blocks in an ellipsoid
+            new Shape(new EllipsoidRegion(center, Vector3.at(10, 7, 9)), scattered::contains),
+            // a flat box
+            new Shape(new CuboidRegion(center.subtract(6, 0, 6), center.add(6, 0, 6)),
+                position -> Math.abs(position.getX() - center.getX()) < 4),
+            // a single block
+            new Shape(new CuboidRegion(center, center), position -> true),
+        };
+        String[] names = { "ball", "solid box", "tunnelled cylinder", "scattered ellipsoid", "flat box", "single block" };
+        Stream.Builder<Arguments> arguments = Stream.builder();
+        for (int i = 0; i < shapes.length; i++) {
+            for (int thickness : new int[] { 0, 1, 3 }) {
+                arguments.add(Arguments.of(names[i], thickness, shapes[i]));
+            }
+        }
+        return arguments.build();
+    }
+
+    private static BlockArrayClipboard createWorld(Shape shape) throws WorldEditException {
+        Region box = new CuboidRegion(
+            shape.region.getMinimumPoint().subtract(3, 3, 3),
+            shape.region.getMaximumPoint().add(3, 3, 3));
+        BlockArrayClipboard blocks = new BlockArrayClipboard(box);
+        BlockState stone = type("minecraft:stone").getDefaultState();
+        for (BlockVector3 position : box) {
+            blocks.setBlock(position, shape.solid.test(position) ? stone : BlockTypes.AIR.getDefaultState());
+        }
+        return blocks;
+    }
+
+    @ParameterizedTest(name = "{0}, thickness {1}")
+    @MethodSource("shapes")
+    @DisplayName("changes the same blocks as the hash set implementation")
+    void matchesReference(String name, int thickness, Shape shape) throws WorldEditException {
+        BlockState dirt = type("minecraft:dirt").getDefaultState();
+        BlockArrayClipboard expected = createWorld(shape);
+        referenceHollow(expected, shape.region, thickness, dirt);
+
+        BlockArrayClipboard actual = createWorld(shape);
+        ClipboardWorld world = new ClipboardWorld(actual);
+        try (EditSession editSession = new EditSession(new EventBus(), world, -1, null,
+                new EditSessionEvent(world, null, -1, null))) {
+            editSession.hollowOutRegion(shape.region, thickness, dirt);
+        }
+
+        for (BlockVector3 position : expected.getRegion()) {
+            assertEquals(expected.getBlock(position), actual.getBlock(position), position::toString);
+        }
+    }
+
+    /**
+     * The implementation that kept the outside blocks in a hash set.
+     */
+    private static void referenceHollow(Extent extent, Region region, int thickness, BlockState block)
+            throws WorldEditException {
+        Set<BlockVector3> outside = new HashSet<>();
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+
+        for (int x = min.getX(); x <= max.getX(); ++x) {
+            for (int y = min.getY(); y <= max.getY(); ++y) {
+                recurseHollow(extent, region, BlockVector3.at(x, y, min.getZ()), outside);
+                recurseHollow(extent, region, BlockVector3.at(x, y, max.getZ()), outside);
+            }
+        }
+        for (int y = min.getY(); y <= max.getY(); ++y) {
+            for (int z = min.getZ(); z <= max.getZ(); ++z) {
+                recurseHollow(extent, region, BlockVector3.at(min.getX(), y, z), outside);
+                recurseHollow(extent, region, BlockVector3.at(max.getX(), y, z), outside);
+            }
+        }
+        for (int z = min.getZ(); z <= max.getZ(); ++z) {
+            for (int x = min.getX(); x <= max.getX(); ++x) {
+                recurseHollow(extent, region, BlockVector3.at(x, min.getY(), z), outside);
+                recurseHollow(extent, region, BlockVector3.at(x, max.getY(), z), outside);
+            }
+        }
+
+        for (int i = 1; i < thickness; ++i) {
+            Set<BlockVector3> newOutside = new HashSet<>();
+            for (BlockVector3 position : region) {
+                if (touches(outside, position)) {
+                    newOutside.add(position);
+                }
+            }
+            outside.addAll(newOutside);
+        }
+
+        Set<BlockVector3> toSet = new HashSet<>();
+        for (BlockVector3 position : region) {
+            if (!touches(outside, position)) {
+                toSet.add(position);
+            }
+        }
+        for (BlockVector3 position : toSet) {
+            extent.setBlock(position, block);
+        }
+    }
+
+    private static boolean touches(Set<BlockVector3> outside, BlockVector3 position) {
+        for (BlockVector3 direction : DIRECTIONS) {
+            if (outside.contains(position.add(direction))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void recurseHollow(Extent extent, Region region, BlockVector3 origin, Set<BlockVector3> outside) {
+        Deque<BlockVector3> queue = new ArrayDeque<>();
+        queue.addLast(origin);
+        while (!queue.isEmpty()) {
+            BlockVector3 current = queue.removeFirst();
+            if (extent.getBlock(current).getBlockType().getMaterial().isMovementBlocker()) {
+                continue;
+            }
+            if (!outside.add(current)) {
+                continue;
+            }
+            if (!region.contains(current)) {
+                continue;
+            }
+            for (BlockVector3 direction : DIRECTIONS) {
+                queue.addLast(current.add(direction));
+            }
+        }
+    }
+
+}
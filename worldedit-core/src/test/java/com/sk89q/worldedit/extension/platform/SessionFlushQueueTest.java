@@ -0,0 +1,197 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extension.platform;
+
+import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.function.operation.BudgetedRunContext;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.world.World;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisplayName("A session flush queue")
+class SessionFlushQueueTest {
+
+    private final Platform platform = mock(Platform.class);
+    private final List<String> flushed = new ArrayList<>();
+    private Runnable tick;
+    private SessionFlushQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        when(platform.schedule(anyLong(), anyLong(), any())).thenAnswer(invocation -> {
+            tick = invocation.getArgument(2);
+            return 1;
+        });
+        queue = new SessionFlushQueue(() -> BudgetedRunContext.ofSteps(10));
+    }
+
+    /**
+     * An edit session with a number of changes, applied one per step.
+     */
+    private static final class PendingEdit {
+        private final EditSession editSession = mock(EditSession.class);
+        private final int total;
+        private int applied;
+        private Operation pending;
+
+        PendingEdit(int total) throws Exception {
+            this(total, mock(World.class));
+        }
+
+        PendingEdit(int total, World world) throws Exception {
+            this.total = total;
+            when(editSession.getWorld()).thenReturn(world);
+            when(editSession.flushSession(any())).thenAnswer(invocation -> {
+                if (pending == null) {
+                    pending = commit();
+                }
+                pending = Operations.resumeWithin(pending, invocation.<RunContext>getArgument(0));
+                return pending == null;
+            });
+            doAnswer(invocation -> {
+                Operations.completeBlindly(pending == null ? commit() : pending);
+                pending = null;
+                return null;
+            }).when(editSession).flushSession();
+        }
+
+        private Operation commit() {
+            return new Operation() {
+                @Override
+                public Operation resume(RunContext run) {
+                    while (applied < total && run.shouldContinue()) {
+                        applied++;
+                    }
+                    return applied < total ? this : null;
+                }
+
+                @Override
+                public void cancel() {
+                }
+            };
+        }
+    }
+
+    @Test
+    @DisplayName("applies queued sessions over several ticks, oldest first")
+    void appliesOverTicks() throws Exception {
+        PendingEdit first = new PendingEdit(50);
+        PendingEdit second = new PendingEdit(20);
+        queue.flush(platform, first.editSession, () -> flushed.add("first"));
+        queue.flush(platform, second.editSession, () -> flushed.add("second"));
+
+        verify(platform, times(1)).schedule(anyLong(), anyLong(), any());
+        assertNotNull(tick);
+        assertTrue(first.applied > 0 && first.applied < 50);
+        assertEquals(0, second.applied);
+
+        int ticks = 0;
+        while (flushed.size() < 2) {
+            int before = first.applied + second.applied;
+            tick.run();
+            ticks++;
+            assertTrue(first.applied + second.applied > before, "each tick makes progress");
+            if (first.applied < 50) {
+                assertEquals(0, second.applied);
+            }
+        }
+
+        assertEquals(50, first.applied);
+        assertEquals(20, second.applied);
+        assertEquals(2, flushed.size());
+        assertEquals("first", flushed.get(0));
+        assertTrue(ticks > 1, "the sessions were applied in " + ticks + " ticks");
+    }
+
+    @Test
+    @DisplayName("applies the changes to a world and older ones before it is edited again")
+    void completeWorld() throws Exception {
+        World world = mock(World.class);
+        PendingEdit first = new PendingEdit(50);
+        PendingEdit second = new PendingEdit(50, world);
+        PendingEdit third = new PendingEdit(50);
+        queue.flush(platform, first.editSession, () -> flushed.add("first"));
+        queue.flush(platform, second.editSession, () -> flushed.add("second"));
+        queue.flush(platform, third.editSession, () -> flushed.add("third"));
+
+        queue.complete(world);
+
+        assertEquals(50, first.applied);
+        assertEquals(50, second.applied);
+        assertEquals(0, third.applied);
+        assertEquals(2, flushed.size());
+        assertEquals("second", flushed.get(1));
+
+        // nothing is pending for the world any more
+        queue.complete(world);
+        assertEquals(0, third.applied);
+
+        queue.unload();
+        assertEquals(50, third.applied);
+        assertEquals(3, flushed.size());
+    }
+
+    @Test
+    @DisplayName("applies all changes before a command")
+    void completeAll() throws Exception {
+        PendingEdit first = new PendingEdit(50);
+        PendingEdit second = new PendingEdit(50);
+        queue.flush(platform, first.editSession, () -> flushed.add("first"));
+        queue.flush(platform, second.editSession, () -> flushed.add("second"));
+
+        queue.completeAll();
+
+        assertEquals(50, first.applied);
+        assertEquals(50, second.applied);
+        assertEquals(2, flushed.size());
+        assertEquals("first", flushed.get(0));
+    }
+
+    @Test
+    @DisplayName("applies all changes at once if no task can be scheduled")
+    void noScheduler() throws Exception {
+        when(platform.schedule(anyLong(), anyLong(), any())).thenReturn(-1);
+        PendingEdit edit = new PendingEdit(50);
+
+        queue.flush(platform, edit.editSession, () -> flushed.add("edit"));
+
+        assertEquals(50, edit.applied);
+        assertEquals(1, flushed.size());
+    }
+
+}
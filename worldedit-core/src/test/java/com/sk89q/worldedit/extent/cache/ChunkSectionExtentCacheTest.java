@@ -0,0 +1,178 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.cache;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.util.SideEffectSet;
+import com.sk89q.worldedit.util.test.TestBlockRegistry;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import static com.sk89q.worldedit.util.test.TestBlockRegistry.type;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("A chunk section extent cache")
+@Execution(ExecutionMode.SAME_THREAD)
+class ChunkSectionExtentCacheTest {
+
+    private BlockState stone;
+    private BlockState dirt;
+    private NeighbourUpdatingExtent world;
+    private SideEffectSet sideEffects;
+    private ChunkSectionExtentCache cache;
+
+    @BeforeEach
+    void setUp() throws WorldEditException {
+        TestBlockRegistry.setUp();
+        stone = type("minecraft:stone").getDefaultState();
+        dirt = type("minecraft:dirt").getDefaultState();
+        BlockArrayClipboard blocks = new BlockArrayClipboard(new CuboidRegion(
+            BlockVector3.at(-40, -20, -40), BlockVector3.at(40, 40, 40)));
+        for (BlockVector3 position : blocks.getRegion()) {
+            blocks.setBlock(position, stone);
+        }
+        world = new NeighbourUpdatingExtent(blocks);
+        sideEffects = SideEffectSet.none();
+        cache = new ChunkSectionExtentCache(world, 4, () -> sideEffects);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        TestBlockRegistry.tearDown();
+    }
+
+    /**
+     * An extent that counts its reads, and that also changes the block
+     * above every block set while side effects apply, like a neighbour
+     * update would.
+     */
+    private final class NeighbourUpdatingExtent extends AbstractDelegateExtent {
+        private int reads;
+
+        NeighbourUpdatingExtent(BlockArrayClipboard blocks) {
+            super(blocks);
+        }
+
+        @Override
+        public BlockState getBlock(BlockVector3 position) {
+            reads++;
+            return super.getBlock(position);
+        }
+
+        @Override
+        public <T extends BlockStateHolder<T>> boolean setBlock(BlockVector3 location, T block)
+                throws WorldEditException {
+            if (sideEffects.doesApplyAny()) {
+                super.setBlock(location.add(0, 1, 0), block);
+            }
+            return super.setBlock(location, block);
+        }
+    }
+
+    @Test
+    @DisplayName("reads each position from the extent once")
+    void readsOnce() {
+        BlockVector3 position = BlockVector3.at(-3, 5, 17);
+        assertEquals(stone, cache.getBlock(position));
+        assertEquals(stone, cache.getBlock(position));
+        assertEquals(1, world.reads);
+    }
+
+    @Test
+    @DisplayName("only forgets the changed position without side effects")
+    void forgetsPosition() throws WorldEditException {
+        BlockVector3 position = BlockVector3.at(-3, 5, 17);
+        BlockVector3 neighbour = position.add(1, 0, 0);
+        cache.getBlock(position);
+        cache.getBlock(neighbour);
+
+        cache.setBlock(position, dirt);
+        assertEquals(dirt, cache.getBlock(position));
+        assertEquals(stone, cache.getBlock(neighbour));
+        assertEquals(3, world.reads);
+    }
+
+    @Test
+    @DisplayName("forgets the blocks around the changed position with side effects")
+    void forgetsNeighbours() throws WorldEditException {
+        sideEffects = SideEffectSet.defaults();
+        BlockVector3 position = BlockVector3.at(-3, 5, 17);
+        BlockVector3 above = position.add(0, 1, 0);
+        assertEquals(stone, cache.getBlock(above));
+
+        cache.setBlock(position, dirt);
+        assertEquals(dirt, cache.getBlock(above));
+        assertEquals(dirt, cache.getBlock(position));
+    }
+
+    @Test
+    @DisplayName("forgets the neighbouring section when a change with side effects is on its edge")
+    void forgetsNeighbourSection() throws WorldEditException {
+        sideEffects = SideEffectSet.defaults();
+        // the block above is in the next section
+        BlockVector3 position = BlockVector3.at(-3, 15, 17);
+        BlockVector3 above = position.add(0, 1, 0);
+        BlockVector3 farAway = BlockVector3.at(13, 15, 17);
+        assertEquals(stone, cache.getBlock(above));
+        assertEquals(stone, cache.getBlock(farAway));
+
+        cache.setBlock(position, dirt);
+        assertEquals(dirt, cache.getBlock(above));
+        assertEquals(dirt, cache.getBlock(position));
+        int reads = world.reads;
+        // a different section that does not touch the change is kept
+        assertEquals(stone, cache.getBlock(farAway));
+        assertEquals(reads, world.reads);
+    }
+
+    @Test
+    @DisplayName("evicts the least recently used section")
+    void evictsSections() {
+        for (int i = 0; i < 5; i++) {
+            cache.getBlock(BlockVector3.at(i * 16 - 32, 0, 0));
+        }
+        assertEquals(5, world.reads);
+        cache.getBlock(BlockVector3.at(32, 0, 0));
+        assertEquals(5, world.reads);
+        cache.getBlock(BlockVector3.at(-32, 0, 0));
+        assertEquals(6, world.reads);
+    }
+
+    @Test
+    @DisplayName("forgets every block when a commit starts")
+    void clearsOnCommit() {
+        BlockVector3 position = BlockVector3.at(-30, -15, -30);
+        cache.getBlock(position);
+        cache.commit();
+        cache.getBlock(position);
+        assertEquals(2, world.reads);
+    }
+
+}
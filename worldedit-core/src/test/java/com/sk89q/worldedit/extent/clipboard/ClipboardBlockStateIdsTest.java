@@ -0,0 +1,131 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.internal.block.BlockStateIdAccess;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.test.TestBlockRegistry;
+import com.sk89q.worldedit.world.block.BlockState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static com.sk89q.worldedit.util.test.TestBlockRegistry.type;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("Reading block state IDs from a clipboard")
+@Execution(ExecutionMode.SAME_THREAD)
+class ClipboardBlockStateIdsTest {
+
+    private static final BlockVector3 MIN = BlockVector3.at(-21, -3, 4);
+    private static final BlockVector3 MAX = BlockVector3.at(13, 20, 30);
+    private static final int OFFSET = 5;
+
+    @BeforeEach
+    void setUp() {
+        TestBlockRegistry.setUp();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        TestBlockRegistry.tearDown();
+    }
+
+    static Stream<Arguments> cuboids() {
+        Function<Region, Clipboard> blockArray = BlockArrayClipboard::new;
+        Function<Region, Clipboard> paletted = PalettedClipboard::new;
+        BlockVector3[][] cuboids = {
+            // within the clipboard, across section boundaries
+            { BlockVector3.at(-18, 0, 10), BlockVector3.at(5, 17, 20) },
+            // a single block
+            { BlockVector3.at(0, 0, 16), BlockVector3.at(0, 0, 16) },
+            // the whole clipboard
+            { MIN, MAX },
+            // rows sticking out on either side along X
+            { BlockVector3.at(-30, 2, 8), BlockVector3.at(-15, 4, 9) },
+            { BlockVector3.at(10, 2, 8), BlockVector3.at(25, 4, 9) },
+            { BlockVector3.at(-25, 5, 6), BlockVector3.at(18, 5, 6) },
+            // rows and layers outside along Y and Z
+            { BlockVector3.at(-5, -8, 0), BlockVector3.at(3, 1, 6) },
+            { BlockVector3.at(-5, 18, 28), BlockVector3.at(3, 24, 35) },
+            // completely outside
+            { BlockVector3.at(30, 0, 0), BlockVector3.at(40, 3, 3) },
+        };
+        Stream.Builder<Arguments> arguments = Stream.builder();
+        for (BlockVector3[] cuboid : cuboids) {
+            arguments.add(Arguments.of("block array", blockArray, cuboid[0], cuboid[1]));
+            arguments.add(Arguments.of("paletted", paletted, cuboid[0], cuboid[1]));
+        }
+        return arguments.build();
+    }
+
+    @ParameterizedTest(name = "{0} clipboard, {2} to {3}")
+    @MethodSource("cuboids")
+    @DisplayName("matches reading every block")
+    void matchesGetBlock(String name, Function<Region, Clipboard> factory, BlockVector3 min, BlockVector3 max)
+            throws WorldEditException {
+        Clipboard clipboard = factory.apply(new CuboidRegion(MIN, MAX));
+        List<BlockState> states = type("minecraft:furnace").getAllStates();
+        for (BlockVector3 position : clipboard.getRegion()) {
+            // leave some sections unwritten
+            if (position.getY() < 12 || position.getX() < 0) {
+                int hash = position.getX() * 7 + position.getY() * 3 + position.getZ();
+                clipboard.setBlock(position, states.get(Math.floorMod(hash, states.size())));
+            }
+        }
+
+        BlockVector3 size = max.subtract(min).add(1, 1, 1);
+        int[] buffer = new int[OFFSET + size.getX() * size.getY() * size.getZ() + 3];
+        Arrays.fill(buffer, -2);
+        clipboard.getBlockStateIds(min, max, buffer, OFFSET);
+
+        int index = OFFSET;
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    BlockVector3 position = BlockVector3.at(x, y, z);
+                    int expected = BlockStateIdAccess.getBlockStateId(clipboard.getBlock(position));
+                    assertEquals(expected, buffer[index++], position::toString);
+                }
+            }
+        }
+        // nothing is written around the cuboid
+        for (int i = 0; i < OFFSET; i++) {
+            assertEquals(-2, buffer[i]);
+        }
+        for (int i = index; i < buffer.length; i++) {
+            assertEquals(-2, buffer[i]);
+        }
+    }
+
+}
@@ -0,0 +1,152 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard;
+
+import com.google.common.collect.ImmutableMap;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.util.test.TestBlockRegistry;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.biome.BiomeTypes;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.util.List;
+
+import static com.sk89q.worldedit.util.test.TestBlockRegistry.biome;
+import static com.sk89q.worldedit.util.test.TestBlockRegistry.type;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("A paletted clipboard")
+@Execution(ExecutionMode.SAME_THREAD)
+class PalettedClipboardTest {
+
+    private static final BlockVector3 MIN = BlockVector3.at(-5, -3, -7);
+    private static final BlockVector3 MAX = BlockVector3.at(20, 35, 18);
+
+    private PalettedClipboard clipboard;
+
+    @BeforeEach
+    void setUp() {
+        TestBlockRegistry.setUp();
+        clipboard = new PalettedClipboard(new CuboidRegion(MIN, MAX));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        TestBlockRegistry.tearDown();
+    }
+
+    /**
+     * Pick a state for a position, so that neighbouring positions and
+     * positions in different sections get different states.
+     */
+    private static BlockState stateAt(BlockVector3 position) {
+        List<BlockState> states = type("minecraft:furnace").getAllStates();
+        return states.get(Math.floorMod(position.getX() * 7 + position.getY() * 3 + position.getZ(), states.size()));
+    }
+
+    @Test
+    @DisplayName("reads back blocks set across section boundaries")
+    void setAndGetAcrossSections() throws WorldEditException {
+        for (BlockVector3 position : clipboard.getRegion()) {
+            assertTrue(clipboard.setBlock(position, stateAt(position)));
+        }
+        for (BlockVector3 position : clipboard.getRegion()) {
+            assertEquals(stateAt(position), clipboard.getBlock(position), position::toString);
+            assertEquals(stateAt(position).toBaseBlock(), clipboard.getFullBlock(position), position::toString);
+        }
+    }
+
+    @Test
+    @DisplayName("reads unwritten sections and positions outside as air")
+    void unwrittenSectionsAreAir() throws WorldEditException {
+        BlockVector3 written = BlockVector3.at(0, 0, 0);
+        clipboard.setBlock(written, type("minecraft:stone").getDefaultState());
+
+        BlockState air = BlockTypes.AIR.getDefaultState();
+        // Same section as the written block, and sections that were never written
+        assertEquals(air, clipboard.getBlock(BlockVector3.at(1, 0, 0)));
+        assertEquals(air, clipboard.getBlock(MIN));
+        assertEquals(air, clipboard.getBlock(MAX));
+        assertEquals(air, clipboard.getBlock(BlockVector3.at(20, 35, -7)));
+        // Outside the clipboard
+        assertEquals(air, clipboard.getBlock(MAX.add(1, 0, 0)));
+        assertFalse(clipboard.setBlock(MIN.subtract(0, 1, 0), type("minecraft:stone").getDefaultState()));
+        assertEquals(type("minecraft:stone").getDefaultState(), clipboard.getBlock(written));
+    }
+
+    @Test
+    @DisplayName("keeps NBT data until the block is replaced")
+    void nbtBlocks() throws WorldEditException {
+        BlockVector3 position = BlockVector3.at(15, 16, -1);
+        CompoundTag nbt = new CompoundTag(ImmutableMap.of("Id", new StringTag("minecraft:chest")));
+        BaseBlock chest = type("minecraft:chest").getDefaultState().toBaseBlock(nbt);
+        clipboard.setBlock(position, chest);
+
+        assertEquals(chest, clipboard.getFullBlock(position));
+        assertEquals(nbt, clipboard.getFullBlock(position).getNbtData());
+        assertEquals(chest.toImmutableState(), clipboard.getBlock(position));
+        assertNull(clipboard.getFullBlock(position.add(1, 0, 0)).getNbtData());
+
+        BlockState stone = type("minecraft:stone").getDefaultState();
+        clipboard.setBlock(position, stone);
+        assertEquals(stone.toBaseBlock(), clipboard.getFullBlock(position));
+        assertFalse(clipboard.getFullBlock(position).hasNbtData());
+    }
+
+    @Test
+    @DisplayName("stores biomes per position")
+    void biomes() {
+        assertFalse(clipboard.hasBiomes());
+        assertEquals(BiomeTypes.OCEAN, clipboard.getBiome(MIN));
+
+        BiomeType plains = biome("minecraft:plains");
+        BlockVector3 first = BlockVector3.at(-5, -3, -7);
+        BlockVector3 second = BlockVector3.at(11, 13, 9);
+        assertTrue(clipboard.setBiome(first, plains));
+        assertTrue(clipboard.setBiome(second, plains));
+        assertFalse(clipboard.setBiome(MAX.add(0, 0, 1), plains));
+
+        assertTrue(clipboard.hasBiomes());
+        assertEquals(plains, clipboard.getBiome(first));
+        assertEquals(plains, clipboard.getBiome(second));
+        assertEquals(BiomeTypes.OCEAN, clipboard.getBiome(second.add(0, 1, 0)));
+        assertEquals(BiomeTypes.OCEAN, clipboard.getBiome(MAX));
+
+        assertTrue(clipboard.setBiome(second, BiomeTypes.OCEAN));
+        assertEquals(BiomeTypes.OCEAN, clipboard.getBiome(second));
+        assertEquals(plains, clipboard.getBiome(first));
+    }
+
+}
@@ -0,0 +1,250 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.clipboard.io;
+
+import com.google.common.collect.ImmutableMap;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.IntArrayTag;
+import com.sk89q.jnbt.IntTag;
+import com.sk89q.jnbt.NBTInputStream;
+import com.sk89q.jnbt.NBTOutputStream;
+import com.sk89q.jnbt.ShortTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.util.test.TestBlockRegistry;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.biome.BiomeTypes;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.sk89q.worldedit.util.test.TestBlockRegistry.biome;
+import static com.sk89q.worldedit.util.test.TestBlockRegistry.type;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+@DisplayName("A Sponge schematic")
+@Execution(ExecutionMode.SAME_THREAD)
+class SpongeSchematicTest {
+
+    private static final BlockVector3 MIN = BlockVector3.at(-3, 10, -20);
+    private static final BlockVector3 MAX = BlockVector3.at(12, 17, -9);
+    private static final BlockVector3 ORIGIN = BlockVector3.at(0, 12, -15);
+    private static final BlockVector3 FIRST_CHEST = BlockVector3.at(-3, 10, -20);
+    private static final BlockVector3 SECOND_CHEST = BlockVector3.at(7, 15, -11);
+
+    private List<BlockState> states;
+
+    @BeforeEach
+    void setUp() {
+        TestBlockRegistry.setUp();
+        states = new ArrayList<>();
+        states.add(BlockTypes.AIR.getDefaultState());
+        states.add(type("minecraft:stone").getDefaultState());
+        states.addAll(type("minecraft:oak_log").getAllStates());
+        states.addAll(type("minecraft:furnace").getAllStates());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        TestBlockRegistry.tearDown();
+    }
+
+    private BlockState stateAt(BlockVector3 position) {
+        return states.get(Math.floorMod(position.getX() * 5 + position.getY() * 3 + position.getZ(), states.size()));
+    }
+
+    private static BiomeType biomeAt(int x, int z) {
+        return ((x ^ z) & 1) == 0 ? biome("minecraft:plains") : BiomeTypes.OCEAN;
+    }
+
+    private static BaseBlock chest(String name) {
+        return type("minecraft:chest").getDefaultState().toBaseBlock(new CompoundTag(ImmutableMap.of(
+                "id", new StringTag("minecraft:chest"),
+                "CustomName", new StringTag(name))));
+    }
+
+    private Clipboard createClipboard() throws WorldEditException {
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(MIN, MAX));
+        clipboard.setOrigin(ORIGIN);
+        for (BlockVector3 position : clipboard.getRegion()) {
+            clipboard.setBlock(position, stateAt(position));
+            clipboard.setBiome(position, biomeAt(position.getX(), position.getZ()));
+        }
+        clipboard.setBlock(FIRST_CHEST, chest("first"));
+        clipboard.setBlock(SECOND_CHEST, chest("second"));
+        return clipboard;
+    }
+
+    private static Clipboard roundTrip(Clipboard clipboard) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (SpongeSchematicWriter writer = new SpongeSchematicWriter(new NBTOutputStream(bytes))) {
+            writer.write(clipboard);
+        }
+        try (SpongeSchematicReader reader = new SpongeSchematicReader(
+                new NBTInputStream(new ByteArrayInputStream(bytes.toByteArray())))) {
+            return reader.read();
+        }
+    }
+
+    @Test
+    @DisplayName("reads back the region, origin and blocks that were written")
+    void blocks() throws Exception {
+        Clipboard read = roundTrip(createClipboard());
+
+        assertEquals(MIN, read.getMinimumPoint());
+        assertEquals(MAX, read.getMaximumPoint());
+        assertEquals(ORIGIN, read.getOrigin());
+        for (BlockVector3 position : read.getRegion()) {
+            if (position.equals(FIRST_CHEST) || position.equals(SECOND_CHEST)) {
+                continue;
+            }
+            assertEquals(stateAt(position), read.getBlock(position), position::toString);
+            assertNull(read.getFullBlock(position).getNbtData(), position.toString());
+        }
+    }
+
+    @Test
+    @DisplayName("reads back block entities at their positions")
+    void blockEntities() throws Exception {
+        Clipboard read = roundTrip(createClipboard());
+
+        assertBlockEntity(read, FIRST_CHEST, "first");
+        assertBlockEntity(read, SECOND_CHEST, "second");
+    }
+
+    private static void assertBlockEntity(Clipboard clipboard, BlockVector3 position, String name) {
+        BaseBlock block = clipboard.getFullBlock(position);
+        assertEquals(type("minecraft:chest").getDefaultState(), block.toImmutableState());
+        CompoundTag nbt = block.getNbtData();
+        assertNotNull(nbt);
+        assertEquals("minecraft:chest", block.getNbtId());
+        assertEquals(name, nbt.getString("CustomName"));
+        assertFalse(nbt.containsKey("Id"));
+        assertFalse(nbt.containsKey("Pos"));
+    }
+
+    @Test
+    @DisplayName("reads back biomes per column")
+    void biomes() throws Exception {
+        Clipboard read = roundTrip(createClipboard());
+
+        assertTrue(read.hasBiomes());
+        for (BlockVector3 position : read.getRegion()) {
+            assertEquals(biomeAt(position.getX(), position.getZ()), read.getBiome(position), position::toString);
+        }
+    }
+
+    /**
+     * Write a two by two by two schematic of stone and dirt, in the tag
+     * order of schematics written by other tools.
+     *
+     * @param offsetBefore the offset to write before the block data, or null
+     * @param offsetAfter the offset to write after the block data, or null
+     */
+    private static byte[] writeSchematic(BlockVector3 offsetBefore, BlockVector3 offsetAfter) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (NBTOutputStream out = new NBTOutputStream(bytes)) {
+            out.writeCompoundStart("Schematic");
+            out.writeNamedTag("Version", new IntTag(2));
+            out.writeNamedTag("DataVersion", new IntTag(0));
+            out.writeNamedTag("Width", new ShortTag((short) 2));
+            out.writeNamedTag("Height", new ShortTag((short) 2));
+            out.writeNamedTag("Length", new ShortTag((short) 2));
+            if (offsetBefore != null) {
+                out.writeNamedTag("Offset", offsetTag(offsetBefore));
+            }
+            out.writeNamedTag("Palette", new CompoundTag(ImmutableMap.of(
+                    "minecraft:stone", new IntTag(0),
+                    "minecraft:dirt", new IntTag(1))));
+            byte[] data = { 0, 1, 1, 0, 1, 0, 0, 1 };
+            out.writeByteArrayStart("BlockData", data.length);
+            out.writeByteArrayData(data, 0, data.length);
+            if (offsetAfter != null) {
+                out.writeNamedTag("Offset", offsetTag(offsetAfter));
+            }
+            out.writeCompoundEnd();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static IntArrayTag offsetTag(BlockVector3 offset) {
+        return new IntArrayTag(new int[] { offset.getX(), offset.getY(), offset.getZ() });
+    }
+
+    static Stream<Arguments> offsets() {
+        BlockVector3 offset = BlockVector3.at(-4, 60, 9);
+        return Stream.of(
+                arguments("no offset", null, null, BlockVector3.ZERO),
+                arguments("offset before the data", offset, null, offset),
+                arguments("offset after the data", null, offset, offset));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("offsets")
+    @DisplayName("reads schematics with the offset anywhere or missing")
+    void offset(String name, BlockVector3 offsetBefore, BlockVector3 offsetAfter, BlockVector3 min) throws Exception {
+        Clipboard read;
+        try (SpongeSchematicReader reader = new SpongeSchematicReader(
+                new NBTInputStream(new ByteArrayInputStream(writeSchematic(offsetBefore, offsetAfter))))) {
+            read = reader.read();
+        }
+
+        assertEquals(min, read.getMinimumPoint());
+        assertEquals(min.add(1, 1, 1), read.getMaximumPoint());
+        assertEquals(min, read.getOrigin());
+        BlockType[] types = { type("minecraft:stone"), type("minecraft:dirt") };
+        int[] expected = { 0, 1, 1, 0, 1, 0, 0, 1 };
+        int index = 0;
+        for (int y = 0; y < 2; y++) {
+            for (int z = 0; z < 2; z++) {
+                for (int x = 0; x < 2; x++) {
+                    BlockVector3 position = min.add(x, y, z);
+                    assertEquals(types[expected[index++]].getDefaultState(), read.getBlock(position), position::toString);
+                }
+            }
+        }
+    }
+}
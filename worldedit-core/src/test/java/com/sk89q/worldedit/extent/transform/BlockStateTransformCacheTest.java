@@ -0,0 +1,113 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.extent.transform;
+
+import com.google.common.collect.ImmutableMap;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.worldedit.math.transform.AffineTransform;
+import com.sk89q.worldedit.math.transform.Transform;
+import com.sk89q.worldedit.util.test.TestBlockRegistry;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+import static com.sk89q.worldedit.util.test.TestBlockRegistry.type;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DisplayName("A block state transform cache")
+@Execution(ExecutionMode.SAME_THREAD)
+class BlockStateTransformCacheTest {
+
+    private static final String[] TYPES = {
+        "minecraft:air", "minecraft:stone", "minecraft:oak_log", "minecraft:furnace", "minecraft:chest"
+    };
+
+    @BeforeEach
+    void setUp() {
+        TestBlockRegistry.setUp();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        TestBlockRegistry.tearDown();
+    }
+
+    static Stream<Arguments> transforms() {
+        return Stream.of(
+            Arguments.of("identity", new AffineTransform()),
+            Arguments.of("rotate 90", new AffineTransform().rotateY(90)),
+            Arguments.of("rotate 180", new AffineTransform().rotateY(180)),
+            Arguments.of("rotate 270", new AffineTransform().rotateY(270)),
+            Arguments.of("rotate -90", new AffineTransform().rotateY(-90)),
+            Arguments.of("rotate 45", new AffineTransform().rotateY(45)),
+            Arguments.of("rotate 90 around X", new AffineTransform().rotateX(90)),
+            Arguments.of("flip X", new AffineTransform().scale(-1, 1, 1)),
+            Arguments.of("flip Z", new AffineTransform().scale(1, 1, -1)),
+            Arguments.of("flip Y", new AffineTransform().scale(1, -1, 1)),
+            Arguments.of("rotate 90 and flip X", new AffineTransform().rotateY(90).scale(-1, 1, 1))
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("transforms")
+    @DisplayName("gives the same states as transforming without the cache")
+    void matchesUncached(String name, Transform transform) {
+        BlockStateTransformCache cache = new BlockStateTransformCache(transform);
+        // twice, so the second pass reads the cached results
+        for (int pass = 0; pass < 2; pass++) {
+            for (String id : TYPES) {
+                BlockType blockType = type(id);
+                for (BlockState state : blockType.getAllStates()) {
+                    assertEquals(BlockTransformExtent.transform(state, transform), cache.transform(state),
+                        state.getAsString());
+                }
+            }
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("transforms")
+    @DisplayName("keeps the NBT data of blocks")
+    void keepsNbt(String name, Transform transform) {
+        BlockStateTransformCache cache = new BlockStateTransformCache(transform);
+        CompoundTag nbt = new CompoundTag(ImmutableMap.of("CustomName", new StringTag("test")));
+        for (BlockState state : type("minecraft:chest").getAllStates()) {
+            BaseBlock block = state.toBaseBlock(nbt);
+            BaseBlock expected = BlockTransformExtent.transform(block, transform);
+            for (int pass = 0; pass < 2; pass++) {
+                BaseBlock transformed = cache.transform(block);
+                assertEquals(expected.toImmutableState(), transformed.toImmutableState(), state.getAsString());
+                assertEquals(nbt, transformed.getNbtData());
+            }
+        }
+    }
+
+}
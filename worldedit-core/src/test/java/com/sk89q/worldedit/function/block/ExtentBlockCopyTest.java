@@ -0,0 +1,115 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.block;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.extent.NullExtent;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.transform.AffineTransform;
+import com.sk89q.worldedit.math.transform.Identity;
+import com.sk89q.worldedit.math.transform.Transform;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.util.test.TestBlockRegistry;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Copying blocks between extents")
+@Execution(ExecutionMode.SAME_THREAD)
+class ExtentBlockCopyTest {
+
+    private static final BlockVector3 FROM = BlockVector3.at(-7, 3, 12);
+    private static final BlockVector3 TO = BlockVector3.at(250, -20, -1000);
+
+    @BeforeEach
+    void setUp() {
+        TestBlockRegistry.setUp();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        TestBlockRegistry.tearDown();
+    }
+
+    static Stream<Arguments> transforms() {
+        return Stream.of(
+            Arguments.of("identity", new Identity()),
+            Arguments.of("affine identity", new AffineTransform()),
+            Arguments.of("rotate 90", new AffineTransform().rotateY(90)),
+            Arguments.of("rotate 180", new AffineTransform().rotateY(180)),
+            Arguments.of("rotate 270", new AffineTransform().rotateY(270)),
+            Arguments.of("rotate -90", new AffineTransform().rotateY(-90)),
+            Arguments.of("rotate 90 around X", new AffineTransform().rotateX(90)),
+            Arguments.of("rotate 270 around Z", new AffineTransform().rotateZ(270)),
+            Arguments.of("flip X", new AffineTransform().scale(-1, 1, 1)),
+            Arguments.of("flip Y", new AffineTransform().scale(1, -1, 1)),
+            Arguments.of("flip Z", new AffineTransform().scale(1, 1, -1)),
+            Arguments.of("rotate 90 and flip X", new AffineTransform().rotateY(90).scale(-1, 1, 1)),
+            Arguments.of("rotate 90 and translate", new AffineTransform().rotateY(90).translate(3, -2, 17)),
+            Arguments.of("flip Z and translate", new AffineTransform().translate(-40, 0, 5).scale(1, 1, -1)),
+            // these go through doubles
+            Arguments.of("rotate 45", new AffineTransform().rotateY(45)),
+            Arguments.of("scale 2", new AffineTransform().scale(2))
+        );
+    }
+
+    /**
+     * An extent that remembers the position of the last block set.
+     */
+    private static final class LastSetExtent extends AbstractDelegateExtent {
+        private BlockVector3 lastPosition;
+
+        LastSetExtent() {
+            super(new NullExtent());
+        }
+
+        @Override
+        public <T extends BlockStateHolder<T>> boolean setBlock(BlockVector3 location, T block) {
+            lastPosition = location;
+            return true;
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("transforms")
+    @DisplayName("moves every block where transforming its position with doubles does")
+    void matchesDoubleTransform(String name, Transform transform) throws WorldEditException {
+        LastSetExtent destination = new LastSetExtent();
+        ExtentBlockCopy copy = new ExtentBlockCopy(new NullExtent(), FROM, destination, TO, transform);
+        for (BlockVector3 position : new CuboidRegion(FROM.subtract(20, 9, 13), FROM.add(17, 11, 22))) {
+            BlockVector3 expected = transform.apply(position.subtract(FROM).toVector3()).toBlockPoint().add(TO);
+            assertTrue(copy.apply(position));
+            assertEquals(expected, destination.lastPosition, position::toString);
+        }
+    }
+
+}
@@ -0,0 +1,268 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.mask;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.Extent;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.internal.block.BlockStateIdAccess;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.util.Direction;
+import com.sk89q.worldedit.util.test.TestBlockRegistry;
+import com.sk89q.worldedit.world.block.BlockCategory;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.block.FuzzyBlockState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static com.sk89q.worldedit.util.test.TestBlockRegistry.type;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Block masks compiled to block state IDs")
+@Execution(ExecutionMode.SAME_THREAD)
+class BlockMaskStateIdsTest {
+
+    private List<BlockState> states;
+    private Clipboard ascending;
+    private Clipboard descending;
+
+    @BeforeEach
+    void setUp() throws WorldEditException {
+        TestBlockRegistry.setUp();
+        states = new ArrayList<>();
+        for (BlockType type : BlockType.REGISTRY) {
+            states.addAll(type.getAllStates());
+        }
+        // every state once, in opposite orders
+        CuboidRegion region = new CuboidRegion(BlockVector3.ZERO, BlockVector3.at(states.size() - 1, 0, 0));
+        ascending = new BlockArrayClipboard(region);
+        descending = new BlockArrayClipboard(region);
+        for (int i = 0; i < states.size(); i++) {
+            ascending.setBlock(BlockVector3.at(i, 0, 0), states.get(i));
+            descending.setBlock(BlockVector3.at(i, 0, 0), states.get(states.size() - 1 - i));
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        TestBlockRegistry.tearDown();
+    }
+
+    private static AbstractBlockMask block(Extent extent) {
+        BlockType furnace = type("minecraft:furnace");
+        BlockState litFurnace = furnace.getDefaultState()
+            .with(furnace.getProperty("facing"), Direction.WEST)
+            .with(furnace.getProperty("lit"), true);
+        return new BlockMask(extent, type("minecraft:stone").getDefaultState().toBaseBlock(), litFurnace.toBaseBlock());
+    }
+
+    private static AbstractBlockMask fuzzyBlock(Extent extent) {
+        BlockType furnace = type("minecraft:furnace");
+        FuzzyBlockState fuzzy = FuzzyBlockState.builder()
+            .type(furnace)
+            .withProperty(furnace.getProperty("facing"), Direction.WEST)
+            .build();
+        return new BlockMask(extent, fuzzy.toBaseBlock());
+    }
+
+    private static AbstractBlockMask blockType(Extent extent) {
+        return new BlockTypeMask(extent, type("minecraft:dirt"), type("minecraft:oak_log"));
+    }
+
+    private static AbstractBlockMask category(Extent extent) {
+        return new BlockCategoryMask(extent, new BlockCategory("minecraft:logs"));
+    }
+
+    static Stream<Arguments> masks() {
+        return Stream.of(
+            Arguments.of("block", (Function<Extent, AbstractBlockMask>) BlockMaskStateIdsTest::block),
+            Arguments.of("fuzzy block", (Function<Extent, AbstractBlockMask>) BlockMaskStateIdsTest::fuzzyBlock),
+            Arguments.of("block type", (Function<Extent, AbstractBlockMask>) BlockMaskStateIdsTest::blockType),
+            Arguments.of("block state", (Function<Extent, AbstractBlockMask>) extent ->
+                new BlockStateMask(extent, ImmutableMap.of("facing", "north"), false)),
+            Arguments.of("strict block state", (Function<Extent, AbstractBlockMask>) extent ->
+                new BlockStateMask(extent, ImmutableMap.of("facing", "north"), true)),
+            Arguments.of("block category", (Function<Extent, AbstractBlockMask>) BlockMaskStateIdsTest::category),
+            Arguments.of("existing block", (Function<Extent, AbstractBlockMask>) ExistingBlockMask::new),
+            Arguments.of("solid block", (Function<Extent, AbstractBlockMask>) SolidBlockMask::new)
+        );
+    }
+
+    /**
+     * Check that the compiled set of a mask matches testing each state, and
+     * that testing a position matches the predicate.
+     */
+    private void assertMatches(Predicate<BlockState> expected, AbstractBlockMask mask) {
+        BitSet ids = mask.getStateIds();
+        for (int i = 0; i < states.size(); i++) {
+            BlockState state = states.get(i);
+            boolean matches = expected.test(state);
+            assertEquals(matches, mask.test(state), state::toString);
+            assertEquals(matches, ids.get(BlockStateIdAccess.getBlockStateId(state)), state::toString);
+            assertEquals(matches, mask.test(BlockVector3.at(i, 0, 0)), state::toString);
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("masks")
+    @DisplayName("match testing each state")
+    void matchesTest(String name, Function<Extent, AbstractBlockMask> factory) {
+        AbstractBlockMask mask = factory.apply(ascending);
+        AbstractBlockMask reference = factory.apply(ascending);
+        assertMatches(reference::test, mask);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("masks")
+    @DisplayName("match testing each state when negated")
+    void matchesTestNegated(String name, Function<Extent, AbstractBlockMask> factory) {
+        AbstractBlockMask reference = factory.apply(ascending);
+        AbstractBlockMask negated = (AbstractBlockMask) Masks.negate(factory.apply(ascending));
+        assertMatches(state -> !reference.test(state), negated);
+    }
+
+    @Test
+    @DisplayName("match testing each state when nested")
+    void matchesTestNested() {
+        AbstractBlockMask block = block(ascending);
+        AbstractBlockMask category = category(ascending);
+        AbstractBlockMask fuzzyBlock = fuzzyBlock(ascending);
+        AbstractBlockMask solid = new SolidBlockMask(ascending);
+
+        List<Mask> union = CombinedBlockMask.fold(ImmutableList.of(block, category), true);
+        assertEquals(1, union.size());
+        assertMatches(state -> block.test(state) || category.test(state), (AbstractBlockMask) union.get(0));
+
+        Mask negatedUnion = Masks.negate(union.get(0));
+        List<Mask> intersection = CombinedBlockMask.fold(
+            ImmutableList.of(negatedUnion, Masks.negate(fuzzyBlock), solid), false);
+        assertEquals(1, intersection.size());
+        assertMatches(state -> !(block.test(state) || category.test(state)) && !fuzzyBlock.test(state)
+            && solid.test(state), (AbstractBlockMask) intersection.get(0));
+    }
+
+    @Test
+    @DisplayName("match testing each state in nested unions and intersections")
+    void matchesTestNestedMasks() {
+        AbstractBlockMask block = block(ascending);
+        AbstractBlockMask category = category(ascending);
+        AbstractBlockMask fuzzyBlock = fuzzyBlock(ascending);
+        AbstractBlockMask blockType = blockType(ascending);
+        AbstractBlockMask existing = new ExistingBlockMask(ascending);
+        Mask mask = new MaskIntersection(
+            new MaskUnion(block, category, Masks.negate(fuzzyBlock)),
+            Masks.negate(new MaskUnion(blockType, new MaskIntersection(existing, Masks.negate(block)))),
+            existing
+        );
+
+        for (int i = 0; i < states.size(); i++) {
+            BlockState state = states.get(i);
+            boolean expected = (block.test(state) || category.test(state) || !fuzzyBlock.test(state))
+                && !(blockType.test(state) || existing.test(state) && !block.test(state))
+                && existing.test(state);
+            assertEquals(expected, mask.test(BlockVector3.at(i, 0, 0)), state::toString);
+        }
+    }
+
+    @Test
+    @DisplayName("read the extent set on a negated mask")
+    void negatedSetExtent() {
+        AbstractBlockMask reference = block(ascending);
+        AbstractBlockMask negated = (AbstractBlockMask) Masks.negate(block(ascending));
+        negated.setExtent(descending);
+
+        assertSame(descending, negated.getExtent());
+        for (int i = 0; i < states.size(); i++) {
+            BlockVector3 position = BlockVector3.at(i, 0, 0);
+            assertEquals(!reference.test(descending.getBlock(position)), negated.test(position), position::toString);
+        }
+    }
+
+    @Test
+    @DisplayName("fold again when a folded mask is given another extent")
+    void foldAgainOnSetExtent() {
+        AbstractBlockMask block = block(ascending);
+        AbstractBlockMask blockType = blockType(ascending);
+        AbstractBlockMask existing = new ExistingBlockMask(ascending);
+        MaskIntersection intersection = new MaskIntersection(existing, Masks.negate(blockType));
+        MaskUnion union = new MaskUnion(block, blockType);
+        for (int i = 0; i < states.size(); i++) {
+            // fold before the extent changes
+            intersection.test(BlockVector3.at(i, 0, 0));
+            union.test(BlockVector3.at(i, 0, 0));
+        }
+
+        blockType.setExtent(descending);
+        for (int i = 0; i < states.size(); i++) {
+            BlockVector3 position = BlockVector3.at(i, 0, 0);
+            BlockState state = ascending.getBlock(position);
+            BlockState other = descending.getBlock(position);
+            assertEquals(existing.test(state) && !blockType.test(other), intersection.test(position),
+                position::toString);
+            assertEquals(block.test(state) || blockType.test(other), union.test(position), position::toString);
+        }
+    }
+
+    @Test
+    @DisplayName("fold again when changed through the collection of masks")
+    void foldAgainOnMasksChange() {
+        BlockVector3 first = BlockVector3.at(0, 0, 0);
+        BlockVector3 last = BlockVector3.at(states.size() - 1, 0, 0);
+        BlockMask block = new BlockMask(ascending, states.get(0).toBaseBlock());
+        BlockTypeMask blockType = new BlockTypeMask(ascending, states.get(states.size() - 1).getBlockType());
+        MaskIntersection intersection = new MaskIntersection(block);
+        MaskUnion union = new MaskUnion(block);
+        assertTrue(intersection.test(first));
+        assertFalse(union.test(last));
+
+        intersection.getMasks().add(blockType);
+        union.getMasks().add(blockType);
+        assertFalse(intersection.test(first));
+        assertTrue(union.test(last));
+
+        intersection.getMasks().removeIf(mask -> mask == block);
+        union.getMasks().clear();
+        assertTrue(intersection.test(last));
+        assertFalse(union.test(first));
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.operation;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("Resuming operations within a budget")
+class BudgetedRunContextTest {
+
+    /**
+     * An operation that does one unit of work per step of its context.
+     */
+    static final class CountingOperation implements Operation {
+        private final int total;
+        private int done;
+
+        CountingOperation(int total) {
+            this.total = total;
+        }
+
+        int getDone() {
+            return done;
+        }
+
+        @Override
+        public Operation resume(RunContext run) {
+            while (done < total && run.shouldContinue()) {
+                done++;
+            }
+            return done < total ? this : null;
+        }
+
+        @Override
+        public void cancel() {
+        }
+    }
+
+    @Test
+    @DisplayName("resumes an operation across several slices")
+    void resumesAcrossSlices() throws Exception {
+        CountingOperation operation = new CountingOperation(100);
+        Operation pending = operation;
+        int slices = 0;
+        int lastDone = 0;
+        while (pending != null) {
+            BudgetedRunContext run = BudgetedRunContext.ofSteps(10);
+            pending = Operations.resumeWithin(pending, run);
+            slices++;
+
+            assertTrue(run.getSteps() <= 10);
+            assertTrue(operation.getDone() > lastDone, "each slice makes progress");
+            lastDone = operation.getDone();
+            if (pending != null) {
+                assertSame(operation, pending);
+                assertTrue(run.isExhausted());
+            }
+        }
+
+        assertEquals(100, operation.getDone());
+        assertTrue(slices >= 10, "the operation needed " + slices + " slices");
+    }
+
+    @Test
+    @DisplayName("completes an operation within a large enough budget")
+    void completesWithinBudget() throws Exception {
+        CountingOperation operation = new CountingOperation(100);
+
+        assertNull(Operations.resumeWithin(operation, BudgetedRunContext.ofSteps(1000)));
+        assertEquals(100, operation.getDone());
+    }
+
+    @Test
+    @DisplayName("makes no progress once the time budget is spent")
+    void timeBudget() throws Exception {
+        CountingOperation operation = new CountingOperation(100);
+        BudgetedRunContext run = BudgetedRunContext.ofTime(0, TimeUnit.MILLISECONDS);
+
+        assertSame(operation, Operations.resumeWithin(operation, run));
+        assertEquals(0, operation.getDone());
+        assertTrue(run.isExhausted());
+    }
+
+}
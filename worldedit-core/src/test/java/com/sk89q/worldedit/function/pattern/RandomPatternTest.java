@@ -0,0 +1,179 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.pattern;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("A random pattern")
+class RandomPatternTest {
+
+    private static final int SAMPLES = 1_000_000;
+
+    /**
+     * A pattern that records the positions it is applied to under its
+     * index.
+     */
+    private static final class RecordingPattern extends AbstractPattern {
+        private final int index;
+        private final Map<BlockVector3, Integer> picks;
+        private final AtomicLong count = new AtomicLong();
+
+        RecordingPattern(int index, Map<BlockVector3, Integer> picks) {
+            this.index = index;
+            this.picks = picks;
+        }
+
+        @Nullable
+        @Override
+        public BaseBlock applyBlock(BlockVector3 position) {
+            count.incrementAndGet();
+            picks.put(position, index);
+            return null;
+        }
+    }
+
+    private static List<RecordingPattern> addPatterns(RandomPattern pattern, double[] weights,
+                                                      Map<BlockVector3, Integer> picks) {
+        List<RecordingPattern> patterns = new ArrayList<>();
+        for (int i = 0; i < weights.length; i++) {
+            RecordingPattern recording = new RecordingPattern(i, picks);
+            pattern.add(recording, weights[i]);
+            patterns.add(recording);
+        }
+        return patterns;
+    }
+
+    private static List<BlockVector3> positions() {
+        List<BlockVector3> positions = new ArrayList<>();
+        for (int y = -8; y < 8; y++) {
+            for (int z = -20; z < 20; z++) {
+                for (int x = -20; x < 20; x++) {
+                    positions.add(BlockVector3.at(x, y, z));
+                }
+            }
+        }
+        return positions;
+    }
+
+    @Test
+    @DisplayName("with a seed picks the same patterns in any order and from any thread")
+    void seededIsDeterministic() {
+        double[] weights = { 1, 2, 0, 3.5, 0.25 };
+        List<BlockVector3> positions = positions();
+
+        Map<BlockVector3, Integer> inOrder = new ConcurrentHashMap<>();
+        RandomPattern first = new RandomPattern(42);
+        addPatterns(first, weights, inOrder);
+        for (BlockVector3 position : positions) {
+            first.applyBlock(position);
+        }
+
+        Map<BlockVector3, Integer> shuffled = new ConcurrentHashMap<>();
+        RandomPattern second = new RandomPattern(42);
+        addPatterns(second, weights, shuffled);
+        List<BlockVector3> order = new ArrayList<>(positions);
+        Collections.shuffle(order, new Random(7));
+        order.parallelStream().forEach(second::applyBlock);
+
+        assertEquals(positions.size(), inOrder.size());
+        assertEquals(inOrder, shuffled);
+
+        Map<BlockVector3, Integer> otherSeed = new ConcurrentHashMap<>();
+        RandomPattern third = new RandomPattern(43);
+        addPatterns(third, weights, otherSeed);
+        for (BlockVector3 position : positions) {
+            third.applyBlock(position);
+        }
+        assertNotEquals(inOrder, otherSeed);
+    }
+
+    private static void assertFrequencies(RandomPattern pattern, double[] weights) {
+        List<RecordingPattern> patterns = addPatterns(pattern, weights, new ConcurrentHashMap<>());
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+
+        for (int i = 0; i < SAMPLES; i++) {
+            pattern.applyBlock(BlockVector3.at(i, i >> 8, -i));
+        }
+
+        for (int i = 0; i < weights.length; i++) {
+            long count = patterns.get(i).count.get();
+            if (weights[i] == 0) {
+                assertEquals(0, count, "pattern " + i + " has no weight");
+            } else {
+                double expected = weights[i] / total;
+                // well over five standard deviations
+                double tolerance = 6 * Math.sqrt(expected * (1 - expected) / SAMPLES);
+                assertEquals(expected, count / (double) SAMPLES, tolerance, "pattern " + i);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("picks patterns as often as their weights")
+    void frequencies() {
+        double[] weights = { 1, 0, 3, 0.5, 0, 5.5 };
+        assertFrequencies(new RandomPattern(), weights);
+        assertFrequencies(new RandomPattern(1234), weights);
+    }
+
+    @Test
+    @DisplayName("picks many patterns as often as their weights")
+    void manyFrequencies() {
+        Random random = new Random(99);
+        double[] weights = new double[97];
+        for (int i = 0; i < weights.length; i++) {
+            // a third of the patterns without weight, the rest uneven
+            weights[i] = i % 3 == 0 ? 0 : random.nextDouble() * random.nextDouble() * 10;
+        }
+        assertFrequencies(new RandomPattern(), weights);
+        assertFrequencies(new RandomPattern(-5), weights);
+    }
+
+    @Test
+    @DisplayName("without any weight throws")
+    void emptyThrows() {
+        assertThrows(RuntimeException.class, () -> new RandomPattern().applyBlock(BlockVector3.ZERO));
+        assertThrows(RuntimeException.class, () -> new RandomPattern(1).applyBlock(BlockVector3.ZERO));
+
+        RandomPattern zero = new RandomPattern();
+        addPatterns(zero, new double[] { 0, 0 }, new ConcurrentHashMap<>());
+        assertThrows(RuntimeException.class, () -> zero.applyBlock(BlockVector3.ZERO));
+    }
+
+}
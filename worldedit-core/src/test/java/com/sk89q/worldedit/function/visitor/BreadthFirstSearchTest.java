@@ -0,0 +1,100 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.visitor;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
+import com.sk89q.worldedit.math.BlockVector3;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BreadthFirstSearchTest {
+
+    private static final int RADIUS = 5;
+
+    private final Set<BlockVector3> applied = new HashSet<>();
+
+    private BreadthFirstSearch createCubeSearch() {
+        return new BreadthFirstSearch(applied::add) {
+            @Override
+            protected boolean isVisitable(BlockVector3 from, BlockVector3 to) {
+                return Math.abs(to.getX()) <= RADIUS
+                    && Math.abs(to.getY() - 64) <= RADIUS
+                    && Math.abs(to.getZ()) <= RADIUS;
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("visits every connected position exactly once")
+    void visitsEveryPositionOnce() throws WorldEditException {
+        BreadthFirstSearch search = createCubeSearch();
+        search.visit(BlockVector3.at(0, 64, 0));
+        assertNull(search.resume(new RunContext()));
+
+        int side = RADIUS * 2 + 1;
+        assertEquals(side * side * side, search.getAffected());
+        assertEquals(side * side * side, applied.size());
+        assertTrue(applied.contains(BlockVector3.at(-RADIUS, 64 - RADIUS, RADIUS)));
+    }
+
+    @Test
+    @DisplayName("can be resumed after the run context stops it")
+    void resumesAfterStopping() throws WorldEditException {
+        BreadthFirstSearch search = createCubeSearch();
+        search.visit(BlockVector3.at(0, 64, 0));
+
+        RunContext oneBlock = new RunContext() {
+            @Override
+            public boolean shouldContinue() {
+                return false;
+            }
+        };
+        Operation next = search;
+        int runs = 0;
+        while (next != null) {
+            next = next.resume(oneBlock);
+            runs++;
+            assertEquals(runs, search.getAffected());
+        }
+
+        int side = RADIUS * 2 + 1;
+        assertEquals(side * side * side, runs);
+        assertEquals(side * side * side, applied.size());
+    }
+
+    @Test
+    @DisplayName("positions outside the packable height are not visited")
+    void skipsUnpackablePositions() throws WorldEditException {
+        BreadthFirstSearch search = createCubeSearch();
+        search.visit(BlockVector3.at(0, 1 << 20, 0));
+        assertNull(search.resume(new RunContext()));
+        assertEquals(0, search.getAffected());
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.function.visitor;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.function.RegionMaskingFilter;
+import com.sk89q.worldedit.function.block.BlockReplace;
+import com.sk89q.worldedit.function.mask.AbstractMask;
+import com.sk89q.worldedit.function.mask.BlockTypeMask;
+import com.sk89q.worldedit.function.mask.Mask;
+import com.sk89q.worldedit.function.mask.Mask2D;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.function.pattern.ClipboardPattern;
+import com.sk89q.worldedit.function.pattern.Pattern;
+import com.sk89q.worldedit.function.pattern.RandomPattern;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.Vector2;
+import com.sk89q.worldedit.math.Vector3;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.regions.CylinderRegion;
+import com.sk89q.worldedit.regions.EllipsoidRegion;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.util.test.TestBlockRegistry;
+import com.sk89q.worldedit.world.block.BlockState;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+
+import static com.sk89q.worldedit.util.test.TestBlockRegistry.type;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("A parallel region visitor")
+@Execution(ExecutionMode.SAME_THREAD)
+class ParallelRegionVisitorTest {
+
+    private static final BlockVector3 MIN = BlockVector3.at(-40, 0, -40);
+    private static final BlockVector3 MAX = BlockVector3.at(40, 40, 40);
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void setUpPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void tearDownPool() {
+        pool.shutdown();
+    }
+
+    @BeforeEach
+    void setUp() {
+        TestBlockRegistry.setUp();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        TestBlockRegistry.tearDown();
+    }
+
+    /**
+     * Create a clipboard with a mix of stone, dirt and air.
+     */
+    private static Clipboard createWorld() throws WorldEditException {
+        Clipboard clipboard = new BlockArrayClipboard(new CuboidRegion(MIN, MAX));
+        for (BlockVector3 position : clipboard.getRegion()) {
+            int kind = Math.floorMod(position.getX() * 31 + position.getY() * 17 + position.getZ() * 7, 5);
+            if (kind < 2) {
+                clipboard.setBlock(position, type("minecraft:stone").getDefaultState());
+            } else if (kind < 4) {
+                clipboard.setBlock(position, type("minecraft:dirt").getDefaultState());
+            }
+        }
+        return clipboard;
+    }
+
+    private static Pattern createPattern() {
+        RandomPattern pattern = new RandomPattern(1234);
+        List<BlockState> logs = type("minecraft:oak_log").getAllStates();
+        for (BlockState log : logs) {
+            pattern.add(log, 1);
+        }
+        pattern.add(type("minecraft:stone").getDefaultState(), 2);
+        return pattern;
+    }
+
+    private static void assertSameAsSerial(Region region, @Nullable Function<Clipboard, Mask> maskFactory) throws WorldEditException {
+        Clipboard serial = createWorld();
+        RegionVisitor serialVisitor;
+        BlockReplace replace = new BlockReplace(serial, createPattern());
+        if (maskFactory == null) {
+            serialVisitor = new RegionVisitor(region, replace);
+        } else {
+            serialVisitor = new RegionVisitor(region, new RegionMaskingFilter(maskFactory.apply(serial), replace));
+        }
+        Operations.completeLegacy(serialVisitor);
+
+        Clipboard parallel = createWorld();
+        ParallelRegionVisitor parallelVisitor = new ParallelRegionVisitor(region,
+            maskFactory == null ? null : maskFactory.apply(parallel), createPattern(), parallel, pool);
+        Operations.completeLegacy(parallelVisitor);
+
+        assertEquals(serialVisitor.getAffected(), parallelVisitor.getAffected());
+        for (BlockVector3 position : serial.getRegion()) {
+            assertEquals(serial.getBlock(position), parallel.getBlock(position), position::toString);
+        }
+    }
+
+    @Test
+    @DisplayName("sets the same blocks as a serial visitor in a cuboid")
+    void cuboid() throws WorldEditException {
+        assertSameAsSerial(new CuboidRegion(BlockVector3.at(-33, 2, -20), BlockVector3.at(35, 38, 17)), null);
+    }
+
+    @Test
+    @DisplayName("sets the same blocks as a serial visitor in a cylinder")
+    void cylinder() throws WorldEditException {
+        assertSameAsSerial(new CylinderRegion(BlockVector3.at(-3, 0, 5), Vector2.at(30.5, 21), 3, 36), null);
+    }
+
+    @Test
+    @DisplayName("replaces the same blocks as a serial visitor with a block mask")
+    void blockMask() throws WorldEditException {
+        assertSameAsSerial(new EllipsoidRegion(BlockVector3.at(2, 20, -1), Vector3.at(35, 18, 30)),
+            extent -> new BlockTypeMask(extent, type("minecraft:stone")));
+    }
+
+    @Test
+    @DisplayName("replaces the same blocks as a serial visitor with another mask")
+    void otherMask() throws WorldEditException {
+        // reads an unchanging copy, so the order of writes doesn't matter
+        Clipboard reference = createWorld();
+        assertSameAsSerial(new CuboidRegion(MIN, MAX), extent -> new AbstractMask() {
+            @Override
+            public boolean test(BlockVector3 vector) {
+                return reference.getBlock(vector.add(0, 1, 0)).getBlockType().getMaterial().isAir();
+            }
+
+            @Nullable
+            @Override
+            public Mask2D toMask2D() {
+                return null;
+            }
+        });
+    }
+
+    @Test
+    @DisplayName("only supports patterns that don't read extents")
+    void supportedPatterns() throws WorldEditException {
+        assertTrue(ParallelRegionVisitor.isSupported(type("minecraft:stone").getDefaultState()));
+        assertTrue(ParallelRegionVisitor.isSupported(createPattern()));
+
+        Clipboard world = createWorld();
+        ClipboardPattern clipboardPattern = new ClipboardPattern(world);
+        assertFalse(ParallelRegionVisitor.isSupported(clipboardPattern));
+        RandomPattern mixed = new RandomPattern();
+        mixed.add(type("minecraft:stone").getDefaultState(), 1);
+        mixed.add(clipboardPattern, 1);
+        assertFalse(ParallelRegionVisitor.isSupported(mixed));
+        assertThrows(IllegalArgumentException.class,
+            () -> new ParallelRegionVisitor(world.getRegion(), null, mixed, world, pool));
+    }
+
+}
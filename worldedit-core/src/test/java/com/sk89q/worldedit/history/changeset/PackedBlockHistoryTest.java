@@ -0,0 +1,159 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.history.changeset;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.worldedit.history.change.BlockChange;
+import com.sk89q.worldedit.history.change.Change;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.util.test.TestBlockRegistry;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static com.sk89q.worldedit.util.test.TestBlockRegistry.type;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("A packed block history")
+@Execution(ExecutionMode.SAME_THREAD)
+class PackedBlockHistoryTest {
+
+    // more than two full segments
+    private static final int CHANGE_COUNT = 40000;
+
+    @BeforeEach
+    void setUp() {
+        TestBlockRegistry.setUp();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        TestBlockRegistry.tearDown();
+    }
+
+    private static List<Change> createChanges() {
+        List<BlockState> states = new ArrayList<>();
+        states.addAll(type("minecraft:furnace").getAllStates());
+        states.addAll(type("minecraft:oak_log").getAllStates());
+        states.add(type("minecraft:stone").getDefaultState());
+        CompoundTag nbt = new CompoundTag(ImmutableMap.of("Id", new StringTag("minecraft:chest")));
+        BaseBlock chest = type("minecraft:chest").getDefaultState().toBaseBlock(nbt);
+
+        Random random = new Random(42);
+        List<Change> changes = new ArrayList<>();
+        for (int i = 0; i < CHANGE_COUNT; i++) {
+            BlockVector3 position = BlockVector3.at(random.nextInt(2000) - 1000, random.nextInt(256), random.nextInt(2000) - 1000);
+            BaseBlock previous = states.get(random.nextInt(states.size())).toBaseBlock();
+            BaseBlock current = i % 1000 == 0 ? chest : states.get(random.nextInt(states.size())).toBaseBlock();
+            changes.add(new BlockChange(position, previous, current));
+        }
+        // not long-packable, kept on the heap
+        changes.add(new BlockChange(BlockVector3.at(0, 5000, 0),
+            type("minecraft:stone").getDefaultState(), type("minecraft:dirt").getDefaultState()));
+        return changes;
+    }
+
+    private static void assertSameChanges(List<Change> expected, Iterator<Change> actual) {
+        List<Change> actualChanges = Lists.newArrayList(actual);
+        assertEquals(expected.size(), actualChanges.size());
+        for (int i = 0; i < expected.size(); i++) {
+            BlockChange expectedChange = (BlockChange) expected.get(i);
+            BlockChange actualChange = (BlockChange) actualChanges.get(i);
+            assertEquals(expectedChange.getPosition(), actualChange.getPosition());
+            assertEquals(expectedChange.getPrevious(), actualChange.getPrevious());
+            assertEquals(expectedChange.getCurrent(), actualChange.getCurrent());
+            assertEquals(expectedChange.getCurrent().getNbtData(), actualChange.getCurrent().getNbtData());
+        }
+    }
+
+    private static List<Change> inHistoryOrder(List<Change> changes) {
+        // changes that can't be packed come first
+        List<Change> ordered = new ArrayList<>();
+        ordered.add(changes.get(changes.size() - 1));
+        ordered.addAll(changes.subList(0, changes.size() - 1));
+        return ordered;
+    }
+
+    @Test
+    @DisplayName("replays spilled changes in both directions")
+    void spillAndReplay() throws Exception {
+        List<Change> changes = createChanges();
+        try (PackedBlockHistory history = new PackedBlockHistory(0)) {
+            changes.forEach(history::add);
+            assertNotNull(history.getSpillFile());
+            assertTrue(Files.size(history.getSpillFile()) > 0);
+            assertEquals(changes.size(), history.size());
+
+            List<Change> expected = inHistoryOrder(changes);
+            assertSameChanges(expected, history.forwardIterator());
+            assertSameChanges(Lists.reverse(expected), history.backwardIterator());
+        }
+    }
+
+    @Test
+    @DisplayName("replays in-memory changes like spilled ones")
+    void replayWithoutSpilling() throws Exception {
+        List<Change> changes = createChanges();
+        try (PackedBlockHistory history = new PackedBlockHistory(-1)) {
+            changes.forEach(history::add);
+            assertNull(history.getSpillFile());
+
+            List<Change> expected = inHistoryOrder(changes);
+            assertSameChanges(expected, history.forwardIterator());
+            assertSameChanges(Lists.reverse(expected), history.backwardIterator());
+        }
+    }
+
+    @Test
+    @DisplayName("deletes the spill file when closed")
+    void closeDeletesSpillFile() throws Exception {
+        PackedBlockHistory history = new PackedBlockHistory(0);
+        createChanges().forEach(history::add);
+        Path spillFile = history.getSpillFile();
+        assertNotNull(spillFile);
+        assertTrue(Files.exists(spillFile));
+
+        history.close();
+        assertNull(history.getSpillFile());
+        assertFalse(Files.exists(spillFile));
+        // closing twice is harmless
+        history.close();
+    }
+
+}
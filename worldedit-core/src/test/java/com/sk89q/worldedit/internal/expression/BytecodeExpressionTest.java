@@ -0,0 +1,103 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.internal.expression;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.jupiter.api.DynamicNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.DynamicTest.dynamicTest;
+
+class BytecodeExpressionTest extends BaseExpressionTest {
+
+    private static final double[] VALUES = {
+        0, -0.0, 1, -1, 2.5, -3.75, 7, 0.1 + 0.2, 1e300, Double.NaN, Double.POSITIVE_INFINITY
+    };
+
+    @TestFactory
+    public Stream<DynamicNode> testSameAsHandles() {
+        List<String> expressions = ImmutableList.of(
+            "x + y * 2 - x / y % 3",
+            "x ^ y + -x ** 2",
+            "(x << 3) + (y >> 1) + ~x",
+            "!x + !!y + (x && y) + (x || y)",
+            "(x < y) + (x <= y) * 2 + (x > y) * 4 + (x >= y) * 8 + (x == y) * 16 + (x != y) * 32",
+            "x ~= y",
+            "x! + y!",
+            "sin(x) + cos(y) + sqrt(abs(x)) + ln(abs(y) + 1) + round(x * 3) + floor(y) + ceil(x)",
+            "atan2(x, y) + min(x, y, 3) + max(x) + max(x, y)",
+            "pi * e + true - false",
+            "x > 0 ? x * x : y > 0 ? y : -1",
+            "r = x * x + y * y; r < 4 && r > 1",
+            "if (x > y) { x = y; y = 2 } else { y = x * 2 } x * 10 + y",
+            "if (x > 0) y = x",
+            "if (x == 0) ; else { y++; x-- } x + y",
+            "a = x; a += y; a -= 1; a *= 2; a /= 3; a %= 5; a ^= 2; a",
+            "x = x; ++x + x++ + x-- - --y",
+            "x += (x = 5); x",
+            "if (x > 0) { t = 1 } t",
+            "for (i = 0; i < 3; i++) { x += y } x",
+            "x = megabuf(0); megabuf(0, y); x"
+        );
+        return expressions.stream().map(source -> dynamicTest(source, () -> {
+            for (double x : VALUES) {
+                for (double y : VALUES) {
+                    Expression handles = compileWith(source, ExpressionBackend.METHOD_HANDLES);
+                    Expression bytecode = compileWith(source, ExpressionBackend.BYTECODE);
+                    String where = source + " with x=" + x + ", y=" + y;
+                    assertEquals(evaluate(handles, x, y), evaluate(bytecode, x, y), where);
+                    assertEquals(handles.getSlots().getSlotValue("x"), bytecode.getSlots().getSlotValue("x"), where);
+                    assertEquals(handles.getSlots().getSlotValue("y"), bytecode.getSlots().getSlotValue("y"), where);
+                }
+            }
+        }));
+    }
+
+    private Expression compileWith(String source, ExpressionBackend backend) {
+        return Expression.compile(source, backend, "x", "y");
+    }
+
+    private static String evaluate(Expression expression, double x, double y) {
+        try {
+            return String.valueOf(expression.evaluate(x, y));
+        } catch (EvaluationException e) {
+            return e.getMessage();
+        }
+    }
+
+    @Test
+    public void testFrames() {
+        Expression expression = compileWith("a = x * 2; y = a + y", ExpressionBackend.BYTECODE);
+        ExpressionFrame first = expression.newFrame();
+        ExpressionFrame second = expression.newFrame();
+        assertEquals(7, first.evaluate(2, 3), 0);
+        assertEquals(21, second.evaluate(10, 1), 0);
+        assertEquals(7, first.getInput(1).getValue(), 0);
+        assertEquals(20, second.getSlots().getSlotValue("a").orElseThrow(IllegalStateException::new), 0);
+        // the variables stay bound between evaluations
+        assertEquals(11, first.evaluate(2), 0);
+    }
+
+}
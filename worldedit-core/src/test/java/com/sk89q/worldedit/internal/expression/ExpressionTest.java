@@ -26,12 +26,14 @@
 
 import java.time.Duration;
 import java.util.List;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static com.sk89q.worldedit.internal.expression.ExpressionTestCase.testCase;
 import static java.lang.Math.atan2;
 import static java.lang.Math.sin;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -414,6 +416,41 @@ public void testQuery() {
         checkTestCase("!queryRel(3,4,5,100,200)", 1);
     }
 
+    @Test
+    public void testFrames() {
+        Expression expression = compile("a = x * 2; a + y", "x", "y");
+        ExpressionFrame first = expression.newFrame();
+        ExpressionFrame second = expression.newFrame();
+        assertEquals(7, first.evaluate(2, 3), 0);
+        assertEquals(21, second.evaluate(10, 1), 0);
+        assertEquals(4, first.getSlots().getSlotValue("a").orElseThrow(IllegalStateException::new), 0);
+        assertEquals(20, second.getSlots().getSlotValue("a").orElseThrow(IllegalStateException::new), 0);
+        assertFalse(expression.getSlots().containsSlot("a"));
+
+        // each thread evaluates its own frame of the same expression
+        ThreadLocal<ExpressionFrame> frames = ThreadLocal.withInitial(expression::newFrame);
+        assertTrue(IntStream.range(0, 100_000).parallel().allMatch(i -> {
+            ExpressionFrame frame = frames.get();
+            frame.set(0, i);
+            frame.set(1, 1);
+            return frame.evaluate() == i * 2 + 1;
+        }));
+    }
+
+    @Test
+    public void testSharingState() {
+        assertFalse(compile("x = x + 1; y = sin(z)", "x", "y", "z").isSharingState());
+        assertFalse(compile("x++; --y; rotate(x, y, 0.5); swap(y, z)", "x", "y", "z").isSharingState());
+        assertFalse(compile("perlin(1, x, y, z, 1, 1, 0.5) > 0.5", "x", "y", "z").isSharingState());
+        assertTrue(compile("a = x; x = z; z = a", "x", "y", "z").isSharingState());
+        assertTrue(compile("a++; y = y + a", "x", "y", "z").isSharingState());
+        assertTrue(compile("for (i = 0, 3) { x = x + 1 }", "x", "y", "z").isSharingState());
+        assertTrue(compile("a = 0; rotate(x, a, pi)", "x", "y", "z").isSharingState());
+        assertTrue(compile("y = megabuf(0)", "x", "y", "z").isSharingState());
+        assertTrue(compile("gmegabuf(x, y)", "x", "y", "z").isSharingState());
+        assertTrue(compile("query(x, y - 1, z, 0, 0) ? (y = y - 1) : 0", "x", "y", "z").isSharingState());
+    }
+
     @Test
     public void testTimeout() {
         ExpressionTimeoutException e = assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
@@ -0,0 +1,122 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.math.convolution;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class HeightMapFilterTest {
+
+    private static ForkJoinPool pool;
+
+    @BeforeAll
+    static void setUp() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        pool.shutdown();
+    }
+
+    private static int[] randomHeights(int width, int height) {
+        Random random = new Random(width * 31 + height);
+        int[] data = new int[width * height];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = 40 + random.nextInt(80);
+        }
+        return data;
+    }
+
+    /**
+     * Filter one entry at a time, clamping each kernel coordinate.
+     */
+    private static int[] referenceFilter(Kernel kernel, int[] inData, int width, int height) {
+        float[] matrix = kernel.getKernelData(null);
+        int[] outData = new int[inData.length];
+        int index = 0;
+        for (int y = 0; y < height; ++y) {
+            for (int x = 0; x < width; ++x) {
+                float z = 0;
+                for (int ky = 0; ky < kernel.getHeight(); ++ky) {
+                    int offsetY = y + ky - kernel.getYOrigin();
+                    if (offsetY < 0 || offsetY >= height) {
+                        offsetY = y;
+                    }
+                    for (int kx = 0; kx < kernel.getWidth(); ++kx) {
+                        float f = matrix[ky * kernel.getWidth() + kx];
+                        if (f == 0) {
+                            continue;
+                        }
+                        int offsetX = x + kx - kernel.getXOrigin();
+                        if (offsetX < 0 || offsetX >= width) {
+                            offsetX = x;
+                        }
+                        z += f * inData[offsetY * width + offsetX];
+                    }
+                }
+                outData[index++] = (int) (z + 0.5);
+            }
+        }
+        return outData;
+    }
+
+    private static void assertMatchesReference(Kernel kernel, int width, int height) {
+        int[] data = randomHeights(width, height);
+        int[] expected = referenceFilter(kernel, data, width, height);
+        HeightMapFilter filter = new HeightMapFilter(kernel);
+        assertArrayEquals(expected, filter.filter(data, width, height));
+        assertArrayEquals(expected, filter.filter(data, width, height, pool));
+    }
+
+    @Test
+    @DisplayName("gaussian filtering matches the reference on small maps")
+    void gaussianSmall() {
+        assertMatchesReference(new GaussianKernel(5, 1.0), 7, 3);
+        assertMatchesReference(new GaussianKernel(5, 1.0), 1, 1);
+        assertMatchesReference(new GaussianKernel(2, 1.0), 13, 17);
+    }
+
+    @Test
+    @DisplayName("filtering in bands matches the reference on large maps")
+    void bandsLarge() {
+        assertMatchesReference(new GaussianKernel(5, 1.0), 300, 257);
+        assertMatchesReference(new LinearKernel(3), 511, 130);
+    }
+
+    @Test
+    @DisplayName("kernels with zero entries match the reference")
+    void sparseKernel() {
+        float[] data = {
+            0, 1, 0,
+            1, 0, 1,
+            0, 1, 0,
+        };
+        assertMatchesReference(new Kernel(3, 3, data), 200, 200);
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.regions;
+
+import com.google.common.collect.ImmutableList;
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.Vector2;
+import com.sk89q.worldedit.math.Vector3;
+import com.sk89q.worldedit.world.World;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("The spans of a region")
+class RegionSpanTest {
+
+    static Stream<Arguments> regions() {
+        ConvexPolyhedralRegion polyhedron = new ConvexPolyhedralRegion((World) null);
+        polyhedron.addVertex(BlockVector3.at(-20, 5, -30));
+        polyhedron.addVertex(BlockVector3.at(-3, 5, -28));
+        polyhedron.addVertex(BlockVector3.at(-10, 18, -20));
+        polyhedron.addVertex(BlockVector3.at(-12, 6, -10));
+        polyhedron.addVertex(BlockVector3.at(-5, 13, -12));
+        CuboidRegion cuboid = new CuboidRegion(BlockVector3.at(-20, 5, -33), BlockVector3.at(-3, 17, -17));
+        EllipsoidRegion ellipsoid = new EllipsoidRegion(BlockVector3.at(-10, 6, -20), Vector3.at(6, 3, 8));
+        return Stream.of(
+            Arguments.of("cuboid", cuboid),
+            Arguments.of("single block cuboid", new CuboidRegion(BlockVector3.at(-1, 1, -1), BlockVector3.at(-1, 1, -1))),
+            Arguments.of("flat cuboid", new CuboidRegion(BlockVector3.at(-40, 3, -2), BlockVector3.at(-10, 3, 30))),
+            Arguments.of("ellipsoid", ellipsoid),
+            Arguments.of("single block ellipsoid", new EllipsoidRegion(BlockVector3.at(-10, -4, -20), Vector3.ZERO)),
+            Arguments.of("line ellipsoid", new EllipsoidRegion(BlockVector3.at(-10, -4, -20), Vector3.at(0, 3, 0))),
+            Arguments.of("cylinder", new CylinderRegion(BlockVector3.at(-10, 0, -20), Vector2.at(5, 9), -5, 3)),
+            Arguments.of("single block cylinder", new CylinderRegion(BlockVector3.at(-10, 0, -20), Vector2.ZERO, -5, -5)),
+            Arguments.of("polygon", new Polygonal2DRegion(null, ImmutableList.of(
+                BlockVector2.at(-20, -20), BlockVector2.at(-3, -25), BlockVector2.at(-8, -5), BlockVector2.at(-15, -10)),
+                3, 4)),
+            Arguments.of("two point polygon", new Polygonal2DRegion(null, ImmutableList.of(
+                BlockVector2.at(-20, -20), BlockVector2.at(-3, -20)), 0, 0)),
+            Arguments.of("polyhedron", polyhedron),
+            Arguments.of("intersection", new RegionIntersection(cuboid, ellipsoid))
+        );
+    }
+
+    /**
+     * Get the positions in the bounding box of a region that it contains.
+     */
+    private static Set<BlockVector3> containedPositions(Region region) {
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        Set<BlockVector3> positions = new HashSet<>();
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                for (int x = min.getX(); x <= max.getX(); x++) {
+                    BlockVector3 position = BlockVector3.at(x, y, z);
+                    if (region.contains(position)) {
+                        positions.add(position);
+                    }
+                }
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Collects spans as positions, checking that they don't overlap.
+     */
+    private static final class SpanCollector implements SpanConsumer {
+        private final Region region;
+        private final Set<BlockVector3> positions = new HashSet<>();
+
+        SpanCollector(Region region) {
+            this.region = region;
+        }
+
+        @Override
+        public void accept(int y, int z, int minX, int maxX) {
+            assertTrue(minX <= maxX, "empty span");
+            assertTrue(minX >= region.getMinimumPoint().getX() && maxX <= region.getMaximumPoint().getX(),
+                "span outside the bounding box");
+            for (int x = minX; x <= maxX; x++) {
+                assertTrue(positions.add(BlockVector3.at(x, y, z)), "overlapping spans");
+            }
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("regions")
+    @DisplayName("cover the contained positions")
+    void spans(String name, Region region) {
+        SpanCollector collector = new SpanCollector(region);
+        region.forEachSpan(collector);
+        assertEquals(containedPositions(region), collector.positions);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("regions")
+    @DisplayName("in chunk order cover the contained positions, one chunk at a time")
+    void spansInChunkOrder(String name, Region region) {
+        SpanCollector collector = new SpanCollector(region);
+        region.forEachSpanInChunkOrder((y, z, minX, maxX) -> {
+            assertEquals(minX >> 4, maxX >> 4, "span crosses a chunk border");
+            collector.accept(y, z, minX, maxX);
+        });
+        assertEquals(containedPositions(region), collector.positions);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("regions")
+    @DisplayName("of part of a row cover the contained positions of that part")
+    void partialRows(String name, Region region) {
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        int fromX = min.getX() + (max.getX() - min.getX()) / 3;
+        int toX = max.getX() - (max.getX() - min.getX()) / 4;
+        Set<BlockVector3> expected = new HashSet<>();
+        for (BlockVector3 position : containedPositions(region)) {
+            if (position.getX() >= fromX && position.getX() <= toX) {
+                expected.add(position);
+            }
+        }
+
+        SpanCollector collector = new SpanCollector(region);
+        for (int y = min.getY(); y <= max.getY(); y++) {
+            for (int z = min.getZ(); z <= max.getZ(); z++) {
+                region.forEachSpan(y, z, fromX, toX, (spanY, spanZ, minX, maxX) -> {
+                    assertTrue(minX >= fromX && maxX <= toX, "span outside the requested part");
+                    collector.accept(spanY, spanZ, minX, maxX);
+                });
+            }
+        }
+        assertEquals(expected, collector.positions);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("regions")
+    @DisplayName("match the iterator")
+    void iterator(String name, Region region) {
+        Set<BlockVector3> iterated = new HashSet<>();
+        for (BlockVector3 position : region) {
+            iterated.add(position);
+        }
+        assertEquals(containedPositions(region), iterated);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("regions")
+    @DisplayName("match the chunk cubes")
+    void chunkCubes(String name, Region region) {
+        Set<BlockVector3> expected = new HashSet<>();
+        for (BlockVector3 position : containedPositions(region)) {
+            expected.add(BlockVector3.at(position.getX() >> 4, position.getY() >> 4, position.getZ() >> 4));
+        }
+        assertEquals(expected, region.getChunkCubes());
+    }
+
+}
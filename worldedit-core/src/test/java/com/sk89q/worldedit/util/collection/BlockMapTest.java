@@ -25,6 +25,7 @@
 import com.sk89q.worldedit.extension.platform.Platform;
 import com.sk89q.worldedit.extension.platform.PlatformManager;
 import com.sk89q.worldedit.extension.platform.Preference;
+import com.sk89q.worldedit.math.BlockVector2;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.registry.Registry;
 import com.sk89q.worldedit.util.test.VariedVectorGenerator;
@@ -45,8 +46,10 @@
 
 import java.lang.reflect.Field;
 import java.util.AbstractMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
@@ -218,8 +221,10 @@ void removeKeyValueReturnsFalse() {
         void doesNothingOnReplace() {
             assertNull(map.replace(BlockVector3.ZERO, air));
             assertEquals(0, map.size());
+            assertTrue(map.isEmpty());
             assertFalse(map.replace(BlockVector3.ZERO, null, air));
             assertEquals(0, map.size());
+            assertTrue(map.isEmpty());
         }
 
         @Test
@@ -603,4 +608,52 @@ void containsAllInsertedVectors() {
         }
     }
 
+    @Test
+    @DisplayName("iterates by region file, then chunk, then descending Y")
+    void iteratesInChunkOrder() {
+        Set<BlockVector3> allVectors = new VariedVectorGenerator()
+            .makeVectorsStream()
+            .collect(Collectors.toSet());
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            allVectors.add(BlockVector3.at(
+                random.nextInt(1200) - 600,
+                random.nextInt(400) - 70,
+                random.nextInt(1200) - 600
+            ));
+        }
+        for (BlockVector3 vec : allVectors) {
+            map.put(vec, air);
+        }
+
+        Set<BlockVector3> seen = new HashSet<>();
+        Set<BlockVector2> finishedChunks = new HashSet<>();
+        BlockVector3 previous = null;
+        for (Iterator<Map.Entry<BlockVector3, BaseBlock>> it = map.chunkOrderIterator(); it.hasNext();) {
+            Map.Entry<BlockVector3, BaseBlock> entry = it.next();
+            BlockVector3 vec = entry.getKey();
+            assertEquals(air, entry.getValue());
+            assertTrue(seen.add(vec), "Visited twice: " + vec);
+            if (previous != null) {
+                BlockVector2 previousRegion = previous.toBlockVector2().shr(9);
+                BlockVector2 region = vec.toBlockVector2().shr(9);
+                int regionOrder = previousRegion.getBlockX() != region.getBlockX()
+                    ? Integer.compare(previousRegion.getBlockX(), region.getBlockX())
+                    : Integer.compare(previousRegion.getBlockZ(), region.getBlockZ());
+                assertTrue(regionOrder <= 0, "Region out of order: " + previous + " before " + vec);
+
+                BlockVector2 previousChunk = previous.toBlockVector2().shr(4);
+                BlockVector2 chunk = vec.toBlockVector2().shr(4);
+                if (previousChunk.equals(chunk)) {
+                    assertTrue(previous.getY() >= vec.getY(), "Y out of order: " + previous + " before " + vec);
+                } else {
+                    finishedChunks.add(previousChunk);
+                    assertFalse(finishedChunks.contains(chunk), "Chunk visited twice: " + chunk);
+                }
+            }
+            previous = vec;
+        }
+        assertEquals(allVectors, seen);
+    }
+
 }
@@ -0,0 +1,87 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.collection;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PagedBitSetTest {
+
+    @Test
+    @DisplayName("matches java.util.BitSet for bits scattered over several pages")
+    void matchesBitSet() {
+        int size = 5 * 4096 + 77;
+        PagedBitSet set = new PagedBitSet(size);
+        BitSet expected = new BitSet(size);
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            int index = random.nextInt(size);
+            set.set(index);
+            expected.set(index);
+        }
+        set.set(4090, 4110);
+        expected.set(4090, 4110);
+        set.set(size - 1);
+        expected.set(size - 1);
+
+        for (int i = 0; i < size; i++) {
+            assertEquals(expected.get(i), set.get(i));
+            assertEquals(expected.nextSetBit(i), set.nextSetBit(i));
+        }
+    }
+
+    @Test
+    @DisplayName("nextSetBit skips pages that were never set")
+    void nextSetBitSkipsEmptyPages() {
+        PagedBitSet set = new PagedBitSet(100 * 4096);
+        assertEquals(-1, set.nextSetBit(0));
+        set.set(73 * 4096 + 5);
+        assertEquals(73 * 4096 + 5, set.nextSetBit(0));
+        assertEquals(-1, set.nextSetBit(73 * 4096 + 6));
+    }
+
+    @Test
+    @DisplayName("the largest size can be created and used at its last index")
+    void largestSize() {
+        PagedBitSet set = new PagedBitSet(Integer.MAX_VALUE);
+        assertFalse(set.get(Integer.MAX_VALUE - 1));
+        set.set(Integer.MAX_VALUE - 1);
+        assertTrue(set.get(Integer.MAX_VALUE - 1));
+        assertEquals(Integer.MAX_VALUE - 1, set.nextSetBit(Integer.MAX_VALUE - 4096 * 3));
+        assertEquals(Integer.MAX_VALUE - 1, set.nextSetBit(0));
+    }
+
+    @Test
+    @DisplayName("setting an index outside the set throws")
+    void outOfBounds() {
+        PagedBitSet set = new PagedBitSet(10);
+        assertThrows(IndexOutOfBoundsException.class, () -> set.set(10));
+        assertThrows(IndexOutOfBoundsException.class, () -> set.set(-1));
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.collection;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("A paletted int array")
+class PalettedIntArrayTest {
+
+    @Test
+    @DisplayName("returns the initial value everywhere")
+    void initialValue() {
+        PalettedIntArray array = new PalettedIntArray(42);
+        for (int i = 0; i < PalettedIntArray.SIZE; i++) {
+            assertEquals(42, array.get(i));
+        }
+        assertEquals(0, array.getBitsPerEntry());
+        assertTrue(array.isUniform());
+    }
+
+    @Test
+    @DisplayName("keeps values when growing across bit widths")
+    void growsPalette() {
+        PalettedIntArray array = new PalettedIntArray(0);
+        int[] expected = new int[PalettedIntArray.SIZE];
+        Random random = new Random(0);
+        // enough distinct values to force growth up to 10 bits, which spans longs
+        for (int i = 0; i < PalettedIntArray.SIZE; i++) {
+            int value = random.nextInt(1000) * 31;
+            expected[i] = value;
+            array.set(i, value);
+        }
+        int[] actual = new int[PalettedIntArray.SIZE];
+        array.copyTo(actual, 0);
+        assertArrayEquals(expected, actual);
+        assertEquals(10, array.getBitsPerEntry());
+    }
+
+    @Test
+    @DisplayName("overwrites values without disturbing neighbours")
+    void overwrite() {
+        PalettedIntArray array = new PalettedIntArray(0);
+        for (int i = 0; i < 7; i++) {
+            array.set(i, i);
+        }
+        array.set(3, 6);
+        assertEquals(2, array.get(2));
+        assertEquals(6, array.get(3));
+        assertEquals(4, array.get(4));
+    }
+
+    @Test
+    @DisplayName("round-trips through its palette and packed data")
+    void fromPackedData() {
+        // 5 bits per entry, index i holds palette entry i % 20
+        int[] palette = new int[20];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = i * 7;
+        }
+        long[] data = new long[64 * 5];
+        for (int i = 0; i < PalettedIntArray.SIZE; i++) {
+            long bitIndex = (long) i * 5;
+            int longIndex = (int) (bitIndex >>> 6);
+            int offset = (int) (bitIndex & 63);
+            long value = i % 20;
+            data[longIndex] |= value << offset;
+            if (offset + 5 > 64) {
+                data[longIndex + 1] |= value >>> (64 - offset);
+            }
+        }
+        PalettedIntArray array = new PalettedIntArray(palette, data);
+        for (int i = 0; i < PalettedIntArray.SIZE; i++) {
+            assertEquals((i % 20) * 7, array.get(i));
+        }
+    }
+
+    @Test
+    @DisplayName("rejects out-of-bounds indexes")
+    void outOfBounds() {
+        PalettedIntArray array = new PalettedIntArray(0);
+        assertThrows(IndexOutOfBoundsException.class, () -> array.get(PalettedIntArray.SIZE));
+        assertThrows(IndexOutOfBoundsException.class, () -> array.set(-1, 1));
+    }
+}
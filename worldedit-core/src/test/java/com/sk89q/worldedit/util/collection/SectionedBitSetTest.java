@@ -0,0 +1,108 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.collection;
+
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.util.test.VariedVectors;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SectionedBitSetTest {
+
+    private final SectionedBitSet set = new SectionedBitSet();
+
+    @VariedVectors.Test(capToVanilla = true)
+    @DisplayName("calling add(vec) makes contains(vec) return true")
+    void containsAfterAdd(BlockVector3 vec) {
+        assertFalse(set.contains(vec));
+        assertTrue(set.add(vec));
+        assertTrue(set.contains(vec));
+        assertEquals(1, set.size());
+    }
+
+    @VariedVectors.Test(capToVanilla = true)
+    @DisplayName("calling add(vec) twice returns false the second time")
+    void addTwice(BlockVector3 vec) {
+        assertTrue(set.add(vec));
+        assertFalse(set.add(vec));
+        assertEquals(1, set.size());
+    }
+
+    @VariedVectors.Test(capToVanilla = true)
+    @DisplayName("neighbours of an added vector are not contained")
+    void neighboursNotContained(BlockVector3 vec) {
+        set.add(vec);
+        assertFalse(set.contains(vec.add(1, 0, 0)));
+        assertFalse(set.contains(vec.add(0, 1, 0)));
+        assertFalse(set.contains(vec.add(0, 0, 1)));
+        assertFalse(set.contains(vec.subtract(1, 0, 0)));
+        assertFalse(set.contains(vec.subtract(0, 1, 0)));
+        assertFalse(set.contains(vec.subtract(0, 0, 1)));
+    }
+
+    @Test
+    @DisplayName("every position of a section crossing the origin is stored separately")
+    void denseCube() {
+        for (int y = -20; y < 20; y++) {
+            for (int z = -20; z < 20; z++) {
+                for (int x = -20; x < 20; x++) {
+                    if (((x ^ y ^ z) & 1) == 0) {
+                        assertTrue(set.add(x, y, z));
+                    }
+                }
+            }
+        }
+        assertEquals(40 * 40 * 40 / 2, set.size());
+        for (int y = -20; y < 20; y++) {
+            for (int z = -20; z < 20; z++) {
+                for (int x = -20; x < 20; x++) {
+                    assertEquals(((x ^ y ^ z) & 1) == 0, set.contains(x, y, z));
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("calling clear() removes every position")
+    void clearRemovesAll() {
+        set.add(1, 2, 3);
+        set.add(-100, 64, 100);
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(1, 2, 3));
+        assertFalse(set.contains(-100, 64, 100));
+    }
+
+    @Test
+    @DisplayName("out of bounds positions are rejected")
+    void outOfBounds() {
+        assertFalse(SectionedBitSet.isInBounds(1 << 25, 0, 0));
+        assertFalse(SectionedBitSet.isInBounds(0, 0, -(1 << 25) - 1));
+        assertFalse(SectionedBitSet.isInBounds(0, 1 << 23, 0));
+        assertTrue(SectionedBitSet.isInBounds(-(1 << 25), -(1 << 23), (1 << 25) - 1));
+        assertThrows(IllegalArgumentException.class, () -> set.add(Integer.MAX_VALUE, 0, 0));
+    }
+
+}
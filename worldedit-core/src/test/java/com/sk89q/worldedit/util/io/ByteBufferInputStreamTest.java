@@ -0,0 +1,89 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.io;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("A byte buffer input stream")
+class ByteBufferInputStreamTest {
+
+    private static ByteBufferInputStream create() {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 0, 1, 2, 3, 4, 5, (byte) 0xFF, 7 });
+        buffer.position(1);
+        buffer.limit(7);
+        return new ByteBufferInputStream(buffer);
+    }
+
+    @Test
+    @DisplayName("reads the remaining bytes of the buffer")
+    void read() {
+        ByteBufferInputStream stream = create();
+        assertEquals(6, stream.available());
+        assertEquals(1, stream.read());
+        byte[] bytes = new byte[8];
+        assertEquals(4, stream.read(bytes, 2, 4));
+        assertArrayEquals(new byte[] { 0, 0, 2, 3, 4, 5, 0, 0 }, bytes);
+        assertEquals(0xFF, stream.read());
+        assertEquals(-1, stream.read());
+        assertEquals(-1, stream.read(bytes, 0, 8));
+        assertEquals(0, stream.read(bytes, 0, 0));
+    }
+
+    @Test
+    @DisplayName("skips at most the remaining bytes")
+    void skip() {
+        ByteBufferInputStream stream = create();
+        assertEquals(2, stream.skip(2));
+        assertEquals(3, stream.read());
+        assertEquals(0, stream.skip(-1));
+        assertEquals(3, stream.skip(100));
+        assertEquals(-1, stream.read());
+    }
+
+    @Test
+    @DisplayName("resets to the mark")
+    void markAndReset() throws IOException {
+        ByteBufferInputStream stream = create();
+        stream.read();
+        stream.mark(100);
+        assertEquals(2, stream.read());
+        assertEquals(3, stream.read());
+        stream.reset();
+        assertEquals(2, stream.read());
+    }
+
+    @Test
+    @DisplayName("can't reset without a mark")
+    void resetWithoutMark() {
+        ByteBufferInputStream stream = create();
+        stream.read();
+        assertThrows(IOException.class, stream::reset);
+        assertEquals(2, stream.read());
+    }
+
+}
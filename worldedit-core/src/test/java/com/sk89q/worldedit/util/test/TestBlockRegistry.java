@@ -0,0 +1,220 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.util.test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.sk89q.worldedit.LocalConfiguration;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.extension.platform.Capability;
+import com.sk89q.worldedit.extension.platform.Platform;
+import com.sk89q.worldedit.extension.platform.Preference;
+import com.sk89q.worldedit.internal.block.BlockStateIdAccess;
+import com.sk89q.worldedit.registry.Keyed;
+import com.sk89q.worldedit.registry.Registry;
+import com.sk89q.worldedit.registry.state.BooleanProperty;
+import com.sk89q.worldedit.registry.state.DirectionalProperty;
+import com.sk89q.worldedit.registry.state.EnumProperty;
+import com.sk89q.worldedit.registry.state.Property;
+import com.sk89q.worldedit.util.Direction;
+import com.sk89q.worldedit.world.biome.BiomeType;
+import com.sk89q.worldedit.world.biome.BiomeTypes;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.registry.BlockCategoryRegistry;
+import com.sk89q.worldedit.world.registry.BlockMaterial;
+import com.sk89q.worldedit.world.registry.BlockRegistry;
+import com.sk89q.worldedit.world.registry.BundledBlockRegistry;
+import com.sk89q.worldedit.world.registry.BundledRegistries;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Registers a mocked platform with a few block types and biomes, for tests
+ * that need block states with properties and internal IDs.
+ *
+ * <p>The block types are {@code minecraft:air}, the solid blocks
+ * {@code minecraft:stone} and {@code minecraft:dirt}, {@code minecraft:oak_log}
+ * with an {@code axis} property, {@code minecraft:furnace} with
+ * {@code facing} and {@code lit} properties, and {@code minecraft:chest}
+ * with a {@code facing} property. The {@code minecraft:logs} tag holds the
+ * oak log. The biomes are {@code minecraft:ocean} and
+ * {@code minecraft:plains}.</p>
+ *
+ * <p>The registries are global, so tests that use this class must run
+ * their methods on one thread with
+ * {@code @Execution(ExecutionMode.SAME_THREAD)}.</p>
+ */
+public final class TestBlockRegistry {
+
+    private static final Platform PLATFORM = mock(Platform.class);
+    private static final LocalConfiguration CONFIGURATION = new LocalConfiguration() {
+        @Override
+        public void load() {
+        }
+
+        @Override
+        public File getWorkingDirectory() {
+            return new File(System.getProperty("java.io.tmpdir"), "worldedit-test");
+        }
+    };
+    private static final Set<String> SOLID = ImmutableSet.of(
+        "minecraft:stone", "minecraft:dirt", "minecraft:oak_log", "minecraft:furnace", "minecraft:chest"
+    );
+    private static final Map<String, Map<String, ? extends Property<?>>> PROPERTIES = ImmutableMap.of(
+        "minecraft:oak_log", ImmutableMap.of("axis", new EnumProperty("axis", Arrays.asList("x", "y", "z"))),
+        "minecraft:furnace", ImmutableMap.of(
+            "facing", new DirectionalProperty("facing",
+                Arrays.asList(Direction.NORTH, Direction.SOUTH, Direction.WEST, Direction.EAST)),
+            "lit", new BooleanProperty("lit", Arrays.asList(true, false))
+        ),
+        "minecraft:chest", ImmutableMap.of("facing", new DirectionalProperty("facing",
+            Arrays.asList(Direction.NORTH, Direction.SOUTH, Direction.WEST, Direction.EAST)))
+    );
+
+    /**
+     * Register the platform, the block types and the biomes, and give every
+     * block state an internal ID. The platform provides a default
+     * configuration.
+     */
+    public static void setUp() {
+        when(PLATFORM.getRegistries()).thenReturn(new TestRegistries());
+        when(PLATFORM.getConfiguration()).thenReturn(CONFIGURATION);
+        when(PLATFORM.getCapabilities()).thenReturn(ImmutableMap.of(
+            Capability.WORLD_EDITING, Preference.PREFERRED,
+            Capability.GAME_HOOKS, Preference.PREFERRED,
+            Capability.CONFIGURATION, Preference.PREFERRED
+        ));
+        WorldEdit.getInstance().getPlatformManager().register(PLATFORM);
+
+        // Register air before the constants are read, or reuse the constant
+        // if an earlier test has already read them
+        register(BlockType.REGISTRY, "minecraft:air", new BlockType("minecraft:air"));
+        register(BlockType.REGISTRY, "minecraft:air", BlockTypes.AIR);
+        register(BiomeType.REGISTRY, "minecraft:ocean", new BiomeType("minecraft:ocean"));
+        register(BiomeType.REGISTRY, "minecraft:ocean", BiomeTypes.OCEAN);
+        register(BiomeType.REGISTRY, "minecraft:plains", new BiomeType("minecraft:plains"));
+        for (String id : SOLID) {
+            register(BlockType.REGISTRY, id, new BlockType(id));
+        }
+
+        for (BlockType type : BlockType.REGISTRY) {
+            for (BlockState state : type.getAllStates()) {
+                BlockStateIdAccess.register(state, BlockStateIdAccess.invalidId());
+            }
+        }
+    }
+
+    /**
+     * Unregister everything that {@link #setUp()} registered.
+     */
+    public static void tearDown() throws Exception {
+        BlockStateIdAccess.clear();
+        WorldEdit.getInstance().getPlatformManager().unregister(PLATFORM);
+        getMap(BlockType.REGISTRY).clear();
+        getMap(BiomeType.REGISTRY).clear();
+    }
+
+    /**
+     * Get a registered block type.
+     *
+     * @param id the ID of the block type
+     * @return the block type
+     */
+    public static BlockType type(String id) {
+        return checkNotNull(BlockType.REGISTRY.get(id), "No block type %s", id);
+    }
+
+    /**
+     * Get a registered biome.
+     *
+     * @param id the ID of the biome
+     * @return the biome
+     */
+    public static BiomeType biome(String id) {
+        return checkNotNull(BiomeType.REGISTRY.get(id), "No biome %s", id);
+    }
+
+    private static <V extends Keyed> void register(Registry<V> registry, String id, @Nullable V value) {
+        if (value == null) {
+            return;
+        }
+        try {
+            getMap(registry).put(id, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V extends Keyed> Map<String, V> getMap(Registry<V> registry) throws ReflectiveOperationException {
+        Field map = Registry.class.getDeclaredField("map");
+        map.setAccessible(true);
+        return (Map<String, V>) map.get(registry);
+    }
+
+    private static final class TestRegistries extends BundledRegistries {
+
+        private final BlockRegistry blockRegistry = new BundledBlockRegistry() {
+            @Override
+            public BlockMaterial getMaterial(BlockType blockType) {
+                BlockMaterial material = mock(BlockMaterial.class);
+                when(material.isAir()).thenReturn(blockType.getId().equals("minecraft:air"));
+                when(material.isMovementBlocker()).thenReturn(SOLID.contains(blockType.getId()));
+                when(material.isSolid()).thenReturn(SOLID.contains(blockType.getId()));
+                return material;
+            }
+
+            @Nullable
+            @Override
+            public Map<String, ? extends Property<?>> getProperties(BlockType blockType) {
+                return PROPERTIES.getOrDefault(blockType.getId(), Collections.emptyMap());
+            }
+        };
+
+        private final BlockCategoryRegistry blockCategoryRegistry = category ->
+            category.equals("minecraft:logs") ? ImmutableSet.of(type("minecraft:oak_log")) : Collections.emptySet();
+
+        @Override
+        public BlockRegistry getBlockRegistry() {
+            return blockRegistry;
+        }
+
+        @Override
+        public BlockCategoryRegistry getBlockCategoryRegistry() {
+            return blockCategoryRegistry;
+        }
+    }
+
+    private TestBlockRegistry() {
+    }
+
+}
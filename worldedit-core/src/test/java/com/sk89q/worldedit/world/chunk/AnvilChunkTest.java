@@ -0,0 +1,253 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.chunk;
+
+import com.google.common.collect.ImmutableMap;
+import com.sk89q.jnbt.ByteTag;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.IntTag;
+import com.sk89q.jnbt.ListTag;
+import com.sk89q.jnbt.LongArrayTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.registry.state.Property;
+import com.sk89q.worldedit.util.test.TestBlockRegistry;
+import com.sk89q.worldedit.world.DataException;
+import com.sk89q.worldedit.world.block.BlockState;
+import com.sk89q.worldedit.world.block.BlockType;
+import com.sk89q.worldedit.world.block.BlockTypes;
+import com.sk89q.worldedit.world.storage.InvalidFormatException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.sk89q.worldedit.util.test.TestBlockRegistry.type;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("An Anvil chunk")
+@Execution(ExecutionMode.SAME_THREAD)
+class AnvilChunkTest {
+
+    private static final int CHUNK_X = -3;
+    private static final int CHUNK_Z = 5;
+    private static final int SECTION_Y = 2;
+
+    @BeforeEach
+    void setUp() {
+        TestBlockRegistry.setUp();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        TestBlockRegistry.tearDown();
+    }
+
+    /**
+     * Get all states of the test blocks, so the palette needs 5 bits per
+     * entry, and entries span two longs in the 1.13 format.
+     */
+    private static List<BlockState> createPalette() {
+        List<BlockState> palette = new ArrayList<>();
+        for (BlockType type : BlockType.REGISTRY) {
+            palette.addAll(type.getAllStates());
+        }
+        assertTrue(palette.size() > 16);
+        return palette;
+    }
+
+    private static int paletteIndex(int blockPos, int paletteSize) {
+        return (blockPos * 7 + blockPos / 256) % paletteSize;
+    }
+
+    private static long[] pack13(int[] indexes, int bits) {
+        long[] packed = new long[indexes.length * bits / 64];
+        for (int i = 0; i < indexes.length; i++) {
+            int bitIndex = i * bits;
+            int longIndex = bitIndex >> 6;
+            int bitOffset = bitIndex & 63;
+            packed[longIndex] |= (long) indexes[i] << bitOffset;
+            if (bitOffset + bits > 64) {
+                packed[longIndex + 1] |= (long) indexes[i] >>> (64 - bitOffset);
+            }
+        }
+        return packed;
+    }
+
+    private static long[] pack16(int[] indexes, int bits) {
+        int perLong = 64 / bits;
+        long[] packed = new long[(indexes.length + perLong - 1) / perLong];
+        for (int i = 0; i < indexes.length; i++) {
+            packed[i / perLong] |= (long) indexes[i] << (i % perLong * bits);
+        }
+        return packed;
+    }
+
+    private static CompoundTag paletteEntry(BlockState state) {
+        Map<String, Tag> properties = new HashMap<>();
+        for (Map.Entry<Property<?>, Object> entry : state.getStates().entrySet()) {
+            properties.put(entry.getKey().getName(),
+                new StringTag(String.valueOf(entry.getValue()).toLowerCase(Locale.ROOT)));
+        }
+        Map<String, Tag> values = new HashMap<>();
+        values.put("Name", new StringTag(state.getBlockType().getId()));
+        if (!properties.isEmpty()) {
+            values.put("Properties", new CompoundTag(properties));
+        }
+        return new CompoundTag(values);
+    }
+
+    private static CompoundTag createChunkTag(List<BlockState> palette, long[] blockStates) {
+        List<CompoundTag> paletteTags = new ArrayList<>();
+        for (BlockState state : palette) {
+            paletteTags.add(paletteEntry(state));
+        }
+        return createChunkTagWithEntries(paletteTags, blockStates);
+    }
+
+    private static CompoundTag createChunkTagWithEntries(List<CompoundTag> paletteTags, long[] blockStates) {
+        CompoundTag section = new CompoundTag(ImmutableMap.of(
+            "Y", new ByteTag((byte) SECTION_Y),
+            "Palette", new ListTag(CompoundTag.class, paletteTags),
+            "BlockStates", new LongArrayTag(blockStates)
+        ));
+        return new CompoundTag(ImmutableMap.of(
+            "xPos", new IntTag(CHUNK_X),
+            "zPos", new IntTag(CHUNK_Z),
+            "Sections", new ListTag(CompoundTag.class, Collections.singletonList(section))
+        ));
+    }
+
+    private static int[] createIndexes(int paletteSize) {
+        int[] indexes = new int[4096];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = paletteIndex(i, paletteSize);
+        }
+        return indexes;
+    }
+
+    private static BlockVector3 position(int blockPos) {
+        return BlockVector3.at(CHUNK_X * 16 + (blockPos & 15), SECTION_Y * 16 + (blockPos >> 8),
+            CHUNK_Z * 16 + ((blockPos >> 4) & 15));
+    }
+
+    private static void assertReadsSection(Chunk chunk, List<BlockState> palette) throws DataException {
+        for (int blockPos = 0; blockPos < 4096; blockPos++) {
+            BlockState expected = palette.get(paletteIndex(blockPos, palette.size()));
+            assertEquals(expected, chunk.getBlock(position(blockPos)).toImmutableState());
+        }
+        // sections that are not in the tag are air
+        assertEquals(BlockTypes.AIR.getDefaultState(),
+            chunk.getBlock(BlockVector3.at(CHUNK_X * 16, 0, CHUNK_Z * 16)).toImmutableState());
+    }
+
+    private static CompoundTag createChunkTag13(List<BlockState> palette) {
+        return createChunkTag(palette, pack13(createIndexes(palette.size()), 5));
+    }
+
+    @Test
+    @DisplayName("reads blocks in the 1.13 format")
+    void read13() throws DataException {
+        List<BlockState> palette = createPalette();
+        assertReadsSection(new AnvilChunk13(createChunkTag13(palette)), palette);
+    }
+
+    @Test
+    @DisplayName("reads blocks in the 1.16 format")
+    void read16() throws DataException {
+        List<BlockState> palette = createPalette();
+        CompoundTag tag = createChunkTag(palette, pack16(createIndexes(palette.size()), 5));
+        assertReadsSection(new AnvilChunk16(tag), palette);
+    }
+
+    @Test
+    @DisplayName("rejects too short block state tables")
+    void tooShort() {
+        List<BlockState> palette = createPalette();
+        CompoundTag tag = createChunkTag(palette, new long[10]);
+        assertThrows(InvalidFormatException.class, () -> new AnvilChunk13(tag));
+    }
+
+    @Test
+    @DisplayName("rejects invalid palette entries when constructed")
+    void invalidPalette() {
+        CompoundTag stone = paletteEntry(type("minecraft:stone").getDefaultState());
+        CompoundTag unknownType = new CompoundTag(ImmutableMap.of("Name", new StringTag("minecraft:unknown")));
+        CompoundTag invalidState = new CompoundTag(ImmutableMap.of(
+            "Name", new StringTag("minecraft:chest"),
+            "Properties", new CompoundTag(ImmutableMap.of("facing", new StringTag("up")))
+        ));
+        long[] blockStates = pack13(new int[4096], 4);
+        for (CompoundTag invalid : Arrays.asList(unknownType, invalidState)) {
+            CompoundTag tag = createChunkTagWithEntries(Arrays.asList(stone, invalid), blockStates);
+            assertThrows(InvalidFormatException.class, () -> new AnvilChunk13(tag));
+            assertThrows(InvalidFormatException.class, () -> new AnvilChunk16(tag));
+        }
+    }
+
+    @Test
+    @DisplayName("reads palette entries again after the registries are reloaded")
+    void reload() throws Exception {
+        List<BlockState> palette = createPalette();
+        CompoundTag tag = createChunkTag13(palette);
+        assertReadsSection(new AnvilChunk13(tag), palette);
+
+        TestBlockRegistry.tearDown();
+        TestBlockRegistry.setUp();
+
+        BlockState first = new AnvilChunk13(tag).getBlock(position(0)).toImmutableState();
+        assertSame(type(palette.get(0).getBlockType().getId()), first.getBlockType());
+        assertReadsSection(new AnvilChunk13(tag), createPalette());
+    }
+
+    @Test
+    @DisplayName("still supports subclasses that read whole sections")
+    @SuppressWarnings("deprecation")
+    void legacySubclass() throws DataException {
+        List<BlockState> palette = createPalette();
+        BlockState stone = type("minecraft:stone").getDefaultState();
+        AnvilChunk13 chunk = new AnvilChunk13(createChunkTag13(palette)) {
+            @Override
+            protected void readBlockStates(BlockState[] palette, long[] blockStatesSerialized,
+                                           BlockState[] chunkSectionBlocks) throws InvalidFormatException {
+                super.readBlockStates(palette, blockStatesSerialized, chunkSectionBlocks);
+                chunkSectionBlocks[0] = stone;
+            }
+        };
+        assertEquals(stone, chunk.getBlock(position(0)).toImmutableState());
+        BlockState expected = palette.get(paletteIndex(1, palette.size()));
+        assertEquals(expected, chunk.getBlock(position(1)).toImmutableState());
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * WorldEdit, a Minecraft world manipulation toolkit
+ * Copyright (C) sk89q <http://www.sk89q.com>
+ * Copyright (C) WorldEdit team and contributors
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.sk89q.worldedit.world.storage;
+
+import com.sk89q.worldedit.math.BlockVector2;
+import com.sk89q.worldedit.world.DataException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("A mapped MCRegion reader")
+class MappedMcRegionReaderTest {
+
+    private static final byte[] DEFLATED_CHUNK = "deflated chunk".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] GZIPPED_CHUNK = "gzipped chunk".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Create a region file with a deflated chunk at (1, 2), and a gzipped
+     * chunk at (31, 31).
+     */
+    private static byte[] createRegionFile() throws IOException {
+        ByteBuffer file = ByteBuffer.allocate(McRegionReader.SECTOR_BYTES * 4);
+        writeChunk(file, 1, 2, 2, McRegionReader.VERSION_DEFLATE, compress(DEFLATED_CHUNK, false));
+        writeChunk(file, 31, 31, 3, McRegionReader.VERSION_GZIP, compress(GZIPPED_CHUNK, true));
+        return file.array();
+    }
+
+    private static byte[] compress(byte[] data, boolean gzip) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = gzip ? new GZIPOutputStream(bytes) : new DeflaterOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeChunk(ByteBuffer file, int x, int z, int sector, int version, byte[] compressed) {
+        file.putInt((x + z * 32) * 4, (sector << 8) | 1);
+        int start = sector * McRegionReader.SECTOR_BYTES;
+        file.putInt(start, compressed.length + 1);
+        file.put(start + 4, (byte) version);
+        for (int i = 0; i < compressed.length; i++) {
+            file.put(start + McRegionReader.CHUNK_HEADER_SIZE + i, compressed[i]);
+        }
+    }
+
+    private static byte[] readChunk(MappedMcRegionReader reader, int x, int z) throws IOException, DataException {
+        try (InputStream stream = reader.getChunkInputStream(BlockVector2.at(x, z))) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    private static void assertReadsChunks(MappedMcRegionReader reader) throws IOException, DataException {
+        assertTrue(reader.hasChunk(1, 2));
+        assertTrue(reader.hasChunk(31, 31));
+        assertFalse(reader.hasChunk(2, 1));
+        assertArrayEquals(DEFLATED_CHUNK, readChunk(reader, 1, 2));
+        // chunk coordinates are taken modulo the region size
+        assertArrayEquals(GZIPPED_CHUNK, readChunk(reader, -1, 63));
+        assertThrows(DataException.class, () -> reader.getChunkInputStream(BlockVector2.at(2, 1)));
+    }
+
+    @Test
+    @DisplayName("reads chunks from memory")
+    void readFromMemory() throws IOException, DataException {
+        assertReadsChunks(new MappedMcRegionReader(ByteBuffer.wrap(createRegionFile())));
+    }
+
+    @Test
+    @DisplayName("reads chunks from a mapped file")
+    void readFromFile() throws IOException, DataException {
+        Path file = Files.createTempFile("worldedit-region", ".mca");
+        try {
+            Files.write(file, createRegionFile());
+            MappedMcRegionReader reader = new MappedMcRegionReader(file);
+            assertReadsChunks(reader);
+            reader.close();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("reads no chunks once closed")
+    void closed() throws IOException, DataException {
+        MappedMcRegionReader reader = new MappedMcRegionReader(ByteBuffer.wrap(createRegionFile()));
+        InputStream open = reader.getChunkInputStream(BlockVector2.at(1, 2));
+        reader.close();
+        assertThrows(IOException.class, () -> reader.getChunkInputStream(BlockVector2.at(1, 2)));
+        // streams that were already opened stay readable
+        assertEquals('d', open.read());
+        open.close();
+        reader.close();
+    }
+
+}
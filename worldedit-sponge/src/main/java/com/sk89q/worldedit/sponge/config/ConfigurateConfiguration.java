@@ -75,6 +75,7 @@ public void load() {
 
         maxRadius = Math.max(-1, node.getNode("limits", "max-radius").getInt(maxRadius));
         maxBrushRadius = node.getNode("limits", "max-brush-radius").getInt(maxBrushRadius);
+        flushTickBudget = Math.max(0, node.getNode("limits", "flush-tick-budget").getInt(flushTickBudget));
         maxSuperPickaxeSize = Math.max(1, node.getNode("limits", "max-super-pickaxe-size").getInt(maxSuperPickaxeSize));
 
         butcherDefaultRadius = Math.max(-1, node.getNode("limits", "butcher-radius", "default").getInt(butcherDefaultRadius));
@@ -114,11 +115,16 @@ public void load() {
         scriptTimeout = node.getNode("scripting", "timeout").getInt(scriptTimeout);
         scriptsDir = node.getNode("scripting", "dir").getString(scriptsDir);
 
+        parallelEvaluation = node.getNode("calculation", "parallel", "enabled").getBoolean(parallelEvaluation);
+        parallelThreads = Math.max(0, node.getNode("calculation", "parallel", "threads").getInt(parallelThreads));
+        bytecodeExpressions = node.getNode("calculation", "bytecode").getBoolean(bytecodeExpressions);
+
         saveDir = node.getNode("saving", "dir").getString(saveDir);
 
         allowSymlinks = node.getNode("files", "allow-symbolic-links").getBoolean(false);
         LocalSession.MAX_HISTORY_SIZE = Math.max(0, node.getNode("history", "size").getInt(15));
         SessionManager.EXPIRATION_GRACE = node.getNode("history", "expiration").getInt(10) * 60 * 1000;
+        historyMemoryBudget = Math.max(-1, node.getNode("history", "memory-budget").getInt(historyMemoryBudget));
 
         showHelpInfo = node.getNode("show-help-on-first-use").getBoolean(true);
         serverSideCUI = node.getNode("server-side-cui").getBoolean(true);